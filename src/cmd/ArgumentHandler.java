@@ -116,6 +116,11 @@ public class ArgumentHandler {
     private String targetFilepath;
     private String queryType;
     private String targetType;
+    private String resultStorePath;
+    private String matrixFilepath;
+    private int streamSegmentSize;
+    private long latencyBudget = -1;
+    private String profilePath;
     private int imageWidth = -1;
     private int imageHeight = -1;
     private boolean helpRequested = false;
@@ -197,6 +202,21 @@ public class ArgumentHandler {
         options.addOption(
                 OptionBuilder.hasOptionalArgs(2).withValueSeparator().withDescription("Image options").withArgName("option=value").create("I"));
 
+        options.addOption(
+                OptionBuilder.hasArg().withDescription("Persistent result store, pairs already in it are not recomputed").withArgName("filepath").create("R"));
+
+        options.addOption(
+                OptionBuilder.hasArg().withDescription("Write the all-vs-all MCS similarity matrix of the target SD file").withArgName("filepath").create("M"));
+
+        options.addOption(
+                OptionBuilder.hasArg().withDescription("Stream the N-way MCS over the target SD file in segments of this many molecules").withArgName("size").create("L"));
+
+        options.addOption(
+                OptionBuilder.hasArg().withDescription("Print the search metrics and the pairs slower than this budget in milliseconds").withArgName("millis").create("B"));
+
+        options.addOption(
+                OptionBuilder.hasArg().withLongOpt("profile").withDescription("Write one JSON line per compared pair with its engines, phase times, counters and timeouts").withArgName("filepath").create("P"));
+
         PosixParser parser = new PosixParser();
         CommandLine line = parser.parse(options, args, true);
 
@@ -314,6 +334,42 @@ public class ArgumentHandler {
             }
         }
 
+        if (line.hasOption("R")) {
+            resultStorePath = line.getOptionValue("R");
+        }
+
+        if (line.hasOption("M")) {
+            matrixFilepath = line.getOptionValue("M");
+        }
+
+        if (line.hasOption("L")) {
+            String segmentString = line.getOptionValue("L");
+            try {
+                streamSegmentSize = Integer.parseInt(segmentString);
+            } catch (NumberFormatException nfe) {
+                throw new ParseException("Malformed segment size " + segmentString);
+            }
+            if (streamSegmentSize < 2) {
+                throw new ParseException("Segment size must be at least 2: " + segmentString);
+            }
+        }
+
+        if (line.hasOption("B")) {
+            String budgetString = line.getOptionValue("B");
+            try {
+                latencyBudget = Long.parseLong(budgetString);
+            } catch (NumberFormatException nfe) {
+                throw new ParseException("Malformed latency budget " + budgetString);
+            }
+            if (latencyBudget < 0) {
+                throw new ParseException("Latency budget must not be negative: " + budgetString);
+            }
+        }
+
+        if (line.hasOption("P")) {
+            profilePath = line.getOptionValue("P");
+        }
+
         if (line.hasOption("I")) {
             imageProperties = line.getOptionProperties("I");
             if (imageProperties.isEmpty()) {
@@ -323,6 +379,105 @@ public class ArgumentHandler {
         }
     }
 
+    /**
+     * Compute the all-vs-all similarity matrix of the targets.
+     *
+     * @return true if a matrix file was given
+     */
+    public boolean isMatrix() {
+        return matrixFilepath != null;
+    }
+
+    /**
+     * @return the similarity matrix file path, or null
+     */
+    public String getMatrixFilepath() {
+        return matrixFilepath;
+    }
+
+    /**
+     * @param matrixFilepath the similarity matrix file path
+     */
+    public void setMatrixFilepath(String matrixFilepath) {
+        this.matrixFilepath = matrixFilepath;
+    }
+
+    /**
+     * Stream the N-way MCS instead of loading all targets.
+     *
+     * @return true if a segment size was given
+     */
+    public boolean isStreaming() {
+        return streamSegmentSize > 0;
+    }
+
+    /**
+     * @return molecules per streamed segment, 0 if not streaming
+     */
+    public int getStreamSegmentSize() {
+        return streamSegmentSize;
+    }
+
+    /**
+     * @param streamSegmentSize molecules per streamed segment, 0 to load all
+     * targets
+     */
+    public void setStreamSegmentSize(int streamSegmentSize) {
+        this.streamSegmentSize = streamSegmentSize;
+    }
+
+    /**
+     * Collect search metrics and report the pairs over the latency budget.
+     *
+     * @return true if a latency budget was given
+     */
+    public boolean isMetrics() {
+        return latencyBudget >= 0;
+    }
+
+    /**
+     * @return latency budget per pair in milliseconds, -1 if metrics are off
+     */
+    public long getLatencyBudget() {
+        return latencyBudget;
+    }
+
+    /**
+     * @param latencyBudget latency budget per pair in milliseconds, -1 to
+     * switch metrics off
+     */
+    public void setLatencyBudget(long latencyBudget) {
+        this.latencyBudget = latencyBudget;
+    }
+
+    /**
+     * @return the profile file path, or null if no profile is written
+     */
+    public String getProfilePath() {
+        return profilePath;
+    }
+
+    /**
+     * @param profilePath the profile file path, null to write no profile
+     */
+    public void setProfilePath(String profilePath) {
+        this.profilePath = profilePath;
+    }
+
+    /**
+     * @return the result store file path, or null if no store is used
+     */
+    public String getResultStorePath() {
+        return resultStorePath;
+    }
+
+    /**
+     * @param resultStorePath the result store file path
+     */
+    public void setResultStorePath(String resultStorePath) {
+        this.resultStorePath = resultStorePath;
+    }
+
     public Properties getImageProperties() {
         return imageProperties;
     }
@@ -386,7 +541,17 @@ public class ArgumentHandler {
                 .append("\tsh SMSD -T SDF -t arom.sdf -N -O SMI -o -- -r -z -b").append(NEW_LINE);
         sb.append("e) Find MCS between N-molecules and highlighting the common substructure between them:").append(NEW_LINE);
         sb.append("\tWARNING: This option might require large virtual machine memory allocation").append(NEW_LINE)
-                .append("\tsh SMSD -T SDF -t arom.sdf -N -O SMI -o -- -g -r -z -b").append(NEW_LINE).append(NEW_LINE);
+                .append("\tsh SMSD -T SDF -t arom.sdf -N -O SMI -o -- -g -r -z -b").append(NEW_LINE);
+        sb.append("f) Find MCS between a query and many targets, keeping results to resume an interrupted run:").append(NEW_LINE)
+                .append("\tsh SMSD -Q MOL -q ADP.mol -T SDF -t library.sdf -R mcs.store -r -z -b").append(NEW_LINE);
+        sb.append("g) Write the all-vs-all MCS similarity matrix (float32, upper triangle) of an SD file:").append(NEW_LINE)
+                .append("\tsh SMSD -T SDF -t library.sdf -M library.matrix -r -z -b").append(NEW_LINE);
+        sb.append("h) Find MCS between N-molecules of an SD file too large for memory, 1000 molecules per segment:").append(NEW_LINE)
+                .append("\tsh SMSD -T SDF -t library.sdf -N -L 1000 -O SMI -o -- -r -z -b").append(NEW_LINE);
+        sb.append("i) Find MCS between a query and many targets, listing the pairs slower than 500 ms and the search metrics:").append(NEW_LINE)
+                .append("\tsh SMSD -Q MOL -q ADP.mol -T SDF -t library.sdf -B 500 -r -z -b").append(NEW_LINE);
+        sb.append("j) Find MCS between a query and many targets, writing the engines, phase times and timeouts of each pair:").append(NEW_LINE)
+                .append("\tsh SMSD -Q MOL -q ADP.mol -T SDF -t library.sdf --profile library.jsonl -r -z -b").append(NEW_LINE).append(NEW_LINE);
         sb.append("Note: You could use various file formats").append(NEW_LINE);
         return sb;
     }
@@ -27,6 +27,7 @@
 package cmd;
 
 import cmd.pdb.LigandHelper;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -35,8 +36,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import org.apache.commons.cli.MissingOptionException;
 import org.openscience.cdk.AtomContainer;
 import org.openscience.cdk.CDKConstants;
@@ -91,6 +94,7 @@ public class InputHandler {
         SINGLE_QUERY_SINGLE_TARGET,
         SINGLE_QUERY_MULTIPLE_TARGET,
         NMCS,
+        MATRIX,
         UNKNOWN
     };
     private MatchType matchType;
@@ -173,10 +177,12 @@ public class InputHandler {
         } else if ((isSingleFileQuery || isStringQuery) && isMultipleTarget) {
             matchType = MatchType.SINGLE_QUERY_MULTIPLE_TARGET;
         } else if (!isSingleFileQuery && isMultipleTarget) {
-            if (argumentHandler.isNMCS()) {
+            if (argumentHandler.isMatrix()) {
+                matchType = MatchType.MATRIX;
+            } else if (argumentHandler.isNMCS()) {
                 matchType = MatchType.NMCS;
             } else {
-                throw new MissingOptionException("Set N-MCS to true");
+                throw new MissingOptionException("Set N-MCS to true or give a matrix file");
             }
         } else {
             matchType = MatchType.UNKNOWN;
@@ -432,35 +438,12 @@ public class InputHandler {
             List<IAtomContainer> atomContainerList = new ArrayList<>(allAtomContainers.size());
 
             CDKHydrogenAdder adder = CDKHydrogenAdder.getInstance(DefaultChemObjectBuilder.getInstance());
-            for (int atomContainerNr = 0; atomContainerNr < allAtomContainers.size();) {
-                IAtomContainer temp = allAtomContainers.get(atomContainerNr);
-                IAtomContainer atomcontainerHFree = ExtAtomContainerManipulator.removeHydrogens(temp);
-                ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(atomcontainerHFree);
-
-                if (deducebonds) {
-                    DeduceBondSystemTool dbst = new DeduceBondSystemTool();
-                    atomcontainerHFree = dbst.fixAromaticBondOrders(atomcontainerHFree);
+            for (int atomContainerNr = 0; atomContainerNr < allAtomContainers.size(); atomContainerNr++) {
+                IAtomContainer atomcontainerHFree = prepareTarget(
+                        allAtomContainers.get(atomContainerNr), atomContainerNr + 1, deducebonds, adder);
+                if (atomcontainerHFree != null) {
+                    atomContainerList.add(atomcontainerHFree);
                 }
-
-                adder.addImplicitHydrogens(atomcontainerHFree);
-                String index = String.valueOf((atomContainerNr + 1));
-                boolean flag = ConnectivityChecker.isConnected(atomcontainerHFree);
-                String title = atomcontainerHFree.getProperty(CDKConstants.TITLE) != null
-                        ? (String) atomcontainerHFree.getProperty(CDKConstants.TITLE) : index;
-                atomcontainerHFree.setProperty(CDKConstants.TITLE, index);
-                if (!flag) {
-                    System.err.println("WARNING : Skipping target AtomContainer "
-                            + title + " as it is not connected.");
-                    continue;
-                } else {
-                    if (title != null) {
-                        atomcontainerHFree.setID(title);
-                    }
-                    argumentHandler.setTargetMolOutName(atomcontainerHFree.getID());
-                }
-
-                atomContainerList.add(atomContainerNr, atomcontainerHFree);
-                atomContainerNr++;
             }
             allAtomContainers.clear();
             return atomContainerList;
@@ -469,6 +452,116 @@ public class InputHandler {
         }
     }
 
+    /*
+     * Removes hydrogens, types the atoms and adds implicit hydrogens; returns
+     * null for disconnected molecules
+     */
+    private IAtomContainer prepareTarget(IAtomContainer temp, int number, boolean deducebonds,
+            CDKHydrogenAdder adder) throws CDKException {
+        IAtomContainer atomcontainerHFree = ExtAtomContainerManipulator.removeHydrogens(temp);
+        ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(atomcontainerHFree);
+
+        if (deducebonds) {
+            DeduceBondSystemTool dbst = new DeduceBondSystemTool();
+            atomcontainerHFree = dbst.fixAromaticBondOrders(atomcontainerHFree);
+        }
+
+        adder.addImplicitHydrogens(atomcontainerHFree);
+        String index = String.valueOf(number);
+        boolean flag = ConnectivityChecker.isConnected(atomcontainerHFree);
+        String title = atomcontainerHFree.getProperty(CDKConstants.TITLE) != null
+                ? (String) atomcontainerHFree.getProperty(CDKConstants.TITLE) : index;
+        atomcontainerHFree.setProperty(CDKConstants.TITLE, index);
+        if (!flag) {
+            System.err.println("WARNING : Skipping target AtomContainer "
+                    + title + " as it is not connected.");
+            return null;
+        }
+        if (title != null) {
+            atomcontainerHFree.setID(title);
+        }
+        argumentHandler.setTargetMolOutName(atomcontainerHFree.getID());
+        return atomcontainerHFree;
+    }
+
+    /**
+     * Reads the target SD file one molecule at a time. Each molecule is
+     * prepared as in {@link #getAllTargets()} and configured; disconnected
+     * molecules are skipped.
+     *
+     * @return target iterator, to be closed by the caller
+     * @throws IOException if the target is not an SD file or cannot be opened
+     */
+    public TargetIterator getTargetIterator() throws IOException {
+        String type = argumentHandler.getTargetType();
+        if (!"SDF".equals(type)) {
+            throw new IOException("Streaming needs an SDF target, not " + type);
+        }
+        String infileName = argumentHandler.getTargetFilepath();
+        File inputFile = new File(infileName);
+        if (!inputFile.isFile()) {
+            throw new FileNotFoundException("ERROR: Input File Not Found " + infileName);
+        }
+        return new TargetIterator(new IteratingSDFReader(
+                new FileReader(inputFile), DefaultChemObjectBuilder.getInstance()));
+    }
+
+    /**
+     * Prepared targets read lazily from an SD file.
+     */
+    public final class TargetIterator implements Iterator<IAtomContainer>, Closeable {
+
+        private final IteratingSDFReader reader;
+        private final CDKHydrogenAdder adder;
+        private IAtomContainer next;
+        private int number;
+
+        private TargetIterator(IteratingSDFReader reader) {
+            this.reader = reader;
+            this.adder = CDKHydrogenAdder.getInstance(DefaultChemObjectBuilder.getInstance());
+            this.number = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && reader.hasNext()) {
+                IAtomContainer mol = reader.next();
+                number++;
+                mol.setID((String) mol.getProperty(CDKConstants.TITLE));
+                try {
+                    next = prepareTarget(mol, number, false, adder);
+                    if (next != null) {
+                        configure(next, "SDF");
+                    }
+                } catch (CDKException ex) {
+                    logger.error("Skipping target " + number + ": " + ex.getMessage());
+                    next = null;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public IAtomContainer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            IAtomContainer current = next;
+            next = null;
+            return current;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
     private static void setAtomID(IAtomContainer mol) {
         int index = 1;
         for (IAtom atom : mol.atoms()) {
@@ -0,0 +1,123 @@
+/*
+ *
+ *
+ * Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received query copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ */
+package cmd;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.openscience.smsd.metrics.InMemoryMetricsRegistry;
+import org.openscience.smsd.metrics.MetricsPhaseListener;
+import org.openscience.smsd.metrics.PhaseEvent;
+
+/**
+ * Collects the search metrics of a run and the pairs that took longer than
+ * the latency budget, and prints them once the run is over.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+class LatencyReport {
+
+    static final String PAIR_TIME = "smsdcmd.pair.time";
+    private final long budgetNanos;
+    private final InMemoryMetricsRegistry registry;
+    private final List<Pair> slowPairs;
+    private final MetricsPhaseListener phases;
+    private long pairs;
+
+    /**
+     * @param budgetMillis latency budget per pair in milliseconds
+     * @param registry registry the engines report their metrics to
+     */
+    LatencyReport(long budgetMillis, InMemoryMetricsRegistry registry) {
+        this.budgetNanos = budgetMillis * 1000000L;
+        this.registry = registry;
+        this.slowPairs = new ArrayList<>();
+        this.phases = new MetricsPhaseListener();
+    }
+
+    /**
+     * Records the phases of the searches in the registry.
+     */
+    void start() {
+        PhaseEvent.addListener(phases);
+    }
+
+    /**
+     * Stops recording the phases.
+     */
+    void stop() {
+        PhaseEvent.removeListener(phases);
+    }
+
+    /**
+     * @param query query name
+     * @param target target name
+     * @param nanos time spent on the pair
+     */
+    void record(String query, String target, long nanos) {
+        registry.timer(PAIR_TIME).record(nanos);
+        pairs++;
+        if (nanos > budgetNanos) {
+            slowPairs.add(new Pair(query, target, nanos));
+        }
+    }
+
+    /**
+     * Prints the pairs over the budget, slowest first, and the metrics.
+     *
+     * @param out stream to print to
+     */
+    void print(PrintStream out) {
+        Collections.sort(slowPairs, new Comparator<Pair>() {
+            @Override
+            public int compare(Pair o1, Pair o2) {
+                return Long.compare(o2.nanos, o1.nanos);
+            }
+        });
+        out.println(slowPairs.size() + " of " + pairs + " pairs over the budget of "
+                + budgetNanos / 1000000L + " ms");
+        for (Pair pair : slowPairs) {
+            out.println(String.format("  %10.1f ms  %s  %s", pair.nanos / 1000000.0, pair.query, pair.target));
+        }
+        registry.report(out);
+    }
+
+    private static final class Pair {
+
+        private final String query;
+        private final String target;
+        private final long nanos;
+
+        Pair(String query, String target, long nanos) {
+            this.query = query;
+            this.target = target;
+            this.nanos = nanos;
+        }
+    }
+}
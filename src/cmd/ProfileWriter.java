@@ -0,0 +1,298 @@
+/*
+ *
+ *
+ * Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received query copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ */
+package cmd;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.smsd.BaseMapping;
+import org.openscience.smsd.metrics.IPhaseListener;
+import org.openscience.smsd.metrics.InMemoryMetricsRegistry;
+import org.openscience.smsd.metrics.PhaseEvent;
+
+/**
+ * Writes one JSON line per compared pair: the names, atom and bond counts,
+ * the engines {@link org.openscience.smsd.Isomorphism} ran, whether VF2MCS
+ * ran as the fallback of a timed out engine, the time of each phase, the
+ * counters the pair incremented, the mapping count and the timeouts.
+ *
+ * The lines are queued and written by a background thread, so a search never
+ * waits on the file. A pair answered from the mapping cache lists no engine.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+class ProfileWriter implements IPhaseListener {
+
+    private static final String ENGINE_PREFIX = "engine.";
+    /*
+     * Queued after the last line, compared by identity
+     */
+    private static final String END = new String();
+    private final InMemoryMetricsRegistry registry;
+    private final Writer writer;
+    private final BlockingQueue<String> lines;
+    private final Thread thread;
+    private final Map<String, long[]> phases;
+    private final List<String> engines;
+    private final List<String> timeouts;
+    private Map<String, Long> counters;
+    private volatile IOException failure;
+
+    /**
+     * @param file profile to write, replaced if it exists
+     * @param registry registry the engines report their counters to
+     * @throws IOException if the file cannot be opened
+     */
+    ProfileWriter(File file, InMemoryMetricsRegistry registry) throws IOException {
+        this.registry = registry;
+        this.writer = new BufferedWriter(new FileWriter(file));
+        this.lines = new LinkedBlockingQueue<>();
+        this.phases = new LinkedHashMap<>();
+        this.engines = new ArrayList<>();
+        this.timeouts = new ArrayList<>();
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "smsd-profile");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the writer thread and listens to the phases of the searches.
+     */
+    void start() {
+        thread.start();
+        PhaseEvent.addListener(this);
+    }
+
+    /**
+     * Starts a pair: forgets the phases of the previous pair and takes the
+     * counters the increments of this pair are measured from.
+     */
+    synchronized void begin() {
+        phases.clear();
+        engines.clear();
+        timeouts.clear();
+        counters = registry.getCounters();
+    }
+
+    @Override
+    public synchronized void phaseEnded(PhaseEvent event) {
+        long[] phase = phases.get(event.getPhase());
+        if (phase == null) {
+            phase = new long[2];
+            phases.put(event.getPhase(), phase);
+        }
+        phase[0]++;
+        phase[1] += event.getDuration();
+        if (event.getPhase().startsWith(ENGINE_PREFIX)) {
+            engines.add(event.getPhase().substring(ENGINE_PREFIX.length()));
+        }
+        if (event.isTimeout() && !timeouts.contains(event.getPhase())) {
+            timeouts.add(event.getPhase());
+        }
+    }
+
+    /**
+     * Queues the line of a pair started by {@link #begin()}.
+     *
+     * @param queryName query name
+     * @param targetName target name
+     * @param query query molecule
+     * @param target target molecule
+     * @param mapping result of the pair
+     * @param substructure true for a substructure search, false for an MCS
+     * @param nanos time spent on the pair
+     */
+    synchronized void record(String queryName, String targetName,
+            IAtomContainer query, IAtomContainer target,
+            BaseMapping mapping, boolean substructure, long nanos) {
+        if (failure != null) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("{\"query\":");
+        quote(sb, queryName);
+        sb.append(",\"target\":");
+        quote(sb, targetName);
+        sb.append(",\"mode\":\"").append(substructure ? "substructure" : "mcs").append('"');
+        sb.append(",\"queryAtoms\":").append(query.getAtomCount());
+        sb.append(",\"queryBonds\":").append(query.getBondCount());
+        sb.append(",\"targetAtoms\":").append(target.getAtomCount());
+        sb.append(",\"targetBonds\":").append(target.getBondCount());
+        sb.append(",\"engines\":[");
+        boolean fallback = false;
+        for (int i = 0; i < engines.size(); i++) {
+            String engine = engines.get(i);
+            if (i > 0) {
+                sb.append(',');
+                fallback |= isFallback(engines.get(i - 1), engine);
+            }
+            quote(sb, engine);
+        }
+        sb.append("],\"vf2mcsFallback\":").append(fallback);
+        sb.append(",\"nanos\":").append(nanos);
+        sb.append(",\"phases\":{");
+        for (Iterator<Map.Entry<String, long[]>> it = phases.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, long[]> phase = it.next();
+            quote(sb, phase.getKey());
+            sb.append(":{\"count\":").append(phase.getValue()[0])
+                    .append(",\"nanos\":").append(phase.getValue()[1]).append('}');
+            if (it.hasNext()) {
+                sb.append(',');
+            }
+        }
+        sb.append("},\"counters\":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> counter : registry.getCounters().entrySet()) {
+            Long before = counters == null ? null : counters.get(counter.getKey());
+            long increment = counter.getValue() - (before == null ? 0 : before);
+            if (increment == 0) {
+                continue;
+            }
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            quote(sb, counter.getKey());
+            sb.append(':').append(increment);
+            if (counter.getKey().endsWith(".timeouts") && !timeouts.contains(counter.getKey())) {
+                timeouts.add(counter.getKey());
+            }
+        }
+        int mappings = mapping.getMappingCount();
+        sb.append("},\"mappings\":").append(mappings);
+        sb.append(",\"mappedAtoms\":").append(mappings > 0 ? mapping.getFirstAtomMapping().getCount() : 0);
+        sb.append(",\"timeout\":").append(!timeouts.isEmpty());
+        sb.append(",\"timeouts\":[");
+        for (int i = 0; i < timeouts.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            quote(sb, timeouts.get(i));
+        }
+        sb.append("]}");
+        lines.add(sb.toString());
+    }
+
+    /**
+     * Stops listening, writes the queued lines and closes the file.
+     *
+     * @throws IOException if a line could not be written
+     */
+    void close() throws IOException {
+        PhaseEvent.removeListener(this);
+        lines.add(END);
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                String line = lines.take();
+                if (line == END) {
+                    break;
+                }
+                writer.write(line);
+                writer.write('\n');
+                if (lines.isEmpty()) {
+                    writer.flush();
+                }
+            }
+            writer.flush();
+        } catch (IOException ex) {
+            failure = ex;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * VF2MCS is the fallback when it runs right after a CDKMCS or MCSPlus
+     * search of the same pair
+     */
+    private static boolean isFallback(String previous, String engine) {
+        return PhaseEvent.VF2MCS_ENGINE.equals(ENGINE_PREFIX + engine)
+                && (PhaseEvent.CDKMCS_ENGINE.equals(ENGINE_PREFIX + previous)
+                || PhaseEvent.MCSPLUS_ENGINE.equals(ENGINE_PREFIX + previous));
+    }
+
+    private static void quote(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -26,6 +26,9 @@
  */
 package cmd;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
 
@@ -51,8 +54,14 @@ import org.openscience.smsd.Substructure;
 import org.openscience.smsd.interfaces.Algorithm;
 import org.openscience.smsd.mcss.JobType;
 import org.openscience.smsd.mcss.MCSS;
+import org.openscience.smsd.mcss.StreamingMCSS;
+import org.openscience.smsd.metrics.InMemoryMetricsRegistry;
+import org.openscience.smsd.metrics.Metrics;
+import org.openscience.smsd.similarity.SimilarityMatrix;
 import org.openscience.smsd.tools.AtomContainerComparator;
 import org.openscience.smsd.tools.ExtAtomContainerManipulator;
+import org.openscience.smsd.tools.MappingCache;
+import org.openscience.smsd.tools.MappingStore;
 
 /**
  *
@@ -62,6 +71,18 @@ public class SMSDcmd {
 
     private final static ILoggingTool logger
             = LoggingToolFactory.createLoggingTool(InputHandler.class);
+    /*
+     * Number of targets after which the result store is forced to disk
+     */
+    private final static int CHECKPOINT_INTERVAL = 100;
+    /*
+     * Metrics and slow pairs of the run, null unless a latency budget is given
+     */
+    private static LatencyReport latencyReport;
+    /*
+     * Per pair profile of the run, null unless a profile file is given
+     */
+    private static ProfileWriter profileWriter;
 
     /**
      * @param args the command line arguments
@@ -97,7 +118,24 @@ public class SMSDcmd {
      */
     public static void run(ArgumentHandler argumentHandler, InputHandler inputHandler) {
         OutputHandler outputHandler = new OutputHandler(argumentHandler);
+        MappingStore store = null;
         try {
+            if (argumentHandler.getResultStorePath() != null) {
+                store = new MappingStore(new File(argumentHandler.getResultStorePath()));
+                MappingCache.getInstance().setStore(store);
+            }
+            if (argumentHandler.isMetrics() || argumentHandler.getProfilePath() != null) {
+                InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+                Metrics.setRegistry(registry);
+                if (argumentHandler.isMetrics()) {
+                    latencyReport = new LatencyReport(argumentHandler.getLatencyBudget(), registry);
+                    latencyReport.start();
+                }
+                if (argumentHandler.getProfilePath() != null) {
+                    profileWriter = new ProfileWriter(new File(argumentHandler.getProfilePath()), registry);
+                    profileWriter.start();
+                }
+            }
             InputHandler.MatchType matchType = inputHandler.validateInput();
             switch (matchType) {
                 case SINGLE_QUERY_SINGLE_TARGET:
@@ -109,6 +147,9 @@ public class SMSDcmd {
                 case NMCS:
                     runNMCS(inputHandler, outputHandler, argumentHandler);
                     break;
+                case MATRIX:
+                    runMatrix(inputHandler, argumentHandler);
+                    break;
                 case UNKNOWN:
                 default:
                     throw new IOException("Unknown types " + argumentHandler.getQueryType() + " " + argumentHandler.getTargetType());
@@ -124,6 +165,29 @@ public class SMSDcmd {
             logger.error(e.toString());
         } catch (MissingOptionException e) {
             logger.error("Missing argument : " + e.getMessage());
+        } finally {
+            if (latencyReport != null) {
+                latencyReport.stop();
+                latencyReport.print(System.err);
+                latencyReport = null;
+            }
+            if (profileWriter != null) {
+                try {
+                    profileWriter.close();
+                } catch (IOException ioe) {
+                    logger.error("IO Problem : " + ioe.getMessage());
+                }
+                profileWriter = null;
+            }
+            Metrics.setRegistry(null);
+            if (store != null) {
+                MappingCache.getInstance().setStore(null);
+                try {
+                    store.close();
+                } catch (IOException ioe) {
+                    logger.error("IO Problem : " + ioe.getMessage());
+                }
+            }
         }
 
     }
@@ -141,6 +205,10 @@ public class SMSDcmd {
             InputHandler inputHandler,
             OutputHandler outputHandler,
             ArgumentHandler argumentHandler) throws IOException, CDKException, CloneNotSupportedException {
+        if (argumentHandler.isStreaming()) {
+            runStreamingNMCS(inputHandler, outputHandler, argumentHandler);
+            return;
+        }
         List<IAtomContainer> atomContainerSet = inputHandler.getAllTargets();
         String targetType = argumentHandler.getTargetType();
         if (atomContainerSet == null) {
@@ -169,6 +237,79 @@ public class SMSDcmd {
         MCSS mcss = new MCSS(atomContainerSet, JobType.MULTIPLE, 0,
                 matchBonds, matchRings, matchAtomTypes);
         Collection<IAtomContainer> calculatedMCSS = mcss.getCalculateMCSS();
+        IAtomContainerSet solutions = writeNMCS(calculatedMCSS, inputHandler, outputHandler, argumentHandler);
+        if (solutions == null) {
+            return;
+        }
+
+        /*
+         * For image generation RE-RUN the MULTIPLE with the common fragment
+         */
+        if (argumentHandler.isImage() && !solutions.isEmpty()) {
+            int index = 1;
+            for (IAtomContainer ac : solutions.atomContainers()) {
+                if (ac != null && ac.getAtomCount() > 0) {
+                    IAtomContainer mcsAtomContainer = ac.clone();
+                    // now that we have the N-MULTIPLE, remap
+                    List<Map<Integer, Integer>> mappings = new ArrayList<>();
+                    List<IAtomContainer> secondRoundTargets = new ArrayList<>();
+                    IChemObjectBuilder builder = DefaultChemObjectBuilder.getInstance();
+                    for (IAtomContainer target : atomContainerSet) {
+                        BaseMapping smsd = run(mcsAtomContainer, target, filter, matchBonds, matchRings, matchBonds);
+                        mappings.add(getIndexMapping(smsd.getFirstAtomMapping()));
+                        secondRoundTargets.add(
+                                builder.newInstance(IAtomContainer.class, smsd.getFirstAtomMapping().getTarget()));
+                    }
+
+                    String name = inputHandler.getTargetName() + "_" + String.valueOf(index);
+                    outputHandler.writeCircleImage(mcsAtomContainer, secondRoundTargets, name, mappings);
+                }
+                index++;
+            }
+        }
+    }
+
+    /**
+     * N-way MCS in one pass over the target SD file, holding only a few
+     * segments of it in memory. Images are not generated in this mode as
+     * they need all the targets.
+     *
+     * @param inputHandler
+     * @param outputHandler
+     * @param argumentHandler
+     * @throws IOException
+     * @throws CDKException
+     */
+    public static void runStreamingNMCS(
+            InputHandler inputHandler,
+            OutputHandler outputHandler,
+            ArgumentHandler argumentHandler) throws IOException, CDKException {
+        StreamingMCSS mcss = new StreamingMCSS(JobType.MULTIPLE, argumentHandler.getStreamSegmentSize(), 0,
+                argumentHandler.isMatchBondType(), argumentHandler.isMatchRingType(),
+                argumentHandler.isMatchAtomType());
+        Collection<IAtomContainer> calculatedMCSS;
+        try (InputHandler.TargetIterator targets = inputHandler.getTargetIterator()) {
+            calculatedMCSS = mcss.calculate(targets);
+        }
+        if (mcss.isTerminatedEarly()) {
+            System.out.println("No common substructure, stopped after " + mcss.getMoleculeCount() + " molecules");
+        }
+        writeNMCS(calculatedMCSS, inputHandler, outputHandler, argumentHandler);
+        if (argumentHandler.isImage()) {
+            System.err.println("WARNING : Images are not generated when streaming");
+        }
+    }
+
+    /*
+     * Names, configures and writes the MCSS fragments; returns null if a
+     * fragment is not connected
+     */
+    private static IAtomContainerSet writeNMCS(
+            Collection<IAtomContainer> calculatedMCSS,
+            InputHandler inputHandler,
+            OutputHandler outputHandler,
+            ArgumentHandler argumentHandler) throws IOException, CDKException {
+        String targetType = argumentHandler.getTargetType();
         IAtomContainerSet solutions = new AtomContainerSet();
         for (IAtomContainer mcsAtomContainer : calculatedMCSS) {
             if (mcsAtomContainer != null && mcsAtomContainer.getAtomCount() > 0) {
@@ -176,7 +317,7 @@ public class SMSDcmd {
                 if (!flag) {
                     System.err.println("WARNING : Skipping file "
                             + mcsAtomContainer.getProperty(CDKConstants.TITLE) + " not connected ");
-                    return;
+                    return null;
                 } else if (mcsAtomContainer.getProperty(CDKConstants.TITLE) != null) {
                     String mcsFilenName = mcsAtomContainer.getProperty(CDKConstants.TITLE).equals("untitled")
                             ? "mcs" : (String) mcsAtomContainer.getProperty(CDKConstants.TITLE);
@@ -199,29 +340,43 @@ public class SMSDcmd {
             outputHandler.writeMol(outtype, solutions, outpath);
         }
 
-        /*
-         * For image generation RE-RUN the MULTIPLE with the common fragment
-         */
-        if (argumentHandler.isImage() && !solutions.isEmpty()) {
-            int index = 1;
-            for (IAtomContainer ac : solutions.atomContainers()) {
-                if (ac != null && ac.getAtomCount() > 0) {
-                    IAtomContainer mcsAtomContainer = ac.clone();
-                    // now that we have the N-MULTIPLE, remap
-                    List<Map<Integer, Integer>> mappings = new ArrayList<>();
-                    List<IAtomContainer> secondRoundTargets = new ArrayList<>();
-                    IChemObjectBuilder builder = DefaultChemObjectBuilder.getInstance();
-                    for (IAtomContainer target : atomContainerSet) {
-                        BaseMapping smsd = run(mcsAtomContainer, target, filter, matchBonds, matchRings, matchBonds);
-                        mappings.add(getIndexMapping(smsd.getFirstAtomMapping()));
-                        secondRoundTargets.add(
-                                builder.newInstance(IAtomContainer.class, smsd.getFirstAtomMapping().getTarget()));
-                    }
+        return solutions;
+    }
 
-                    String name = inputHandler.getTargetName() + "_" + String.valueOf(index);
-                    outputHandler.writeCircleImage(mcsAtomContainer, secondRoundTargets, name, mappings);
-                }
-                index++;
+    /**
+     * Writes the all-vs-all MCS similarity matrix of the targets, and the
+     * molecule names per row next to it (matrix file + ".rows").
+     *
+     * @param inputHandler
+     * @param argumentHandler
+     * @throws IOException
+     * @throws CDKException
+     */
+    public static void runMatrix(
+            InputHandler inputHandler,
+            ArgumentHandler argumentHandler) throws IOException, CDKException {
+        List<IAtomContainer> atomContainerSet = inputHandler.getAllTargets();
+        String targetType = argumentHandler.getTargetType();
+        if (atomContainerSet == null) {
+            throw new IOException("Unknown input type " + targetType);
+        }
+        for (IAtomContainer target : atomContainerSet) {
+            inputHandler.configure(target, targetType);
+        }
+
+        SimilarityMatrix matrix = new SimilarityMatrix(atomContainerSet, Algorithm.DEFAULT,
+                argumentHandler.isMatchBondType(), argumentHandler.isMatchRingType(),
+                argumentHandler.isMatchAtomType());
+        File matrixFile = new File(argumentHandler.getMatrixFilepath());
+        matrix.compute(matrixFile);
+
+        try (BufferedWriter rows = new BufferedWriter(new FileWriter(matrixFile.getPath() + ".rows"))) {
+            int row = 0;
+            for (IAtomContainer target : atomContainerSet) {
+                Object title = target.getProperty(CDKConstants.TITLE);
+                rows.write(row + "\t" + (title == null ? "" : title));
+                rows.newLine();
+                row++;
             }
         }
     }
@@ -284,11 +439,16 @@ public class SMSDcmd {
 
             inputHandler.configure(target, targetType);
 
+            long pairStartTime = beginPair();
             if (argumentHandler.isSubstructureMode()) {
                 smsd = runSubstructure(query, target, argumentHandler.getChemFilter(), matchBonds, matchRings, matchAtomTypes);
             } else {
                 smsd = run(query, target, argumentHandler.getChemFilter(), matchBonds, matchRings, matchAtomTypes);
             }
+            Object title = target.getProperty(CDKConstants.TITLE);
+            recordPair(inputHandler.getQueryName(),
+                    title == null ? "#" + targetNumber : title.toString(),
+                    query, target, smsd, argumentHandler.isSubstructureMode(), pairStartTime);
 
             long endTime = System.currentTimeMillis();
             long executionTime = endTime - startTime;
@@ -343,6 +503,9 @@ public class SMSDcmd {
                 outputHandler.writeImage(qName, tName);
             }
             targetNumber++;
+            if (targetNumber % CHECKPOINT_INTERVAL == 0) {
+                checkpoint();
+            }
         }
         outputHandler.closeFiles();
     }
@@ -430,11 +593,14 @@ public class SMSDcmd {
         boolean matchRings = argumentHandler.isMatchRingType();
         boolean matchAtomTypes = argumentHandler.isMatchAtomType();
 
+        long pairStartTime = beginPair();
         if (argumentHandler.isSubstructureMode()) {
             smsd = runSubstructure(query, target, argumentHandler.getChemFilter(), matchBonds, matchRings, matchAtomTypes);
         } else {
             smsd = run(query, target, argumentHandler.getChemFilter(), matchBonds, matchRings, matchAtomTypes);
         }
+        recordPair(inputHandler.getQueryName(), inputHandler.getTargetName(),
+                query, target, smsd, argumentHandler.isSubstructureMode(), pairStartTime);
 
         query = query.getBuilder().newInstance(IAtomContainer.class, smsd.getFirstAtomMapping().getQuery());
         target = target.getBuilder().newInstance(IAtomContainer.class, smsd.getFirstAtomMapping().getTarget());
@@ -555,6 +721,36 @@ public class SMSDcmd {
         return smsd;
     }
 
+    private static long beginPair() {
+        if (profileWriter != null) {
+            profileWriter.begin();
+        }
+        return System.nanoTime();
+    }
+
+    private static void recordPair(String queryName, String targetName,
+            IAtomContainer query, IAtomContainer target,
+            BaseMapping smsd, boolean substructure, long startTime) {
+        long nanos = System.nanoTime() - startTime;
+        if (latencyReport != null) {
+            latencyReport.record(queryName, targetName, nanos);
+        }
+        if (profileWriter != null) {
+            profileWriter.record(queryName, targetName, query, target, smsd, substructure, nanos);
+        }
+    }
+
+    private static void checkpoint() {
+        MappingStore store = MappingCache.getInstance().getStore();
+        if (store != null) {
+            try {
+                store.checkpoint();
+            } catch (IOException ioe) {
+                logger.error("IO Problem : " + ioe.getMessage());
+            }
+        }
+    }
+
     private static Map<Integer, Integer> getIndexMapping(AtomAtomMapping aam) {
         return aam.isEmpty() ? new TreeMap<Integer, Integer>() : aam.getMappingsByIndex();
     }
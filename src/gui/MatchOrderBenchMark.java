@@ -0,0 +1,136 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package gui;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.io.iterator.IteratingSDFReader;
+import org.openscience.smsd.algorithm.vflib.substructure.MatchOrder;
+import org.openscience.smsd.algorithm.vflib.substructure.VF2Matcher;
+
+/**
+ * Compares the VF2 substructure search in input atom order with the VF2++
+ * matching order ({@link MatchOrder}) on queries whose atoms are shuffled.
+ * Every pair of molecules in the SD file is searched with a number of random
+ * atom orders of the query; for each pair the total and the worst time over
+ * the shuffles are reported for both orders.
+ *
+ * <pre>
+ * java gui.MatchOrderBenchMark Data/arom.sdf 50 42
+ * </pre>
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class MatchOrderBenchMark {
+
+    /**
+     * @param args SD file, number of shuffles (default 20) and random seed
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        String input = (args.length > 0) ? args[0] : "Data/arom.sdf";
+        int shuffles = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : 42L;
+
+        List<IAtomContainer> molecules = read(new File(input));
+        Random random = new Random(seed);
+        MatchOrder[] orders = {MatchOrder.INPUT, MatchOrder.VF2PP};
+
+        long[] totals = new long[2];
+        for (int q = 0; q < molecules.size(); q++) {
+            for (int t = 0; t < molecules.size(); t++) {
+                IAtomContainer query = molecules.get(q);
+                IAtomContainer target = molecules.get(t);
+                if (query.getAtomCount() > target.getAtomCount()) {
+                    continue;
+                }
+                long[] time = new long[2];
+                long[] worst = new long[2];
+                int[] hits = new int[2];
+                for (int k = 0; k < shuffles; k++) {
+                    IAtomContainer shuffled = shuffle(query, random);
+                    for (int turn = 0; turn < 2; turn++) {
+                        int mode = (k + turn) % 2;
+                        long start = System.nanoTime();
+                        if (new VF2Matcher(shuffled, target, true, false, false, false, orders[mode]).hasNext()) {
+                            hits[mode]++;
+                        }
+                        long elapsed = System.nanoTime() - start;
+                        time[mode] += elapsed;
+                        worst[mode] = Math.max(worst[mode], elapsed);
+                    }
+                }
+                totals[0] += time[0];
+                totals[1] += time[1];
+                System.out.println(String.format(
+                        "%d %d input %.3fms worst %.3fms VF2++ %.3fms worst %.3fms hits %d %d",
+                        q, t, time[0] / 1e6, worst[0] / 1e6, time[1] / 1e6, worst[1] / 1e6,
+                        hits[0], hits[1]));
+            }
+        }
+        System.out.println(String.format("total input %.3fms VF2++ %.3fms", totals[0] / 1e6, totals[1] / 1e6));
+    }
+
+    /**
+     * Copy of the molecule with its atoms in random order.
+     *
+     * @param molecule molecule
+     * @param random random source
+     * @return shuffled copy
+     * @throws CloneNotSupportedException
+     */
+    public static IAtomContainer shuffle(IAtomContainer molecule, Random random)
+            throws CloneNotSupportedException {
+        IAtomContainer copy = molecule.clone();
+        IAtom[] atoms = new IAtom[copy.getAtomCount()];
+        for (int i = 0; i < atoms.length; i++) {
+            atoms[i] = copy.getAtom(i);
+        }
+        for (int i = atoms.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            IAtom swap = atoms[i];
+            atoms[i] = atoms[j];
+            atoms[j] = swap;
+        }
+        copy.setAtoms(atoms);
+        return copy;
+    }
+
+    private static List<IAtomContainer> read(File file) throws IOException {
+        List<IAtomContainer> molecules = new ArrayList<>();
+        try (IteratingSDFReader reader = new IteratingSDFReader(
+                new FileReader(file), DefaultChemObjectBuilder.getInstance())) {
+            while (reader.hasNext()) {
+                molecules.add(reader.next());
+            }
+        }
+        return molecules;
+    }
+}
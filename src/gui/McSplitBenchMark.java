@@ -0,0 +1,126 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package gui;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.io.iterator.IteratingSDFReader;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.interfaces.Algorithm;
+
+/**
+ * Compares the McSplit MCS engine with the other MCS engines. Every pair of
+ * molecules in the SD file is compared with each engine; for each pair the
+ * time and the MCS size of every engine are reported, followed by the total
+ * time per engine and the number of pairs where an engine found a smaller MCS
+ * than the best engine.
+ *
+ * <pre>
+ * java gui.McSplitBenchMark Data/mol4NMCS.sdf
+ * </pre>
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class McSplitBenchMark {
+
+    private static final Algorithm[] ENGINES = {
+        Algorithm.MCSPLIT, Algorithm.CDKMCS, Algorithm.MCSPlus, Algorithm.VFLibMCS
+    };
+
+    /**
+     * @param args SD file, then optionally "bonds", "rings" and "types" to set
+     * the match flags (bonds are matched by default)
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        String input = (args.length > 0) ? args[0] : "Data/mol4NMCS.sdf";
+        boolean matchBonds = args.length < 2;
+        boolean matchRings = false;
+        boolean matchAtomType = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "bonds":
+                    matchBonds = true;
+                    break;
+                case "rings":
+                    matchRings = true;
+                    break;
+                case "types":
+                    matchAtomType = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown flag " + args[i]);
+            }
+        }
+
+        List<IAtomContainer> molecules = read(new File(input));
+        long[] totals = new long[ENGINES.length];
+        int[] smaller = new int[ENGINES.length];
+        for (int q = 0; q < molecules.size(); q++) {
+            for (int t = q + 1; t < molecules.size(); t++) {
+                long[] time = new long[ENGINES.length];
+                int[] size = new int[ENGINES.length];
+                int best = 0;
+                for (int e = 0; e < ENGINES.length; e++) {
+                    IAtomContainer query = molecules.get(q).clone();
+                    IAtomContainer target = molecules.get(t).clone();
+                    long start = System.nanoTime();
+                    Isomorphism comparison = new Isomorphism(query, target, ENGINES[e],
+                            matchBonds, matchRings, matchAtomType);
+                    size[e] = comparison.getFirstAtomMapping().getCount();
+                    time[e] = System.nanoTime() - start;
+                    totals[e] += time[e];
+                    best = Math.max(best, size[e]);
+                }
+                StringBuilder line = new StringBuilder().append(q).append(' ').append(t);
+                for (int e = 0; e < ENGINES.length; e++) {
+                    if (size[e] < best) {
+                        smaller[e]++;
+                    }
+                    line.append(String.format(" %s %.3fms %d", ENGINES[e], time[e] / 1e6, size[e]));
+                }
+                System.out.println(line);
+            }
+        }
+        for (int e = 0; e < ENGINES.length; e++) {
+            System.out.println(String.format("total %s %.3fms smaller %d",
+                    ENGINES[e], totals[e] / 1e6, smaller[e]));
+        }
+    }
+
+    private static List<IAtomContainer> read(File file) throws IOException {
+        List<IAtomContainer> molecules = new ArrayList<>();
+        try (IteratingSDFReader reader = new IteratingSDFReader(
+                new FileReader(file), DefaultChemObjectBuilder.getInstance())) {
+            while (reader.hasNext()) {
+                molecules.add(reader.next());
+            }
+        }
+        return molecules;
+    }
+}
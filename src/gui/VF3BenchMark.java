@@ -0,0 +1,136 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package gui;
+
+import cmd.pdb.LigandHelper;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.openscience.cdk.ChemFile;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemFile;
+import org.openscience.cdk.io.PDBReader;
+import org.openscience.cdk.io.iterator.IteratingSDFReader;
+import org.openscience.cdk.tools.manipulator.ChemFileManipulator;
+import org.openscience.smsd.Substructure;
+import org.openscience.smsd.interfaces.SubstructureEngine;
+import org.openscience.smsd.tools.ExtAtomContainerManipulator;
+
+/**
+ * Compares the VF2 and VF3 substructure engines of {@link Substructure} side
+ * by side on PDB targets. The targets are read as SMSDcmd reads PDB input:
+ * the largest fragment of the file, with the missing bond orders added by
+ * {@link LigandHelper} and aromaticity perceived. Every query of the SD file
+ * is searched in every target with both engines, both for the first match
+ * and for the number of unique matches; the two engines run in alternating
+ * order and the answers are checked to agree.
+ *
+ * <pre>
+ * java gui.VF3BenchMark Data/arom.sdf 5 Data/1.pdb Data/ASC_1e71.pdb
+ * </pre>
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class VF3BenchMark {
+
+    /**
+     * @param args SD file of queries, number of repeats (default 5) and the
+     * PDB targets
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        String input = (args.length > 0) ? args[0] : "Data/arom.sdf";
+        int repeats = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        List<String> pdbFiles = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            pdbFiles.add(args[i]);
+        }
+        if (pdbFiles.isEmpty()) {
+            pdbFiles.add("Data/1.pdb");
+            pdbFiles.add("Data/ASC_1e71.pdb");
+        }
+
+        List<IAtomContainer> queries = readSDF(new File(input));
+        SubstructureEngine[] engines = {SubstructureEngine.VF2, SubstructureEngine.VF3};
+        long[] totals = new long[2];
+        for (String pdbFile : pdbFiles) {
+            IAtomContainer target = readPDB(new File(pdbFile));
+            System.out.println(pdbFile + " atoms " + target.getAtomCount() + " bonds " + target.getBondCount());
+            for (int q = 0; q < queries.size(); q++) {
+                IAtomContainer query = queries.get(q);
+                long[] time = new long[2];
+                long[] unique = new long[2];
+                boolean[] hit = new boolean[2];
+                for (int k = 0; k < repeats; k++) {
+                    for (int turn = 0; turn < 2; turn++) {
+                        int engine = (k + turn) % 2;
+                        long start = System.nanoTime();
+                        hit[engine] = Substructure.exists(query, target, true, false, false, engines[engine]);
+                        unique[engine] = Substructure.count(query, target, true, false, false, true, engines[engine]);
+                        time[engine] += System.nanoTime() - start;
+                    }
+                }
+                totals[0] += time[0];
+                totals[1] += time[1];
+                System.out.println(String.format("%s %d VF2 %.3fms VF3 %.3fms hit %b unique %d%s",
+                        pdbFile, q, time[0] / 1e6, time[1] / 1e6, hit[1], unique[1],
+                        hit[0] == hit[1] && unique[0] == unique[1] ? "" : " MISMATCH VF2 " + hit[0] + " " + unique[0]));
+            }
+        }
+        System.out.println(String.format("total VF2 %.3fms VF3 %.3fms", totals[0] / 1e6, totals[1] / 1e6));
+    }
+
+    private static IAtomContainer readPDB(File file) throws IOException, CDKException {
+        IChemFile chemFile;
+        try (PDBReader reader = new PDBReader(new FileReader(file))) {
+            chemFile = reader.read(new ChemFile());
+        }
+        IAtomContainer molecule = null;
+        for (IAtomContainer fragment : ChemFileManipulator.getAllAtomContainers(chemFile)) {
+            if (molecule == null || fragment.getAtomCount() > molecule.getAtomCount()) {
+                molecule = fragment;
+            }
+        }
+        if (molecule == null) {
+            throw new IOException("No molecule in " + file);
+        }
+        LigandHelper.addMissingBondOrders(molecule);
+        ExtAtomContainerManipulator.aromatizeMolecule(molecule);
+        return molecule;
+    }
+
+    private static List<IAtomContainer> readSDF(File file) throws IOException {
+        List<IAtomContainer> molecules = new ArrayList<>();
+        try (IteratingSDFReader reader = new IteratingSDFReader(
+                new FileReader(file), DefaultChemObjectBuilder.getInstance())) {
+            while (reader.hasNext()) {
+                molecules.add(reader.next());
+            }
+        }
+        return molecules;
+    }
+}
@@ -35,6 +35,8 @@ import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.smsd.filters.ChemicalFilters;
 import org.openscience.smsd.interfaces.IAtomMapping;
+import org.openscience.smsd.metrics.Metrics;
+import org.openscience.smsd.metrics.PhaseEvent;
 
 /**
  *
@@ -90,29 +92,43 @@ public class BaseMapping extends ChemicalFilters implements IAtomMapping {
     public synchronized void setChemFilters(boolean stereoFilter, boolean fragmentFilter, boolean energyFilter) {
 
         if (getMappingCount() > 0) {
+            long startTime = System.nanoTime();
 
             if (energyFilter) {
+                PhaseEvent event = PhaseEvent.begin(PhaseEvent.ENERGY_FILTER);
                 try {
                     sortResultsByEnergies();
                     this.bondEnergiesList = getSortedEnergy();
                 } catch (CDKException ex) {
                     Logger.error(Level.SEVERE, null, ex);
                 }
+                endFilter(event);
             }
 
             if (fragmentFilter) {
+                PhaseEvent event = PhaseEvent.begin(PhaseEvent.FRAGMENT_FILTER);
                 sortResultsByFragments();
                 this.fragmentSizeList = getSortedFragment();
+                endFilter(event);
             }
 
             if (stereoFilter) {
+                PhaseEvent event = PhaseEvent.begin(PhaseEvent.STEREO_FILTER);
                 try {
                     sortResultsByStereoAndBondMatch();
                     this.stereoScoreList = getStereoMatches();
                 } catch (CDKException ex) {
                     Logger.error(Level.SEVERE, null, ex);
                 }
+                endFilter(event);
             }
+            Metrics.timer(Metrics.FILTERS_TIME).record(System.nanoTime() - startTime);
+        }
+    }
+
+    private void endFilter(PhaseEvent event) {
+        if (event != null) {
+            event.end(getQuery().getAtomCount(), getTarget().getAtomCount(), false);
         }
     }
 
@@ -32,15 +32,30 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.smsd.algorithm.mcsplit.McSplitHandler;
 import org.openscience.smsd.algorithm.mcsplus.MCSPlusHandler;
+import org.openscience.smsd.algorithm.portfolio.PortfolioHandler;
+import org.openscience.smsd.algorithm.selector.CostModel;
+import org.openscience.smsd.algorithm.selector.PairFeatures;
 import org.openscience.smsd.algorithm.rgraph.CDKMCSHandler;
 import org.openscience.smsd.algorithm.single.SingleMappingHandler;
 import org.openscience.smsd.algorithm.vflib.VF2MCS;
 import org.openscience.smsd.helper.MoleculeInitializer;
 import org.openscience.smsd.interfaces.Algorithm;
+import org.openscience.smsd.interfaces.IMCSListener;
+import org.openscience.smsd.interfaces.ISubstructureMatcher;
+import org.openscience.smsd.interfaces.SubstructureEngine;
+import org.openscience.smsd.metrics.Metrics;
+import org.openscience.smsd.metrics.PhaseEvent;
+import org.openscience.smsd.tools.IterationManager;
+import org.openscience.smsd.tools.MappingCache;
+import org.openscience.smsd.tools.SearchMonitor;
+import static org.openscience.smsd.interfaces.Algorithm.AUTO;
 import static org.openscience.smsd.interfaces.Algorithm.CDKMCS;
 import static org.openscience.smsd.interfaces.Algorithm.DEFAULT;
+import static org.openscience.smsd.interfaces.Algorithm.MCSPLIT;
 import static org.openscience.smsd.interfaces.Algorithm.MCSPlus;
+import static org.openscience.smsd.interfaces.Algorithm.PORTFOLIO;
 import static org.openscience.smsd.interfaces.Algorithm.VFLibMCS;
 
 /**
@@ -144,7 +159,9 @@ public final class Isomorphism extends BaseMapping implements Serializable {
             Algorithm algorithmType) {
         super(query, target);
         this.algorithmType = algorithmType;
+        long startTime = System.nanoTime();
         mcsBuilder(query, target);
+        recordMetrics(startTime);
         setSubgraph(isSubgraph());
     }
 
@@ -175,6 +192,32 @@ public final class Isomorphism extends BaseMapping implements Serializable {
             boolean bondTypeFlag,
             boolean matchRings,
             boolean matchAtomType) {
+        this(query, target, algorithmType, bondTypeFlag, matchRings, matchAtomType, null);
+    }
+
+    /**
+     * Initialize query and target molecules and reports the improving
+     * solutions of the search to a listener. The search stops early when the
+     * listener returns false; the result is then the best solution reported,
+     * or the result of the engine if that is larger.
+     *
+     * @param query query molecule
+     * @param target target molecule
+     * @param algorithmType
+     * {@link org.openscience.cdk.smsd.interfaces.Algorithm}
+     * @param bondTypeFlag Match bond types (i.e. double to double etc)
+     * @param matchRings Match ring atoms and ring size
+     * @param matchAtomType
+     * @param listener receives each larger solution, may be null
+     */
+    public Isomorphism(
+            IAtomContainer query,
+            IAtomContainer target,
+            Algorithm algorithmType,
+            boolean bondTypeFlag,
+            boolean matchRings,
+            boolean matchAtomType,
+            IMCSListener listener) {
         super(query, target, bondTypeFlag, matchRings, matchAtomType);
         this.algorithmType = algorithmType;
         if (isMatchRings()) {
@@ -184,10 +227,67 @@ public final class Isomorphism extends BaseMapping implements Serializable {
             } catch (CDKException ex) {
             }
         }
-        mcsBuilder(getQuery(), getTarget());
+        SearchMonitor monitor = null;
+        if (listener != null) {
+            monitor = new SearchMonitor(getQuery(), getTarget(), listener);
+            monitor.open();
+        }
+        long startTime = System.nanoTime();
+        try {
+            MappingCache cache = MappingCache.getInstance();
+            if (cache.isEnabled()) {
+                MappingCache.Key key = cache.createKey(getQuery(), getTarget(), algorithmType.name(),
+                        isMatchBonds(), isMatchRings(), isMatchAtomType());
+                MappingCache.Result cached = cache.get(key, getQuery(), getTarget());
+                if (cached != null) {
+                    clearMaps();
+                    getMCSList().addAll(cached.getMappings());
+                } else {
+                    mcsBuilder(getQuery(), getTarget());
+                    if (monitor == null || !monitor.isCancelled()) {
+                        cache.put(key, getQuery(), getTarget(), getMCSList(), isSubgraph());
+                    }
+                }
+            } else {
+                mcsBuilder(getQuery(), getTarget());
+            }
+            if (monitor != null) {
+                keepBestReported(monitor);
+            }
+        } finally {
+            if (monitor != null) {
+                monitor.close();
+            }
+        }
+        recordMetrics(startTime);
         setSubgraph(isSubgraph());
     }
 
+    /*
+     * Reports the search time and the size of the first solution
+     */
+    private void recordMetrics(long startTime) {
+        Metrics.timer(Metrics.ISOMORPHISM_TIME).record(System.nanoTime() - startTime);
+        Metrics.histogram(Metrics.ISOMORPHISM_SIZE).update(
+                getMappingCount() > 0 ? getFirstAtomMapping().getCount() : 0);
+    }
+
+    /*
+     * Reports the final result and, if the search was cancelled before the
+     * engine caught up, replaces it by the best solution reported
+     */
+    private synchronized void keepBestReported(SearchMonitor monitor) {
+        if (getMappingCount() > 0) {
+            monitor.offer(SearchMonitor.RESULT, getFirstAtomMapping().getMappingsByIndex());
+        }
+        AtomAtomMapping best = monitor.getBest();
+        if (monitor.isCancelled() && best != null
+                && (getMappingCount() == 0 || best.getCount() > getFirstAtomMapping().getCount())) {
+            clearMaps();
+            getMCSList().add(best);
+        }
+    }
+
     private synchronized void mcsBuilder(IAtomContainer mol1, IAtomContainer mol2) {
         int rBondCount = mol1.getBondCount();
         int pBondCount = mol2.getBondCount();
@@ -232,10 +332,20 @@ public final class Isomorphism extends BaseMapping implements Serializable {
             case VFLibMCS:
                 vfLibMCSAlgorithm();
                 break;
+            case PORTFOLIO:
+                portfolioAlgorithm();
+                break;
+            case AUTO:
+                autoAlgorithm();
+                break;
+            case MCSPLIT:
+                mcSplitAlgorithm();
+                break;
         }
     }
 
     private synchronized boolean cdkMCSAlgorithm() {
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.CDKMCS_ENGINE);
         CDKMCSHandler mcs;
         if (getQuery() instanceof IQueryAtomContainer) {
             mcs = new CDKMCSHandler(getQuery(), getTarget());
@@ -244,10 +354,12 @@ public final class Isomorphism extends BaseMapping implements Serializable {
         }
         clearMaps();
         getMCSList().addAll(mcs.getAllAtomMapping());
+        endEngine(event, mcs.isTimeout());
         return mcs.isTimeout();
     }
 
     private synchronized boolean mcsPlusAlgorithm() {
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.MCSPLUS_ENGINE);
         MCSPlusHandler mcs;
         if (getQuery() instanceof IQueryAtomContainer) {
             mcs = new MCSPlusHandler((IQueryAtomContainer) getQuery(), getTarget());
@@ -256,24 +368,40 @@ public final class Isomorphism extends BaseMapping implements Serializable {
         }
         clearMaps();
         getMCSList().addAll(mcs.getAllAtomMapping());
+        endEngine(event, mcs.isTimeout());
         return mcs.isTimeout();
     }
 
     private synchronized boolean substructureAlgorithm() throws CDKException {
-        Substructure mcs;
-        if (getQuery() instanceof IQueryAtomContainer) {
-            mcs = new Substructure((IQueryAtomContainer) getQuery(), getTarget(), true);
-        } else {
-            mcs = new Substructure(getQuery(), getTarget(), isMatchBonds(), isMatchRings(), isMatchAtomType(), true);
-        }
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.SUBSTRUCTURE_ENGINE);
         clearMaps();
-        if (mcs.isSubgraph()) {
-            getMCSList().addAll(mcs.getAllAtomMapping());
+        if (Substructure.isSingleAtom(getQuery(), getTarget())) {
+            getMCSList().addAll(Substructure.singleMappings(getQuery(), getTarget(), isMatchRings()));
+            endEngine(event, false);
+            return !getMCSList().isEmpty();
         }
-        return mcs.isSubgraph();
+        /*
+         * A first-match search settles most misses without enumerating and
+         * materialising every mapping; on a hit the same search goes on to
+         * collect the remaining matches. The whole search keeps the
+         * iteration limit of the VF2 substructure search, which also stops it
+         * on a cancel.
+         */
+        ISubstructureMatcher matcher = getQuery() instanceof IQueryAtomContainer
+                ? Substructure.matcher((IQueryAtomContainer) getQuery(), getTarget(), SubstructureEngine.VF2)
+                : Substructure.matcher(getQuery(), getTarget(), isMatchBonds(), isMatchRings(), isMatchAtomType(), false,
+                        SubstructureEngine.VF2);
+        matcher.setIterationManager(new IterationManager(getQuery().getAtomCount() + getTarget().getAtomCount()));
+        boolean exists = matcher.hasNext();
+        if (exists) {
+            getMCSList().addAll(matcher.first(Integer.MAX_VALUE));
+        }
+        endEngine(event, matcher.isTimeout());
+        return exists;
     }
 
     private synchronized void vfLibMCSAlgorithm() {
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.VF2MCS_ENGINE);
         VF2MCS mcs;
         if (getQuery() instanceof IQueryAtomContainer) {
             mcs = new VF2MCS((IQueryAtomContainer) getQuery(), getTarget());
@@ -282,13 +410,80 @@ public final class Isomorphism extends BaseMapping implements Serializable {
         }
         clearMaps();
         getMCSList().addAll(mcs.getAllAtomMapping());
+        endEngine(event, false);
+    }
+
+    private synchronized void portfolioAlgorithm() {
+        if (getQuery() instanceof IQueryAtomContainer) {
+            defaultMCSAlgorithm();
+            return;
+        }
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.PORTFOLIO_ENGINE);
+        PortfolioHandler mcs = new PortfolioHandler(getQuery(), getTarget(),
+                isMatchBonds(), isMatchRings(), isMatchAtomType());
+        clearMaps();
+        getMCSList().addAll(mcs.getAllAtomMapping());
+        endEngine(event, mcs.isTimeout());
+    }
+
+    private synchronized void mcSplitAlgorithm() {
+        if (getQuery() instanceof IQueryAtomContainer) {
+            defaultMCSAlgorithm();
+            return;
+        }
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.MCSPLIT_ENGINE);
+        McSplitHandler mcs = new McSplitHandler(getQuery(), getTarget(),
+                isMatchBonds(), isMatchRings(), isMatchAtomType());
+        clearMaps();
+        getMCSList().addAll(mcs.getAllAtomMapping());
+        endEngine(event, mcs.isTimeout());
+    }
+
+    private synchronized void autoAlgorithm() {
+        if (getQuery() instanceof IQueryAtomContainer) {
+            defaultMCSAlgorithm();
+            return;
+        }
+        try {
+            if (substructureAlgorithm()) {
+                return;
+            }
+            PairFeatures features = new PairFeatures(getQuery(), getTarget(), isMatchAtomType());
+            Algorithm engine = CostModel.getDefault().select(features);
+            logger.debug("Cost model selected " + engine);
+            boolean timeout;
+            switch (engine) {
+                case CDKMCS:
+                    timeout = cdkMCSAlgorithm();
+                    break;
+                case MCSPlus:
+                    timeout = mcsPlusAlgorithm();
+                    break;
+                default:
+                    vfLibMCSAlgorithm();
+                    return;
+            }
+            if (timeout) {
+                vfLibMCSAlgorithm();
+            }
+        } catch (CDKException e) {
+            logger.error(Level.SEVERE, null, e);
+        }
     }
 
     private synchronized void singleMapping() {
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.SINGLE_ENGINE);
         SingleMappingHandler mcs;
         mcs = new SingleMappingHandler(getQuery(), getTarget(), isMatchRings());
         clearMaps();
         getMCSList().addAll(mcs.getAllAtomMapping());
+        endEngine(event, false);
+    }
+
+    private void endEngine(PhaseEvent event, boolean timeout) {
+        if (event != null) {
+            event.end(getQuery().getAtomCount(), getTarget().getAtomCount(), timeout);
+        }
     }
 
     private synchronized void defaultMCSAlgorithm() {
@@ -35,7 +35,12 @@ import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.smsd.algorithm.single.SingleMappingHandler;
 import org.openscience.smsd.algorithm.vflib.VF2Sub;
 import org.openscience.smsd.algorithm.vflib.substructure.VF2;
+import org.openscience.smsd.algorithm.vflib.substructure.VF2Matcher;
+import org.openscience.smsd.algorithm.vflib.substructure.VF3Matcher;
 import org.openscience.smsd.helper.MoleculeInitializer;
+import org.openscience.smsd.interfaces.ISubstructureMatcher;
+import org.openscience.smsd.interfaces.SubstructureEngine;
+import org.openscience.smsd.tools.MappingCache;
 
 /**
  * This is an ultra fast method to report if query is a substructure for target
@@ -65,6 +70,21 @@ import org.openscience.smsd.helper.MoleculeInitializer;
  *
  *  </pre> </font>
  *
+ * Screens that only need to know whether, or how often, the query matches
+ * should use {@link #exists} and {@link #count}, which run the VF2 search
+ * without building mapping objects:
+ * <pre>
+ * boolean hit = Substructure.exists(query, target, true, false, false);
+ * long unique = Substructure.count(query, target, true, false, false, true);
+ * </pre>
+ *
+ * The searches run on VF2 by default; the constructors and methods taking a
+ * {@link SubstructureEngine} can run them on {@link VF3Matcher} instead,
+ * which scales better on large targets such as proteins:
+ * <pre>
+ * Substructure smsd = new Substructure(query, protein, true, false, false, true, SubstructureEngine.VF3);
+ * boolean hit = Substructure.exists(query, protein, true, false, false, SubstructureEngine.VF3);
+ * </pre>
  *
  * @cdk.module smsd
  * @cdk.githash
@@ -72,6 +92,7 @@ import org.openscience.smsd.helper.MoleculeInitializer;
  */
 public final class Substructure extends BaseMapping {
 
+    private final SubstructureEngine engine;
     private int vfMappingSize = -1;
     private final ILoggingTool Logger
             = LoggingToolFactory.createLoggingTool(Substructure.class);
@@ -94,7 +115,31 @@ public final class Substructure extends BaseMapping {
             boolean matchRings,
             boolean matchAtomType,
             boolean findAllSubgraph) throws CDKException {
+        this(query, target, shouldMatchBonds, matchRings, matchAtomType, findAllSubgraph, SubstructureEngine.VF2);
+    }
+
+    /**
+     * Constructor for VF Substructure Algorithm
+     *
+     * @param query
+     * @param target
+     * @param shouldMatchBonds Match bond types (i.e. double to double etc)
+     * @param matchRings Match ring atoms and ring size
+     * @param findAllSubgraph report all subgraphs
+     * @param matchAtomType
+     * @param engine search engine
+     * @throws CDKException
+     */
+    public Substructure(
+            IAtomContainer query,
+            IAtomContainer target,
+            boolean shouldMatchBonds,
+            boolean matchRings,
+            boolean matchAtomType,
+            boolean findAllSubgraph,
+            SubstructureEngine engine) throws CDKException {
         super(query, target, shouldMatchBonds, matchRings, matchAtomType);
+        this.engine = engine;
         if (isMatchRings()) {
             try {
                 MoleculeInitializer.initializeMolecule(getQuery());
@@ -103,7 +148,20 @@ public final class Substructure extends BaseMapping {
             }
         }
 
-        if (findAllSubgraph) {
+        MappingCache cache = MappingCache.getInstance();
+        if (cache.isEnabled()) {
+            MappingCache.Key key = cache.createKey(getQuery(), getTarget(),
+                    (findAllSubgraph ? "SUBSTRUCTURES." : "SUBSTRUCTURE.") + engine.name(),
+                    isMatchBonds(), isMatchRings(), isMatchAtomType());
+            MappingCache.Result cached = cache.get(key, getQuery(), getTarget());
+            if (cached != null) {
+                getMCSList().addAll(cached.getMappings());
+                setSubgraph(cached.isSubgraph());
+                return;
+            }
+            setSubgraph(findAllSubgraph ? findSubgraphs() : findSubgraph());
+            cache.put(key, getQuery(), getTarget(), getMCSList(), isSubgraph());
+        } else if (findAllSubgraph) {
             setSubgraph(findSubgraphs());
         } else {
             setSubgraph(findSubgraph());
@@ -122,7 +180,25 @@ public final class Substructure extends BaseMapping {
             IQueryAtomContainer query,
             IAtomContainer target,
             boolean findAllSubgraph) throws CDKException {
+        this(query, target, findAllSubgraph, SubstructureEngine.VF2);
+    }
+
+    /**
+     * Constructor for VF Substructure Algorithm
+     *
+     * @param query
+     * @param target
+     * @param findAllSubgraph report all subgraphs
+     * @param engine search engine
+     * @throws CDKException
+     */
+    public Substructure(
+            IQueryAtomContainer query,
+            IAtomContainer target,
+            boolean findAllSubgraph,
+            SubstructureEngine engine) throws CDKException {
         super(query, target);
+        this.engine = engine;
         if (findAllSubgraph) {
             setSubgraph(findSubgraphs());
         } else {
@@ -130,6 +206,255 @@ public final class Substructure extends BaseMapping {
         }
     }
 
+    /**
+     * @return the search engine
+     */
+    public SubstructureEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Returns true if the query is a substructure of the target. The search
+     * stops at the first match and no mapping is built.
+     *
+     * @param query
+     * @param target
+     * @param shouldMatchBonds Match bond types (i.e. double to double etc)
+     * @param matchRings Match ring atoms and ring size
+     * @param matchAtomType
+     * @return true if the query is a substructure of the target
+     * @throws CDKException
+     */
+    public static boolean exists(
+            IAtomContainer query,
+            IAtomContainer target,
+            boolean shouldMatchBonds,
+            boolean matchRings,
+            boolean matchAtomType) throws CDKException {
+        return exists(query, target, shouldMatchBonds, matchRings, matchAtomType, SubstructureEngine.VF2);
+    }
+
+    /**
+     * Returns true if the query is a substructure of the target. The search
+     * stops at the first match and no mapping is built.
+     *
+     * @param query
+     * @param target
+     * @param shouldMatchBonds Match bond types (i.e. double to double etc)
+     * @param matchRings Match ring atoms and ring size
+     * @param matchAtomType
+     * @param engine search engine
+     * @return true if the query is a substructure of the target
+     * @throws CDKException
+     */
+    public static boolean exists(
+            IAtomContainer query,
+            IAtomContainer target,
+            boolean shouldMatchBonds,
+            boolean matchRings,
+            boolean matchAtomType,
+            SubstructureEngine engine) throws CDKException {
+        if (isSingleAtom(query, target)) {
+            return !singleMappings(query, target, matchRings).isEmpty();
+        }
+        return matcher(query, target, shouldMatchBonds, matchRings, matchAtomType, false, engine).hasNext();
+    }
+
+    /**
+     * Returns true if the query is a substructure of the target. The search
+     * stops at the first match and no mapping is built.
+     *
+     * @param query
+     * @param target
+     * @return true if the query is a substructure of the target
+     * @throws CDKException
+     */
+    public static boolean exists(
+            IQueryAtomContainer query,
+            IAtomContainer target) throws CDKException {
+        return exists(query, target, SubstructureEngine.VF2);
+    }
+
+    /**
+     * Returns true if the query is a substructure of the target. The search
+     * stops at the first match and no mapping is built.
+     *
+     * @param query
+     * @param target
+     * @param engine search engine
+     * @return true if the query is a substructure of the target
+     * @throws CDKException
+     */
+    public static boolean exists(
+            IQueryAtomContainer query,
+            IAtomContainer target,
+            SubstructureEngine engine) throws CDKException {
+        if (isSingleAtom(query, target)) {
+            return !singleMappings(query, target, true).isEmpty();
+        }
+        return matcher(query, target, engine).hasNext();
+    }
+
+    /**
+     * Counts the matches of the query in the target without building mapping
+     * objects.
+     *
+     * @param query
+     * @param target
+     * @param shouldMatchBonds Match bond types (i.e. double to double etc)
+     * @param matchRings Match ring atoms and ring size
+     * @param matchAtomType
+     * @param uniqueAtomSets count matches covering the same target atoms
+     * once; matches that differ by a symmetry of the query are pruned during
+     * the search
+     * @return number of matches
+     * @throws CDKException
+     */
+    public static long count(
+            IAtomContainer query,
+            IAtomContainer target,
+            boolean shouldMatchBonds,
+            boolean matchRings,
+            boolean matchAtomType,
+            boolean uniqueAtomSets) throws CDKException {
+        return count(query, target, shouldMatchBonds, matchRings, matchAtomType, uniqueAtomSets,
+                SubstructureEngine.VF2);
+    }
+
+    /**
+     * Counts the matches of the query in the target without building mapping
+     * objects.
+     *
+     * @param query
+     * @param target
+     * @param shouldMatchBonds Match bond types (i.e. double to double etc)
+     * @param matchRings Match ring atoms and ring size
+     * @param matchAtomType
+     * @param uniqueAtomSets count matches covering the same target atoms
+     * once; matches that differ by a symmetry of the query are pruned during
+     * the search
+     * @param engine search engine
+     * @return number of matches
+     * @throws CDKException
+     */
+    public static long count(
+            IAtomContainer query,
+            IAtomContainer target,
+            boolean shouldMatchBonds,
+            boolean matchRings,
+            boolean matchAtomType,
+            boolean uniqueAtomSets,
+            SubstructureEngine engine) throws CDKException {
+        if (isSingleAtom(query, target)) {
+            return singleMappings(query, target, matchRings).size();
+        }
+        if (uniqueAtomSets) {
+            return matcher(query, target, shouldMatchBonds, matchRings, matchAtomType, true, engine).countUnique();
+        }
+        return matcher(query, target, shouldMatchBonds, matchRings, matchAtomType, false, engine).count();
+    }
+
+    /**
+     * Counts the matches of the query in the target without building mapping
+     * objects.
+     *
+     * @param query
+     * @param target
+     * @param uniqueAtomSets count matches covering the same target atoms
+     * once
+     * @return number of matches
+     * @throws CDKException
+     */
+    public static long count(
+            IQueryAtomContainer query,
+            IAtomContainer target,
+            boolean uniqueAtomSets) throws CDKException {
+        return count(query, target, uniqueAtomSets, SubstructureEngine.VF2);
+    }
+
+    /**
+     * Counts the matches of the query in the target without building mapping
+     * objects.
+     *
+     * @param query
+     * @param target
+     * @param uniqueAtomSets count matches covering the same target atoms
+     * once
+     * @param engine search engine
+     * @return number of matches
+     * @throws CDKException
+     */
+    public static long count(
+            IQueryAtomContainer query,
+            IAtomContainer target,
+            boolean uniqueAtomSets,
+            SubstructureEngine engine) throws CDKException {
+        if (isSingleAtom(query, target)) {
+            return singleMappings(query, target, true).size();
+        }
+        ISubstructureMatcher matcher = matcher(query, target, engine);
+        return uniqueAtomSets ? matcher.countUnique() : matcher.count();
+    }
+
+    static boolean isSingleAtom(IAtomContainer query, IAtomContainer target) throws CDKException {
+        if ((target == null) || (query == null)) {
+            throw new CDKException("Query or Target molecule is not initialized (NULL)");
+        }
+        return query.getAtomCount() == 1 || target.getAtomCount() == 1;
+    }
+
+    static List<AtomAtomMapping> singleMappings(IAtomContainer query, IAtomContainer target,
+            boolean matchRings) {
+        SingleMappingHandler mcs;
+        if (!(query instanceof IQueryAtomContainer)) {
+            mcs = new SingleMappingHandler(query, target, matchRings);
+        } else {
+            mcs = new SingleMappingHandler((IQueryAtomContainer) query, target);
+        }
+        return mcs.getAllAtomMapping();
+    }
+
+    /*
+     * The search behind exists and count; callers in this package keep it to
+     * enumerate the remaining matches once the first one is found
+     */
+    static ISubstructureMatcher matcher(IAtomContainer query, IAtomContainer target,
+            boolean shouldMatchBonds, boolean matchRings, boolean matchAtomType, boolean breakSymmetry,
+            SubstructureEngine engine) {
+        if (matchRings) {
+            try {
+                MoleculeInitializer.initializeMolecule(query);
+                MoleculeInitializer.initializeMolecule(target);
+            } catch (CDKException ex) {
+            }
+        }
+        if (engine == SubstructureEngine.VF3) {
+            return new VF3Matcher(query, target, shouldMatchBonds, matchRings, matchAtomType, breakSymmetry);
+        }
+        return new VF2Matcher(query, target, shouldMatchBonds, matchRings, matchAtomType, breakSymmetry);
+    }
+
+    static ISubstructureMatcher matcher(IQueryAtomContainer query, IAtomContainer target,
+            SubstructureEngine engine) {
+        if (engine == SubstructureEngine.VF3) {
+            return new VF3Matcher(query, target);
+        }
+        return new VF2Matcher(query, target);
+    }
+
+    /*
+     * The first or all matches found by VF3
+     */
+    private List<AtomAtomMapping> vf3Mappings(boolean all) {
+        VF3Matcher matcher;
+        if (getQuery() instanceof IQueryAtomContainer) {
+            matcher = new VF3Matcher((IQueryAtomContainer) getQuery(), getTarget());
+        } else {
+            matcher = new VF3Matcher(getQuery(), getTarget(), isMatchBonds(), isMatchRings(), isMatchAtomType());
+        }
+        return matcher.first(all ? Integer.MAX_VALUE : 1);
+    }
+
     private synchronized boolean hasMap(AtomAtomMapping map, List<AtomAtomMapping> mapGlobal) {
         for (AtomAtomMapping test : mapGlobal) {
             if (test.equals(map)) {
@@ -158,6 +483,14 @@ public final class Substructure extends BaseMapping {
             if (getQuery().getAtomCount() > getTarget().getAtomCount()) {
                 return false;
             }
+            if (engine == SubstructureEngine.VF3) {
+                List<AtomAtomMapping> atomMappings = vf3Mappings(false);
+                if (atomMappings.isEmpty()) {
+                    return false;
+                }
+                setVFMappings(atomMappings);
+                return true;
+            }
             VF2 mapper;
             List<AtomAtomMapping> mappingsVF2 = new ArrayList<>();
             if (getQuery() instanceof IQueryAtomContainer) {
@@ -196,6 +529,13 @@ public final class Substructure extends BaseMapping {
         } else {
             if (getQuery().getAtomCount() > getTarget().getAtomCount()) {
                 return false;
+            } else if (engine == SubstructureEngine.VF3) {
+                List<AtomAtomMapping> atomMappings = vf3Mappings(true);
+                if (atomMappings.isEmpty()) {
+                    return false;
+                }
+                setVFMappings(atomMappings);
+                isSubgraph = true;
             } else {
                 List<AtomAtomMapping> mappingsVF2 = new ArrayList<>();
                 VF2Sub mapper;
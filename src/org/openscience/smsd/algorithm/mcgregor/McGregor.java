@@ -37,6 +37,9 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 import org.openscience.smsd.helper.BinaryTree;
+import org.openscience.smsd.metrics.ICounter;
+import org.openscience.smsd.metrics.Metrics;
+import org.openscience.smsd.metrics.PhaseEvent;
 import org.openscience.smsd.tools.IterationManager;
 
 /**
@@ -62,6 +65,8 @@ public final class McGregor {
     private final boolean matchAtomType;
     private IterationManager iterationManager = null;
     private boolean timeout = false;
+    private final ICounter iterations = Metrics.counter(Metrics.MCGREGOR_ITERATIONS);
+    private final ICounter timeouts = Metrics.counter(Metrics.MCGREGOR_TIMEOUTS);
 
     /**
      * @return the timeout
@@ -72,11 +77,15 @@ public final class McGregor {
 
     private synchronized boolean checkTimeout() {
         if (getIterationManager().isMaxIteration()) {
+            if (!this.timeout) {
+                timeouts.increment();
+            }
             this.timeout = true;
 //            System.err.println("McGregor MCS has hit the iteration limits " + getIterationManager().getCounter());
             return true;
         }
         getIterationManager().increment();
+        iterations.increment();
         return false;
     }
 
@@ -188,6 +197,7 @@ public final class McGregor {
      */
     public synchronized void startMcGregorIteration(IAtomContainer source, int largestMappingSize, Map<Integer, Integer> present_Mapping) throws IOException {
 
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.MCGREGOR_EXTENSION);
         this.globalMCSSize = (largestMappingSize / 2);
 //        System.out.println("globalMCSSize " + globalMCSSize);
         List<String> c_tab1_copy = McGregorChecks.generateCTabCopy(source);
@@ -307,6 +317,9 @@ public final class McGregor {
                 c_bond_setA,
                 c_bond_setB);
         iterator(source, mcGregorHelper);
+        if (event != null) {
+            event.end(source.getAtomCount(), target.getAtomCount(), isTimeout());
+        }
     }
 
     private synchronized int iterator(IAtomContainer source, McgregorHelper mcGregorHelper) throws IOException {
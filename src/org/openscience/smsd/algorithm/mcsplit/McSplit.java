@@ -0,0 +1,409 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.mcsplit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.openscience.smsd.metrics.ICounter;
+import org.openscience.smsd.metrics.Metrics;
+import org.openscience.smsd.tools.IterationManager;
+
+/**
+ * Branch and bound maximum common induced subgraph search by partition
+ * refinement, after McSplit (McCreesh, Prosser and Trimble, IJCAI 2017).
+ *
+ * The unmatched vertices of both graphs are kept in label classes
+ * ("bidomains"); a class holds the vertices of each graph that have the same
+ * label and the same edge labels to every vertex matched so far, so that any
+ * vertex on its left may be matched with any vertex on its right. Matching a
+ * pair splits every class by the edge labels to the new pair, and the sum over
+ * the classes of the smaller side bounds how far the current match can grow.
+ * In connected mode only classes adjacent to the match are branched on.
+ *
+ * An optional {@link PairFilter} may reject pairs that the labels allow; the
+ * bound stays valid since it only counts pairs the labels allow.
+ *
+ * Vertices are tried in order of descending degree. The search stops when the
+ * {@link IterationManager} reaches its limit, keeping the best match found.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+final class McSplit {
+
+    private final int[] labels0;
+    private final int[] labels1;
+    private final int[][] edges0;
+    private final int[][] edges1;
+    private final int[] rank0;
+    private final int[] rank1;
+    private final boolean connected;
+    private final PairFilter filter;
+    private final IterationManager iterationManager;
+    private final int[] left;
+    private final int[] right;
+    private final int[] currentLeft;
+    private final int[] currentRight;
+    private int currentSize;
+    private int[] incumbentLeft;
+    private int[] incumbentRight;
+    private int incumbentSize;
+    private boolean timeout;
+    private final ICounter nodes = Metrics.counter(Metrics.MCSPLIT_NODES);
+    private final ICounter timeouts = Metrics.counter(Metrics.MCSPLIT_TIMEOUTS);
+
+    /**
+     * @param labels0 vertex labels of the first graph
+     * @param edges0 edge labels of the first graph, 0 if not adjacent
+     * @param labels1 vertex labels of the second graph
+     * @param edges1 edge labels of the second graph, 0 if not adjacent
+     * @param connected true to report connected common subgraphs only
+     * @param filter extra pair test, or null
+     * @param iterationManager search limit
+     */
+    McSplit(int[] labels0, int[][] edges0, int[] labels1, int[][] edges1,
+            boolean connected, PairFilter filter, IterationManager iterationManager) {
+        this.labels0 = labels0;
+        this.labels1 = labels1;
+        this.edges0 = edges0;
+        this.edges1 = edges1;
+        this.connected = connected;
+        this.filter = filter;
+        this.iterationManager = iterationManager;
+        this.rank0 = degreeRanks(edges0);
+        this.rank1 = degreeRanks(edges1);
+        this.left = new int[labels0.length];
+        this.right = new int[labels1.length];
+        int size = Math.min(labels0.length, labels1.length);
+        this.currentLeft = new int[size];
+        this.currentRight = new int[size];
+        this.incumbentLeft = new int[0];
+        this.incumbentRight = new int[0];
+    }
+
+    /**
+     * Runs the search.
+     */
+    void search() {
+        List<Bidomain> domains = new ArrayList<>();
+        boolean[] taken = new boolean[labels1.length];
+        int l = 0;
+        int r = 0;
+        for (int i = 0; i < labels0.length; i++) {
+            boolean seen = false;
+            for (int j = 0; j < i; j++) {
+                if (labels0[j] == labels0[i]) {
+                    seen = true;
+                    break;
+                }
+            }
+            if (seen) {
+                continue;
+            }
+            int start0 = l;
+            for (int j = i; j < labels0.length; j++) {
+                if (labels0[j] == labels0[i]) {
+                    left[l++] = j;
+                }
+            }
+            int start1 = r;
+            for (int j = 0; j < labels1.length; j++) {
+                if (!taken[j] && labels1[j] == labels0[i]) {
+                    taken[j] = true;
+                    right[r++] = j;
+                }
+            }
+            if (r > start1) {
+                domains.add(new Bidomain(start0, start1, l - start0, r - start1, false));
+            }
+        }
+        solve(domains);
+    }
+
+    private void solve(List<Bidomain> domains) {
+        iterationManager.increment();
+        nodes.increment();
+        if (timeout || iterationManager.isMaxIteration()) {
+            if (!timeout) {
+                timeouts.increment();
+            }
+            timeout = true;
+            return;
+        }
+        if (currentSize > incumbentSize) {
+            incumbentSize = currentSize;
+            incumbentLeft = copy(currentLeft, currentSize);
+            incumbentRight = copy(currentRight, currentSize);
+        }
+        if (currentSize + bound(domains) <= incumbentSize) {
+            return;
+        }
+        int index = selectBidomain(domains);
+        if (index < 0) {
+            return;
+        }
+        Bidomain bd = domains.get(index);
+        int v = takeMin(left, bd.l, bd.leftLen, rank0);
+        bd.leftLen--;
+        bd.rightLen--;
+        int previous = -1;
+        for (int i = 0; i <= bd.rightLen; i++) {
+            int w = takeNext(right, bd.r, bd.rightLen + 1, rank1, previous);
+            previous = rank1[w];
+            if (filter != null && !filter.isFeasible(v, w, currentLeft, currentRight, currentSize)) {
+                continue;
+            }
+            List<Bidomain> refined = filterDomains(domains, v, w);
+            currentLeft[currentSize] = v;
+            currentRight[currentSize] = w;
+            currentSize++;
+            solve(refined);
+            currentSize--;
+            if (timeout) {
+                return;
+            }
+        }
+        bd.rightLen++;
+        if (bd.leftLen == 0) {
+            domains.remove(index);
+        }
+        solve(domains);
+    }
+
+    /**
+     * Splits every class by the edge labels to the new pair (v, w); the
+     * vertices of a class that have no partner with the same edge label are
+     * dropped.
+     */
+    private List<Bidomain> filterDomains(List<Bidomain> domains, int v, int w) {
+        List<Bidomain> refined = new ArrayList<>(domains.size() + 4);
+        for (Bidomain bd : domains) {
+            if (bd.leftLen == 0 || bd.rightLen == 0) {
+                continue;
+            }
+            sortByLabel(left, bd.l, bd.leftLen, edges0[v]);
+            sortByLabel(right, bd.r, bd.rightLen, edges1[w]);
+            int i = 0;
+            int j = 0;
+            while (i < bd.leftLen && j < bd.rightLen) {
+                int labelL = edges0[v][left[bd.l + i]];
+                int labelR = edges1[w][right[bd.r + j]];
+                if (labelL < labelR) {
+                    i = skip(left, bd.l, i, bd.leftLen, edges0[v]);
+                } else if (labelL > labelR) {
+                    j = skip(right, bd.r, j, bd.rightLen, edges1[w]);
+                } else {
+                    int endL = skip(left, bd.l, i, bd.leftLen, edges0[v]);
+                    int endR = skip(right, bd.r, j, bd.rightLen, edges1[w]);
+                    refined.add(new Bidomain(bd.l + i, bd.r + j, endL - i, endR - j,
+                            bd.adjacent || labelL != 0));
+                    i = endL;
+                    j = endR;
+                }
+            }
+        }
+        return refined;
+    }
+
+    private int bound(List<Bidomain> domains) {
+        int bound = 0;
+        for (Bidomain bd : domains) {
+            bound += Math.min(bd.leftLen, bd.rightLen);
+        }
+        return bound;
+    }
+
+    /**
+     * The smallest class, adjacent to the match in connected mode once the
+     * match is not empty; ties go to the class with the highest ranked vertex.
+     */
+    private int selectBidomain(List<Bidomain> domains) {
+        int best = -1;
+        int bestSize = Integer.MAX_VALUE;
+        int bestRank = Integer.MAX_VALUE;
+        for (int i = 0; i < domains.size(); i++) {
+            Bidomain bd = domains.get(i);
+            if (connected && currentSize > 0 && !bd.adjacent) {
+                continue;
+            }
+            int size = Math.max(bd.leftLen, bd.rightLen);
+            if (size > bestSize) {
+                continue;
+            }
+            int rank = Integer.MAX_VALUE;
+            for (int k = bd.l; k < bd.l + bd.leftLen; k++) {
+                rank = Math.min(rank, rank0[left[k]]);
+            }
+            if (size < bestSize || rank < bestRank) {
+                best = i;
+                bestSize = size;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Moves the vertex of lowest rank to the end of the range and returns it.
+     */
+    private static int takeMin(int[] array, int start, int length, int[] rank) {
+        return takeNext(array, start, length, rank, -1);
+    }
+
+    /**
+     * Moves the vertex with the lowest rank above the given one to the end of
+     * the range and returns it.
+     */
+    private static int takeNext(int[] array, int start, int length, int[] rank, int after) {
+        int best = -1;
+        for (int k = start; k < start + length; k++) {
+            int r = rank[array[k]];
+            if (r > after && (best < 0 || r < rank[array[best]])) {
+                best = k;
+            }
+        }
+        int last = start + length - 1;
+        int vertex = array[best];
+        array[best] = array[last];
+        array[last] = vertex;
+        return vertex;
+    }
+
+    private static void sortByLabel(int[] array, int start, int length, int[] labels) {
+        for (int i = start + 1; i < start + length; i++) {
+            int vertex = array[i];
+            int label = labels[vertex];
+            int j = i - 1;
+            while (j >= start && labels[array[j]] > label) {
+                array[j + 1] = array[j];
+                j--;
+            }
+            array[j + 1] = vertex;
+        }
+    }
+
+    private static int skip(int[] array, int start, int from, int length, int[] labels) {
+        int label = labels[array[start + from]];
+        int end = from + 1;
+        while (end < length && labels[array[start + end]] == label) {
+            end++;
+        }
+        return end;
+    }
+
+    private static int[] degreeRanks(int[][] edges) {
+        int n = edges.length;
+        final int[] degree = new int[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            for (int j = 0; j < n; j++) {
+                if (edges[i][j] != 0) {
+                    degree[i]++;
+                }
+            }
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return degree[a] != degree[b] ? degree[b] - degree[a] : a - b;
+            }
+        });
+        int[] rank = new int[n];
+        for (int i = 0; i < n; i++) {
+            rank[order[i]] = i;
+        }
+        return rank;
+    }
+
+    private static int[] copy(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    /**
+     * @return matched pairs of the best match, first and second graph vertex
+     */
+    int[][] getSolution() {
+        int[][] solution = new int[incumbentSize][];
+        for (int i = 0; i < incumbentSize; i++) {
+            solution[i] = new int[]{incumbentLeft[i], incumbentRight[i]};
+        }
+        return solution;
+    }
+
+    /**
+     * @return size of the best match
+     */
+    int getSolutionSize() {
+        return incumbentSize;
+    }
+
+    /**
+     * @return true if the search stopped at the iteration limit, in which case
+     * the match may not be maximum
+     */
+    boolean isTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Test of a candidate pair against the current match.
+     */
+    interface PairFilter {
+
+        /**
+         * @param v first graph vertex
+         * @param w second graph vertex
+         * @param left first graph vertices of the match
+         * @param right second graph vertices of the match
+         * @param size size of the match
+         * @return true if v may be matched with w
+         */
+        boolean isFeasible(int v, int w, int[] left, int[] right, int size);
+    }
+
+    /**
+     * Ranges of the left and right vertex arrays holding one label class.
+     */
+    private static final class Bidomain {
+
+        final int l;
+        final int r;
+        int leftLen;
+        int rightLen;
+        final boolean adjacent;
+
+        Bidomain(int l, int r, int leftLen, int rightLen, boolean adjacent) {
+            this.l = l;
+            this.r = r;
+            this.leftLen = leftLen;
+            this.rightLen = rightLen;
+            this.adjacent = adjacent;
+        }
+    }
+}
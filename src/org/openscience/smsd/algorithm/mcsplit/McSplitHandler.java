@@ -0,0 +1,372 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.mcsplit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.interfaces.IResults;
+import org.openscience.smsd.tools.IterationManager;
+
+/**
+ * This class acts as a handler class for the {@link McSplit} algorithm.
+ *
+ * Like {@link org.openscience.smsd.algorithm.rgraph.CDKMCS} the search runs on
+ * bonds: McSplit is applied to the line graphs of the two molecules, whose
+ * vertices are the bonds, labelled by the bond type (if bonds are matched) and
+ * the labels of its two atoms, and whose edges join bonds sharing an atom,
+ * labelled by that atom. An atom label is the symbol, the ring membership if
+ * rings are matched and the atom type if atom types are matched. The maximum
+ * connected common bond set is then turned into an atom mapping.
+ *
+ * A triangle and a three bond star have the same line graph, so a bond is only
+ * matched if every two matched bonds next to it meet it at the same atom in
+ * one molecule exactly when they do in the other.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class McSplitHandler implements IResults {
+
+    private final static ILoggingTool logger
+            = LoggingToolFactory.createLoggingTool(McSplitHandler.class);
+    private final List<AtomAtomMapping> allAtomMCS;
+    private final IAtomContainer source;
+    private final IAtomContainer target;
+    private final boolean shouldMatchBonds;
+    private final boolean shouldMatchRings;
+    private final boolean matchAtomType;
+    private final boolean timeout;
+
+    /**
+     * Constructor for the McSplit algorithm class
+     *
+     * @param source
+     * @param target
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomType
+     */
+    public McSplitHandler(IAtomContainer source, IAtomContainer target,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType) {
+        this.source = source;
+        this.target = target;
+        this.shouldMatchBonds = shouldMatchBonds;
+        this.shouldMatchRings = shouldMatchRings;
+        this.matchAtomType = matchAtomType;
+        this.allAtomMCS = Collections.synchronizedList(new ArrayList<AtomAtomMapping>());
+        this.timeout = searchMCS();
+    }
+
+    private synchronized boolean searchMCS() {
+        Map<String, Integer> labelIds = new HashMap<>();
+        int[] atomLabels0 = atomLabels(source, labelIds);
+        int[] atomLabels1 = atomLabels(target, labelIds);
+        int[][] ends0 = bondEnds(source);
+        int[][] ends1 = bondEnds(target);
+        int[] bondLabels0 = bondLabels(source, ends0, atomLabels0, labelIds);
+        int[] bondLabels1 = bondLabels(target, ends1, atomLabels1, labelIds);
+
+        IterationManager iterationManager
+                = new IterationManager((source.getAtomCount() + target.getAtomCount()) * 100);
+        McSplit mcsplit = new McSplit(bondLabels0, lineGraph(ends0, atomLabels0),
+                bondLabels1, lineGraph(ends1, atomLabels1), true,
+                new StarFilter(ends0, ends1), iterationManager);
+        mcsplit.search();
+
+        int[] atomMap = atomMap(mcsplit.getSolution(), ends0, ends1, atomLabels0, atomLabels1);
+        AtomAtomMapping mapping = new AtomAtomMapping(source, target);
+        for (int i = 0; i < atomMap.length; i++) {
+            if (atomMap[i] >= 0) {
+                mapping.put(source.getAtom(i), target.getAtom(atomMap[i]));
+            }
+        }
+        if (mapping.isEmpty()) {
+            singleAtom(mapping, atomLabels0, atomLabels1);
+        }
+        if (!mapping.isEmpty()) {
+            allAtomMCS.add(mapping);
+        }
+        return mcsplit.isTimeout();
+    }
+
+    private int[] atomLabels(IAtomContainer molecule, Map<String, Integer> labelIds) {
+        int[] labels = new int[molecule.getAtomCount()];
+        for (int i = 0; i < labels.length; i++) {
+            IAtom atom = molecule.getAtom(i);
+            StringBuilder label = new StringBuilder(atom.getSymbol() == null ? "*" : atom.getSymbol());
+            if (shouldMatchRings) {
+                label.append(atom.getFlag(CDKConstants.ISINRING) ? "@R" : "@A");
+            }
+            if (matchAtomType) {
+                label.append('|').append(atom.getAtomTypeName() == null
+                        ? atom.getSymbol() : atom.getAtomTypeName());
+            }
+            labels[i] = id(labelIds, label.toString());
+        }
+        return labels;
+    }
+
+    private int[] bondLabels(IAtomContainer molecule, int[][] ends, int[] atomLabels,
+            Map<String, Integer> labelIds) {
+        int[] labels = new int[ends.length];
+        for (int i = 0; i < ends.length; i++) {
+            IBond bond = molecule.getBond(i);
+            String type = "~";
+            if (shouldMatchBonds) {
+                if (bond.getFlag(CDKConstants.ISAROMATIC)) {
+                    type = ":";
+                } else if (bond.getOrder() != null) {
+                    type = bond.getOrder().name();
+                }
+            }
+            int a = atomLabels[ends[i][0]];
+            int b = atomLabels[ends[i][1]];
+            labels[i] = id(labelIds, type + "/" + Math.min(a, b) + "/" + Math.max(a, b));
+        }
+        return labels;
+    }
+
+    private static int id(Map<String, Integer> labelIds, String label) {
+        Integer id = labelIds.get(label);
+        if (id == null) {
+            id = labelIds.size();
+            labelIds.put(label, id);
+        }
+        return id;
+    }
+
+    private static int[][] bondEnds(IAtomContainer molecule) {
+        int[][] ends = new int[molecule.getBondCount()][];
+        for (int i = 0; i < ends.length; i++) {
+            IBond bond = molecule.getBond(i);
+            ends[i] = new int[]{molecule.getAtomNumber(bond.getAtom(0)),
+                molecule.getAtomNumber(bond.getAtom(1))};
+        }
+        return ends;
+    }
+
+    /**
+     * Edge label of two bonds: 1 + the label of their common atom, 0 if they
+     * have none.
+     */
+    private static int[][] lineGraph(int[][] ends, int[] atomLabels) {
+        int[][] edges = new int[ends.length][ends.length];
+        for (int i = 0; i < ends.length; i++) {
+            for (int j = i + 1; j < ends.length; j++) {
+                int common = commonAtom(ends[i], ends[j]);
+                if (common >= 0) {
+                    edges[i][j] = atomLabels[common] + 1;
+                    edges[j][i] = edges[i][j];
+                }
+            }
+        }
+        return edges;
+    }
+
+    private static int commonAtom(int[] a, int[] b) {
+        if (a[0] == b[0] || a[0] == b[1]) {
+            return a[0];
+        }
+        if (a[1] == b[0] || a[1] == b[1]) {
+            return a[1];
+        }
+        return -1;
+    }
+
+    /**
+     * Tells triangles from stars: two matched bonds next to a new bond meet it
+     * at one atom in both molecules, or at two different atoms in both.
+     */
+    private static final class StarFilter implements McSplit.PairFilter {
+
+        private final int[][] ends0;
+        private final int[][] ends1;
+
+        StarFilter(int[][] ends0, int[][] ends1) {
+            this.ends0 = ends0;
+            this.ends1 = ends1;
+        }
+
+        @Override
+        public boolean isFeasible(int v, int w, int[] left, int[] right, int size) {
+            for (int i = 0; i < size; i++) {
+                int common0 = commonAtom(ends0[v], ends0[left[i]]);
+                if (common0 < 0) {
+                    continue;
+                }
+                int common1 = commonAtom(ends1[w], ends1[right[i]]);
+                for (int j = i + 1; j < size; j++) {
+                    int other0 = commonAtom(ends0[v], ends0[left[j]]);
+                    if (other0 >= 0
+                            && (other0 == common0) != (commonAtom(ends1[w], ends1[right[j]]) == common1)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Atom mapping induced by a bond mapping: the common atom of two mapped
+     * bonds goes to the common atom of their images, the remaining ends follow
+     * from the bond, and a bond with neither end placed is oriented by the atom
+     * labels. Atoms mapped inconsistently are left out.
+     */
+    private static int[] atomMap(int[][] bondPairs, int[][] ends0, int[][] ends1,
+            int[] atomLabels0, int[] atomLabels1) {
+        int[] map = new int[atomLabels0.length];
+        int[] inverse = new int[atomLabels1.length];
+        Arrays.fill(map, -1);
+        Arrays.fill(inverse, -1);
+        boolean[] conflict = new boolean[atomLabels0.length];
+
+        for (int i = 0; i < bondPairs.length; i++) {
+            for (int j = i + 1; j < bondPairs.length; j++) {
+                int common0 = commonAtom(ends0[bondPairs[i][0]], ends0[bondPairs[j][0]]);
+                if (common0 >= 0) {
+                    int common1 = commonAtom(ends1[bondPairs[i][1]], ends1[bondPairs[j][1]]);
+                    assign(map, inverse, conflict, common0, common1);
+                }
+            }
+        }
+        for (int[] pair : bondPairs) {
+            int[] bond0 = ends0[pair[0]];
+            int[] bond1 = ends1[pair[1]];
+            int a = bond0[0];
+            int b = bond0[1];
+            if (map[a] < 0 && map[b] < 0) {
+                if (atomLabels0[a] == atomLabels1[bond1[0]]) {
+                    assign(map, inverse, conflict, a, bond1[0]);
+                    assign(map, inverse, conflict, b, bond1[1]);
+                } else {
+                    assign(map, inverse, conflict, a, bond1[1]);
+                    assign(map, inverse, conflict, b, bond1[0]);
+                }
+            } else if (map[b] < 0) {
+                assign(map, inverse, conflict, b, other(bond1, map[a]));
+            } else if (map[a] < 0) {
+                assign(map, inverse, conflict, a, other(bond1, map[b]));
+            }
+        }
+        for (int[] pair : bondPairs) {
+            int[] bond0 = ends0[pair[0]];
+            int[] bond1 = ends1[pair[1]];
+            for (int end = 0; end < 2; end++) {
+                int atom = bond0[end];
+                if (map[atom] >= 0 && other(bond1, map[atom]) < 0) {
+                    conflict[atom] = true;
+                }
+            }
+        }
+        for (int i = 0; i < map.length; i++) {
+            if (conflict[i] || (map[i] >= 0 && atomLabels0[i] != atomLabels1[map[i]])) {
+                if (map[i] >= 0) {
+                    logger.debug("Dropping inconsistent atom mapping " + i + " -> " + map[i]);
+                }
+                map[i] = -1;
+            }
+        }
+        return map;
+    }
+
+    private static void assign(int[] map, int[] inverse, boolean[] conflict, int atom0, int atom1) {
+        if (atom1 < 0) {
+            conflict[atom0] = true;
+        } else if (map[atom0] < 0 && inverse[atom1] < 0) {
+            map[atom0] = atom1;
+            inverse[atom1] = atom0;
+        } else if (map[atom0] != atom1) {
+            conflict[atom0] = true;
+            if (inverse[atom1] >= 0) {
+                conflict[inverse[atom1]] = true;
+            }
+        }
+    }
+
+    private static int other(int[] bond, int atom) {
+        if (bond[0] == atom) {
+            return bond[1];
+        }
+        if (bond[1] == atom) {
+            return bond[0];
+        }
+        return -1;
+    }
+
+    /**
+     * Without a common bond the MCS is a single atom of the same label.
+     */
+    private void singleAtom(AtomAtomMapping mapping, int[] atomLabels0, int[] atomLabels1) {
+        for (int i = 0; i < atomLabels0.length; i++) {
+            for (int j = 0; j < atomLabels1.length; j++) {
+                if (atomLabels0[i] == atomLabels1[j]) {
+                    mapping.put(source.getAtom(i), target.getAtom(j));
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return
+     */
+    @Override
+    public synchronized List<AtomAtomMapping> getAllAtomMapping() {
+        return Collections.unmodifiableList(allAtomMCS);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return
+     */
+    @Override
+    public synchronized AtomAtomMapping getFirstAtomMapping() {
+        if (allAtomMCS.iterator().hasNext()) {
+            return allAtomMCS.iterator().next();
+        }
+        return new AtomAtomMapping(source, target);
+    }
+
+    /**
+     * @return true if the search stopped at the iteration limit
+     */
+    public synchronized boolean isTimeout() {
+        return timeout;
+    }
+}
@@ -31,6 +31,9 @@ import java.util.List;
 import java.util.Set;
 import java.util.Stack;
 import org.openscience.cdk.annotations.TestClass;
+import org.openscience.smsd.metrics.ICounter;
+import org.openscience.smsd.metrics.Metrics;
+import org.openscience.smsd.tools.SearchMonitor;
 
 /**
  * This class implements Bron-Kerbosch clique detection algorithm as it is
@@ -40,6 +43,12 @@ import org.openscience.cdk.annotations.TestClass;
  *
  * BronKerboschCazalsKarandeKochCliqueFinder.java
  *
+ * Given the node orbits of {@link CompatibilityGraphSymmetry}, a node is not
+ * used to start the enumeration if a node of its orbit has already been used:
+ * each maximal clique through it is the image of one through that node, so
+ * of each set of cliques that differ by a symmetry of the molecules at least
+ * one is still reported.
+ *
  * @cdk.githash
  * @cdk.module smsd
  * @author Syed Asad Rahman <asad@ebi.ac.uk>
@@ -88,10 +97,13 @@ public final class BKKCKCF {
     private final List<Integer> comp_graph_nodes;
 
     private int best_clique_size;
+    private final boolean exchanged;
+    private final int[] nodeOrbits;
     private List<Integer> C_copy;
     private Stack<Integer> P_copy;
     private Stack<Integer> D_copy;
     private List<Integer> S_copy;
+    private final ICounter steps = Metrics.counter(Metrics.MCSPLUS_CLIQUES);
 
     /**
      * Creates a new instance of BKKCKCF
@@ -104,7 +116,49 @@ public final class BKKCKCF {
             List<Integer> compGraphNodes,
             List<Integer> cEdges,
             List<Integer> dEdges) {
+        this(compGraphNodes, cEdges, dEdges, false);
+    }
 
+    /**
+     * Creates a new instance of BKKCKCF reporting larger cliques to the
+     * {@link SearchMonitor} of the search, if any
+     *
+     * @param compGraphNodes
+     * @param cEdges
+     * @param dEdges
+     * @param exchanged true if the first atom of a compatibility graph node
+     * belongs to the target of the search
+     */
+    public BKKCKCF(
+            List<Integer> compGraphNodes,
+            List<Integer> cEdges,
+            List<Integer> dEdges,
+            boolean exchanged) {
+        this(compGraphNodes, cEdges, dEdges, exchanged, null);
+    }
+
+    /**
+     * Creates a new instance of BKKCKCF enumerating the cliques from one node
+     * per orbit of the compatibility graph
+     *
+     * @param compGraphNodes
+     * @param cEdges
+     * @param dEdges
+     * @param exchanged true if the first atom of a compatibility graph node
+     * belongs to the target of the search
+     * @param nodeOrbits orbit per node id, see
+     * {@link CompatibilityGraphSymmetry#nodeOrbits}, or null to start from
+     * every node
+     */
+    public BKKCKCF(
+            List<Integer> compGraphNodes,
+            List<Integer> cEdges,
+            List<Integer> dEdges,
+            boolean exchanged,
+            int[] nodeOrbits) {
+
+        this.exchanged = exchanged;
+        this.nodeOrbits = nodeOrbits;
         this.comp_graph_nodes = Collections.unmodifiableList(new ArrayList<>(compGraphNodes));
         this.C_edges = Collections.unmodifiableList(new ArrayList<>(cEdges));
         this.D_edges = Collections.unmodifiableList(new ArrayList<>(dEdges));
@@ -135,8 +189,9 @@ public final class BKKCKCF {
          *
          */
         T.clear();
+        Set<Integer> startedOrbits = new HashSet<>();
 
-        while (V.get(b) != 0) {
+        while (V.get(b) != 0 && !SearchMonitor.isCurrentCancelled()) {
 
             int central_node = V.get(b);
 
@@ -191,7 +246,9 @@ public final class BKKCKCF {
             }
             P.add(0);
             C.add(central_node);
-            Enumerate_Cliques(C, P, D, S);
+            if (nodeOrbits == null || startedOrbits.add(nodeOrbits[central_node])) {
+                Enumerate_Cliques(C, P, D, S);
+            }
             T.add(V.get(b));
             b++;
         }
@@ -199,6 +256,7 @@ public final class BKKCKCF {
     }
 
     private int Enumerate_Cliques(List<Integer> C, Stack<Integer> P, Stack<Integer> D, List<Integer> S) {
+        steps.increment();
 
         List<Integer> N = new ArrayList<>(); ////Initialization Vector N
         Stack<Integer> P_Prime = new Stack<>();//Defined as P' in the paper
@@ -212,6 +270,9 @@ public final class BKKCKCF {
             P_Prime.add(I);
         }
 
+        if (SearchMonitor.isCurrentCancelled()) {
+            return 0;
+        }
         if (P.size() == 1) {
             if (S.isEmpty()) {
                 //store best solutions in stack max_Cliques_Set
@@ -221,6 +282,7 @@ public final class BKKCKCF {
                     if (clique_size > best_clique_size) {
                         max_Cliques_Set.clear();
                         best_clique_size = clique_size;
+                        reportClique(C);
 //                        System.out.println("Best Cliques Size: " + best_clique_size + " " + clique_size);
                     }
                     if (clique_size == best_clique_size) {
@@ -364,6 +426,26 @@ public final class BKKCKCF {
         return 0;
     }
 
+    /*
+     * Reports a new best clique as atom index pairs
+     */
+    private void reportClique(List<Integer> clique) {
+        if (SearchMonitor.current() == null) {
+            return;
+        }
+        List<Integer> pairs = new ArrayList<>(clique.size() * 2);
+        for (Integer node : clique) {
+            for (int i = 0; i < comp_graph_nodes.size(); i += 3) {
+                if (comp_graph_nodes.get(i + 2).equals(node)) {
+                    pairs.add(comp_graph_nodes.get(i));
+                    pairs.add(comp_graph_nodes.get(i + 1));
+                    break;
+                }
+            }
+        }
+        SearchMonitor.report(SearchMonitor.CLIQUE, pairs, exchanged);
+    }
+
     private List<Integer> find_neighbors(int central_node) {
 
         List<Integer> neighbor_vec = new ArrayList<>();
@@ -0,0 +1,154 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.mcsplus;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.smsd.tools.AutomorphismPartition;
+
+/**
+ * Orbits of the nodes of a compatibility graph under the automorphisms of the
+ * two molecules. An automorphism <i>a</i> of the first molecule takes the node
+ * <i>(i, j)</i> to <i>(a(i), j)</i> and one of the second molecule takes it to
+ * <i>(i, b(j))</i>. Such a node permutation is used only if it maps every
+ * node onto a node and every c-edge and d-edge onto an edge of the same kind,
+ * so that it is an automorphism of the compatibility graph and maps each
+ * clique onto a clique of the same size. The molecule automorphisms are the
+ * generators of {@link AutomorphismPartition}.
+ *
+ * {@link BKKCKCF} uses the orbits to start the clique enumeration from one
+ * node per orbit only.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class CompatibilityGraphSymmetry {
+
+    private CompatibilityGraphSymmetry() {
+    }
+
+    /**
+     * @param ac1 molecule of the first atom of each node
+     * @param ac2 molecule of the second atom of each node
+     * @param compGraphNodes nodes as (atom in ac1, atom in ac2, node id)
+     * triples, node ids starting at 1
+     * @param cEdges c-edges as pairs of node ids
+     * @param dEdges d-edges as pairs of node ids
+     * @return orbit per node id, given as the lowest node id in the orbit
+     */
+    public static int[] nodeOrbits(IAtomContainer ac1, IAtomContainer ac2,
+            List<Integer> compGraphNodes, List<Integer> cEdges, List<Integer> dEdges) {
+        int nodeCount = compGraphNodes.size() / 3;
+        int[][] nodeIds = new int[ac1.getAtomCount()][ac2.getAtomCount()];
+        int[] first = new int[nodeCount + 1];
+        int[] second = new int[nodeCount + 1];
+        for (int k = 0; k < compGraphNodes.size(); k += 3) {
+            int id = compGraphNodes.get(k + 2);
+            first[id] = compGraphNodes.get(k);
+            second[id] = compGraphNodes.get(k + 1);
+            nodeIds[first[id]][second[id]] = id;
+        }
+        Set<Long> cEdgeSet = edgeSet(cEdges);
+        Set<Long> dEdgeSet = edgeSet(dEdges);
+
+        int[] parent = new int[nodeCount + 1];
+        for (int id = 0; id <= nodeCount; id++) {
+            parent[id] = id;
+        }
+        for (int[] automorphism : new AutomorphismPartition(ac1).getGenerators()) {
+            int[] permutation = new int[nodeCount + 1];
+            for (int id = 1; id <= nodeCount; id++) {
+                permutation[id] = nodeIds[automorphism[first[id]]][second[id]];
+            }
+            merge(parent, permutation, cEdges, dEdges, cEdgeSet, dEdgeSet);
+        }
+        for (int[] automorphism : new AutomorphismPartition(ac2).getGenerators()) {
+            int[] permutation = new int[nodeCount + 1];
+            for (int id = 1; id <= nodeCount; id++) {
+                permutation[id] = nodeIds[first[id]][automorphism[second[id]]];
+            }
+            merge(parent, permutation, cEdges, dEdges, cEdgeSet, dEdgeSet);
+        }
+
+        int[] orbits = new int[nodeCount + 1];
+        for (int id = 1; id <= nodeCount; id++) {
+            orbits[id] = find(parent, id);
+        }
+        return orbits;
+    }
+
+    /*
+     * Joins the orbits of the nodes the permutation exchanges, if it is an
+     * automorphism of the compatibility graph
+     */
+    private static void merge(int[] parent, int[] permutation, List<Integer> cEdges, List<Integer> dEdges,
+            Set<Long> cEdgeSet, Set<Long> dEdgeSet) {
+        for (int id = 1; id < permutation.length; id++) {
+            if (permutation[id] == 0) {
+                return;
+            }
+        }
+        if (!mapsEdges(permutation, cEdges, cEdgeSet) || !mapsEdges(permutation, dEdges, dEdgeSet)) {
+            return;
+        }
+        for (int id = 1; id < permutation.length; id++) {
+            int a = find(parent, id);
+            int b = find(parent, permutation[id]);
+            if (a != b) {
+                parent[Math.max(a, b)] = Math.min(a, b);
+            }
+        }
+    }
+
+    private static boolean mapsEdges(int[] permutation, List<Integer> edges, Set<Long> edgeSet) {
+        for (int k = 0; k + 1 < edges.size(); k += 2) {
+            if (!edgeSet.contains(key(permutation[edges.get(k)], permutation[edges.get(k + 1)]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<Long> edgeSet(List<Integer> edges) {
+        Set<Long> edgeSet = new HashSet<>();
+        for (int k = 0; k + 1 < edges.size(); k += 2) {
+            edgeSet.add(key(edges.get(k), edges.get(k + 1)));
+        }
+        return edgeSet;
+    }
+
+    private static long key(int u, int v) {
+        return ((long) Math.min(u, v) << 32) | Math.max(u, v);
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+}
@@ -41,7 +41,9 @@ import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
 import org.openscience.cdk.isomorphism.matchers.IQueryBond;
 import org.openscience.smsd.algorithm.matchers.DefaultMatcher;
+import org.openscience.smsd.algorithm.selector.CostModel;
 import org.openscience.smsd.helper.LabelContainer;
+import org.openscience.smsd.metrics.PhaseEvent;
 
 /**
  * This class generates compatibility graph between query and target molecule.
@@ -84,6 +86,29 @@ public final class GenerateCompatibilityGraph implements Serializable {
             boolean shouldMatchBonds,
             boolean shouldMatchRings,
             boolean matchAtomType) throws IOException {
+        this(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType,
+                CostModel.getDefault().getCompatibilityGraphAtoms());
+    }
+
+    /**
+     * Generates a compatibility graph between two molecules
+     *
+     * @param source
+     * @param target
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomType
+     * @param reducedGraphAtoms atom count of both molecules above which the
+     * reduced graph is built when bonds or atom types are not matched
+     * @throws java.io.IOException
+     */
+    public GenerateCompatibilityGraph(
+            IAtomContainer source,
+            IAtomContainer target,
+            boolean shouldMatchBonds,
+            boolean shouldMatchRings,
+            boolean matchAtomType,
+            int reducedGraphAtoms) throws IOException {
         this.shouldMatchRings = shouldMatchRings;
         this.shouldMatchBonds = shouldMatchBonds;
         this.matchAtomType = matchAtomType;
@@ -93,6 +118,7 @@ public final class GenerateCompatibilityGraph implements Serializable {
         compGraphNodesCZero = new ArrayList<>();
         cEdges = Collections.synchronizedList(new ArrayList<Integer>());
         dEdges = Collections.synchronizedList(new ArrayList<Integer>());
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.COMPATIBILITY_GRAPH);
 
         /*
          Generate all possible graphs when no ring match or atom type is required
@@ -101,7 +127,7 @@ public final class GenerateCompatibilityGraph implements Serializable {
          Modification for AAM only
          */
         if ((!shouldMatchBonds || !matchAtomType)
-                && source.getAtomCount() > 30 && target.getAtomCount() > 30) {
+                && source.getAtomCount() > reducedGraphAtoms && target.getAtomCount() > reducedGraphAtoms) {
             compatibilityGraphNodesIfCEdgeIsZero();
             compatibilityGraphCEdgeZero();
             clearCompGraphNodesCZero();
@@ -127,6 +153,9 @@ public final class GenerateCompatibilityGraph implements Serializable {
                 clearCompGraphNodesCZero();
             }
         }
+        if (event != null) {
+            event.end(source.getAtomCount(), target.getAtomCount(), false);
+        }
     }
 
     private Map<IAtom, List<String>> labelAtomsBySymbol(IAtomContainer atomCont) {
@@ -36,7 +36,11 @@ import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 import org.openscience.smsd.algorithm.mcgregor.McGregor;
+import org.openscience.smsd.metrics.ICounter;
+import org.openscience.smsd.metrics.Metrics;
+import org.openscience.smsd.metrics.PhaseEvent;
 import org.openscience.smsd.tools.IterationManager;
+import org.openscience.smsd.tools.SearchMonitor;
 
 /**
  * This class handles MCS plus algorithm which is a combination of c-clique
@@ -54,9 +58,12 @@ public final class MCSPlus {
     private final boolean shouldMatchBonds;
     private final IAtomContainer ac1;
     private final IAtomContainer ac2;
+    private final boolean exchanged;
     private final List<List<Integer>> overlaps;
 
     private boolean timeout = false;
+    private final ICounter iterations = Metrics.counter(Metrics.MCSPLUS_ITERATIONS);
+    private final ICounter timeouts = Metrics.counter(Metrics.MCSPLUS_TIMEOUTS);
 
     private IterationManager iterationManager = null;
     private final boolean matchAtomType;
@@ -91,11 +98,26 @@ public final class MCSPlus {
      * @param matchAtomType
      */
     public MCSPlus(IAtomContainer ac1, IAtomContainer ac2, boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType) {
+        this(ac1, ac2, shouldMatchBonds, shouldMatchRings, matchAtomType, false);
+    }
+
+    /**
+     *
+     * @param ac1
+     * @param ac2
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomType
+     * @param exchanged true if ac1 is the target of the search, used to report
+     * progress in query, target order
+     */
+    public MCSPlus(IAtomContainer ac1, IAtomContainer ac2, boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType, boolean exchanged) {
         this.shouldMatchRings = shouldMatchRings;
         this.shouldMatchBonds = shouldMatchBonds;
         this.matchAtomType = matchAtomType;
         this.ac1 = ac1;
         this.ac2 = ac2;
+        this.exchanged = exchanged;
         this.overlaps = calculateMCS();
     }
 
@@ -110,6 +132,7 @@ public final class MCSPlus {
         this.matchAtomType = true;
         this.ac1 = ac1;
         this.ac2 = ac2;
+        this.exchanged = false;
         this.overlaps = calculateMCS();
     }
 
@@ -140,7 +163,11 @@ public final class MCSPlus {
 //            System.out.println("C_edges: " + cEdges.size());
 //            System.out.println("D_edges: " + dEdges.size());
 //            System.out.println("comp_graph_nodes: " + comp_graph_nodes);
-            BKKCKCF init = new BKKCKCF(comp_graph_nodes, cEdges, dEdges);
+            PhaseEvent event = PhaseEvent.begin(PhaseEvent.CLIQUE_SEARCH);
+            BKKCKCF init = new BKKCKCF(comp_graph_nodes, cEdges, dEdges, exchanged);
+            if (event != null) {
+                event.end(ac1.getAtomCount(), ac2.getAtomCount(), SearchMonitor.isCurrentCancelled());
+            }
             Stack<List<Integer>> maxCliqueSet = new Stack<>();
             maxCliqueSet.addAll(init.getMaxCliqueSet());
 
@@ -201,6 +228,7 @@ public final class MCSPlus {
 //            System.out.println("\nStart McGregor search");
             //Start McGregor search
             cliques = mgit.getMappings();
+            SearchMonitor.reportLargest(SearchMonitor.MCGREGOR, cliques, ROPFlag == exchanged);
 //            System.out.println("\nSol count after MG " + cliques.size());
             if (checkTimeout()) {
                 break;
@@ -227,6 +255,7 @@ public final class MCSPlus {
 //            System.out.println("\nStart McGregor search");
             //Start McGregor search
             cliques = mgit.getMappings();
+            SearchMonitor.reportLargest(SearchMonitor.MCGREGOR, cliques, ROPFlag == exchanged);
 //            System.out.println("\nSol count after MG " + cliques.size());
             if (checkTimeout()) {
                 break;
@@ -278,11 +307,15 @@ public final class MCSPlus {
 
     private boolean checkTimeout() {
         if (getIterationManager().isMaxIteration()) {
+            if (!this.timeout) {
+                timeouts.increment();
+            }
             this.timeout = true;
 //            System.out.println("MCS+ iterations " + getIterationManager().getCounter());
             return true;
         }
         getIterationManager().increment();
+        iterations.increment();
         return false;
     }
 
@@ -0,0 +1,363 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.portfolio;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.Substructure;
+import org.openscience.smsd.algorithm.mcsplus.MCSPlusHandler;
+import org.openscience.smsd.algorithm.rgraph.CDKMCSHandler;
+import org.openscience.smsd.algorithm.vflib.VF2MCS;
+import org.openscience.smsd.interfaces.IResults;
+import org.openscience.smsd.similarity.MoleculeProfile;
+import org.openscience.smsd.similarity.UpperBound;
+import org.openscience.smsd.tools.SharedPool;
+
+/**
+ * Runs the VF2 substructure search, CDKMCS, MCSPlus and VF2MCS concurrently
+ * on private copies of the molecules and keeps the first result that is
+ * proven optimal:
+ * <ul>
+ * <li>the query is a substructure of the target;</li>
+ * <li>CDKMCS or MCSPlus finished without a timeout (both are exact);</li>
+ * <li>the result reaches the {@link UpperBound} of the MCS size.</li>
+ * </ul>
+ * If no engine proves optimality before the deadline, the largest result
+ * found so far is returned and {@link #isTimeout()} is true. The engines that
+ * are still running are interrupted, which stops them at their next
+ * iteration check, and the search returns once they have stopped, so that no
+ * engine of a finished search is left reporting phases or counters.
+ *
+ * The engines run on threads shared by all portfolio searches. The pool
+ * grows as needed rather than queueing, since every engine of a race has to
+ * start at once, and a thread is reused once its engine has stopped.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class PortfolioHandler implements IResults {
+
+    private final static ILoggingTool logger
+            = LoggingToolFactory.createLoggingTool(PortfolioHandler.class);
+    private static volatile long defaultDeadline = 30000;
+    private static final ExecutorService ENGINES = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "smsd-portfolio");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final IAtomContainer source;
+    private final IAtomContainer target;
+    private final boolean shouldMatchBonds;
+    private final boolean shouldMatchRings;
+    private final boolean matchAtomType;
+    private final List<AtomAtomMapping> allAtomMCS;
+    private String winner;
+    private boolean timeout;
+
+    /**
+     * Races the engines with the default deadline.
+     *
+     * @param source
+     * @param target
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomType
+     */
+    public PortfolioHandler(IAtomContainer source, IAtomContainer target,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType) {
+        this(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType, defaultDeadline);
+    }
+
+    /**
+     * Races the engines.
+     *
+     * @param source
+     * @param target
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomType
+     * @param deadline milliseconds to wait for a proven result
+     */
+    public PortfolioHandler(IAtomContainer source, IAtomContainer target,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType, long deadline) {
+        this.source = source;
+        this.target = target;
+        this.shouldMatchBonds = shouldMatchBonds;
+        this.shouldMatchRings = shouldMatchRings;
+        this.matchAtomType = matchAtomType;
+        this.allAtomMCS = new ArrayList<>();
+        race(deadline);
+    }
+
+    /**
+     * @param deadline milliseconds the {@link org.openscience.smsd.interfaces.Algorithm#PORTFOLIO}
+     * search waits for a proven result
+     */
+    public static void setDefaultDeadline(long deadline) {
+        defaultDeadline = deadline;
+    }
+
+    /**
+     * @return milliseconds the portfolio search waits for a proven result
+     */
+    public static long getDefaultDeadline() {
+        return defaultDeadline;
+    }
+
+    private void race(long deadline) {
+        int bound = upperBound();
+        List<Engine> engines = new ArrayList<>(4);
+        CountDownLatch stopped = new CountDownLatch(4);
+        try {
+            engines.add(new Engine("VF2Sub", source.clone(), target.clone(), stopped));
+            engines.add(new Engine("CDKMCS", source.clone(), target.clone(), stopped));
+            engines.add(new Engine("MCSPlus", source.clone(), target.clone(), stopped));
+            engines.add(new Engine("VF2MCS", source.clone(), target.clone(), stopped));
+        } catch (CloneNotSupportedException ex) {
+            logger.error("Unable to copy molecules for the portfolio search", ex);
+            return;
+        }
+
+        CompletionService<Outcome> completion = new ExecutorCompletionService<>(ENGINES);
+        for (Engine engine : engines) {
+            completion.submit(SharedPool.withMonitor(engine));
+        }
+
+        Outcome best = null;
+        boolean proven = false;
+        long end = System.currentTimeMillis() + deadline;
+        try {
+            for (int remaining = engines.size(); remaining > 0 && !proven; remaining--) {
+                long wait = end - System.currentTimeMillis();
+                Future<Outcome> done = wait > 0 ? completion.poll(wait, TimeUnit.MILLISECONDS) : null;
+                if (done == null) {
+                    break;
+                }
+                Outcome outcome;
+                try {
+                    outcome = done.get();
+                } catch (ExecutionException ex) {
+                    logger.error("Portfolio engine failed", ex.getCause());
+                    continue;
+                }
+                if (best == null || outcome.size > best.size) {
+                    best = outcome;
+                }
+                proven = outcome.optimal || (best.size > 0 && best.size >= bound);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Engine engine : engines) {
+                engine.cancel();
+            }
+            awaitEngines(stopped);
+        }
+
+        this.timeout = !proven;
+        if (best != null) {
+            this.winner = best.engine;
+            for (AtomAtomMapping mapping : best.mappings) {
+                allAtomMCS.add(remap(mapping));
+            }
+        }
+        logger.debug("Portfolio winner " + winner + ", proven " + proven);
+    }
+
+    /*
+     * Waits for the cancelled engines to reach their next iteration check
+     */
+    private static void awaitEngines(CountDownLatch stopped) {
+        try {
+            stopped.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int upperBound() {
+        try {
+            return UpperBound.mcsSize(
+                    new MoleculeProfile(source.clone(), shouldMatchBonds, shouldMatchRings, matchAtomType),
+                    new MoleculeProfile(target.clone(), shouldMatchBonds, shouldMatchRings, matchAtomType));
+        } catch (CDKException | CloneNotSupportedException ex) {
+            return Math.min(source.getAtomCount(), target.getAtomCount());
+        }
+    }
+
+    /*
+     * Moves a mapping between copies onto the original molecules, the copies
+     * keep the atom order
+     */
+    private AtomAtomMapping remap(AtomAtomMapping mapping) {
+        AtomAtomMapping remapped = new AtomAtomMapping(source, target);
+        for (Map.Entry<Integer, Integer> entry : mapping.getMappingsByIndex().entrySet()) {
+            remapped.put(source.getAtom(entry.getKey()), target.getAtom(entry.getValue()));
+        }
+        return remapped;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized List<AtomAtomMapping> getAllAtomMapping() {
+        return Collections.unmodifiableList(allAtomMCS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized AtomAtomMapping getFirstAtomMapping() {
+        if (allAtomMCS.iterator().hasNext()) {
+            return allAtomMCS.iterator().next();
+        }
+        return new AtomAtomMapping(source, target);
+    }
+
+    /**
+     * @return true if no engine proved its result optimal before the
+     * deadline
+     */
+    public synchronized boolean isTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return name of the engine whose result was kept, or null
+     */
+    public synchronized String getWinner() {
+        return winner;
+    }
+
+    private static final class Outcome {
+
+        private final String engine;
+        private final List<AtomAtomMapping> mappings;
+        private final int size;
+        private final boolean optimal;
+
+        Outcome(String engine, List<AtomAtomMapping> mappings, boolean optimal) {
+            this.engine = engine;
+            this.mappings = mappings;
+            this.size = mappings.isEmpty() ? 0 : mappings.get(0).getCount();
+            this.optimal = optimal;
+        }
+    }
+
+    private final class Engine implements Callable<Outcome> {
+
+        private final String name;
+        private final IAtomContainer source;
+        private final IAtomContainer target;
+        private final CountDownLatch stopped;
+        private Thread thread;
+        private boolean cancelled;
+
+        Engine(String name, IAtomContainer source, IAtomContainer target, CountDownLatch stopped) {
+            this.name = name;
+            this.source = source;
+            this.target = target;
+            this.stopped = stopped;
+        }
+
+        /*
+         * Interrupts the engine if it is running, or keeps it from starting
+         */
+        synchronized void cancel() {
+            cancelled = true;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        @Override
+        public Outcome call() throws CDKException {
+            try {
+                synchronized (this) {
+                    if (cancelled) {
+                        return new Outcome(name, new ArrayList<AtomAtomMapping>(), false);
+                    }
+                    thread = Thread.currentThread();
+                }
+                return search();
+            } finally {
+                synchronized (this) {
+                    thread = null;
+                }
+                stopped.countDown();
+            }
+        }
+
+        private Outcome search() throws CDKException {
+            switch (name) {
+                case "VF2Sub": {
+                    Substructure mcs = new Substructure(source, target,
+                            shouldMatchBonds, shouldMatchRings, matchAtomType, true);
+                    List<AtomAtomMapping> mappings = mcs.isSubgraph()
+                            ? mcs.getAllAtomMapping() : new ArrayList<AtomAtomMapping>();
+                    return new Outcome(name, mappings, mcs.isSubgraph());
+                }
+                case "CDKMCS": {
+                    CDKMCSHandler mcs = new CDKMCSHandler(source, target,
+                            shouldMatchBonds, shouldMatchRings, matchAtomType);
+                    return new Outcome(name, mcs.getAllAtomMapping(),
+                            !mcs.isTimeout() && !Thread.currentThread().isInterrupted());
+                }
+                case "MCSPlus": {
+                    MCSPlusHandler mcs = new MCSPlusHandler(source, target,
+                            shouldMatchBonds, shouldMatchRings, matchAtomType);
+                    return new Outcome(name, mcs.getAllAtomMapping(),
+                            !mcs.isTimeout() && !Thread.currentThread().isInterrupted());
+                }
+                default: {
+                    VF2MCS mcs = new VF2MCS(source, target,
+                            shouldMatchBonds, shouldMatchRings, matchAtomType);
+                    return new Outcome(name, mcs.getAllAtomMapping(), false);
+                }
+            }
+        }
+    }
+}
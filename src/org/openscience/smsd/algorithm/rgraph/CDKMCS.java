@@ -1,10 +1,14 @@
 package org.openscience.smsd.algorithm.rgraph;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
@@ -19,7 +23,9 @@ import org.openscience.smsd.algorithm.matchers.AtomMatcher;
 import org.openscience.smsd.algorithm.matchers.DefaultAtomMatcher;
 import org.openscience.smsd.algorithm.matchers.DefaultAtomTypeMatcher;
 import org.openscience.smsd.algorithm.matchers.DefaultMatcher;
+import org.openscience.smsd.metrics.PhaseEvent;
 import org.openscience.smsd.tools.IterationManager;
+import org.openscience.smsd.tools.SharedPool;
 
 /**
  * This class implements atom multipurpose structure comparison tool. It allows
@@ -82,6 +88,10 @@ public class CDKMCS {
     protected final static int ID1 = 0;
     protected final static int ID2 = 1;
     private static IterationManager iterationManager = null;
+    // Bond pair comparisons above which the nodes are matched on several threads
+    private final static int PARALLEL_NODE_PAIRS = 1 << 14;
+    // Node pair comparisons above which the arcs are built on several threads
+    private final static int PARALLEL_ARC_PAIRS = 1 << 20;
 
     ///////////////////////////////////////////////////////////////////////////
     //                            Query Methods
@@ -433,9 +443,13 @@ public class CDKMCS {
      */
     public static CDKRGraph buildRGraph(IAtomContainer g1, IAtomContainer g2,
             boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType) throws CDKException {
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.RESOLUTION_GRAPH);
         CDKRGraph rGraph = new CDKRGraph();
         nodeConstructor(rGraph, g1, g2, shouldMatchBonds, shouldMatchRings, matchAtomType);
         arcConstructor(rGraph, g1, g2);
+        if (event != null) {
+            event.end(g1.getAtomCount(), g2.getAtomCount(), false);
+        }
         return rGraph;
     }
 
@@ -494,7 +508,11 @@ public class CDKMCS {
         // Set time data
         setIterationManager(new IterationManager((g1.getAtomCount() + g2.getAtomCount())));
         // parse the CDKRGraph with the given constrains and options
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.RESOLUTION_SEARCH);
         rGraph.parse(c1, c2, findAllStructure, findAllMap);
+        if (event != null) {
+            event.end(g1.getAtomCount(), g2.getAtomCount(), getIterationManager().isMaxIteration());
+        }
         List<BitSet> solutionList = rGraph.getSolutions();
 
         // conversions of CDKRGraph's internal solutions to G1/G2 mappings
@@ -782,17 +800,35 @@ public class CDKMCS {
         // resets the target graph.
         gr.clear();
 
-        // compares each bondA of G1 to each bondA of G2
-        for (int i = 0; i < ac1.getBondCount(); i++) {
-            for (int j = 0; j < ac2.getBondCount(); j++) {
-//                // if both bonds are compatible then create an association node
-//                // in the resolution graph
-
-                if (!isMatchFeasible(ac1.getBond(i), ac2.getBond(j), shouldMatchBonds, shouldMatchRings, matchAtomType)) {
-                } else {
-                    gr.addNode(new CDKRNode(i, j));
+        // compares each bondA of G1 to each bondA of G2; the rows of G1 bonds
+        // are split into blocks, and the nodes are added in row order
+        final IBond[] bonds1 = bonds(ac1);
+        final IBond[] bonds2 = bonds(ac2);
+        final int[][] matches = new int[bonds1.length][];
+        final boolean matchBonds = shouldMatchBonds;
+        final boolean matchRings = shouldMatchRings;
+        final boolean atomType = matchAtomType;
+        runBlocks(bonds1.length, (long) bonds1.length * bonds2.length >= PARALLEL_NODE_PAIRS, new RowBlock() {
+            @Override
+            public void run(int from, int to) {
+                int[] row = new int[bonds2.length];
+                for (int i = from; i < to; i++) {
+                    int count = 0;
+                    for (int j = 0; j < bonds2.length; j++) {
+                        // if both bonds are compatible then create an association node
+                        // in the resolution graph
+                        if (isMatchFeasible(bonds1[i], bonds2[j], matchBonds, matchRings, atomType)) {
+                            row[count++] = j;
+                        }
+                    }
+                    matches[i] = Arrays.copyOf(row, count);
                 }
             }
+        });
+        for (int i = 0; i < bonds1.length; i++) {
+            for (int j : matches[i]) {
+                gr.addNode(new CDKRNode(i, j));
+            }
         }
     }
 
@@ -836,88 +872,167 @@ public class CDKMCS {
      * @throws CDKException if it takes too long to get the overlaps
      */
     private static void arcConstructor(CDKRGraph gr, IAtomContainer ac1, IAtomContainer ac2) throws CDKException {
-        // each node is incompatible with himself
-        for (int i = 0; i < gr.getGraph().size(); i++) {
-            CDKRNode x = gr.getGraph().get(i);
-            x.getForbidden().set(i);
-        }
-
-        IBond a1;
-        IBond a2;
-        IBond b1;
-        IBond b2;
-
         gr.setFirstGraphSize(ac1.getBondCount());
         gr.setSecondGraphSize(ac2.getBondCount());
 
-        for (int i = 0; i < gr.getGraph().size(); i++) {
-            CDKRNode x = gr.getGraph().get(i);
-
-            // two nodes are neighbors if their adjacency
-            // relationship in are equivalent in G1 and G2
-            // else they are incompatible.
-            for (int j = i + 1; j < gr.getGraph().size(); j++) {
-                CDKRNode y = gr.getGraph().get(j);
-
-                a1 = ac1.getBond(gr.getGraph().get(i).getRMap().getId1());
-                a2 = ac2.getBond(gr.getGraph().get(i).getRMap().getId2());
-                b1 = ac1.getBond(gr.getGraph().get(j).getRMap().getId1());
-                b2 = ac2.getBond(gr.getGraph().get(j).getRMap().getId2());
-
-                if (a2 instanceof IQueryBond) {
-                    if (a1.equals(b1) || a2.equals(b2)
-                            || !queryAdjacencyAndOrder(a1, b1, a2, b2)) {
-                        x.getForbidden().set(j);
-                        y.getForbidden().set(i);
-                    } else if (hasCommonAtom(a1, b1)) {
-                        x.getExtension().set(j);
-                        y.getExtension().set(i);
-                    }
-                } else {
-                    if (a1.equals(b1) || a2.equals(b2)
-                            || (!getCommonSymbol(a1, b1).equals(getCommonSymbol(a2, b2)))) {
-                        x.getForbidden().set(j);
-                        y.getForbidden().set(i);
-                    } else if (hasCommonAtom(a1, b1)) {
-                        x.getExtension().set(j);
-                        y.getExtension().set(i);
+        List<CDKRNode> nodes = gr.getGraph();
+        final int size = nodes.size();
+        final int[] nodeBonds1 = new int[size];
+        final int[] nodeBonds2 = new int[size];
+        for (int i = 0; i < size; i++) {
+            nodeBonds1[i] = nodes.get(i).getRMap().getId1();
+            nodeBonds2[i] = nodes.get(i).getRMap().getId2();
+        }
+
+        // bond incidence and atom symbols, so that the pair tests below work
+        // on indices instead of bond objects
+        final IBond[] bonds1 = bonds(ac1);
+        final IBond[] bonds2 = bonds(ac2);
+        final int[][] ends1 = bondEnds(ac1, bonds1);
+        final int[][] ends2 = bondEnds(ac2, bonds2);
+        final String[] symbols1 = symbols(ac1);
+        final String[] symbols2 = symbols(ac2);
+        final boolean[] queryBonds2 = new boolean[bonds2.length];
+        for (int k = 0; k < bonds2.length; k++) {
+            queryBonds2[k] = bonds2[k] instanceof IQueryBond;
+        }
+
+        // each node owns its extension and forbidden rows, so the rows can be
+        // filled block by block on several threads
+        final int words = (size + 63) >>> 6;
+        final long[][] extension = new long[size][words];
+        final long[][] forbidden = new long[size][words];
+        runBlocks(size, (long) size * size >= PARALLEL_ARC_PAIRS, new RowBlock() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    // each node is incompatible with himself
+                    forbidden[i][i >>> 6] |= 1L << i;
+                    int a1 = nodeBonds1[i];
+                    int a2 = nodeBonds2[i];
+                    for (int j = 0; j < size; j++) {
+                        if (j == i) {
+                            continue;
+                        }
+                        int b1 = nodeBonds1[j];
+                        int b2 = nodeBonds2[j];
+
+                        // two nodes are neighbors if their adjacency
+                        // relationship in are equivalent in G1 and G2
+                        // else they are incompatible.
+                        int common1 = a1 == b1 ? -1 : commonAtom(ends1, a1, b1);
+                        boolean incompatible;
+                        if (a1 == b1 || a2 == b2) {
+                            incompatible = true;
+                        } else if (queryBonds2[nodeBonds2[Math.min(i, j)]]) {
+                            incompatible = i < j
+                                    ? !queryAdjacencyAndOrder(bonds1[a1], bonds1[b1], bonds2[a2], bonds2[b2])
+                                    : !queryAdjacencyAndOrder(bonds1[b1], bonds1[a1], bonds2[b2], bonds2[a2]);
+                        } else {
+                            int common2 = commonAtom(ends2, a2, b2);
+                            String symbol1 = common1 == -1 ? "" : symbols1[common1];
+                            String symbol2 = common2 == -1 ? "" : symbols2[common2];
+                            incompatible = symbol1 == null ? symbol2 != null : !symbol1.equals(symbol2);
+                        }
+                        if (incompatible) {
+                            forbidden[i][j >>> 6] |= 1L << j;
+                        } else if (common1 != -1) {
+                            extension[i][j >>> 6] |= 1L << j;
+                        }
                     }
                 }
             }
+        });
+
+        for (int i = 0; i < size; i++) {
+            nodes.get(i).setExtension(BitSet.valueOf(extension[i]));
+            nodes.get(i).setForbidden(BitSet.valueOf(forbidden[i]));
         }
     }
 
     /**
-     * Determines if two bonds have at least one atom in common.
-     *
-     * @param a first bondA
-     * @param b second bondA
-     * @return the symbol of the common atom or "" if the 2 bonds have no common
-     * atom
+     * Work on a block of rows [from, to).
      */
-    private static boolean hasCommonAtom(IBond a, IBond b) {
-        return a.contains(b.getAtom(0)) || a.contains(b.getAtom(1));
+    private interface RowBlock {
+
+        void run(int from, int to);
     }
 
     /**
-     * Determines if 2 bondA have 1 atom in common and returns the common
-     * symbol.
-     *
-     * @param a first bondA
-     * @param b second bondA
-     * @return the symbol of the common atom or "" if the 2 bonds have no common
-     * atom
+     * Runs the block over all rows, split into blocks on the
+     * {@link SharedPool} if asked to. On a worker of a fork/join pool, e.g.
+     * in a parallel MCSS or similarity run, the rows are run serially.
      */
-    private static String getCommonSymbol(IBond a, IBond b) {
-        String symbol = "";
+    private static void runBlocks(int rows, boolean parallel, final RowBlock block) throws CDKException {
+        int threads = parallel && !SharedPool.isWorker()
+                ? Math.min(SharedPool.getPool().getParallelism(), rows) : 1;
+        if (threads <= 1) {
+            block.run(0, rows);
+            return;
+        }
+        int blockSize = Math.max(1, (rows + 4 * threads - 1) / (4 * threads));
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int start = 0; start < rows; start += blockSize) {
+            final int from = start;
+            final int to = Math.min(rows, start + blockSize);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    block.run(from, to);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> future : SharedPool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CDKException("Interrupted while building the resolution graph");
+        } catch (ExecutionException ex) {
+            throw new CDKException("Failed to build the resolution graph", ex.getCause());
+        }
+    }
 
-        if (a.contains(b.getAtom(0))) {
-            symbol = b.getAtom(0).getSymbol();
-        } else if (a.contains(b.getAtom(1))) {
-            symbol = b.getAtom(1).getSymbol();
+    private static IBond[] bonds(IAtomContainer ac) {
+        IBond[] bonds = new IBond[ac.getBondCount()];
+        for (int i = 0; i < bonds.length; i++) {
+            bonds[i] = ac.getBond(i);
         }
+        return bonds;
+    }
+
+    private static int[][] bondEnds(IAtomContainer ac, IBond[] bonds) {
+        int[][] ends = new int[bonds.length][];
+        for (int i = 0; i < bonds.length; i++) {
+            ends[i] = new int[]{ac.getAtomNumber(bonds[i].getAtom(0)), ac.getAtomNumber(bonds[i].getAtom(1))};
+        }
+        return ends;
+    }
 
-        return symbol;
+    private static String[] symbols(IAtomContainer ac) {
+        String[] symbols = new String[ac.getAtomCount()];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = ac.getAtom(i).getSymbol();
+        }
+        return symbols;
+    }
+
+    /**
+     * Index of the atom of bond b shared with bond a, or -1; the first atom
+     * of b is tested first.
+     */
+    private static int commonAtom(int[][] ends, int a, int b) {
+        int[] bondA = ends[a];
+        int[] bondB = ends[b];
+        if (bondB[0] == bondA[0] || bondB[0] == bondA[1]) {
+            return bondB[0];
+        }
+        if (bondB[1] == bondA[0] || bondB[1] == bondA[1]) {
+            return bondB[1];
+        }
+        return -1;
     }
 
     /**
@@ -35,6 +35,8 @@ import java.util.Iterator;
 import java.util.List;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.exception.CDKException;
+import org.openscience.smsd.metrics.ICounter;
+import org.openscience.smsd.metrics.Metrics;
 
 /**
  * This class implements the Resolution Graph (CDKRGraph). The CDKRGraph is a graph based representation of the search
@@ -123,6 +125,9 @@ public class CDKRGraph {
     private boolean stop = false;
     private int nbIteration = 0;
     private BitSet graphBitSet = null;
+    private final ICounter iterations = Metrics.counter(Metrics.CDKMCS_ITERATIONS);
+    private final ICounter timeouts = Metrics.counter(Metrics.CDKMCS_TIMEOUTS);
+    private boolean timedOut = false;
     // -1 for infinite search and one min is 1
 
     /**
@@ -649,10 +654,15 @@ public class CDKRGraph {
 
     private boolean checkTimeout() {
         if (CDKMCS.getIterationManager().isMaxIteration()) {
+            if (!timedOut) {
+                timedOut = true;
+                timeouts.increment();
+            }
             CDKMCS.timeout = true;
             return true;
         }
         CDKMCS.getIterationManager().increment();
+        iterations.increment();
         return false;
     }
 }
@@ -0,0 +1,268 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.selector;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.smsd.interfaces.Algorithm;
+
+/**
+ * Linear cost table predicting the run time of each MCS engine from the
+ * {@link PairFeatures} of a pair. The engine with the lowest prediction is
+ * selected by {@link Algorithm#AUTO}. The table also holds the atom count
+ * above which {@link org.openscience.smsd.algorithm.mcsplus.GenerateCompatibilityGraph}
+ * builds the reduced compatibility graph when bonds or atom types are not
+ * matched.
+ *
+ * The shared table is read from the file named by the system property
+ * <code>smsd.costmodel</code>, else from the bundled
+ * <code>cost-model.properties</code>. A site specific table is produced by
+ * {@link CostModelCalibrator}:
+ * <pre>
+ * java org.openscience.smsd.algorithm.selector.CostModelCalibrator molecules.sdf cost-model.properties
+ * java -Dsmsd.costmodel=cost-model.properties ...
+ * </pre>
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class CostModel {
+
+    private final static ILoggingTool logger
+            = LoggingToolFactory.createLoggingTool(CostModel.class);
+    /**
+     * Name of the bundled table.
+     */
+    public static final String RESOURCE = "cost-model.properties";
+    /**
+     * System property naming a site specific table.
+     */
+    public static final String PROPERTY = "smsd.costmodel";
+    /**
+     * Engines the model chooses from.
+     */
+    public static final Algorithm[] ENGINES = {Algorithm.CDKMCS, Algorithm.MCSPlus, Algorithm.VFLibMCS};
+    private static final String COMPATIBILITY_GRAPH_ATOMS = "compatibility.graph.atoms";
+    private static CostModel defaultModel;
+    private final Map<Algorithm, double[]> coefficients;
+    private final int compatibilityGraphAtoms;
+
+    /**
+     * @param coefficients {@link PairFeatures#SIZE} coefficients per engine
+     * @param compatibilityGraphAtoms atom count above which the reduced
+     * compatibility graph is used
+     */
+    public CostModel(Map<Algorithm, double[]> coefficients, int compatibilityGraphAtoms) {
+        this.coefficients = new EnumMap<>(Algorithm.class);
+        for (Algorithm engine : ENGINES) {
+            double[] values = coefficients.get(engine);
+            if (values == null || values.length != PairFeatures.SIZE) {
+                throw new IllegalArgumentException("Expected " + PairFeatures.SIZE
+                        + " coefficients for " + engine);
+            }
+            this.coefficients.put(engine, values.clone());
+        }
+        this.compatibilityGraphAtoms = compatibilityGraphAtoms;
+    }
+
+    /**
+     * @return the shared cost model
+     */
+    public static synchronized CostModel getDefault() {
+        if (defaultModel == null) {
+            defaultModel = loadDefault();
+        }
+        return defaultModel;
+    }
+
+    /**
+     * Replaces the shared cost model.
+     *
+     * @param model cost model, or null to reload the configured one
+     */
+    public static synchronized void setDefault(CostModel model) {
+        defaultModel = model;
+    }
+
+    private static CostModel loadDefault() {
+        String path = System.getProperty(PROPERTY);
+        if (path != null) {
+            try {
+                return load(new File(path));
+            } catch (IOException | IllegalArgumentException ex) {
+                logger.warn("Unable to read cost model " + path + ", using the bundled one: " + ex.getMessage());
+            }
+        }
+        try (InputStream in = CostModel.class.getResourceAsStream(RESOURCE)) {
+            if (in != null) {
+                return load(in);
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            logger.warn("Unable to read the bundled cost model: " + ex.getMessage());
+        }
+        return builtIn();
+    }
+
+    /*
+     * Used when the bundled table is missing from the class path; mirrors the
+     * fixed rule of the default algorithm, CDKMCS for small pairs and the VF
+     * engine once the bond product grows.
+     */
+    private static CostModel builtIn() {
+        Map<Algorithm, double[]> values = new EnumMap<>(Algorithm.class);
+        values.put(Algorithm.CDKMCS, new double[]{1.0, 0.0, 0.004, 0.5, 0.05, 0.0});
+        values.put(Algorithm.MCSPlus, new double[]{2.0, 0.01, 0.002, 0.5, 0.05, 0.0});
+        values.put(Algorithm.VFLibMCS, new double[]{5.0, 0.002, 0.0005, 0.5, 0.1, 0.0});
+        return new CostModel(values, 30);
+    }
+
+    /**
+     * Reads a cost model.
+     *
+     * @param file properties file written by {@link #store(File)}
+     * @return cost model
+     * @throws IOException
+     */
+    public static CostModel load(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return load(in);
+        }
+    }
+
+    static CostModel load(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        Map<Algorithm, double[]> values = new EnumMap<>(Algorithm.class);
+        for (Algorithm engine : ENGINES) {
+            String line = properties.getProperty(engine.name());
+            if (line == null) {
+                throw new IOException("No coefficients for " + engine.name());
+            }
+            String[] fields = line.split(",");
+            double[] weights = new double[fields.length];
+            try {
+                for (int i = 0; i < fields.length; i++) {
+                    weights[i] = Double.parseDouble(fields[i].trim());
+                }
+            } catch (NumberFormatException ex) {
+                throw new IOException("Bad coefficients for " + engine.name() + ": " + line);
+            }
+            values.put(engine, weights);
+        }
+        int atoms;
+        try {
+            atoms = Integer.parseInt(properties.getProperty(COMPATIBILITY_GRAPH_ATOMS, "30").trim());
+        } catch (NumberFormatException ex) {
+            throw new IOException("Bad " + COMPATIBILITY_GRAPH_ATOMS);
+        }
+        return new CostModel(values, atoms);
+    }
+
+    /**
+     * Writes the cost model.
+     *
+     * @param file properties file
+     * @throws IOException
+     */
+    public void store(File file) throws IOException {
+        Properties properties = new Properties();
+        for (Algorithm engine : ENGINES) {
+            StringBuilder line = new StringBuilder();
+            for (double weight : coefficients.get(engine)) {
+                if (line.length() > 0) {
+                    line.append(',');
+                }
+                line.append(weight);
+            }
+            properties.setProperty(engine.name(), line.toString());
+        }
+        properties.setProperty(COMPATIBILITY_GRAPH_ATOMS, String.valueOf(compatibilityGraphAtoms));
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "SMSD engine cost model: constant, product graph, "
+                    + "bond product, ring systems, symmetric atoms, label diversity");
+        }
+    }
+
+    /**
+     * @param engine one of {@link #ENGINES}
+     * @param features pair features
+     * @return predicted cost in milliseconds, never negative
+     */
+    public double predict(Algorithm engine, PairFeatures features) {
+        double[] weights = coefficients.get(engine);
+        if (weights == null) {
+            throw new IllegalArgumentException("No cost for " + engine);
+        }
+        double[] vector = features.toVector();
+        double cost = 0.0;
+        for (int i = 0; i < vector.length; i++) {
+            cost += weights[i] * vector[i];
+        }
+        return Math.max(0.0, cost);
+    }
+
+    /**
+     * @param features pair features
+     * @return engine with the lowest predicted cost, the first of
+     * {@link #ENGINES} on ties
+     */
+    public Algorithm select(PairFeatures features) {
+        Algorithm best = ENGINES[0];
+        double bestCost = predict(best, features);
+        for (int i = 1; i < ENGINES.length; i++) {
+            double cost = predict(ENGINES[i], features);
+            if (cost < bestCost) {
+                best = ENGINES[i];
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param engine one of {@link #ENGINES}
+     * @return copy of the coefficients of the engine
+     */
+    public double[] getCoefficients(Algorithm engine) {
+        double[] weights = coefficients.get(engine);
+        return weights == null ? null : weights.clone();
+    }
+
+    /**
+     * @return atom count of both molecules above which the reduced
+     * compatibility graph is built when bonds or atom types are not matched
+     */
+    public int getCompatibilityGraphAtoms() {
+        return compatibilityGraphAtoms;
+    }
+}
@@ -0,0 +1,353 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.selector;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.io.iterator.IteratingSDFReader;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.smsd.algorithm.mcsplus.GenerateCompatibilityGraph;
+import org.openscience.smsd.algorithm.mcsplus.MCSPlusHandler;
+import org.openscience.smsd.algorithm.rgraph.CDKMCSHandler;
+import org.openscience.smsd.algorithm.vflib.VF2MCS;
+import org.openscience.smsd.interfaces.Algorithm;
+import org.openscience.smsd.tools.ExtAtomContainerManipulator;
+
+/**
+ * Calibrates a {@link CostModel} on the local hardware. Each measured pair is
+ * run through every engine of {@link CostModel#ENGINES}; the median run time
+ * is regressed on the {@link PairFeatures} of the pair (least squares). When
+ * bonds or atom types are not matched the full and the reduced compatibility
+ * graphs are timed as well and the atom count switching between them is set
+ * to the value with the lowest total time.
+ *
+ * As a tool:
+ * <pre>
+ * java org.openscience.smsd.algorithm.selector.CostModelCalibrator
+ *      [-b] [-r] [-t] molecules.sdf|molecules.smi [cost-model.properties] [pairs] [repeats]
+ * </pre>
+ * -b, -r and -t match bond types, rings and atom types. All pairs of the
+ * input molecules are measured up to the given number (default 200).
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class CostModelCalibrator {
+
+    private final static ILoggingTool logger
+            = LoggingToolFactory.createLoggingTool(CostModelCalibrator.class);
+    private final boolean matchBonds;
+    private final boolean matchRings;
+    private final boolean matchAtomType;
+    private final int repeats;
+    private final List<double[]> features;
+    private final Map<Algorithm, List<Double>> timings;
+    private final List<int[]> graphSizes;
+    private final List<double[]> graphTimings;
+
+    /**
+     * @param matchBonds
+     * @param matchRings
+     * @param matchAtomType
+     * @param repeats runs per engine and pair, the median is kept
+     */
+    public CostModelCalibrator(boolean matchBonds, boolean matchRings, boolean matchAtomType, int repeats) {
+        this.matchBonds = matchBonds;
+        this.matchRings = matchRings;
+        this.matchAtomType = matchAtomType;
+        this.repeats = Math.max(1, repeats);
+        this.features = new ArrayList<>();
+        this.timings = new EnumMap<>(Algorithm.class);
+        for (Algorithm engine : CostModel.ENGINES) {
+            timings.put(engine, new ArrayList<Double>());
+        }
+        this.graphSizes = new ArrayList<>();
+        this.graphTimings = new ArrayList<>();
+    }
+
+    /**
+     * Times every engine on a pair.
+     *
+     * @param source first molecule
+     * @param target second molecule
+     * @throws CDKException
+     * @throws CloneNotSupportedException
+     * @throws IOException
+     */
+    public void measure(IAtomContainer source, IAtomContainer target)
+            throws CDKException, CloneNotSupportedException, IOException {
+        features.add(new PairFeatures(source, target, matchAtomType).toVector());
+        for (Algorithm engine : CostModel.ENGINES) {
+            double[] runs = new double[repeats];
+            for (int i = 0; i < repeats; i++) {
+                IAtomContainer s = source.clone();
+                IAtomContainer t = target.clone();
+                long start = System.nanoTime();
+                run(engine, s, t);
+                runs[i] = (System.nanoTime() - start) / 1.0e6;
+            }
+            timings.get(engine).add(median(runs));
+        }
+
+        if (!matchBonds || !matchAtomType) {
+            double[] full = new double[repeats];
+            double[] reduced = new double[repeats];
+            for (int i = 0; i < repeats; i++) {
+                long start = System.nanoTime();
+                new GenerateCompatibilityGraph(source.clone(), target.clone(),
+                        matchBonds, matchRings, matchAtomType, Integer.MAX_VALUE);
+                full[i] = (System.nanoTime() - start) / 1.0e6;
+                start = System.nanoTime();
+                new GenerateCompatibilityGraph(source.clone(), target.clone(),
+                        matchBonds, matchRings, matchAtomType, -1);
+                reduced[i] = (System.nanoTime() - start) / 1.0e6;
+            }
+            graphSizes.add(new int[]{Math.min(source.getAtomCount(), target.getAtomCount())});
+            graphTimings.add(new double[]{median(full), median(reduced)});
+        }
+    }
+
+    private void run(Algorithm engine, IAtomContainer source, IAtomContainer target) {
+        switch (engine) {
+            case CDKMCS:
+                new CDKMCSHandler(source, target, matchBonds, matchRings, matchAtomType);
+                break;
+            case MCSPlus:
+                new MCSPlusHandler(source, target, matchBonds, matchRings, matchAtomType);
+                break;
+            default:
+                new VF2MCS(source, target, matchBonds, matchRings, matchAtomType);
+                break;
+        }
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /**
+     * @return number of measured pairs
+     */
+    public int getSampleCount() {
+        return features.size();
+    }
+
+    /**
+     * Fits the cost model to the measured pairs. Engines with fewer pairs
+     * than coefficients keep the coefficients of the prior model, as does the
+     * compatibility graph switch if no graph was timed.
+     *
+     * @param prior model supplying the values that cannot be fitted
+     * @return calibrated model
+     */
+    public CostModel fit(CostModel prior) {
+        Map<Algorithm, double[]> coefficients = new EnumMap<>(Algorithm.class);
+        for (Algorithm engine : CostModel.ENGINES) {
+            if (features.size() < PairFeatures.SIZE) {
+                logger.warn("Too few pairs to calibrate " + engine + ", keeping its costs");
+                coefficients.put(engine, prior.getCoefficients(engine));
+            } else {
+                coefficients.put(engine, leastSquares(features, timings.get(engine)));
+            }
+        }
+        return new CostModel(coefficients, fitCompatibilityGraphAtoms(prior.getCompatibilityGraphAtoms()));
+    }
+
+    /*
+     * Atom count minimising the total graph construction time when the
+     * reduced graph is built for pairs whose smaller molecule is above it
+     */
+    private int fitCompatibilityGraphAtoms(int prior) {
+        int best = prior;
+        double bestTime = graphTime(prior);
+        for (int[] size : graphSizes) {
+            double time = graphTime(size[0]);
+            if (time < bestTime) {
+                best = size[0];
+                bestTime = time;
+            }
+        }
+        return best;
+    }
+
+    private double graphTime(int atoms) {
+        double total = 0.0;
+        for (int i = 0; i < graphSizes.size(); i++) {
+            total += graphSizes.get(i)[0] > atoms ? graphTimings.get(i)[1] : graphTimings.get(i)[0];
+        }
+        return total;
+    }
+
+    /*
+     * Ridge regularised least squares on column scaled features, solved by
+     * Gaussian elimination of the normal equations
+     */
+    static double[] leastSquares(List<double[]> rows, List<Double> values) {
+        int n = PairFeatures.SIZE;
+        double[] scale = new double[n];
+        Arrays.fill(scale, 1.0);
+        for (double[] row : rows) {
+            for (int j = 0; j < n; j++) {
+                scale[j] = Math.max(scale[j], Math.abs(row[j]));
+            }
+        }
+        double[][] a = new double[n][n + 1];
+        for (int k = 0; k < rows.size(); k++) {
+            double[] row = rows.get(k);
+            for (int i = 0; i < n; i++) {
+                double xi = row[i] / scale[i];
+                for (int j = 0; j < n; j++) {
+                    a[i][j] += xi * row[j] / scale[j];
+                }
+                a[i][n] += xi * values.get(k);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            a[i][i] += 1e-6 * rows.size();
+        }
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int r = col + 1; r < n; r++) {
+                if (Math.abs(a[r][col]) > Math.abs(a[pivot][col])) {
+                    pivot = r;
+                }
+            }
+            double[] swap = a[col];
+            a[col] = a[pivot];
+            a[pivot] = swap;
+            for (int r = col + 1; r < n; r++) {
+                double factor = a[r][col] / a[col][col];
+                for (int c = col; c <= n; c++) {
+                    a[r][c] -= factor * a[col][c];
+                }
+            }
+        }
+        double[] weights = new double[n];
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = a[i][n];
+            for (int j = i + 1; j < n; j++) {
+                sum -= a[i][j] * weights[j];
+            }
+            weights[i] = sum / a[i][i];
+        }
+        for (int i = 0; i < n; i++) {
+            weights[i] /= scale[i];
+        }
+        return weights;
+    }
+
+    private static List<IAtomContainer> read(File file) throws IOException, CDKException {
+        List<IAtomContainer> molecules = new ArrayList<>();
+        if (file.getName().toLowerCase().endsWith(".smi")) {
+            SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        molecules.add(prepare(sp.parseSmiles(line.split("\\s+")[0])));
+                    }
+                }
+            }
+        } else {
+            try (IteratingSDFReader reader = new IteratingSDFReader(
+                    new FileReader(file), DefaultChemObjectBuilder.getInstance())) {
+                while (reader.hasNext()) {
+                    molecules.add(prepare(reader.next()));
+                }
+            }
+        }
+        return molecules;
+    }
+
+    private static IAtomContainer prepare(IAtomContainer molecule) throws CDKException {
+        IAtomContainer prepared = ExtAtomContainerManipulator.removeHydrogens(molecule);
+        ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(prepared);
+        ExtAtomContainerManipulator.aromatizeMolecule(prepared);
+        return prepared;
+    }
+
+    /**
+     * @param args [-b] [-r] [-t] input [output] [pairs] [repeats]
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        boolean bonds = false;
+        boolean rings = false;
+        boolean atomTypes = false;
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            switch (arg) {
+                case "-b":
+                    bonds = true;
+                    break;
+                case "-r":
+                    rings = true;
+                    break;
+                case "-t":
+                    atomTypes = true;
+                    break;
+                default:
+                    positional.add(arg);
+            }
+        }
+        if (positional.isEmpty()) {
+            System.err.println("Usage: CostModelCalibrator [-b] [-r] [-t] molecules.sdf|molecules.smi"
+                    + " [" + CostModel.RESOURCE + "] [pairs] [repeats]");
+            System.exit(1);
+        }
+        File output = new File(positional.size() > 1 ? positional.get(1) : CostModel.RESOURCE);
+        int pairs = positional.size() > 2 ? Integer.parseInt(positional.get(2)) : 200;
+        int repeats = positional.size() > 3 ? Integer.parseInt(positional.get(3)) : 3;
+
+        List<IAtomContainer> molecules = read(new File(positional.get(0)));
+        CostModelCalibrator calibrator = new CostModelCalibrator(bonds, rings, atomTypes, repeats);
+        outer:
+        for (int i = 0; i < molecules.size(); i++) {
+            for (int j = i + 1; j < molecules.size(); j++) {
+                if (calibrator.getSampleCount() >= pairs) {
+                    break outer;
+                }
+                calibrator.measure(molecules.get(i), molecules.get(j));
+            }
+        }
+        CostModel model = calibrator.fit(CostModel.getDefault());
+        model.store(output);
+        System.out.println("Calibrated on " + calibrator.getSampleCount() + " pairs, written to " + output);
+    }
+}
@@ -0,0 +1,197 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.selector;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.ringsearch.RingSearch;
+import org.openscience.smsd.tools.CanonicalLabeller;
+
+/**
+ * Cheap graph features of a molecule pair used by the {@link CostModel} to
+ * predict the run time of the MCS engines:
+ * <ol start="0">
+ * <li>constant 1 (fixed cost);</li>
+ * <li>size of the product graph |V1 x V2| after label filtering, i.e. the
+ * number of atom pairs with equal labels;</li>
+ * <li>product of the bond counts, the size of the bond product graph;</li>
+ * <li>number of ring systems in both molecules;</li>
+ * <li>number of atoms that are symmetric to an atom with a lower index, in
+ * both molecules (atoms minus symmetry classes);</li>
+ * <li>label diversity: distinct atom labels per atom, over both molecules.</li>
+ * </ol>
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class PairFeatures {
+
+    /**
+     * Number of entries in {@link #toVector()}.
+     */
+    public static final int SIZE = 6;
+    private final int sourceAtomCount;
+    private final int targetAtomCount;
+    private final int sourceBondCount;
+    private final int targetBondCount;
+    private final int ringSystems;
+    private final int symmetricAtoms;
+    private final long productSize;
+    private final double labelDiversity;
+
+    /**
+     * @param source first molecule
+     * @param target second molecule
+     * @param matchAtomType true if atoms are labelled by their atom type
+     */
+    public PairFeatures(IAtomContainer source, IAtomContainer target, boolean matchAtomType) {
+        Map<String, Integer> sourceLabels = labels(source, matchAtomType);
+        Map<String, Integer> targetLabels = labels(target, matchAtomType);
+        this.sourceAtomCount = source.getAtomCount();
+        this.targetAtomCount = target.getAtomCount();
+        this.sourceBondCount = source.getBondCount();
+        this.targetBondCount = target.getBondCount();
+        this.ringSystems = ringSystems(source) + ringSystems(target);
+        this.symmetricAtoms = symmetricAtoms(source) + symmetricAtoms(target);
+
+        long product = 0;
+        Map<String, Integer> distinct = new HashMap<>(sourceLabels);
+        for (Map.Entry<String, Integer> entry : targetLabels.entrySet()) {
+            Integer count = sourceLabels.get(entry.getKey());
+            if (count != null) {
+                product += (long) count * entry.getValue();
+            }
+            distinct.put(entry.getKey(), entry.getValue());
+        }
+        this.productSize = product;
+        int atoms = sourceAtomCount + targetAtomCount;
+        this.labelDiversity = atoms == 0 ? 0.0 : (double) distinct.size() / atoms;
+    }
+
+    private static Map<String, Integer> labels(IAtomContainer molecule, boolean matchAtomType) {
+        Map<String, Integer> labels = new HashMap<>();
+        for (IAtom atom : molecule.atoms()) {
+            String label = atom.getSymbol() == null ? "*" : atom.getSymbol();
+            if (matchAtomType && atom.getAtomTypeName() != null) {
+                label = atom.getAtomTypeName();
+            }
+            Integer count = labels.get(label);
+            labels.put(label, count == null ? 1 : count + 1);
+        }
+        return labels;
+    }
+
+    private static int ringSystems(IAtomContainer molecule) {
+        if (molecule.getBondCount() < 3) {
+            return 0;
+        }
+        RingSearch search = new RingSearch(molecule);
+        return search.fusedRingFragments().size() + search.isolatedRingFragments().size();
+    }
+
+    private static int symmetricAtoms(IAtomContainer molecule) {
+        int[] classes = new CanonicalLabeller(molecule).getSymmetryClasses();
+        boolean[] seen = new boolean[classes.length];
+        int distinct = 0;
+        for (int symmetryClass : classes) {
+            if (!seen[symmetryClass]) {
+                seen[symmetryClass] = true;
+                distinct++;
+            }
+        }
+        return classes.length - distinct;
+    }
+
+    /**
+     * @return the features in the order of the cost model coefficients
+     */
+    public double[] toVector() {
+        return new double[]{
+            1.0,
+            productSize,
+            (double) sourceBondCount * targetBondCount,
+            ringSystems,
+            symmetricAtoms,
+            labelDiversity
+        };
+    }
+
+    /**
+     * @return atoms in the first molecule
+     */
+    public int getSourceAtomCount() {
+        return sourceAtomCount;
+    }
+
+    /**
+     * @return atoms in the second molecule
+     */
+    public int getTargetAtomCount() {
+        return targetAtomCount;
+    }
+
+    /**
+     * @return bonds in the first molecule
+     */
+    public int getSourceBondCount() {
+        return sourceBondCount;
+    }
+
+    /**
+     * @return bonds in the second molecule
+     */
+    public int getTargetBondCount() {
+        return targetBondCount;
+    }
+
+    /**
+     * @return ring systems in both molecules
+     */
+    public int getRingSystems() {
+        return ringSystems;
+    }
+
+    /**
+     * @return atoms minus symmetry classes, summed over both molecules
+     */
+    public int getSymmetricAtoms() {
+        return symmetricAtoms;
+    }
+
+    /**
+     * @return number of atom pairs with equal labels
+     */
+    public long getProductSize() {
+        return productSize;
+    }
+
+    /**
+     * @return distinct atom labels per atom over both molecules
+     */
+    public double getLabelDiversity() {
+        return labelDiversity;
+    }
+}
@@ -40,6 +40,7 @@ import org.openscience.smsd.AtomAtomMapping;
 import org.openscience.smsd.algorithm.mcgregor.McGregor;
 import org.openscience.smsd.algorithm.vflib.interfaces.INode;
 import org.openscience.smsd.algorithm.vflib.interfaces.IQuery;
+import org.openscience.smsd.tools.SearchMonitor;
 
 /**
  * This class should be used to find MCS between source graph and target graph.
@@ -161,6 +162,7 @@ public class BaseMCS {
                 }
             }
             mappings = mgit.getMappings();
+            SearchMonitor.reportLargest(SearchMonitor.MCGREGOR, mappings, !ROPFlag);
         }
 //        System.out.println("\nSol count after MG " + mappings.size());
         setMcGregorMappings(ROPFlag, mappings);
@@ -216,6 +218,7 @@ public class BaseMCS {
                     && !hasClique(indexindexMapping, getLocalMCSSolution())) {
                 getLocalAtomMCSSolution().add(atomatomMapping);
                 getLocalMCSSolution().add(indexindexMapping);
+                SearchMonitor.report(SearchMonitor.VF, indexindexMapping);
             }
         }
     }
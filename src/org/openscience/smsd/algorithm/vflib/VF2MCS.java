@@ -50,6 +50,8 @@ import org.openscience.smsd.algorithm.vflib.query.QueryCompiler;
 import org.openscience.smsd.algorithm.vflib.seeds.MCSSeedGenerator;
 import org.openscience.smsd.interfaces.Algorithm;
 import org.openscience.smsd.interfaces.IResults;
+import org.openscience.smsd.metrics.Metrics;
+import org.openscience.smsd.metrics.PhaseEvent;
 
 /**
  * This class should be used to find MCS between source graph and target graph.
@@ -84,8 +86,26 @@ public final class VF2MCS extends BaseMCS implements IResults {
      * @param matchAtomType
      */
     public VF2MCS(IAtomContainer source, IAtomContainer target, boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType) {
+        this(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType, false);
+    }
+
+    /**
+     * Constructor for an extended VF Algorithm for the MCS search
+     *
+     * @param source
+     * @param target
+     * @param shouldMatchBonds bond match
+     * @param shouldMatchRings ring match
+     * @param matchAtomType
+     * @param breakSymmetry generate the clique seeds from one node per orbit
+     * of the compatibility graph, see {@link MCSSeedGenerator}
+     */
+    public VF2MCS(IAtomContainer source, IAtomContainer target, boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType,
+            boolean breakSymmetry) {
         super(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType);
+        long startTimeVF = System.nanoTime();
         boolean timeoutVF = searchVFMappings();
+        Metrics.timer(Metrics.VF2MCS_VF_TIME).record(System.nanoTime() - startTimeVF);
 
         if (DEBUG) {
             System.out.println("time for VF search " + timeoutVF);
@@ -182,7 +202,8 @@ public final class VF2MCS extends BaseMCS implements IResults {
             if (DEBUG) {
                 System.out.println(" CALLING MCSPLUS ");
             }
-            MCSSeedGenerator mcsSeedGeneratorKoch = new MCSSeedGenerator(source, targetClone, isBondMatchFlag(), isMatchRings(), matchAtomType, Algorithm.MCSPlus);
+            MCSSeedGenerator mcsSeedGeneratorKoch = new MCSSeedGenerator(source, targetClone, isBondMatchFlag(), isMatchRings(), matchAtomType, Algorithm.MCSPlus,
+                    breakSymmetry);
             cs.submit(mcsSeedGeneratorKoch);
             jobCounter++;
 
@@ -218,6 +239,7 @@ public final class VF2MCS extends BaseMCS implements IResults {
             System.gc();
 
             long stopTimeSeeds = System.nanoTime();
+            Metrics.timer(Metrics.VF2MCS_SEEDS_TIME).record(stopTimeSeeds - startTimeSeeds);
             if (DEBUG) {
                 System.out.println("done seeds " + (stopTimeSeeds - startTimeSeeds));
             }
@@ -272,11 +294,13 @@ public final class VF2MCS extends BaseMCS implements IResults {
             /*
              * Extend the seeds using McGregor
              */
+            long startTimeExtension = System.nanoTime();
             try {
                 extendCliquesWithMcGregor(cleanedMCSSeeds);
             } catch (CDKException | IOException ex) {
                 logger.error(Level.SEVERE, null, ex);
             }
+            Metrics.timer(Metrics.VF2MCS_EXTENSION_TIME).record(System.nanoTime() - startTimeExtension);
 
             /*
              * Clear previous seeds
@@ -348,7 +372,9 @@ public final class VF2MCS extends BaseMCS implements IResults {
      */
     public VF2MCS(IQueryAtomContainer source, IAtomContainer target) {
         super((IQueryAtomContainer) source, target, true, true, true);
+        long startTimeVF = System.nanoTime();
         boolean timeoutVF = searchVFMappings();
+        Metrics.timer(Metrics.VF2MCS_VF_TIME).record(System.nanoTime() - startTimeVF);
 
 //        System.out.println("time for VF search " + timeoutVF);
 
@@ -449,6 +475,7 @@ public final class VF2MCS extends BaseMCS implements IResults {
             System.gc();
 
             long stopTimeSeeds = System.nanoTime();
+            Metrics.timer(Metrics.VF2MCS_SEEDS_TIME).record(stopTimeSeeds - startTimeSeeds);
 //            System.out.println("done seeds " + (stopTimeSeeds - startTimeSeeds));
             /*
              * Store largest MCS seeds generated from MCSPlus and UIT
@@ -488,11 +515,13 @@ public final class VF2MCS extends BaseMCS implements IResults {
             /*
              * Extend the seeds using McGregor
              */
+            long startTimeExtension = System.nanoTime();
             try {
                 extendCliquesWithMcGregor(cleanedMCSSeeds);
             } catch (CDKException | IOException ex) {
                 logger.error(Level.SEVERE, null, ex);
             }
+            Metrics.timer(Metrics.VF2MCS_EXTENSION_TIME).record(System.nanoTime() - startTimeExtension);
 
             /*
              * Clear previous seeds
@@ -562,6 +591,7 @@ public final class VF2MCS extends BaseMCS implements IResults {
      */
     protected synchronized boolean searchVFMappings() {
 //        System.out.println("searchVFMappings ");
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.VF2_SEARCH);
         IQuery queryCompiler;
         IMapper mapper;
 
@@ -597,6 +627,9 @@ public final class VF2MCS extends BaseMCS implements IResults {
             }
             setVFMappings(false, queryCompiler);
         }
+        if (event != null) {
+            event.end(source.getAtomCount(), target.getAtomCount(), mapper.isTimeout());
+        }
         return mapper.isTimeout();
     }
 
@@ -42,6 +42,7 @@ import org.openscience.smsd.algorithm.vflib.map.VFMapper;
 import org.openscience.smsd.algorithm.vflib.query.QueryCompiler;
 import org.openscience.smsd.helper.MoleculeInitializer;
 import org.openscience.smsd.interfaces.IResults;
+import org.openscience.smsd.metrics.PhaseEvent;
 
 /**
  * This class should be used to find MCS between source graph and target graph.
@@ -206,6 +207,7 @@ public class VF2Sub implements IResults {
      */
     private synchronized boolean searchVFMappings() {
 //        System.out.println("searchVFMappings ");
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.VF2_SEARCH);
         IQuery queryCompiler;
         IMapper mapper = null;
 
@@ -236,7 +238,11 @@ public class VF2Sub implements IResults {
 //        System.out.println("Sol size " + (vfLibSolutions.iterator().hasNext() ? vfLibSolutions.iterator().next().size() : 0));
 //        System.out.println("MCSSize " + bestHitSize);
 //        System.out.println("After Sol count " + allMCSCopy.size());
-        return mapper != null ? mapper.isTimeout() : true;
+        boolean timeout = mapper != null ? mapper.isTimeout() : true;
+        if (event != null) {
+            event.end(source.getAtomCount(), target.getAtomCount(), timeout);
+        }
+        return timeout;
     }
 
     private synchronized void searchMcGregorMapping() throws CDKException, IOException {
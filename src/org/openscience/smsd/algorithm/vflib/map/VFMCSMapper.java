@@ -61,6 +61,8 @@ import org.openscience.smsd.algorithm.vflib.interfaces.INode;
 import org.openscience.smsd.algorithm.vflib.interfaces.IQuery;
 import org.openscience.smsd.algorithm.vflib.interfaces.IState;
 import org.openscience.smsd.algorithm.vflib.query.QueryCompiler;
+import org.openscience.smsd.metrics.ICounter;
+import org.openscience.smsd.metrics.Metrics;
 import org.openscience.smsd.tools.IterationManager;
 
 /**
@@ -75,6 +77,8 @@ import org.openscience.smsd.tools.IterationManager;
 public class VFMCSMapper implements IMapper {
 
     private boolean timeout = false;
+    private final ICounter iterations = Metrics.counter(Metrics.VFLIB_ITERATIONS);
+    private final ICounter timeouts = Metrics.counter(Metrics.VFLIB_TIMEOUTS);
     private final IQuery query;
     private final List<Map<INode, IAtom>> maps;
     private IterationManager iterationManager = null;
@@ -111,11 +115,15 @@ public class VFMCSMapper implements IMapper {
 
     private boolean checkTimeout() {
         if (getIterationManager().isMaxIteration()) {
+            if (!this.timeout) {
+                timeouts.increment();
+            }
             this.timeout = true;
 //            System.out.println("Max VF MCS iterations " + getIterationManager().getCounter());
             return isTimeout();
         }
         getIterationManager().increment();
+        iterations.increment();
         return false;
     }
 
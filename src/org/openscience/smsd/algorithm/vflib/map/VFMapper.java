@@ -61,6 +61,8 @@ import org.openscience.smsd.algorithm.vflib.interfaces.INode;
 import org.openscience.smsd.algorithm.vflib.interfaces.IQuery;
 import org.openscience.smsd.algorithm.vflib.interfaces.IState;
 import org.openscience.smsd.algorithm.vflib.query.QueryCompiler;
+import org.openscience.smsd.metrics.ICounter;
+import org.openscience.smsd.metrics.Metrics;
 import org.openscience.smsd.tools.IterationManager;
 
 /**
@@ -78,6 +80,8 @@ public class VFMapper implements IMapper {
     private final List<Map<INode, IAtom>> maps;
     private IterationManager iterationManager = null;
     private boolean timeout = false;
+    private final ICounter iterations = Metrics.counter(Metrics.VFLIB_ITERATIONS);
+    private final ICounter timeouts = Metrics.counter(Metrics.VFLIB_TIMEOUTS);
 
     /**
      *
@@ -110,11 +114,15 @@ public class VFMapper implements IMapper {
 
     private boolean checkTimeout() {
         if (getIterationManager().isMaxIteration()) {
+            if (!this.timeout) {
+                timeouts.increment();
+            }
             this.timeout = true;
 //            System.out.println("VF SUB iterations " + getIterationManager().getCounter());
             return true;
         }
         getIterationManager().increment();
+        iterations.increment();
         return false;
     }
 
@@ -35,11 +35,14 @@ import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.smsd.AtomAtomMapping;
 import org.openscience.smsd.algorithm.mcsplus.BKKCKCF;
+import org.openscience.smsd.algorithm.mcsplus.CompatibilityGraphSymmetry;
 import org.openscience.smsd.algorithm.mcsplus.GenerateCompatibilityGraph;
 import org.openscience.smsd.algorithm.rgraph.CDKRMapHandler;
 import org.openscience.smsd.algorithm.vflib.Map1ValueComparator;
 import org.openscience.smsd.algorithm.vflib.SortOrder;
 import org.openscience.smsd.interfaces.Algorithm;
+import org.openscience.smsd.metrics.PhaseEvent;
+import org.openscience.smsd.tools.SearchMonitor;
 
 /**
  * This class should be used to find MCS between source graph and target graph.
@@ -50,6 +53,11 @@ import org.openscience.smsd.interfaces.Algorithm;
  * using McGregor {@link org.openscience.cdk.smsd.algorithm.mcgregor.McGregor}
  * algorithm where ever required.
  *
+ * With symmetry breaking the clique seeds are enumerated from one node per
+ * orbit of the compatibility graph (see {@link CompatibilityGraphSymmetry}),
+ * so seeds that differ only by a symmetry of the molecules are mostly not
+ * generated. The UIT seeds are not affected.
+ *
  * @cdk.module smsd
  * @cdk.githash
  *
@@ -66,6 +74,7 @@ public class MCSSeedGenerator implements Callable<List<AtomAtomMapping>> {
             = LoggingToolFactory.createLoggingTool(MCSSeedGenerator.class);
     private final boolean bondMatch;
     private final boolean matchAtomType;
+    private final boolean breakSymmetry;
 
     /**
      *
@@ -77,6 +86,22 @@ public class MCSSeedGenerator implements Callable<List<AtomAtomMapping>> {
      * @param algorithm
      */
     public MCSSeedGenerator(IAtomContainer source, IAtomContainer target, boolean bondMatch, boolean ringMatch, boolean matchAtomType, Algorithm algorithm) {
+        this(source, target, bondMatch, ringMatch, matchAtomType, algorithm, false);
+    }
+
+    /**
+     *
+     * @param source
+     * @param target
+     * @param bondMatch
+     * @param ringMatch
+     * @param matchAtomType
+     * @param algorithm
+     * @param breakSymmetry start the clique enumeration from one node per
+     * orbit of the compatibility graph
+     */
+    public MCSSeedGenerator(IAtomContainer source, IAtomContainer target, boolean bondMatch, boolean ringMatch, boolean matchAtomType, Algorithm algorithm,
+            boolean breakSymmetry) {
         this.source = source;
         this.target = target;
         this.allCliqueAtomMCS = new ArrayList<>();
@@ -84,6 +109,7 @@ public class MCSSeedGenerator implements Callable<List<AtomAtomMapping>> {
         this.algorithm = algorithm;
         this.matchAtomType = matchAtomType;
         this.bondMatch = bondMatch;
+        this.breakSymmetry = breakSymmetry;
     }
 
     public MCSSeedGenerator(IQueryAtomContainer source, IAtomContainer target, Algorithm algorithm) {
@@ -94,6 +120,7 @@ public class MCSSeedGenerator implements Callable<List<AtomAtomMapping>> {
         this.algorithm = algorithm;
         this.matchAtomType = true;
         this.bondMatch = true;
+        this.breakSymmetry = false;
     }
 
     @Override
@@ -137,7 +164,14 @@ public class MCSSeedGenerator implements Callable<List<AtomAtomMapping>> {
         List<Integer> comp_graph_nodes = gcg.getCompGraphNodes();
         List<Integer> cEdges = gcg.getCEgdes();
         List<Integer> dEdges = gcg.getDEgdes();
-        BKKCKCF init = new BKKCKCF(comp_graph_nodes, cEdges, dEdges);
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.CLIQUE_SEARCH);
+        int[] nodeOrbits = breakSymmetry
+                ? CompatibilityGraphSymmetry.nodeOrbits(ac1, ac2, comp_graph_nodes, cEdges, dEdges)
+                : null;
+        BKKCKCF init = new BKKCKCF(comp_graph_nodes, cEdges, dEdges, flagExchange, nodeOrbits);
+        if (event != null) {
+            event.end(ac1.getAtomCount(), ac2.getAtomCount(), SearchMonitor.isCurrentCancelled());
+        }
         Stack<List<Integer>> maxCliqueSet = new Stack<>();
         maxCliqueSet.addAll(init.getMaxCliqueSet());
         Collections.sort(maxCliqueSet, new Comparator<List<Integer>>() {
@@ -176,6 +210,7 @@ public class MCSSeedGenerator implements Callable<List<AtomAtomMapping>> {
 
             if (!atomatomMapping.isEmpty()) {
                 allCliqueAtomMCS.add(atomatomMapping);
+                SearchMonitor.report(SearchMonitor.SEED, atomatomMapping);
             }
             maxCliqueSet.pop();
         }
@@ -242,6 +277,7 @@ public class MCSSeedGenerator implements Callable<List<AtomAtomMapping>> {
 
             if (!atomatomMapping.isEmpty()) {
                 allCliqueAtomMCS.add(atomatomMapping);
+                SearchMonitor.report(SearchMonitor.SEED, atomatomMapping);
             }
         }
         return Collections.unmodifiableList(allCliqueAtomMCS);
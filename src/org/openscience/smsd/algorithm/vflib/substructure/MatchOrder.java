@@ -0,0 +1,139 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.vflib.substructure;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+/**
+ * Order in which a substructure search matches the query atoms, either the
+ * input order or the VF2++ order (Juttner and Madarasi, 2018). For VF2++ the
+ * atoms are visited breadth first from the atom with the fewest compatible
+ * target atoms; within each level the next atom is the one with the most
+ * neighbours already in the order, then the fewest compatible target atoms,
+ * then the highest degree. Rare and well connected atoms are therefore
+ * matched first and the search no longer depends on the input atom
+ * numbering. Disconnected queries are ordered one component at a time.
+ *
+ * The order is chosen per search, see
+ * {@link VF2Matcher#VF2Matcher(IAtomContainer, IAtomContainer, boolean, boolean, boolean, boolean, MatchOrder)};
+ * the input order is mostly of use to compare against in benchmarks.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public enum MatchOrder {
+
+    /**
+     * Query atoms in input order
+     */
+    INPUT,
+    /**
+     * Query atoms in VF2++ order, the default
+     */
+    VF2PP;
+
+    /**
+     * @param source query molecule
+     * @param matches compatible target atoms per query atom, or null
+     * @return query atom index per matching position
+     */
+    int[] compute(IAtomContainer source, boolean[][] matches) {
+        int atoms = source.getAtomCount();
+        int[] order = new int[atoms];
+        if (this == INPUT || matches == null) {
+            for (int i = 0; i < atoms; i++) {
+                order[i] = i;
+            }
+            return order;
+        }
+
+        int[] candidates = new int[atoms];
+        int[][] neighbours = new int[atoms][];
+        for (int i = 0; i < atoms; i++) {
+            for (boolean match : matches[i]) {
+                if (match) {
+                    candidates[i]++;
+                }
+            }
+            List<IAtom> connected = source.getConnectedAtomsList(source.getAtom(i));
+            neighbours[i] = new int[connected.size()];
+            for (int j = 0; j < neighbours[i].length; j++) {
+                neighbours[i][j] = source.getAtomNumber(connected.get(j));
+            }
+        }
+
+        boolean[] visited = new boolean[atoms];
+        int[] orderedNeighbours = new int[atoms];
+        int size = 0;
+        while (size < atoms) {
+            int root = -1;
+            for (int i = 0; i < atoms; i++) {
+                if (!visited[i] && (root == -1 || candidates[i] < candidates[root]
+                        || (candidates[i] == candidates[root]
+                        && neighbours[i].length > neighbours[root].length))) {
+                    root = i;
+                }
+            }
+            List<Integer> level = new ArrayList<>();
+            level.add(root);
+            visited[root] = true;
+            while (!level.isEmpty()) {
+                List<Integer> next = new ArrayList<>();
+                while (!level.isEmpty()) {
+                    int best = 0;
+                    for (int k = 1; k < level.size(); k++) {
+                        if (precedes(level.get(k), level.get(best), orderedNeighbours, candidates, neighbours)) {
+                            best = k;
+                        }
+                    }
+                    int atom = level.remove(best);
+                    order[size++] = atom;
+                    for (int neighbour : neighbours[atom]) {
+                        orderedNeighbours[neighbour]++;
+                        if (!visited[neighbour]) {
+                            visited[neighbour] = true;
+                            next.add(neighbour);
+                        }
+                    }
+                }
+                level = next;
+            }
+        }
+        return order;
+    }
+
+    private static boolean precedes(int a, int b, int[] orderedNeighbours,
+            int[] candidates, int[][] neighbours) {
+        if (orderedNeighbours[a] != orderedNeighbours[b]) {
+            return orderedNeighbours[a] > orderedNeighbours[b];
+        }
+        if (candidates[a] != candidates[b]) {
+            return candidates[a] < candidates[b];
+        }
+        return neighbours[a].length > neighbours[b].length;
+    }
+}
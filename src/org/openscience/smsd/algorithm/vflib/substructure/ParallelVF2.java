@@ -0,0 +1,167 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.vflib.substructure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.tools.SharedPool;
+
+/**
+ * Fork/join enumeration of all substructure matches of one query in one
+ * target. The VF2 search tree is split at its first levels: every feasible
+ * candidate pair there becomes an independent task with its own copy of the
+ * shared state, and the subtrees are searched in parallel by
+ * {@link VF2Matcher}. The subtrees are disjoint, since the tasks of one level
+ * differ in the pair they add, so every match is found exactly once; the
+ * results are merged in the order of the serial search.
+ * <pre>
+ * List&lt;AtomAtomMapping&gt; mappings
+ *      = new ParallelVF2(query, target, true, false, true).getAllAtomMapping();
+ * </pre>
+ *
+ * Worthwhile for large targets (PDB ligands, glycans) with many matches; for
+ * small molecules the serial search is faster.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class ParallelVF2 {
+
+    /**
+     * Default number of tree levels split into tasks
+     */
+    public static final int DEFAULT_SPLIT_DEPTH = 2;
+    private final VF2Matcher matcher;
+    private final int splitDepth;
+
+    /**
+     * @param source query molecule
+     * @param target target molecule
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomType
+     */
+    public ParallelVF2(IAtomContainer source, IAtomContainer target,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType) {
+        this(new VF2Matcher(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType),
+                DEFAULT_SPLIT_DEPTH);
+    }
+
+    /**
+     * @param source query
+     * @param target target molecule
+     */
+    public ParallelVF2(IQueryAtomContainer source, IAtomContainer target) {
+        this(new VF2Matcher(source, target), DEFAULT_SPLIT_DEPTH);
+    }
+
+    /**
+     * @param matcher unused matcher defining the search, e.g. with symmetry
+     * breaking
+     * @param splitDepth number of tree levels split into tasks
+     */
+    public ParallelVF2(VF2Matcher matcher, int splitDepth) {
+        this.matcher = matcher;
+        this.splitDepth = splitDepth;
+    }
+
+    /**
+     * Enumerates all matches in the {@link SharedPool}, or in the pool of the
+     * calling task if called from a fork/join worker.
+     *
+     * @return all matches
+     */
+    public List<AtomAtomMapping> getAllAtomMapping() {
+        State root = matcher.root();
+        if (root == null) {
+            return Collections.emptyList();
+        }
+        Branch branch = new Branch(root, 0);
+        return SharedPool.isWorker() ? branch.invoke() : SharedPool.getPool().invoke(branch);
+    }
+
+    /**
+     * Enumerates all matches in the given pool.
+     *
+     * @param pool fork/join pool
+     * @return all matches
+     */
+    public List<AtomAtomMapping> getAllAtomMapping(ForkJoinPool pool) {
+        State root = matcher.root();
+        if (root == null) {
+            return Collections.emptyList();
+        }
+        return pool.invoke(new Branch(root, 0));
+    }
+
+    /*
+     * Searches the subtree below a state, splitting it while the depth
+     * allows. The state owns its shared state.
+     */
+    private final class Branch extends RecursiveTask<List<AtomAtomMapping>> {
+
+        private static final long serialVersionUID = 0x2a3f68L;
+        private final State state;
+        private final int depth;
+
+        Branch(State state, int depth) {
+            this.state = state;
+            this.depth = depth;
+        }
+
+        @Override
+        protected List<AtomAtomMapping> compute() {
+            if (depth >= splitDepth || state.isGoal()) {
+                List<AtomAtomMapping> mappings = new ArrayList<>();
+                for (AtomAtomMapping mapping : matcher.subtree(state)) {
+                    mappings.add(mapping);
+                }
+                return mappings;
+            }
+            List<Branch> branches = new ArrayList<>();
+            Pair<Integer, Integer> candidate = state.nextCandidate(new Pair<>(-1, -1));
+            while (state.hasNextCandidate(candidate)) {
+                if (matcher.isSymmetryFeasible(state, candidate)
+                        && state.isMatchFeasible(candidate)) {
+                    State next = state.fork();
+                    next.nextState(candidate);
+                    branches.add(new Branch(next, depth + 1));
+                }
+                candidate = state.nextCandidate(candidate);
+            }
+            invokeAll(branches);
+            List<AtomAtomMapping> mappings = new ArrayList<>();
+            for (Branch branch : branches) {
+                mappings.addAll(branch.join());
+            }
+            return mappings;
+        }
+    }
+}
@@ -77,4 +77,13 @@ class SharedState {
         targetTerminalSet = new int[targetSize];
         Arrays.fill(targetTerminalSet, 0);
     }
+
+    // Copies the arrays, so that a branch of the search can continue
+    // independently of the state it was split from.
+    SharedState(SharedState other) {
+        sourceMapping = other.sourceMapping.clone();
+        targetMapping = other.targetMapping.clone();
+        sourceTerminalSet = other.sourceTerminalSet.clone();
+        targetTerminalSet = other.targetTerminalSet.clone();
+    }
 }
\ No newline at end of file
@@ -57,6 +57,8 @@ import org.openscience.smsd.algorithm.matchers.BondMatcher;
 import org.openscience.smsd.algorithm.matchers.DefaultAtomMatcher;
 import org.openscience.smsd.algorithm.matchers.DefaultAtomTypeMatcher;
 import org.openscience.smsd.algorithm.matchers.DefaultBondMatcher;
+import org.openscience.smsd.metrics.ICounter;
+import org.openscience.smsd.metrics.Metrics;
 
 /**
  * This class finds mapping states between query and target molecules.
@@ -115,9 +117,20 @@ final class State {
     private final boolean ownSharedState;
     private boolean[][] matches;
     private boolean isMatchPossible = false;
+    // Query atoms in matching order, and the position of each atom in it.
+    private final int[] order;
+    private final int[] position;
+    // States entered, shared by all states of a search.
+    private final ICounter states;
 
     State(IAtomContainer source, IAtomContainer target,
             boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType) {
+        this(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType, MatchOrder.VF2PP);
+    }
+
+    State(IAtomContainer source, IAtomContainer target,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType,
+            MatchOrder matchOrder) {
         this.size = 0;
         this.sourceTerminalSize = 0;
         this.targetTerminalSize = 0;
@@ -133,9 +146,17 @@ final class State {
         this.shouldMatchBonds = shouldMatchBonds;
         this.shouldMatchRings = shouldMatchRings;
         this.shouldMatchAtomType = matchAtomType;
+
+        this.order = matchOrder.compute(source, matches);
+        this.position = positions(order);
+        this.states = Metrics.counter(Metrics.VF2_STATES);
     }
 
     State(IQueryAtomContainer source, IAtomContainer target) {
+        this(source, target, MatchOrder.VF2PP);
+    }
+
+    State(IQueryAtomContainer source, IAtomContainer target, MatchOrder matchOrder) {
         this.size = 0;
         this.sourceTerminalSize = 0;
         this.targetTerminalSize = 0;
@@ -151,21 +172,46 @@ final class State {
         this.shouldMatchBonds = true;
         this.shouldMatchRings = true;
         this.shouldMatchAtomType = true;
+
+        this.order = matchOrder.compute(source, matches);
+        this.position = positions(order);
+        this.states = Metrics.counter(Metrics.VF2_STATES);
     }
 
     State(State state) {
+        this(state, state.sharedState, false);
+    }
+
+    // Creates a child state with its own copy of the shared state, for a
+    // branch of the search that runs independently of this one.
+    State fork() {
+        return new State(this, new SharedState(sharedState), true);
+    }
+
+    private State(State state, SharedState sharedState, boolean ownSharedState) {
         this.size = state.size;
         this.sourceTerminalSize = state.sourceTerminalSize;
         this.targetTerminalSize = state.targetTerminalSize;
         this.source = state.source;
         this.target = state.target;
-        this.ownSharedState = false;
+        this.ownSharedState = ownSharedState;
         this.matches = state.matches;
         this.lastAddition = new Pair<>(-1, -1);
-        this.sharedState = state.sharedState;
+        this.sharedState = sharedState;
         this.shouldMatchBonds = state.shouldMatchBonds;
         this.shouldMatchRings = state.shouldMatchRings;
         this.shouldMatchAtomType = state.shouldMatchAtomType;
+        this.order = state.order;
+        this.position = state.position;
+        this.states = state.states;
+    }
+
+    private static int[] positions(int[] order) {
+        int[] positions = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            positions[order[i]] = i;
+        }
+        return positions;
     }
 
     private boolean isFeasible() {
@@ -208,9 +254,15 @@ final class State {
         return mapping;
     }
 
+    // Returns the target atom mapped to a source atom, or -1.
+    int targetIndex(int sourceAtom) {
+        return sharedState.sourceMapping[sourceAtom];
+    }
+
     // Returns the next candidate pair (sourceAtom, targetAtom) to be added
     // to the state. The candidate should be checked for feasibility and then added
-    // using the addPair() method.
+    // using the addPair() method. Source atoms are tried in matching order
+    // (see MatchOrder).
     Pair<Integer, Integer> nextCandidate(
             Pair<Integer, Integer> lastCandidate) {
         int lastSourceAtom = lastCandidate.getSourceAtom();
@@ -221,6 +273,8 @@ final class State {
 
         if (lastSourceAtom == -1) {
             lastSourceAtom = 0;
+        } else {
+            lastSourceAtom = position[lastSourceAtom];
         }
 
         if (lastTargetAtom == -1) {
@@ -231,14 +285,14 @@ final class State {
 
         if (sourceTerminalSize > size && targetTerminalSize > size) {
             while (lastSourceAtom < sourceSize
-                    && (sharedState.sourceMapping[lastSourceAtom] != -1
-                    || sharedState.sourceTerminalSet[lastSourceAtom] == 0)) {
+                    && (sharedState.sourceMapping[order[lastSourceAtom]] != -1
+                    || sharedState.sourceTerminalSet[order[lastSourceAtom]] == 0)) {
                 lastSourceAtom++;
                 lastTargetAtom = 0;
             }
         } else {
             while (lastSourceAtom < sourceSize
-                    && sharedState.sourceMapping[lastSourceAtom] != -1) {
+                    && sharedState.sourceMapping[order[lastSourceAtom]] != -1) {
                 lastSourceAtom++;
                 lastTargetAtom = 0;
             }
@@ -258,7 +312,7 @@ final class State {
         }
 
         if (lastSourceAtom < sourceSize && lastTargetAtom < targetSize) {
-            return new Pair<>(lastSourceAtom, lastTargetAtom);
+            return new Pair<>(order[lastSourceAtom], lastTargetAtom);
         }
 
         return new Pair<>(-1, -1);
@@ -267,6 +321,7 @@ final class State {
     // Adds the candidate pair (sourceAtom, targetAtom) to the state. The
     // candidate pair must be feasible to add it to the state.
     void nextState(Pair<Integer, Integer> candidate) {
+        states.increment();
         size++;
         lastAddition = candidate;
 
@@ -313,6 +368,13 @@ final class State {
             lastAddition = new Pair<>(-1, -1);
             return;
         }
+        undo();
+    }
+
+    // Restores the shared state to how it was before adding the last
+    // candidate pair, also for a goal state. Used when the search resumes
+    // after a goal.
+    void undo() {
         int addedSourceAtom = lastAddition.getSourceAtom();
 
         if (sharedState.sourceTerminalSet[addedSourceAtom] == size) {
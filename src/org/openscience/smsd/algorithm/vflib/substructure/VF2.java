@@ -53,6 +53,7 @@ import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.smsd.AtomAtomMapping;
 import org.openscience.smsd.helper.MoleculeInitializer;
 import org.openscience.smsd.interfaces.IResults;
+import org.openscience.smsd.metrics.PhaseEvent;
 
 /**
  * This class finds mapping states between query and target molecules.
@@ -128,12 +129,16 @@ public final class VF2 implements IResults {
      */
     private synchronized void isomorphism() {
 
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.VF2_SEARCH);
         if (!isDead(source, target) && MoleculeInitializer.testIsSubgraphHeuristics(source, target, shouldMatchBonds)) {
             State state = new State(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType);
             if (!state.isDead()) {
                 state.matchFirst(state, allAtomMCS);
             }
         }
+        if (event != null) {
+            event.end(source.getAtomCount(), target.getAtomCount(), false);
+        }
     }
 
     /**
@@ -146,12 +151,16 @@ public final class VF2 implements IResults {
      */
     private synchronized void isomorphisms() {
 
+        PhaseEvent event = PhaseEvent.begin(PhaseEvent.VF2_SEARCH);
         if (!isDead(source, target) && MoleculeInitializer.testIsSubgraphHeuristics(source, target, shouldMatchBonds)) {
             State state = new State(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType);
             if (!state.isDead()) {
                 state.matchAll(state, allAtomMCS);
             }
         }
+        if (event != null) {
+            event.end(source.getAtomCount(), target.getAtomCount(), false);
+        }
     }
 
     // Returns true substructure is bigger than the target
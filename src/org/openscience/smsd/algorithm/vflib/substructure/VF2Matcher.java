@@ -0,0 +1,467 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.vflib.substructure;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.helper.MoleculeInitializer;
+import org.openscience.smsd.interfaces.ISubstructureMatcher;
+import org.openscience.smsd.tools.AutomorphismPartition;
+import org.openscience.smsd.tools.IterationManager;
+
+/**
+ * Resumable VF2 substructure search. The recursion of {@link State} is kept
+ * on an explicit stack so the search stops after each match and continues
+ * from there when the next one is requested; matches are produced on demand
+ * and never collected.
+ * <pre>
+ * VF2Matcher matcher = new VF2Matcher(query, target, true, false, true);
+ * for (AtomAtomMapping mapping : matcher) {
+ *     ...
+ * }
+ * List&lt;AtomAtomMapping&gt; firstTen = new VF2Matcher(query, target, true, false, true).first(10);
+ * </pre>
+ *
+ * With symmetry breaking, matches that differ only by an automorphism of the
+ * query (see {@link AutomorphismPartition}) are not generated: the search
+ * only maps each orbit representative below the other atoms of its orbit, so
+ * e.g. benzene is matched once into each six ring instead of twelve times.
+ *
+ * A matcher is a single pass over the matches; {@link #iterator()} and the
+ * other operations continue from where the previous one stopped. Ring
+ * matching requires the ring flags to be set, as done by
+ * {@link org.openscience.smsd.Substructure}.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class VF2Matcher implements ISubstructureMatcher {
+
+    private final IAtomContainer source;
+    private final IAtomContainer target;
+    private final Deque<Frame> stack;
+    private final int[][] below;
+    private final int[][] above;
+    private IterationManager iterationManager;
+    private boolean timeout;
+    private boolean pending;
+    private long found;
+
+    /**
+     * @param source query molecule
+     * @param target target molecule
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomType
+     */
+    public VF2Matcher(IAtomContainer source, IAtomContainer target,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType) {
+        this(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType, false);
+    }
+
+    /**
+     * @param source query molecule
+     * @param target target molecule
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomType
+     * @param breakSymmetry report one match per set of matches that differ
+     * by an automorphism of the query
+     */
+    public VF2Matcher(IAtomContainer source, IAtomContainer target,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType,
+            boolean breakSymmetry) {
+        this(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType, breakSymmetry, MatchOrder.VF2PP);
+    }
+
+    /**
+     * @param source query molecule
+     * @param target target molecule
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomType
+     * @param breakSymmetry report one match per set of matches that differ
+     * by an automorphism of the query
+     * @param matchOrder order in which the query atoms are matched
+     */
+    public VF2Matcher(IAtomContainer source, IAtomContainer target,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType,
+            boolean breakSymmetry, MatchOrder matchOrder) {
+        this.source = source;
+        this.target = target;
+        this.stack = new ArrayDeque<>();
+        this.below = new int[source.getAtomCount()][];
+        this.above = new int[source.getAtomCount()][];
+        if (breakSymmetry) {
+            orderConstraints(new AutomorphismPartition(source).getOrderConstraints());
+        }
+        if (source.getAtomCount() > 0 && source.getAtomCount() <= target.getAtomCount()
+                && MoleculeInitializer.testIsSubgraphHeuristics(source, target, shouldMatchBonds)) {
+            start(new State(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType, matchOrder));
+        }
+    }
+
+    /**
+     * @param source query
+     * @param target target molecule
+     */
+    public VF2Matcher(IQueryAtomContainer source, IAtomContainer target) {
+        this.source = source;
+        this.target = target;
+        this.stack = new ArrayDeque<>();
+        this.below = new int[source.getAtomCount()][];
+        this.above = new int[source.getAtomCount()][];
+        if (source.getAtomCount() > 0 && source.getAtomCount() <= target.getAtomCount()
+                && MoleculeInitializer.testIsSubgraphHeuristics(source, target, true)) {
+            start(new State(source, target));
+        }
+    }
+
+    /*
+     * Matcher over the subtree below a forked state
+     */
+    private VF2Matcher(VF2Matcher matcher, State root) {
+        this.source = matcher.source;
+        this.target = matcher.target;
+        this.stack = new ArrayDeque<>();
+        this.below = matcher.below;
+        this.above = matcher.above;
+        this.iterationManager = matcher.iterationManager;
+        this.stack.push(new Frame(root));
+    }
+
+    /*
+     * The state the search starts from, or null if there can be no match
+     */
+    State root() {
+        return stack.isEmpty() ? null : stack.peekLast().state;
+    }
+
+    /*
+     * Matcher for all matches below the state
+     */
+    VF2Matcher subtree(State root) {
+        return new VF2Matcher(this, root);
+    }
+
+    /*
+     * Indexes the constraints f(lower) < f(higher) by both atoms
+     */
+    private void orderConstraints(List<int[]> constraints) {
+        int[] belowCount = new int[below.length];
+        int[] aboveCount = new int[above.length];
+        for (int[] constraint : constraints) {
+            belowCount[constraint[0]]++;
+            aboveCount[constraint[1]]++;
+        }
+        for (int i = 0; i < below.length; i++) {
+            below[i] = new int[belowCount[i]];
+            above[i] = new int[aboveCount[i]];
+        }
+        for (int[] constraint : constraints) {
+            below[constraint[0]][--belowCount[constraint[0]]] = constraint[1];
+            above[constraint[1]][--aboveCount[constraint[1]]] = constraint[0];
+        }
+    }
+
+    /*
+     * True if adding the candidate keeps the mapping the lowest of its
+     * symmetry class
+     */
+    boolean isSymmetryFeasible(State state, Pair<Integer, Integer> candidate) {
+        int sourceAtom = candidate.getSourceAtom();
+        int targetAtom = candidate.getTargetAtom();
+        if (below[sourceAtom] != null) {
+            for (int higher : below[sourceAtom]) {
+                int mapped = state.targetIndex(higher);
+                if (mapped != -1 && mapped <= targetAtom) {
+                    return false;
+                }
+            }
+            for (int lower : above[sourceAtom]) {
+                int mapped = state.targetIndex(lower);
+                if (mapped != -1 && mapped >= targetAtom) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void start(State root) {
+        if (!root.isDead()) {
+            stack.push(new Frame(root));
+        }
+    }
+
+    /*
+     * Runs the search up to the next goal state, which is left on top of the
+     * stack. Returns false when the search space is exhausted.
+     */
+    private boolean advance() {
+        if (pending) {
+            return true;
+        }
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.state.isGoal()) {
+                if (frame.visited) {
+                    pop();
+                    continue;
+                }
+                frame.visited = true;
+                pending = true;
+                found++;
+                return true;
+            }
+            Pair<Integer, Integer> candidate = frame.state.nextCandidate(frame.last);
+            if (!frame.state.hasNextCandidate(candidate)) {
+                pop();
+                continue;
+            }
+            if (checkTimeout()) {
+                return false;
+            }
+            frame.last = candidate;
+            if (isSymmetryFeasible(frame.state, candidate)
+                    && frame.state.isMatchFeasible(candidate)) {
+                State next = new State(frame.state);
+                next.nextState(candidate);
+                stack.push(new Frame(next));
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Ends the search once the iteration manager stops it
+     */
+    private boolean checkTimeout() {
+        if (iterationManager == null) {
+            return false;
+        }
+        if (iterationManager.isMaxIteration()) {
+            timeout = true;
+            stack.clear();
+            return true;
+        }
+        iterationManager.increment();
+        return false;
+    }
+
+    private void pop() {
+        Frame frame = stack.pop();
+        if (!stack.isEmpty()) {
+            frame.state.undo();
+        }
+    }
+
+    /*
+     * Consumes the pending goal
+     */
+    private State take() {
+        if (!advance()) {
+            throw new NoSuchElementException();
+        }
+        pending = false;
+        return stack.peek().state;
+    }
+
+    /**
+     * @return true if there is a further match
+     */
+    public boolean hasNext() {
+        return advance();
+    }
+
+    /**
+     * @return the next match
+     * @throws NoSuchElementException if there is no further match
+     */
+    public AtomAtomMapping next() {
+        return take().getMapping();
+    }
+
+    /**
+     * The next match as target atom indices, without building a mapping
+     * object.
+     *
+     * @return target atom index per query atom index
+     * @throws NoSuchElementException if there is no further match
+     */
+    public int[] nextIndices() {
+        State state = take();
+        int[] indices = new int[source.getAtomCount()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = state.targetIndex(i);
+        }
+        return indices;
+    }
+
+    /**
+     * Lazy view of the remaining matches.
+     *
+     * @return iterator continuing this search
+     */
+    @Override
+    public Iterator<AtomAtomMapping> iterator() {
+        return new Iterator<AtomAtomMapping>() {
+            @Override
+            public boolean hasNext() {
+                return VF2Matcher.this.hasNext();
+            }
+
+            @Override
+            public AtomAtomMapping next() {
+                return VF2Matcher.this.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Matches cannot be removed");
+            }
+        };
+    }
+
+    /**
+     * Collects at most <code>limit</code> further matches; the search stops
+     * as soon as they are found.
+     *
+     * @param limit maximum number of matches
+     * @return the matches, in search order
+     */
+    public List<AtomAtomMapping> first(int limit) {
+        List<AtomAtomMapping> mappings = new ArrayList<>(Math.min(Math.max(limit, 0), 64));
+        while (mappings.size() < limit && hasNext()) {
+            mappings.add(next());
+        }
+        return mappings;
+    }
+
+    /**
+     * Runs the search to the end and counts the remaining matches, without
+     * building mapping objects.
+     *
+     * @return number of remaining matches
+     */
+    public long count() {
+        long count = 0;
+        while (advance()) {
+            pending = false;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Runs the search to the end and counts the distinct sets of target atoms
+     * covered by the remaining matches, i.e. matches that differ only by a
+     * symmetry of the query are counted once.
+     *
+     * With symmetry breaking those matches are not generated in the first
+     * place, but the atom sets are still compared: two matches can cover the
+     * same target atoms without differing by an automorphism of the query,
+     * e.g. a chain matched into a ring, where the ring closure bond of the
+     * target is not part of the query, or query atoms that differ in a
+     * property the matcher does not compare.
+     *
+     * @return number of remaining matches with a unique target atom set
+     */
+    public long countUnique() {
+        Set<BitSet> atomSets = new HashSet<>();
+        int atoms = source.getAtomCount();
+        while (advance()) {
+            State state = take();
+            BitSet atomSet = new BitSet(target.getAtomCount());
+            for (int i = 0; i < atoms; i++) {
+                atomSet.set(state.targetIndex(i));
+            }
+            atomSets.add(atomSet);
+        }
+        return atomSets.size();
+    }
+
+    /**
+     * Bounds the remaining search by the iteration limit of the manager; the
+     * search also stops when its thread is interrupted or its
+     * {@link org.openscience.smsd.tools.SearchMonitor} cancelled. A stopped
+     * search reports no further match.
+     *
+     * @param iterationManager iteration budget, or null for an unbounded
+     * search
+     */
+    public void setIterationManager(IterationManager iterationManager) {
+        this.iterationManager = iterationManager;
+    }
+
+    /**
+     * @return true if the iteration manager stopped the search
+     */
+    public boolean isTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return number of matches found so far
+     */
+    public long getMatchCount() {
+        return found;
+    }
+
+    /**
+     * @return the query molecule
+     */
+    public IAtomContainer getSource() {
+        return source;
+    }
+
+    /**
+     * @return the target molecule
+     */
+    public IAtomContainer getTarget() {
+        return target;
+    }
+
+    private static final class Frame {
+
+        private final State state;
+        private Pair<Integer, Integer> last;
+        private boolean visited;
+
+        Frame(State state) {
+            this.state = state;
+            this.last = new Pair<>(-1, -1);
+        }
+    }
+}
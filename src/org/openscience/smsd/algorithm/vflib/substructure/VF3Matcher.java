@@ -0,0 +1,682 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.vflib.substructure;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.algorithm.matchers.AtomMatcher;
+import org.openscience.smsd.algorithm.matchers.BondMatcher;
+import org.openscience.smsd.algorithm.matchers.DefaultAtomMatcher;
+import org.openscience.smsd.algorithm.matchers.DefaultAtomTypeMatcher;
+import org.openscience.smsd.algorithm.matchers.DefaultBondMatcher;
+import org.openscience.smsd.helper.MoleculeInitializer;
+import org.openscience.smsd.interfaces.ISubstructureMatcher;
+import org.openscience.smsd.metrics.ICounter;
+import org.openscience.smsd.metrics.Metrics;
+import org.openscience.smsd.tools.AutomorphismPartition;
+import org.openscience.smsd.tools.IterationManager;
+
+/**
+ * Resumable substructure search after VF3 (Carletti, Foggia, Saggese and
+ * Vento, 2018), meant for large targets such as proteins. Compared with
+ * {@link VF2Matcher}:
+ * <ul>
+ * <li>atoms are classified by label (the symbol, with the ring membership if
+ * rings are matched); the look-ahead compares, class by class, the unmatched
+ * neighbours of the candidate pair, and those next to the match;</li>
+ * <li>the query atoms are ordered once before the search: the atom whose
+ * label and degree are least probable in the target comes first, then the
+ * atom with the most neighbours already ordered, the least probable and the
+ * one of highest degree;</li>
+ * <li>each query atom has a parent, its first neighbour in that order, and
+ * its candidates are the unmatched target neighbours of the parent's image
+ * rather than the whole target;</li>
+ * <li>the query side of the look-ahead is computed once per level.</li>
+ * </ul>
+ * Matches are monomorphisms, as with VF2: every query bond needs a matching
+ * target bond, and the target may have further bonds between the matched
+ * atoms.
+ * <pre>
+ * VF3Matcher matcher = new VF3Matcher(query, protein, true, false, false);
+ * boolean hit = matcher.hasNext();
+ * </pre>
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class VF3Matcher implements ISubstructureMatcher {
+
+    private final IAtomContainer source;
+    private final IAtomContainer target;
+    private final int[][] targetNeighbours;
+    private final IBond[][] targetBonds;
+    private final int[] targetClass;
+    private boolean[][] candidates;
+    // Query atoms in matching order, the parent of each, and per level the
+    // neighbours matched before it with their bond matchers.
+    private int[] order;
+    private int[] parent;
+    private int[][] previous;
+    private BondMatcher[][] previousBonds;
+    // Per level the classes of the unmatched query neighbours with their
+    // counts: next to the match, and in total.
+    private int[][] lookClasses;
+    private int[][] lookTerminal;
+    private int[][] lookUnmatched;
+    private final int[] mapping;
+    private final int[] inverse;
+    private final int[] matchedNeighbours;
+    private final int[] cursor;
+    private final int[] terminalCount;
+    private final int[] unmatchedCount;
+    private final int[][] below;
+    private final int[][] above;
+    private int depth;
+    private boolean started;
+    private boolean possible;
+    private boolean pending;
+    private long found;
+    private IterationManager iterationManager;
+    private boolean timeout;
+    private final ICounter states = Metrics.counter(Metrics.VF3_STATES);
+
+    /**
+     * @param source query molecule
+     * @param target target molecule
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomType
+     */
+    public VF3Matcher(IAtomContainer source, IAtomContainer target,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType) {
+        this(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType, false);
+    }
+
+    /**
+     * @param source query molecule
+     * @param target target molecule
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomType
+     * @param breakSymmetry report one match per set of matches that differ
+     * by an automorphism of the query
+     */
+    public VF3Matcher(IAtomContainer source, IAtomContainer target,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType,
+            boolean breakSymmetry) {
+        this.source = source;
+        this.target = target;
+        int n = source.getAtomCount();
+        int m = target.getAtomCount();
+        this.mapping = new int[n];
+        this.inverse = new int[m];
+        this.matchedNeighbours = new int[m];
+        this.cursor = new int[n + 1];
+        this.below = new int[n][];
+        this.above = new int[n][];
+        this.targetNeighbours = new int[m][];
+        this.targetBonds = new IBond[m][];
+        adjacency(target, targetNeighbours, targetBonds);
+        Map<String, Integer> classes = new HashMap<>();
+        int[] sourceClass = classify(source, shouldMatchRings, classes);
+        this.targetClass = classify(target, shouldMatchRings, classes);
+        this.terminalCount = new int[classes.size()];
+        this.unmatchedCount = new int[classes.size()];
+        if (breakSymmetry) {
+            orderConstraints(new AutomorphismPartition(source).getOrderConstraints());
+        }
+        if (n > 0 && n <= m && MoleculeInitializer.testIsSubgraphHeuristics(source, target, shouldMatchBonds)) {
+            init(sourceClass, classes.size(), shouldMatchBonds, shouldMatchRings, matchAtomType);
+        }
+    }
+
+    /**
+     * @param source query
+     * @param target target molecule
+     */
+    public VF3Matcher(IQueryAtomContainer source, IAtomContainer target) {
+        this.source = source;
+        this.target = target;
+        int n = source.getAtomCount();
+        int m = target.getAtomCount();
+        this.mapping = new int[n];
+        this.inverse = new int[m];
+        this.matchedNeighbours = new int[m];
+        this.cursor = new int[n + 1];
+        this.below = new int[n][];
+        this.above = new int[n][];
+        this.targetNeighbours = new int[m][];
+        this.targetBonds = new IBond[m][];
+        adjacency(target, targetNeighbours, targetBonds);
+        // query atoms may match several labels, so all atoms share one class
+        this.targetClass = new int[m];
+        this.terminalCount = new int[1];
+        this.unmatchedCount = new int[1];
+        if (n > 0 && n <= m && MoleculeInitializer.testIsSubgraphHeuristics(source, target, true)) {
+            init(new int[n], 1, true, true, true);
+        }
+    }
+
+    private static void adjacency(IAtomContainer molecule, int[][] neighbours, IBond[][] bonds) {
+        int[] degree = new int[molecule.getAtomCount()];
+        int[][] ends = new int[molecule.getBondCount()][];
+        for (int i = 0; i < ends.length; i++) {
+            IBond bond = molecule.getBond(i);
+            ends[i] = new int[]{molecule.getAtomNumber(bond.getAtom(0)),
+                molecule.getAtomNumber(bond.getAtom(1))};
+            degree[ends[i][0]]++;
+            degree[ends[i][1]]++;
+        }
+        for (int i = 0; i < degree.length; i++) {
+            neighbours[i] = new int[degree[i]];
+            bonds[i] = new IBond[degree[i]];
+            degree[i] = 0;
+        }
+        for (int i = 0; i < ends.length; i++) {
+            int a = ends[i][0];
+            int b = ends[i][1];
+            neighbours[a][degree[a]] = b;
+            bonds[a][degree[a]++] = molecule.getBond(i);
+            neighbours[b][degree[b]] = a;
+            bonds[b][degree[b]++] = molecule.getBond(i);
+        }
+    }
+
+    private static int[] classify(IAtomContainer molecule, boolean shouldMatchRings,
+            Map<String, Integer> classes) {
+        int[] labels = new int[molecule.getAtomCount()];
+        for (int i = 0; i < labels.length; i++) {
+            IAtom atom = molecule.getAtom(i);
+            String label = String.valueOf(atom.getSymbol());
+            if (shouldMatchRings) {
+                label += atom.getFlag(CDKConstants.ISINRING) ? "@R" : "@A";
+            }
+            Integer id = classes.get(label);
+            if (id == null) {
+                id = classes.size();
+                classes.put(label, id);
+            }
+            labels[i] = id;
+        }
+        return labels;
+    }
+
+    /*
+     * Candidate table, matching order, parents and the query side of the
+     * look-ahead
+     */
+    private void init(int[] sourceClass, int classCount,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType) {
+        int n = source.getAtomCount();
+        int m = target.getAtomCount();
+        int[][] sourceNeighbours = new int[n][];
+        IBond[][] sourceBonds = new IBond[n][];
+        adjacency(source, sourceNeighbours, sourceBonds);
+
+        int[] sourceCount = new int[classCount];
+        int[] targetCount = new int[classCount];
+        for (int i = 0; i < n; i++) {
+            sourceCount[sourceClass[i]]++;
+        }
+        for (int j = 0; j < m; j++) {
+            targetCount[targetClass[j]]++;
+        }
+        for (int c = 0; c < classCount; c++) {
+            if (sourceCount[c] > targetCount[c]) {
+                return;
+            }
+        }
+
+        candidates = new boolean[n][m];
+        for (int i = 0; i < n; i++) {
+            AtomMatcher matcher = matchAtomType
+                    ? new DefaultAtomTypeMatcher(source.getAtom(i), shouldMatchRings)
+                    : new DefaultAtomMatcher(source.getAtom(i), shouldMatchRings);
+            boolean any = false;
+            for (int j = 0; j < m; j++) {
+                candidates[i][j] = sourceClass[i] == targetClass[j]
+                        && sourceNeighbours[i].length <= targetNeighbours[j].length
+                        && matcher.matches(target.getAtom(j));
+                any |= candidates[i][j];
+            }
+            if (!any) {
+                return;
+            }
+        }
+
+        // probability of a target atom having the label and at least the degree
+        int maxDegree = 0;
+        for (int j = 0; j < m; j++) {
+            maxDegree = Math.max(maxDegree, targetNeighbours[j].length);
+        }
+        int[] atLeast = new int[maxDegree + 2];
+        for (int j = 0; j < m; j++) {
+            atLeast[targetNeighbours[j].length]++;
+        }
+        for (int d = maxDegree - 1; d >= 0; d--) {
+            atLeast[d] += atLeast[d + 1];
+        }
+        double[] probability = new double[n];
+        for (int i = 0; i < n; i++) {
+            int degree = Math.min(sourceNeighbours[i].length, maxDegree + 1);
+            probability[i] = ((double) targetCount[sourceClass[i]] / m) * ((double) atLeast[degree] / m);
+        }
+
+        order = new int[n];
+        parent = new int[n];
+        int[] position = new int[n];
+        int[] connections = new int[n];
+        boolean[] ordered = new boolean[n];
+        for (int k = 0; k < n; k++) {
+            int best = -1;
+            for (int i = 0; i < n; i++) {
+                if (ordered[i]) {
+                    continue;
+                }
+                if (best < 0 || connections[i] > connections[best]
+                        || (connections[i] == connections[best]
+                        && (probability[i] < probability[best]
+                        || (probability[i] == probability[best]
+                        && sourceNeighbours[i].length > sourceNeighbours[best].length)))) {
+                    best = i;
+                }
+            }
+            order[k] = best;
+            position[best] = k;
+            ordered[best] = true;
+            for (int neighbour : sourceNeighbours[best]) {
+                connections[neighbour]++;
+            }
+        }
+
+        previous = new int[n][];
+        previousBonds = new BondMatcher[n][];
+        lookClasses = new int[n][];
+        lookTerminal = new int[n][];
+        lookUnmatched = new int[n][];
+        boolean[] terminal = new boolean[n];
+        int[] terminalByClass = new int[classCount];
+        int[] unmatchedByClass = new int[classCount];
+        for (int k = 0; k < n; k++) {
+            int atom = order[k];
+            parent[k] = -1;
+            List<Integer> back = new ArrayList<>();
+            List<BondMatcher> backBonds = new ArrayList<>();
+            List<Integer> touched = new ArrayList<>();
+            for (int e = 0; e < sourceNeighbours[atom].length; e++) {
+                int neighbour = sourceNeighbours[atom][e];
+                if (position[neighbour] < k) {
+                    back.add(neighbour);
+                    backBonds.add(new DefaultBondMatcher(sourceBonds[atom][e],
+                            shouldMatchBonds, shouldMatchRings, matchAtomType));
+                    if (parent[k] < 0 || position[neighbour] < position[parent[k]]) {
+                        parent[k] = neighbour;
+                    }
+                } else {
+                    int c = sourceClass[neighbour];
+                    if (unmatchedByClass[c] == 0) {
+                        touched.add(c);
+                    }
+                    unmatchedByClass[c]++;
+                    if (terminal[neighbour]) {
+                        terminalByClass[c]++;
+                    }
+                }
+            }
+            previous[k] = new int[back.size()];
+            previousBonds[k] = backBonds.toArray(new BondMatcher[backBonds.size()]);
+            for (int i = 0; i < back.size(); i++) {
+                previous[k][i] = back.get(i);
+            }
+            lookClasses[k] = new int[touched.size()];
+            lookTerminal[k] = new int[touched.size()];
+            lookUnmatched[k] = new int[touched.size()];
+            for (int i = 0; i < touched.size(); i++) {
+                int c = touched.get(i);
+                lookClasses[k][i] = c;
+                lookTerminal[k][i] = terminalByClass[c];
+                lookUnmatched[k][i] = unmatchedByClass[c];
+                terminalByClass[c] = 0;
+                unmatchedByClass[c] = 0;
+            }
+            for (int neighbour : sourceNeighbours[atom]) {
+                terminal[neighbour] = true;
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            mapping[i] = -1;
+        }
+        for (int j = 0; j < m; j++) {
+            inverse[j] = -1;
+        }
+        possible = true;
+    }
+
+    /*
+     * Indexes the constraints f(lower) < f(higher) by both atoms
+     */
+    private void orderConstraints(List<int[]> constraints) {
+        int[] belowCount = new int[below.length];
+        int[] aboveCount = new int[above.length];
+        for (int[] constraint : constraints) {
+            belowCount[constraint[0]]++;
+            aboveCount[constraint[1]]++;
+        }
+        for (int i = 0; i < below.length; i++) {
+            below[i] = new int[belowCount[i]];
+            above[i] = new int[aboveCount[i]];
+        }
+        for (int[] constraint : constraints) {
+            below[constraint[0]][--belowCount[constraint[0]]] = constraint[1];
+            above[constraint[1]][--aboveCount[constraint[1]]] = constraint[0];
+        }
+    }
+
+    /*
+     * Next unmatched candidate for the query atom of the level, or -1
+     */
+    private int nextCandidate(int level) {
+        int atom = order[level];
+        if (parent[level] >= 0) {
+            int[] neighbours = targetNeighbours[mapping[parent[level]]];
+            while (cursor[level] < neighbours.length) {
+                int candidate = neighbours[cursor[level]++];
+                if (inverse[candidate] == -1 && candidates[atom][candidate]) {
+                    return candidate;
+                }
+            }
+        } else {
+            while (cursor[level] < inverse.length) {
+                int candidate = cursor[level]++;
+                if (inverse[candidate] == -1 && candidates[atom][candidate]) {
+                    return candidate;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean isFeasible(int level, int candidate) {
+        int atom = order[level];
+        if (below[atom] != null) {
+            for (int higher : below[atom]) {
+                if (mapping[higher] != -1 && mapping[higher] <= candidate) {
+                    return false;
+                }
+            }
+            for (int lower : above[atom]) {
+                if (mapping[lower] != -1 && mapping[lower] >= candidate) {
+                    return false;
+                }
+            }
+        }
+        int[] back = previous[level];
+        for (int i = 0; i < back.length; i++) {
+            IBond bond = targetBond(candidate, mapping[back[i]]);
+            if (bond == null || !previousBonds[level][i].matches(bond)) {
+                return false;
+            }
+        }
+        int[] classes = lookClasses[level];
+        if (classes.length == 0) {
+            return true;
+        }
+        for (int neighbour : targetNeighbours[candidate]) {
+            if (inverse[neighbour] == -1) {
+                int c = targetClass[neighbour];
+                unmatchedCount[c]++;
+                if (matchedNeighbours[neighbour] > 0) {
+                    terminalCount[c]++;
+                }
+            }
+        }
+        boolean feasible = true;
+        for (int i = 0; i < classes.length; i++) {
+            int c = classes[i];
+            if (lookTerminal[level][i] > terminalCount[c] || lookUnmatched[level][i] > unmatchedCount[c]) {
+                feasible = false;
+                break;
+            }
+        }
+        for (int neighbour : targetNeighbours[candidate]) {
+            terminalCount[targetClass[neighbour]] = 0;
+            unmatchedCount[targetClass[neighbour]] = 0;
+        }
+        return feasible;
+    }
+
+    private IBond targetBond(int atom, int other) {
+        int[] neighbours = targetNeighbours[atom];
+        for (int i = 0; i < neighbours.length; i++) {
+            if (neighbours[i] == other) {
+                return targetBonds[atom][i];
+            }
+        }
+        return null;
+    }
+
+    private void add(int atom, int candidate) {
+        states.increment();
+        mapping[atom] = candidate;
+        inverse[candidate] = atom;
+        for (int neighbour : targetNeighbours[candidate]) {
+            matchedNeighbours[neighbour]++;
+        }
+    }
+
+    private void remove(int atom) {
+        int candidate = mapping[atom];
+        mapping[atom] = -1;
+        inverse[candidate] = -1;
+        for (int neighbour : targetNeighbours[candidate]) {
+            matchedNeighbours[neighbour]--;
+        }
+    }
+
+    /*
+     * Runs the search up to the next match. Returns false when the search
+     * space is exhausted.
+     */
+    private boolean advance() {
+        if (pending) {
+            return true;
+        }
+        if (!possible) {
+            return false;
+        }
+        int n = order.length;
+        if (!started) {
+            started = true;
+            depth = 0;
+            cursor[0] = 0;
+        } else if (depth == n) {
+            depth--;
+            remove(order[depth]);
+        }
+        while (depth >= 0) {
+            int candidate = nextCandidate(depth);
+            if (candidate < 0) {
+                depth--;
+                if (depth >= 0) {
+                    remove(order[depth]);
+                }
+                continue;
+            }
+            if (checkTimeout()) {
+                possible = false;
+                return false;
+            }
+            if (isFeasible(depth, candidate)) {
+                add(order[depth], candidate);
+                depth++;
+                if (depth == n) {
+                    pending = true;
+                    found++;
+                    return true;
+                }
+                cursor[depth] = 0;
+            }
+        }
+        possible = false;
+        return false;
+    }
+
+    /*
+     * True once the iteration manager stops the search
+     */
+    private boolean checkTimeout() {
+        if (iterationManager == null) {
+            return false;
+        }
+        if (iterationManager.isMaxIteration()) {
+            timeout = true;
+            return true;
+        }
+        iterationManager.increment();
+        return false;
+    }
+
+    /*
+     * Consumes the pending match
+     */
+    private void take() {
+        if (!advance()) {
+            throw new NoSuchElementException();
+        }
+        pending = false;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return advance();
+    }
+
+    @Override
+    public AtomAtomMapping next() {
+        take();
+        AtomAtomMapping atomMapping = new AtomAtomMapping(source, target);
+        for (int i = 0; i < mapping.length; i++) {
+            atomMapping.put(source.getAtom(i), target.getAtom(mapping[i]));
+        }
+        return atomMapping;
+    }
+
+    @Override
+    public int[] nextIndices() {
+        take();
+        return mapping.clone();
+    }
+
+    @Override
+    public Iterator<AtomAtomMapping> iterator() {
+        return new Iterator<AtomAtomMapping>() {
+            @Override
+            public boolean hasNext() {
+                return VF3Matcher.this.hasNext();
+            }
+
+            @Override
+            public AtomAtomMapping next() {
+                return VF3Matcher.this.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Matches cannot be removed");
+            }
+        };
+    }
+
+    @Override
+    public List<AtomAtomMapping> first(int limit) {
+        List<AtomAtomMapping> mappings = new ArrayList<>(Math.min(Math.max(limit, 0), 64));
+        while (mappings.size() < limit && hasNext()) {
+            mappings.add(next());
+        }
+        return mappings;
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        while (advance()) {
+            pending = false;
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public long countUnique() {
+        Set<BitSet> atomSets = new HashSet<>();
+        while (advance()) {
+            pending = false;
+            BitSet atomSet = new BitSet(target.getAtomCount());
+            for (int atom : mapping) {
+                atomSet.set(atom);
+            }
+            atomSets.add(atomSet);
+        }
+        return atomSets.size();
+    }
+
+    @Override
+    public void setIterationManager(IterationManager iterationManager) {
+        this.iterationManager = iterationManager;
+    }
+
+    @Override
+    public boolean isTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public long getMatchCount() {
+        return found;
+    }
+
+    @Override
+    public IAtomContainer getSource() {
+        return source;
+    }
+
+    @Override
+    public IAtomContainer getTarget() {
+        return target;
+    }
+}
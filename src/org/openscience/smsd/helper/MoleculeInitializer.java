@@ -41,6 +41,7 @@ import org.openscience.cdk.ringsearch.AllRingsFinder;
 import org.openscience.cdk.ringsearch.SSSRFinder;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.smsd.metrics.PhaseEvent;
 import org.openscience.smsd.tools.ExtAtomContainerManipulator;
 
 /**
@@ -123,6 +124,7 @@ public class MoleculeInitializer {
     public synchronized static void initializeMolecule(IAtomContainer atomContainer) throws CDKException {
         String SMALLEST_RING_SIZE = "SMALLEST_RING_SIZE";
         if (!(atomContainer instanceof IQueryAtomContainer)) {
+            PhaseEvent event = PhaseEvent.begin(PhaseEvent.MOLECULE_PREPARATION);
             Map<String, Integer> valencesTable = new HashMap<>();
             valencesTable.put("H", 1);
             valencesTable.put("Li", 1);
@@ -253,6 +255,10 @@ public class MoleculeInitializer {
             }
 
             ExtAtomContainerManipulator.aromatizeMolecule(atomContainer);
+            if (event != null) {
+                // the ring search gives up on an exception, usually a timeout
+                event.end(atomContainer.getAtomCount(), 0, allRings == null);
+            }
         }
 
     }
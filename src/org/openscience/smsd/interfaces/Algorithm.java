@@ -36,6 +36,9 @@ import org.openscience.cdk.annotations.TestClass;
  * <lI>3: CDKMCS,
  * <lI>4: SubStructure
  * <lI>5: TurboSubStructure
+ * <lI>6: Portfolio (MCSPlus, VFLibMCS, CDKMCS and SubStructure raced)
+ * <lI>7: Auto (engine with the lowest predicted cost)
+ * <lI>8: McSplit (partition refinement branch and bound)
  * </OL>
  *
  * @cdk.module smsd
@@ -60,7 +63,22 @@ public enum Algorithm implements Comparable<Algorithm> {
     /**
      * CDK UIT MCS.
      */
-    CDKMCS(4, "CDK UIT MCS");
+    CDKMCS(4, "CDK UIT MCS"),
+    /**
+     * Substructure, CDKMCS, MCS Plus and VF MCS run concurrently, the first
+     * proven optimal result wins.
+     */
+    PORTFOLIO(5, "Portfolio of concurrent MCS algorithms"),
+    /**
+     * Substructure search, then the MCS engine with the lowest cost predicted
+     * by {@link org.openscience.smsd.algorithm.selector.CostModel}.
+     */
+    AUTO(6, "Cost model driven MCS algorithm"),
+    /**
+     * McSplit partition refinement branch and bound on the bonds, see
+     * {@link org.openscience.smsd.algorithm.mcsplit.McSplitHandler}.
+     */
+    MCSPLIT(7, "McSplit branch and bound MCS algorithm");
     private final int type;
     private final String description;
 
@@ -0,0 +1,52 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.interfaces;
+
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.tools.SearchStatistics;
+
+/**
+ * Receives the improving solutions of an MCS search started by
+ * {@link org.openscience.smsd.Isomorphism}: VF matches, the seeds of the
+ * clique and CDKMCS searches, clique improvements and McGregor extensions.
+ * Each reported mapping is strictly larger than all mappings reported before
+ * and refers to the query and target of the search.
+ *
+ * Calls are serialised but may come from the worker threads of the engines.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public interface IMCSListener {
+
+    /**
+     * Called with each larger solution.
+     *
+     * @param mapping the new best mapping
+     * @param statistics progress of the search
+     * @return true to continue the search, false to stop it and keep the best
+     * solution found so far
+     */
+    public abstract boolean improved(AtomAtomMapping mapping, SearchStatistics statistics);
+}
@@ -0,0 +1,110 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.interfaces;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.tools.IterationManager;
+
+/**
+ * Resumable substructure search producing the matches of a query in a target
+ * on demand. Implemented by the VF2 and VF3 engines used by
+ * {@link org.openscience.smsd.Substructure}.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public interface ISubstructureMatcher extends Iterable<AtomAtomMapping> {
+
+    /**
+     * @return true if there is a further match
+     */
+    public abstract boolean hasNext();
+
+    /**
+     * @return the next match
+     * @throws NoSuchElementException if there is no further match
+     */
+    public abstract AtomAtomMapping next();
+
+    /**
+     * The next match as target atom indices, without building a mapping
+     * object.
+     *
+     * @return target atom index per query atom index
+     * @throws NoSuchElementException if there is no further match
+     */
+    public abstract int[] nextIndices();
+
+    /**
+     * Collects at most <code>limit</code> further matches.
+     *
+     * @param limit maximum number of matches
+     * @return the matches, in search order
+     */
+    public abstract List<AtomAtomMapping> first(int limit);
+
+    /**
+     * @return number of remaining matches
+     */
+    public abstract long count();
+
+    /**
+     * @return number of remaining matches with a unique target atom set
+     */
+    public abstract long countUnique();
+
+    /**
+     * Bounds the remaining search by the iteration limit of the manager; the
+     * search also stops when its thread is interrupted or its
+     * {@link org.openscience.smsd.tools.SearchMonitor} cancelled. A stopped
+     * search reports no further match.
+     *
+     * @param iterationManager iteration budget, or null for an unbounded
+     * search
+     */
+    public abstract void setIterationManager(IterationManager iterationManager);
+
+    /**
+     * @return true if the iteration manager stopped the search
+     */
+    public abstract boolean isTimeout();
+
+    /**
+     * @return number of matches found so far
+     */
+    public abstract long getMatchCount();
+
+    /**
+     * @return the query molecule
+     */
+    public abstract IAtomContainer getSource();
+
+    /**
+     * @return the target molecule
+     */
+    public abstract IAtomContainer getTarget();
+}
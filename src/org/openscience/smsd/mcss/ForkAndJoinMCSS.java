@@ -6,16 +6,13 @@
 package org.openscience.smsd.mcss;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.RecursiveTask;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.tools.ILoggingTool;
@@ -25,17 +22,32 @@ import org.openscience.smsd.Isomorphism;
 import org.openscience.smsd.interfaces.Algorithm;
 
 /**
+ * Fork/join search for the MCSS of a root molecule and a list of molecules.
+ * The list is split where the estimated cost (query atoms times target atoms)
+ * is halved, until a range costs no more than the threshold. Each subtask
+ * narrows its own fragments target by target, comparing every fragment of
+ * the smallest size with the next target. The root is shared by all
+ * subtasks: a subtask left with a single fragment smaller than the current
+ * root publishes it, and the other subtasks intersect their fragments with
+ * it, so the fragments stay common to the targets of both. Published roots
+ * are copies, so tasks share no mutable molecules and need no locks.
  *
  * @author Asad
  */
 public class ForkAndJoinMCSS extends RecursiveTask<List<Set<Fragment>>> {
 
-    public static final long THRESHOLD = 2;
+    /**
+     * Default cost (product of atom counts summed over a range) up to which a
+     * range is compared serially.
+     */
+    public static final long DEFAULT_COST_THRESHOLD = 2500;
     private final static ILoggingTool logger
             = LoggingToolFactory.createLoggingTool(ForkAndJoinMCSS.class);
     private static final long serialVersionUID = 1322393982398293L;
     private final List<IAtomContainer> calculateMCSS;
-    private IAtomContainer root;
+    private final AtomicReference<IAtomContainer> root;
+    private final long[] cost;
+    private final long costThreshold;
     private final boolean matchBonds;
     private final boolean matchRings;
     private final boolean matchAtomType;
@@ -51,12 +63,28 @@ public class ForkAndJoinMCSS extends RecursiveTask<List<Set<Fragment>>> {
      * @param matchAtomType
      */
     public ForkAndJoinMCSS(IAtomContainer root, List<IAtomContainer> calculateMCSS, boolean matchBonds, boolean matchRings, boolean matchAtomType) {
-        this(root, calculateMCSS, matchBonds, matchRings, matchAtomType, 0, calculateMCSS.size());
+        this(root, calculateMCSS, DEFAULT_COST_THRESHOLD, matchBonds, matchRings, matchAtomType);
+    }
+
+    /**
+     *
+     * @param root
+     * @param calculateMCSS
+     * @param costThreshold largest estimated range cost compared serially
+     * @param matchBonds
+     * @param matchRings
+     * @param matchAtomType
+     */
+    public ForkAndJoinMCSS(IAtomContainer root, List<IAtomContainer> calculateMCSS, long costThreshold, boolean matchBonds, boolean matchRings, boolean matchAtomType) {
+        this(new AtomicReference<>(root), calculateMCSS, prefixCost(root, calculateMCSS), costThreshold,
+                matchBonds, matchRings, matchAtomType, 0, calculateMCSS.size());
     }
 
-    private ForkAndJoinMCSS(IAtomContainer root, List<IAtomContainer> calculateMCSS, boolean matchBonds, boolean matchRings, boolean matchAtomType, int start, int end) {
+    private ForkAndJoinMCSS(AtomicReference<IAtomContainer> root, List<IAtomContainer> calculateMCSS, long[] cost, long costThreshold, boolean matchBonds, boolean matchRings, boolean matchAtomType, int start, int end) {
         this.root = root;
         this.calculateMCSS = calculateMCSS;
+        this.cost = cost;
+        this.costThreshold = costThreshold;
         this.matchBonds = matchBonds;
         this.matchRings = matchRings;
         this.matchAtomType = matchAtomType;
@@ -64,18 +92,33 @@ public class ForkAndJoinMCSS extends RecursiveTask<List<Set<Fragment>>> {
         this.end = end;
     }
 
+    /*
+     * cost[i] is the estimated cost of comparing the root with the first i
+     * molecules
+     */
+    private static long[] prefixCost(IAtomContainer root, List<IAtomContainer> jobs) {
+        long[] cost = new long[jobs.size() + 1];
+        long rootAtoms = Math.max(1, root.getAtomCount());
+        for (int i = 0; i < jobs.size(); i++) {
+            cost[i + 1] = cost[i] + rootAtoms * Math.max(1, jobs.get(i).getAtomCount());
+        }
+        return cost;
+    }
+
     @Override
     protected List<Set<Fragment>> compute() {
         int length = end - start;
-        if (length <= THRESHOLD) {
-            Set<Fragment> mcs = ComputeSimilarity(root, calculateMCSS, matchBonds, matchRings, matchAtomType, start, end);
-            ArrayList<Set<Fragment>> arrayList = new ArrayList<>();
-            arrayList.add(mcs);
+        if (length <= 1 || cost[end] - cost[start] <= costThreshold) {
+            List<Set<Fragment>> arrayList = new ArrayList<>();
+            arrayList.add(computeSimilarity());
             return arrayList;
         }
-        ForkAndJoinMCSS leftTask = new ForkAndJoinMCSS(root, calculateMCSS, matchBonds, matchRings, matchAtomType, start, start + length / 2);
+        int middle = split();
+        ForkAndJoinMCSS leftTask = new ForkAndJoinMCSS(root, calculateMCSS, cost, costThreshold,
+                matchBonds, matchRings, matchAtomType, start, middle);
         leftTask.fork();
-        ForkAndJoinMCSS rightTask = new ForkAndJoinMCSS(root, calculateMCSS, matchBonds, matchRings, matchAtomType, start + length / 2, end);
+        ForkAndJoinMCSS rightTask = new ForkAndJoinMCSS(root, calculateMCSS, cost, costThreshold,
+                matchBonds, matchRings, matchAtomType, middle, end);
 
         List<Set<Fragment>> rightResult = rightTask.compute();
         List<Set<Fragment>> leftResult = leftTask.join();
@@ -86,58 +129,101 @@ public class ForkAndJoinMCSS extends RecursiveTask<List<Set<Fragment>>> {
     }
 
     /*
-     * MULTIPLE Fragments of MCS are returned if present
+     * First index whose prefix cost reaches half of the range cost, kept
+     * strictly inside the range
      */
-    private synchronized Set<Fragment>
-            ComputeSimilarity(IAtomContainer root,
-                    List<IAtomContainer> jobs,
-                    boolean matchBonds,
-                    boolean matchRings,
-                    boolean matchAtomType,
-                    int start,
-                    int end) {
-        /*
-         * Store final solution here
-         */
+    private int split() {
+        long half = cost[start] + (cost[end] - cost[start]) / 2;
+        int low = start + 1;
+        int high = end - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cost[mid] < half) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the smallest root fragment published so far
+     */
+    public IAtomContainer getRoot() {
+        return root.get();
+    }
 
+    /*
+     * Publishes the fragment as the new root if it is smaller than the
+     * current one
+     */
+    private void propagate(IAtomContainer fragment) {
+        IAtomContainer current = root.get();
+        while (fragment.getAtomCount() < current.getAtomCount()
+                && !root.compareAndSet(current, fragment)) {
+            current = root.get();
+        }
+    }
+
+    /*
+     * MULTIPLE Fragments of MCS are returned if present
+     */
+    private Set<Fragment> computeSimilarity() {
         logger.debug("Calling MCSSTask " + start + " with " + end + " items");
-        long startTime = Calendar.getInstance().getTimeInMillis();
-        IAtomContainer query = root;
-        long calcTime = startTime;
+        long startTime = System.currentTimeMillis();
 
         /*
-         * Local Seeds
+         * Local Seeds, common to the root and the targets compared so far
          */
         Set<Fragment> localSeeds = new TreeSet<>();
-        int minSeedSize = query.getAtomCount();
+        IAtomContainer shared = root.get();
+        List<IAtomContainer> queries = new ArrayList<>();
+        try {
+            queries.add(shared.clone());
+        } catch (CloneNotSupportedException ex) {
+            logger.error("ERROR IN MCS Thread: ", ex);
+            return new HashSet<>();
+        }
 
         for (int j = start; j < end; j++) {
-            IAtomContainer target = jobs.get(j);
-            Collection<Fragment> fragmentsFromMCS;
-            Isomorphism comparison = null;
-
-            try {
-                comparison = new Isomorphism(query, target, Algorithm.DEFAULT, matchBonds, matchRings, matchAtomType);
-                //comparison.setChemFilters(true, true, true);
-            } catch (Exception ex) {
-                Logger.getLogger(ForkAndJoinMCSS.class.getName()).log(Level.SEVERE, null, ex);
+            IAtomContainer latest = root.get();
+            if (latest != shared) {
+                shared = latest;
+                if (latest.getAtomCount() < queries.get(0).getAtomCount()) {
+                    /*
+                     * The published root is common to the targets of other
+                     * subtasks and the local seeds to this range, their MCS
+                     * to both
+                     */
+                    Set<Fragment> common = null;
+                    try {
+                        common = intersect(latest.clone(), queries);
+                    } catch (CloneNotSupportedException ex) {
+                        logger.error("ERROR IN MCS Thread: ", ex);
+                    }
+                    if (common != null && common.isEmpty()) {
+                        localSeeds = common;
+                        break;
+                    }
+                    if (common != null) {
+                        queries = containers(common);
+                    }
+                }
             }
-            fragmentsFromMCS = getMCSS(comparison);
-            long endCalcTime = Calendar.getInstance().getTimeInMillis();
-            calcTime = endCalcTime;
-            if (fragmentsFromMCS.isEmpty()) {
-                localSeeds.clear();
+            localSeeds = intersect(calculateMCSS.get(j), queries);
+            if (localSeeds.isEmpty()) {
                 break;
             }
-            Iterator<Fragment> iterator = fragmentsFromMCS.iterator();
-            while (iterator.hasNext()) {
-                Fragment fragment = iterator.next();
-                if (minSeedSize > fragment.getContainer().getAtomCount()) {
-                    localSeeds.clear();
-                    minSeedSize = fragment.getContainer().getAtomCount();
-                }
-                if (minSeedSize == fragment.getContainer().getAtomCount()) {
-                    localSeeds.add(fragment);
+            queries = containers(localSeeds);
+            /*
+             * Alternative fragments cannot be published as one root
+             */
+            if (localSeeds.size() == 1) {
+                try {
+                    propagate(queries.get(0).clone());
+                } catch (CloneNotSupportedException ex) {
+                    logger.error("ERROR IN MCS Thread: ", ex);
                 }
             }
         }
@@ -145,39 +231,56 @@ public class ForkAndJoinMCSS extends RecursiveTask<List<Set<Fragment>>> {
         /*
          * Add all the Maximum Unique Substructures
          */
-        Set<Fragment> seeds = new HashSet<>();
-        if (!localSeeds.isEmpty()) {
-            seeds.addAll(localSeeds);
-            localSeeds.clear();
-        }
-
+        Set<Fragment> seeds = new HashSet<>(localSeeds);
         logger.debug("No of Potential MULTIPLE " + seeds.size());
-//        System.out.println("No of Potential MULTIPLE " + seeds.size());
-        long endTime = Calendar.getInstance().getTimeInMillis();
-        logger.debug("Done: task " + start + " took " + (endTime - startTime) + "ms");
-        logger.debug(" and mcss has " + query.getAtomCount() + " atoms, and " + query.getBondCount() + " bonds");
+        logger.debug("Done: task " + start + " took " + (System.currentTimeMillis() - startTime) + "ms");
+        logger.debug(" and mcss has " + queries.get(0).getAtomCount() + " atoms, and " + queries.get(0).getBondCount() + " bonds");
         return seeds;
     }
 
-    private synchronized Set<Fragment> getMCSS(Isomorphism comparison) {
+    /*
+     * Smallest fragments of the MCS of each query with the target, empty if
+     * one of the queries has no MCS with it
+     */
+    private Set<Fragment> intersect(IAtomContainer target, List<IAtomContainer> queries) {
+        Set<Fragment> smallest = new TreeSet<>();
+        int minSeedSize = Integer.MAX_VALUE;
+        for (IAtomContainer query : queries) {
+            Isomorphism comparison = new Isomorphism(query, target, Algorithm.DEFAULT, matchBonds, matchRings, matchAtomType);
+            Collection<Fragment> fragmentsFromMCS = getMCSS(comparison);
+            if (fragmentsFromMCS.isEmpty()) {
+                return new TreeSet<>();
+            }
+            for (Fragment fragment : fragmentsFromMCS) {
+                if (minSeedSize > fragment.getContainer().getAtomCount()) {
+                    smallest.clear();
+                    minSeedSize = fragment.getContainer().getAtomCount();
+                }
+                if (minSeedSize == fragment.getContainer().getAtomCount()) {
+                    smallest.add(fragment);
+                }
+            }
+        }
+        return smallest;
+    }
+
+    private static List<IAtomContainer> containers(Set<Fragment> fragments) {
+        List<IAtomContainer> list = new ArrayList<>(fragments.size());
+        for (Fragment fragment : fragments) {
+            list.add(fragment.getContainer());
+        }
+        return list;
+    }
+
+    private Set<Fragment> getMCSS(Isomorphism comparison) {
         Set<Fragment> matchList = new HashSet<>();
         for (AtomAtomMapping mapping : comparison.getAllAtomMapping()) {
-            IAtomContainer match;
             try {
-                match = mapping.getCommonFragment();
-                try {
-                    Fragment fragment = new Fragment(match);
-                    if (!matchList.contains(fragment)) {
-                        matchList.add(fragment);
-                    }
-                } catch (CDKException ex) {
-                    logger.error("ERROR IN MCS Thread: ", ex);
-                }
-            } catch (CloneNotSupportedException ex) {
+                matchList.add(new Fragment(mapping.getCommonFragment()));
+            } catch (CDKException | CloneNotSupportedException ex) {
                 logger.error("ERROR IN MCS Thread: ", ex);
             }
         }
         return matchList;
     }
-
 }
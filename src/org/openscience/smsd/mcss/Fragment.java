@@ -26,8 +26,18 @@ import org.openscience.cdk.fingerprint.IFingerprinter;
 import org.openscience.cdk.fingerprint.ShortestPathFingerprinter;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.smiles.SmilesGenerator;
+import org.openscience.smsd.tools.CanonicalLabeller;
 
 /**
+ * An MCSS fragment, identified by the 128 bit canonical hash of its graph
+ * (see {@link CanonicalLabeller}). The hash is computed once in the
+ * constructor. Fragments with equal hashes are compared by their path
+ * fingerprints as well, so a hash collision between different graphs does
+ * not merge them; the fingerprint is only computed when that happens.
+ * Isomorphic fragments have equal hashes, except for graphs so symmetric that
+ * the canonical search stops at {@link CanonicalLabeller#MAX_LEAVES}; such
+ * fragments may be kept twice in a set.
+ *
  * @cdk.module smsd
  * @cdk.githash
  * @author Syed Asad Rahman <asad@ebi.ac.uk>
@@ -36,82 +46,110 @@ import org.openscience.cdk.smiles.SmilesGenerator;
 final public class Fragment implements Comparable<Fragment>, Serializable {
 
     static public final IFingerprinter fingerprinter = new CircularFingerprinter(CircularFingerprinter.CLASS_ECFP4);
-    private static final long serialVersionUID = 134634654886765L;
-
-    public synchronized IAtomContainer getContainer() {
-        return container;
-    }
-    private final BitSet fingerprint;
-    private final long fingerprintAsLong;
+    private static final long serialVersionUID = 134634654886766L;
     private final IAtomContainer container;
+    private final long hashHigh;
+    private final long hashLow;
+    private final int atomCount;
+    private final int bondCount;
+    private volatile BitSet fingerprint;
 
     public Fragment(IAtomContainer container) throws CDKException {
         if (container == null) {
             throw new CDKException("NULL container not supported");
         }
         this.container = container;
-        this.fingerprint = new ShortestPathFingerprinter().getBitFingerprint(container).asBitSet();
-        this.fingerprintAsLong = convert(this.fingerprint);
+        this.atomCount = container.getAtomCount();
+        this.bondCount = container.getBondCount();
+        CanonicalLabeller labeller = new CanonicalLabeller(container);
+        this.hashHigh = labeller.getHashHigh();
+        this.hashLow = labeller.getHashLow();
     }
 
-    @Override
-    public synchronized boolean equals(Object obj) {
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        final Fragment other = (Fragment) obj;
+    public IAtomContainer getContainer() {
+        return container;
+    }
 
-        if (this.getContainer() != other.getContainer() && (this.getContainer() == null
-                || (this.getContainer().getAtomCount() != other.getContainer().getAtomCount()))) {
-            return false;
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
         }
-
-        if (this.getFingerprint() != other.getFingerprint() && (this.getFingerprint() == null
-                || !this.getFingerprint().equals(other.getFingerprint()))) {
+        if (obj == null || getClass() != obj.getClass()) {
             return false;
         }
-        return this.fingerprintAsLong == other.fingerprintAsLong;
+        return compareTo((Fragment) obj) == 0;
     }
 
     @Override
-    public synchronized int hashCode() {
-        int hash = 3;
-        hash = 47 * hash + (this.getFingerprint() != null ? this.getFingerprint().hashCode() : 0);
-        hash = 47 * hash + (int) (this.fingerprintAsLong ^ (this.fingerprintAsLong >>> 32));
-        return hash;
+    public int hashCode() {
+        long hash = hashHigh ^ hashLow;
+        return (int) (hash ^ (hash >>> 32));
     }
 
     @Override
-    public synchronized int compareTo(Fragment t) {
-
-        if (this.fingerprintAsLong == t.fingerprintAsLong) {
+    public int compareTo(Fragment t) {
+        if (this == t) {
             return 0;
-        } else if (this.fingerprintAsLong > t.fingerprintAsLong) {
-            return 1;
-        } else {
-            return -1;
         }
+        int compare = Long.compare(this.hashHigh, t.hashHigh);
+        if (compare != 0) {
+            return compare;
+        }
+        compare = Long.compare(this.hashLow, t.hashLow);
+        if (compare != 0) {
+            return compare;
+        }
+        compare = Integer.compare(this.atomCount, t.atomCount);
+        if (compare != 0) {
+            return compare;
+        }
+        compare = Integer.compare(this.bondCount, t.bondCount);
+        if (compare != 0) {
+            return compare;
+        }
+        return compare(this.getFingerprint(), t.getFingerprint());
     }
 
-    private synchronized long convert(BitSet bits) {
-        long value = 0L;
-        if (bits == null || bits.isEmpty()) {
-            return value;
+    /*
+     * Orders bit sets by their lowest differing bit
+     */
+    private static int compare(BitSet a, BitSet b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : (a == null ? -1 : 1);
         }
-        for (int i = 0; i < bits.length(); ++i) {
-            value += bits.get(i) ? (1L << i) : 0L;
+        BitSet difference = (BitSet) a.clone();
+        difference.xor(b);
+        int bit = difference.nextSetBit(0);
+        if (bit < 0) {
+            return 0;
         }
-        return value;
+        return a.get(bit) ? 1 : -1;
     }
 
     /**
-     * @return the fingerprint
+     * @return the canonical hash as a 32 character hexadecimal string
+     */
+    public String getHash() {
+        return String.format("%016x%016x", hashHigh, hashLow);
+    }
+
+    /**
+     * Path fingerprint of the fragment, computed on first use.
+     *
+     * @return the fingerprint, or null if it cannot be computed
      */
     public BitSet getFingerprint() {
-        return fingerprint;
+        BitSet bits = fingerprint;
+        if (bits == null) {
+            try {
+                bits = new ShortestPathFingerprinter().getBitFingerprint(container).asBitSet();
+                fingerprint = bits;
+            } catch (CDKException ex) {
+                return null;
+            }
+        }
+        return bits;
     }
 
     /**
@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2014 Syed Asad Rahman <asad at ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.openscience.smsd.mcss;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.interfaces.Algorithm;
+import org.openscience.smsd.tools.ExtAtomContainerManipulator;
+
+/**
+ * N-way MCSS that grows one molecule at a time. The current MCSS fragments
+ * are kept; a new molecule is compared only with them, so the cost of adding
+ * molecules depends on the number added and not on the size of the series.
+ * Once the MCSS is empty it stays empty and new molecules are only counted.
+ *
+ * The state can be saved to a file and loaded in a later run:
+ * <pre>
+ * IncrementalMCSS mcss = IncrementalMCSS.load(file);
+ * mcss.addAll(newCompounds);
+ * mcss.save(file);
+ * </pre>
+ * Fragments are stored as aromatic SMILES and read back without
+ * kekulisation, so their aromatic flags are kept, and their atoms are typed
+ * again as those of the fragments found in memory.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ */
+final public class IncrementalMCSS {
+
+    private final static ILoggingTool logger
+            = LoggingToolFactory.createLoggingTool(IncrementalMCSS.class);
+    private final JobType jobType;
+    private final boolean matchBonds;
+    private final boolean matchRings;
+    private final boolean matchAtomType;
+    private List<IAtomContainer> fragments;
+    private int moleculeCount;
+
+    /**
+     *
+     * @param jobType MULTIPLE/SINGLE
+     * @param matchBonds
+     * @param matchRings
+     * @param matchAtomType
+     */
+    public IncrementalMCSS(JobType jobType, boolean matchBonds, boolean matchRings, boolean matchAtomType) {
+        this.jobType = jobType;
+        this.matchBonds = matchBonds;
+        this.matchRings = matchRings;
+        this.matchAtomType = matchAtomType;
+        this.fragments = new ArrayList<>();
+        this.moleculeCount = 0;
+    }
+
+    /**
+     * Intersects the current MCSS with a molecule.
+     *
+     * @param molecule
+     * @return true if the MCSS is not empty afterwards
+     */
+    public synchronized boolean add(IAtomContainer molecule) {
+        List<IAtomContainer> target = new ArrayList<>(1);
+        target.add(ExtAtomContainerManipulator.removeHydrogens(molecule));
+        return intersect(target, 1);
+    }
+
+    /**
+     * Intersects the current MCSS with the MCSS of another series, e.g. one
+     * computed in parallel on a different part of the same input.
+     *
+     * @param other
+     * @return true if the MCSS is not empty afterwards
+     */
+    public synchronized boolean add(IncrementalMCSS other) {
+        List<IAtomContainer> otherFragments;
+        int otherCount;
+        synchronized (other) {
+            otherFragments = new ArrayList<>(other.fragments);
+            otherCount = other.moleculeCount;
+        }
+        if (otherCount == 0) {
+            return moleculeCount == 0 || !fragments.isEmpty();
+        }
+        return intersect(otherFragments, otherCount);
+    }
+
+    /*
+     * Keeps the largest common fragments of the current fragments and the
+     * others, which stand for count molecules
+     */
+    private boolean intersect(List<IAtomContainer> others, int count) {
+        boolean first = moleculeCount == 0;
+        moleculeCount += count;
+        if (first) {
+            fragments = new ArrayList<>(others);
+            return !fragments.isEmpty();
+        }
+        if (fragments.isEmpty()) {
+            return false;
+        }
+        Set<Fragment> best = new TreeSet<>();
+        int bestSize = 0;
+        for (IAtomContainer fragment : fragments) {
+            for (IAtomContainer target : others) {
+                Isomorphism comparison = new Isomorphism(fragment, target, Algorithm.DEFAULT,
+                        matchBonds, matchRings, matchAtomType);
+                for (AtomAtomMapping mapping : comparison.getAllAtomMapping()) {
+                    int size = mapping.getCount();
+                    if (size == 0 || size < bestSize) {
+                        continue;
+                    }
+                    try {
+                        Fragment common = new Fragment(mapping.getCommonFragment());
+                        if (size > bestSize) {
+                            best.clear();
+                            bestSize = size;
+                        }
+                        best.add(common);
+                    } catch (CDKException | CloneNotSupportedException ex) {
+                        logger.error("ERROR IN Incremental MCSS: ", ex);
+                    }
+                }
+            }
+        }
+        List<IAtomContainer> next = new ArrayList<>(best.size());
+        for (Fragment fragment : best) {
+            next.add(fragment.getContainer());
+            if (jobType.equals(JobType.SINGLE)) {
+                break;
+            }
+        }
+        fragments = next;
+        return !fragments.isEmpty();
+    }
+
+    /**
+     * Intersects the current MCSS with each molecule; once it is empty the
+     * remaining molecules are only counted.
+     *
+     * @param molecules
+     * @return true if the MCSS is not empty afterwards
+     */
+    public synchronized boolean addAll(Collection<IAtomContainer> molecules) {
+        for (IAtomContainer molecule : molecules) {
+            add(molecule);
+        }
+        return !fragments.isEmpty();
+    }
+
+    /**
+     * @return the current MCSS fragments
+     */
+    public synchronized Collection<IAtomContainer> getCalculateMCSS() {
+        return Collections.unmodifiableCollection(new ArrayList<>(fragments));
+    }
+
+    /**
+     * @return number of molecules added so far
+     */
+    public synchronized int getMoleculeCount() {
+        return moleculeCount;
+    }
+
+    /**
+     * Writes the state to a file.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public synchronized void save(File file) throws IOException {
+        Properties state = new Properties();
+        state.setProperty("jobType", jobType.name());
+        state.setProperty("matchBonds", Boolean.toString(matchBonds));
+        state.setProperty("matchRings", Boolean.toString(matchRings));
+        state.setProperty("matchAtomType", Boolean.toString(matchAtomType));
+        state.setProperty("molecules", Integer.toString(moleculeCount));
+        state.setProperty("fragments", Integer.toString(fragments.size()));
+        for (int i = 0; i < fragments.size(); i++) {
+            try {
+                state.setProperty("fragment." + i, new Fragment(fragments.get(i)).getFragmentSMILES());
+            } catch (CDKException ex) {
+                throw new IOException("Unable to write fragment " + i, ex);
+            }
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            state.store(out, "SMSD incremental MCSS");
+        }
+    }
+
+    /**
+     * Reads a state written by {@link #save(File)}.
+     *
+     * @param file
+     * @return the incremental MCSS
+     * @throws IOException if the file cannot be read or is not a saved state
+     */
+    public static IncrementalMCSS load(File file) throws IOException {
+        Properties state = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            state.load(in);
+        }
+        try {
+            IncrementalMCSS mcss = new IncrementalMCSS(
+                    JobType.valueOf(required(state, "jobType")),
+                    Boolean.parseBoolean(required(state, "matchBonds")),
+                    Boolean.parseBoolean(required(state, "matchRings")),
+                    Boolean.parseBoolean(required(state, "matchAtomType")));
+            mcss.moleculeCount = Integer.parseInt(required(state, "molecules"));
+            int count = Integer.parseInt(required(state, "fragments"));
+            SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+            /*
+             * Keep the aromatic flags of the fragments, they may be parts of
+             * aromatic rings that cannot be kekulised on their own
+             */
+            sp.kekulise(false);
+            for (int i = 0; i < count; i++) {
+                IAtomContainer fragment = sp.parseSmiles(required(state, "fragment." + i));
+                ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(fragment);
+                mcss.fragments.add(fragment);
+            }
+            return mcss;
+        } catch (IllegalArgumentException | CDKException ex) {
+            throw new IOException("Not an incremental MCSS state: " + file, ex);
+        }
+    }
+
+    private static String required(Properties state, String key) throws IOException {
+        String value = state.getProperty(key);
+        if (value == null) {
+            throw new IOException("Missing " + key);
+        }
+        return value;
+    }
+}
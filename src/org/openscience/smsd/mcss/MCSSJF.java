@@ -7,6 +7,7 @@ package org.openscience.smsd.mcss;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -20,6 +21,7 @@ import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.smsd.Isomorphism;
 import org.openscience.smsd.interfaces.Algorithm;
+import org.openscience.smsd.tools.AtomContainerComparator;
 
 /**
  *
@@ -32,13 +34,27 @@ public class MCSSJF {
     private final boolean matchBonds;
     private final boolean matchRings;
     private final boolean matchAtomType;
+    private final long costThreshold;
     private final List<IAtomContainer> solutions;
 
-    private synchronized List<IAtomContainer> submitFJJob(List<IAtomContainer> mcssList) {
-        final ForkJoinPool forkJoinPool = new ForkJoinPool();
-        ForkAndJoinMCSS mcssJobThread = new ForkAndJoinMCSS(mcssList.get(0), new ArrayList<>(mcssList), matchBonds, matchRings, matchAtomType);
-        List<Set<Fragment>> solutionsJF = forkJoinPool.invoke(mcssJobThread);
-        forkJoinPool.shutdown();
+    private List<IAtomContainer> submitFJJob(List<IAtomContainer> mcssList, ForkJoinPool pool) {
+        if (mcssList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        /*
+         The smallest molecule is the first root, it bounds the MCSS
+         */
+        IAtomContainer firstRoot = Collections.min(mcssList, new AtomContainerComparator());
+        final ForkJoinPool forkJoinPool = pool == null ? new ForkJoinPool() : pool;
+        ForkAndJoinMCSS mcssJobThread = new ForkAndJoinMCSS(firstRoot, new ArrayList<>(mcssList), costThreshold, matchBonds, matchRings, matchAtomType);
+        List<Set<Fragment>> solutionsJF;
+        try {
+            solutionsJF = forkJoinPool.invoke(mcssJobThread);
+        } finally {
+            if (pool == null) {
+                forkJoinPool.shutdown();
+            }
+        }
 
         System.out.println("First Round " + solutionsJF.size());
 
@@ -118,10 +134,25 @@ public class MCSSJF {
      * @param matchAtomType
      */
     public MCSSJF(List<IAtomContainer> calculateMCSS, boolean matchBonds, boolean matchRings, boolean matchAtomType) {
+        this(calculateMCSS, null, ForkAndJoinMCSS.DEFAULT_COST_THRESHOLD, matchBonds, matchRings, matchAtomType);
+    }
+
+    /**
+     *
+     * @param calculateMCSS
+     * @param pool fork/join pool to run on, or null for a private pool
+     * @param costThreshold largest estimated cost (product of atom counts)
+     * compared serially by one task
+     * @param matchBonds
+     * @param matchRings
+     * @param matchAtomType
+     */
+    public MCSSJF(List<IAtomContainer> calculateMCSS, ForkJoinPool pool, long costThreshold, boolean matchBonds, boolean matchRings, boolean matchAtomType) {
         this.matchBonds = matchBonds;
         this.matchRings = matchRings;
         this.matchAtomType = matchAtomType;
-        this.solutions = submitFJJob(calculateMCSS);
+        this.costThreshold = costThreshold;
+        this.solutions = submitFJJob(calculateMCSS, pool);
     }
 
     public synchronized String getTitle() {
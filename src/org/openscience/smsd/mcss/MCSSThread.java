@@ -20,14 +20,20 @@ package org.openscience.smsd.mcss;
 
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.smiles.SmilesGenerator;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.smsd.tools.CanonicalLabeller;
 import org.openscience.smsd.tools.ExtAtomContainerManipulator;
+import org.openscience.smsd.tools.SharedPool;
 import org.openscience.smsd.AtomAtomMapping;
 import org.openscience.smsd.BaseMapping;
 import org.openscience.smsd.Isomorphism;
@@ -49,6 +55,7 @@ final public class MCSSThread implements Callable<LinkedBlockingQueue<IAtomConta
     private final boolean matchBonds;
     private final boolean matchRings;
     private final boolean matchAtomType;
+    private final ConcurrentMap<String, Collection<Fragment>> comparisons;
 
     /**
      *
@@ -77,7 +84,7 @@ final public class MCSSThread implements Callable<LinkedBlockingQueue<IAtomConta
         this.matchBonds = matchBonds;
         this.matchRings = matchRings;
         this.matchAtomType = matchAtomType;
-
+        this.comparisons = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -162,55 +169,25 @@ final public class MCSSThread implements Callable<LinkedBlockingQueue<IAtomConta
             /*
              * Choose only cleaned MULTIPLE Substructures
              */
+            List<Set<Fragment>> reduced = reduceSeeds(new ArrayList<>(seeds));
+            seeds.clear();
             minSeedSize = Integer.MAX_VALUE;
-
-            while (!seeds.isEmpty()) {
-                IAtomContainer fragmentMCS = seeds.poll();
-                localSeeds = new TreeSet<>();
-                logger.debug("Potential MULTIPLE " + getMCSSSmiles(fragmentMCS));
-                Collection<Fragment> fragmentsFromMCS;
-                for (IAtomContainer target : mcssList) {
-                    Isomorphism comparison = new Isomorphism(fragmentMCS, target, Algorithm.DEFAULT, matchBonds, matchRings, matchAtomType);
-                    comparison.setChemFilters(true, true, true);
-                    fragmentsFromMCS = getMCSS(comparison);
-
-                    /*
-                     * Only true MCSS is added
-                     */
-                    if (fragmentsFromMCS == null || fragmentsFromMCS.isEmpty()) {
-                        localSeeds.clear();
-                        break;
-                    }
-                    Iterator<Fragment> iterator = fragmentsFromMCS.iterator();
-                    /*
-                     * Store rest of the unique hits
-                     */
-                    while (iterator.hasNext()) {
-                        Fragment fragment = iterator.next();
-                        if (minSeedSize > fragment.getContainer().getAtomCount()) {
-                            localSeeds.clear();
-                            minSeedSize = fragment.getContainer().getAtomCount();
-                        }
-                        if (minSeedSize == fragment.getContainer().getAtomCount()) {
-                            localSeeds.add(fragment);
-                        }
-                    }
-                    /*
-                     * Top solution
-                     */
-                    fragmentMCS = localSeeds.iterator().next().getContainer();
+            for (Set<Fragment> solution : reduced) {
+                if (!solution.isEmpty()) {
+                    minSeedSize = Math.min(minSeedSize, solution.iterator().next().getContainer().getAtomCount());
                 }
-
-                /*
-                 * Add all the Maximum Unique Substructures
-                 */
-                if (!localSeeds.isEmpty()) {
-                    for (Fragment f : localSeeds) {
-                        mcss.add(f.getContainer());
-                    }
-                    localSeeds.clear();
+            }
+            /*
+             * Add all the Maximum Unique Substructures
+             */
+            Set<Fragment> unique = new TreeSet<>();
+            for (Set<Fragment> solution : reduced) {
+                if (!solution.isEmpty() && solution.iterator().next().getContainer().getAtomCount() == minSeedSize) {
+                    unique.addAll(solution);
                 }
-
+            }
+            for (Fragment f : unique) {
+                mcss.add(f.getContainer());
             }
         } catch (CDKException e) {
             logger.error("ERROR IN MCS Thread: ", e);
@@ -220,6 +197,102 @@ final public class MCSSThread implements Callable<LinkedBlockingQueue<IAtomConta
         logger.debug(" and mcss has " + querySeed.getAtomCount() + " atoms, and " + querySeed.getBondCount() + " bonds");
         return mcss;
     }
+    /*
+     * Reduces every seed against the whole list, in parallel on the shared
+     * pool unless this task already runs on a fork/join worker
+     */
+    private List<Set<Fragment>> reduceSeeds(List<IAtomContainer> seedList) throws CDKException {
+        List<Set<Fragment>> reduced = new ArrayList<>(seedList.size());
+        if (seedList.size() == 1 || SharedPool.isWorker()) {
+            for (IAtomContainer seed : seedList) {
+                reduced.add(reduceSeed(seed));
+            }
+            return reduced;
+        }
+        List<Callable<Set<Fragment>>> tasks = new ArrayList<>(seedList.size());
+        for (final IAtomContainer seed : seedList) {
+            tasks.add(new Callable<Set<Fragment>>() {
+                @Override
+                public Set<Fragment> call() throws CDKException {
+                    return reduceSeed(seed);
+                }
+            });
+        }
+        try {
+            for (Future<Set<Fragment>> future : SharedPool.invokeAll(tasks)) {
+                reduced.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CDKException("MCSS seed reduction interrupted", e);
+        } catch (ExecutionException e) {
+            throw new CDKException("MCSS seed reduction failed", e.getCause());
+        }
+        return reduced;
+    }
+
+    /*
+     * Shrinks a seed by comparing it with each molecule in turn; returns the
+     * smallest unique fragments found
+     */
+    private Set<Fragment> reduceSeed(IAtomContainer seed) throws CDKException {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Potential MULTIPLE " + new SmilesGenerator().aromatic().create(seed));
+        }
+        IAtomContainer fragmentMCS = seed;
+        Set<Fragment> localSeeds = new TreeSet<>();
+        int minSeedSize = Integer.MAX_VALUE;
+        for (int index = 0; index < mcssList.size(); index++) {
+            Collection<Fragment> fragmentsFromMCS = compare(fragmentMCS, index);
+            /*
+             * Only true MCSS is added
+             */
+            if (fragmentsFromMCS.isEmpty()) {
+                localSeeds.clear();
+                break;
+            }
+            for (Fragment fragment : fragmentsFromMCS) {
+                if (minSeedSize > fragment.getContainer().getAtomCount()) {
+                    localSeeds.clear();
+                    minSeedSize = fragment.getContainer().getAtomCount();
+                }
+                if (minSeedSize == fragment.getContainer().getAtomCount()) {
+                    localSeeds.add(fragment);
+                }
+            }
+            /*
+             * Top solution
+             */
+            fragmentMCS = localSeeds.iterator().next().getContainer();
+        }
+        return localSeeds;
+    }
+
+    /*
+     * Unique MCS fragments of a fragment and the molecule at the index,
+     * memoised by the canonical hash of the fragment. Only the fragments are
+     * used, so the chemical filters are not run. Both molecules are copied as
+     * the comparison initialises them and they are shared between threads.
+     */
+    private Collection<Fragment> compare(IAtomContainer fragmentMCS, int index) throws CDKException {
+        String key = new CanonicalLabeller(fragmentMCS).getHash() + ":" + index;
+        Collection<Fragment> fragments = comparisons.get(key);
+        if (fragments == null) {
+            try {
+                Isomorphism comparison = new Isomorphism(fragmentMCS.clone(), mcssList.get(index).clone(),
+                        Algorithm.DEFAULT, matchBonds, matchRings, matchAtomType);
+                fragments = getMCSS(comparison);
+            } catch (CloneNotSupportedException e) {
+                throw new CDKException("Unable to copy molecule", e);
+            }
+            Collection<Fragment> previous = comparisons.putIfAbsent(key, fragments);
+            if (previous != null) {
+                fragments = previous;
+            }
+        }
+        return fragments;
+    }
+
     /*
      * SINGLE Fragment of MCS is returned if present.
      */
@@ -268,7 +341,7 @@ final public class MCSSThread implements Callable<LinkedBlockingQueue<IAtomConta
         return mcss;
     }
 
-    private synchronized Collection<Fragment> getMCSS(BaseMapping comparison) {
+    private Collection<Fragment> getMCSS(BaseMapping comparison) {
         Set<Fragment> matchList = new HashSet<>();
         for (AtomAtomMapping mapping : comparison.getAllAtomMapping()) {
             IAtomContainer match;
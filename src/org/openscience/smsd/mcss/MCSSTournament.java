@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2014 Syed Asad Rahman <asad at ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.openscience.smsd.mcss;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.interfaces.Algorithm;
+import org.openscience.smsd.tools.AtomContainerComparator;
+import org.openscience.smsd.tools.ExtAtomContainerManipulator;
+
+/**
+ * N-way MCSS by a balanced pairwise reduction tree. The molecules are sorted
+ * in ascending order with {@link AtomContainerComparator} and the sorted list
+ * is halved recursively; each leaf is a molecule and each inner node the MCS
+ * of the results of its two children, so neighbouring small molecules are
+ * reduced first and the critical path has log2(n) comparison levels instead of
+ * the n/nThreads chain of {@link MCSS}. The subtrees run as fork/join tasks
+ * and are balanced across threads by work stealing.
+ *
+ * If a node of the tree has no common substructure, or one with fewer atoms
+ * than the minimum size, the whole reduction stops and the result is empty.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ */
+final public class MCSSTournament {
+
+    private final static ILoggingTool logger
+            = LoggingToolFactory.createLoggingTool(MCSSTournament.class);
+    private final Collection<IAtomContainer> calculateMCSS;
+    private final JobType jobType;
+    private final int minimumSize;
+    private final boolean matchBonds;
+    private final boolean matchRings;
+    private final boolean matchAtomType;
+    private final AtomicBoolean shortCircuited;
+    private final AtomicInteger comparisons;
+
+    /**
+     *
+     * @param jobList
+     * @param jobType
+     * @param minimumSize smallest MCSS (in atoms) worth reporting
+     */
+    public MCSSTournament(List<IAtomContainer> jobList, JobType jobType, int minimumSize) {
+        this(jobList, jobType, minimumSize, null, true, true, true);
+    }
+
+    /**
+     *
+     * @param jobList
+     * @param jobType
+     * @param minimumSize smallest MCSS (in atoms) worth reporting
+     * @param pool fork/join pool to run on, or null for a private pool
+     * @param matchBonds
+     * @param matchRings
+     * @param matchAtomType
+     */
+    public MCSSTournament(
+            List<IAtomContainer> jobList,
+            JobType jobType,
+            int minimumSize,
+            ForkJoinPool pool,
+            boolean matchBonds,
+            boolean matchRings,
+            boolean matchAtomType) {
+        this.jobType = jobType;
+        this.minimumSize = minimumSize;
+        this.matchBonds = matchBonds;
+        this.matchRings = matchRings;
+        this.matchAtomType = matchAtomType;
+        this.shortCircuited = new AtomicBoolean(false);
+        this.comparisons = new AtomicInteger(0);
+        /*
+         * Remove hydrogen from the molecules
+         **/
+        List<IAtomContainer> selectedJobs = new ArrayList<>(jobList.size());
+        for (IAtomContainer ac : jobList) {
+            selectedJobs.add(ExtAtomContainerManipulator.removeHydrogens(ac));
+        }
+        /*
+         * Sort the molecules in the ascending order of atom size and atom type
+         */
+        Collections.sort(selectedJobs, new AtomContainerComparator());
+
+        List<IAtomContainer> solutions = new ArrayList<>();
+        if (!selectedJobs.isEmpty()) {
+            ForkJoinPool forkJoinPool = pool == null ? new ForkJoinPool() : pool;
+            try {
+                solutions = forkJoinPool.invoke(new Node(selectedJobs, 0, selectedJobs.size()));
+            } finally {
+                if (pool == null) {
+                    forkJoinPool.shutdown();
+                }
+            }
+        }
+        this.calculateMCSS = shortCircuited.get() ? new ArrayList<IAtomContainer>() : solutions;
+        logger.debug("Tournament MCSS took " + comparisons.get() + " comparisons");
+    }
+
+    /**
+     * @return the calculateMCSS
+     */
+    public Collection<IAtomContainer> getCalculateMCSS() {
+        return Collections.unmodifiableCollection(calculateMCSS);
+    }
+
+    /**
+     * @return true if the reduction stopped below the minimum size
+     */
+    public boolean isShortCircuited() {
+        return shortCircuited.get();
+    }
+
+    /**
+     * @return number of pairwise MCS comparisons run
+     */
+    public int getComparisonCount() {
+        return comparisons.get();
+    }
+
+    public String getTitle() {
+        return "Calculating Maximum Commmon Substrutures (MCSS) using SMSD";
+    }
+
+    private List<IAtomContainer> stop() {
+        shortCircuited.set(true);
+        return new ArrayList<>();
+    }
+
+    /*
+     * MCS of every fragment on the left with every fragment on the right; the
+     * largest common fragments are kept.
+     */
+    private List<IAtomContainer> reduce(List<IAtomContainer> left, List<IAtomContainer> right) {
+        if (shortCircuited.get() || left.isEmpty() || right.isEmpty()) {
+            return stop();
+        }
+        Set<Fragment> best = new TreeSet<>();
+        int bestSize = 0;
+        for (IAtomContainer query : left) {
+            for (IAtomContainer target : right) {
+                if (shortCircuited.get()) {
+                    return stop();
+                }
+                comparisons.incrementAndGet();
+                Isomorphism comparison = new Isomorphism(query, target, Algorithm.DEFAULT,
+                        matchBonds, matchRings, matchAtomType);
+                for (AtomAtomMapping mapping : comparison.getAllAtomMapping()) {
+                    int size = mapping.getCount();
+                    if (size == 0 || size < bestSize) {
+                        continue;
+                    }
+                    try {
+                        Fragment fragment = new Fragment(mapping.getCommonFragment());
+                        if (size > bestSize) {
+                            best.clear();
+                            bestSize = size;
+                        }
+                        best.add(fragment);
+                    } catch (CDKException | CloneNotSupportedException ex) {
+                        logger.error("ERROR IN MCS Tournament: ", ex);
+                    }
+                    if (jobType.equals(JobType.SINGLE)) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (bestSize == 0 || bestSize < minimumSize) {
+            return stop();
+        }
+        List<IAtomContainer> solutions = new ArrayList<>(best.size());
+        for (Fragment fragment : best) {
+            solutions.add(fragment.getContainer());
+            if (jobType.equals(JobType.SINGLE)) {
+                break;
+            }
+        }
+        return solutions;
+    }
+
+    /**
+     * A subtree of the reduction over the molecules [start, end).
+     */
+    private final class Node extends RecursiveTask<List<IAtomContainer>> {
+
+        private static final long serialVersionUID = 7761929457113290148L;
+        private final List<IAtomContainer> jobs;
+        private final int start;
+        private final int end;
+
+        Node(List<IAtomContainer> jobs, int start, int end) {
+            this.jobs = jobs;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected List<IAtomContainer> compute() {
+            if (shortCircuited.get()) {
+                return new ArrayList<>();
+            }
+            int length = end - start;
+            if (length == 1) {
+                IAtomContainer molecule = jobs.get(start);
+                if (molecule.getAtomCount() < minimumSize) {
+                    return stop();
+                }
+                List<IAtomContainer> leaf = new ArrayList<>(1);
+                leaf.add(molecule);
+                return leaf;
+            }
+            int middle = start + length / 2;
+            Node right = new Node(jobs, middle, end);
+            right.fork();
+            List<IAtomContainer> leftResult = new Node(jobs, start, middle).compute();
+            List<IAtomContainer> rightResult = right.join();
+            return reduce(leftResult, rightResult);
+        }
+    }
+}
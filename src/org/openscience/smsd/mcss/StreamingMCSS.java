@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2014 Syed Asad Rahman <asad at ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.openscience.smsd.mcss;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+/**
+ * N-way MCSS computed in one pass over a stream of molecules, e.g. an
+ * {@link org.openscience.cdk.io.iterator.IteratingSDFReader}. The stream is
+ * cut into segments; each segment is folded into an {@link IncrementalMCSS}
+ * on a worker thread and the segment results are merged in order. At most
+ * one segment per thread is held in memory, whatever the length of the
+ * stream. Reading stops as soon as the MCSS of any segment, or of the
+ * merged result, is empty.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ */
+final public class StreamingMCSS {
+
+    private final static ILoggingTool logger
+            = LoggingToolFactory.createLoggingTool(StreamingMCSS.class);
+    private final JobType jobType;
+    private final int segmentSize;
+    private final int nThreads;
+    private final boolean matchBonds;
+    private final boolean matchRings;
+    private final boolean matchAtomType;
+    private final AtomicBoolean exhausted;
+    private int moleculeCount;
+
+    /**
+     *
+     * @param jobType MULTIPLE/SINGLE
+     * @param segmentSize molecules per segment
+     * @param nThreads number of threads, 0 for one per processor
+     * @param matchBonds
+     * @param matchRings
+     * @param matchAtomType
+     */
+    public StreamingMCSS(JobType jobType, int segmentSize, int nThreads,
+            boolean matchBonds, boolean matchRings, boolean matchAtomType) {
+        this.jobType = jobType;
+        this.segmentSize = Math.max(2, segmentSize);
+        this.nThreads = nThreads > 0 ? nThreads : Runtime.getRuntime().availableProcessors();
+        this.matchBonds = matchBonds;
+        this.matchRings = matchRings;
+        this.matchAtomType = matchAtomType;
+        this.exhausted = new AtomicBoolean(false);
+    }
+
+    /**
+     * Reads the molecules and returns their MCSS.
+     *
+     * @param molecules
+     * @return the MCSS fragments, empty if there is no common substructure
+     * @throws CDKException if a segment fails
+     */
+    public synchronized Collection<IAtomContainer> calculate(Iterator<IAtomContainer> molecules) throws CDKException {
+        exhausted.set(false);
+        moleculeCount = 0;
+        IncrementalMCSS merged = new IncrementalMCSS(jobType, matchBonds, matchRings, matchAtomType);
+        Deque<Future<IncrementalMCSS>> pending = new ArrayDeque<>(nThreads);
+        ExecutorService threadPool = Executors.newFixedThreadPool(nThreads);
+        try {
+            while (!exhausted.get() && molecules.hasNext()) {
+                List<IAtomContainer> segment = new ArrayList<>(segmentSize);
+                while (segment.size() < segmentSize && molecules.hasNext()) {
+                    segment.add(molecules.next());
+                }
+                moleculeCount += segment.size();
+                pending.add(threadPool.submit(new Segment(segment)));
+                if (pending.size() >= nThreads) {
+                    merge(merged, pending.poll().get());
+                }
+            }
+            while (!exhausted.get() && !pending.isEmpty()) {
+                merge(merged, pending.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CDKException("Streaming MCSS interrupted", e);
+        } catch (ExecutionException e) {
+            throw new CDKException("Streaming MCSS failed", e.getCause());
+        } finally {
+            for (Future<IncrementalMCSS> future : pending) {
+                future.cancel(true);
+            }
+            threadPool.shutdownNow();
+        }
+        if (exhausted.get()) {
+            logger.debug("MCSS empty after " + moleculeCount + " molecules");
+            return new ArrayList<>();
+        }
+        return merged.getCalculateMCSS();
+    }
+
+    private void merge(IncrementalMCSS merged, IncrementalMCSS segment) {
+        if (!merged.add(segment)) {
+            exhausted.set(true);
+        }
+    }
+
+    /**
+     * @return number of molecules read by the last calculation
+     */
+    public synchronized int getMoleculeCount() {
+        return moleculeCount;
+    }
+
+    /**
+     * @return true if the last calculation stopped on an empty MCSS
+     */
+    public boolean isTerminatedEarly() {
+        return exhausted.get();
+    }
+
+    /**
+     * Folds one segment; gives up as soon as any segment is empty.
+     */
+    private final class Segment implements Callable<IncrementalMCSS> {
+
+        private final List<IAtomContainer> molecules;
+
+        Segment(List<IAtomContainer> molecules) {
+            this.molecules = molecules;
+        }
+
+        @Override
+        public IncrementalMCSS call() {
+            IncrementalMCSS mcss = new IncrementalMCSS(jobType, matchBonds, matchRings, matchAtomType);
+            for (IAtomContainer molecule : molecules) {
+                if (exhausted.get()) {
+                    break;
+                }
+                if (!mcss.add(molecule)) {
+                    exhausted.set(true);
+                    break;
+                }
+            }
+            return mcss;
+        }
+    }
+}
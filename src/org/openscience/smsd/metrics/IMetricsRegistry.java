@@ -0,0 +1,56 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.metrics;
+
+/**
+ * Service provider for the metrics of the search engines. An implementation
+ * hands out the counters, timers and histograms by name, returning the same
+ * instrument for the same name, and must be safe for use by concurrent
+ * searches. The engines look their instruments up once per search and update
+ * them in their inner loops, so the updates should be cheap.
+ *
+ * @see Metrics
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public interface IMetricsRegistry {
+
+    /**
+     * @param name metric name
+     * @return the counter of this name
+     */
+    public abstract ICounter counter(String name);
+
+    /**
+     * @param name metric name
+     * @return the timer of this name
+     */
+    public abstract ITimer timer(String name);
+
+    /**
+     * @param name metric name
+     * @return the histogram of this name
+     */
+    public abstract IHistogram histogram(String name);
+}
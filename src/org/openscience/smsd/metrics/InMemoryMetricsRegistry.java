@@ -0,0 +1,291 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.metrics;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Registry keeping its metrics in memory, for a summary at the end of a run.
+ * Counters are atomic longs. Timers and histograms keep the count, sum,
+ * minimum and maximum of their values and a histogram of power of two
+ * buckets, so percentiles are approximate: a reported percentile is the upper
+ * end of its bucket, at most twice the exact value, and never above the
+ * maximum.
+ *
+ * Readings taken while searches are running are not an atomic snapshot.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class InMemoryMetricsRegistry implements IMetricsRegistry {
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private final ConcurrentMap<String, Counter> counters;
+    private final ConcurrentMap<String, Distribution> timers;
+    private final ConcurrentMap<String, Distribution> histograms;
+
+    public InMemoryMetricsRegistry() {
+        this.counters = new ConcurrentHashMap<>();
+        this.timers = new ConcurrentHashMap<>();
+        this.histograms = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            Counter created = new Counter();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    @Override
+    public Distribution timer(String name) {
+        return distribution(timers, name);
+    }
+
+    @Override
+    public Distribution histogram(String name) {
+        return distribution(histograms, name);
+    }
+
+    private static Distribution distribution(ConcurrentMap<String, Distribution> map, String name) {
+        Distribution distribution = map.get(name);
+        if (distribution == null) {
+            Distribution created = new Distribution();
+            distribution = map.putIfAbsent(name, created);
+            if (distribution == null) {
+                distribution = created;
+            }
+        }
+        return distribution;
+    }
+
+    /**
+     * @return counter values by name, in name order
+     */
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getCount());
+        }
+        return values;
+    }
+
+    /**
+     * @return timers by name, in name order
+     */
+    public Map<String, Distribution> getTimers() {
+        return new TreeMap<>(timers);
+    }
+
+    /**
+     * @return histograms by name, in name order
+     */
+    public Map<String, Distribution> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    /**
+     * Removes all metrics. Searches that are running keep updating the
+     * instruments they already hold, which are no longer reported.
+     */
+    public void clear() {
+        counters.clear();
+        timers.clear();
+        histograms.clear();
+    }
+
+    /**
+     * Prints all metrics that were updated, timers in milliseconds.
+     *
+     * @param out stream to print to
+     */
+    public void report(PrintStream out) {
+        Map<String, Long> counterValues = getCounters();
+        if (!counterValues.isEmpty()) {
+            out.println(String.format("%-28s %12s", "Counters", "count"));
+            for (Map.Entry<String, Long> entry : counterValues.entrySet()) {
+                out.println(String.format("  %-26s %12d", entry.getKey(), entry.getValue()));
+            }
+        }
+        Map<String, Distribution> timerValues = getTimers();
+        if (!timerValues.isEmpty()) {
+            out.println(String.format("%-28s %10s %12s %10s %10s %10s %10s",
+                    "Timers (ms)", "count", "total", "mean", "p50", "p99", "max"));
+            for (Map.Entry<String, Distribution> entry : timerValues.entrySet()) {
+                Distribution timer = entry.getValue();
+                out.println(String.format("  %-26s %10d %12.1f %10.3f %10.3f %10.3f %10.3f",
+                        entry.getKey(), timer.getCount(),
+                        timer.getSum() / NANOS_PER_MILLI, timer.getMean() / NANOS_PER_MILLI,
+                        timer.getPercentile(0.5) / NANOS_PER_MILLI,
+                        timer.getPercentile(0.99) / NANOS_PER_MILLI,
+                        timer.getMax() / NANOS_PER_MILLI));
+            }
+        }
+        Map<String, Distribution> histogramValues = getHistograms();
+        if (!histogramValues.isEmpty()) {
+            out.println(String.format("%-28s %10s %10s %10s %10s %10s %10s",
+                    "Histograms", "count", "min", "mean", "p50", "p99", "max"));
+            for (Map.Entry<String, Distribution> entry : histogramValues.entrySet()) {
+                Distribution histogram = entry.getValue();
+                out.println(String.format("  %-26s %10d %10d %10.1f %10d %10d %10d",
+                        entry.getKey(), histogram.getCount(), histogram.getMin(),
+                        histogram.getMean(), histogram.getPercentile(0.5),
+                        histogram.getPercentile(0.99), histogram.getMax()));
+            }
+        }
+    }
+
+    /**
+     * Counter of this registry.
+     */
+    public static final class Counter implements ICounter {
+
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public void increment() {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void add(long events) {
+            count.addAndGet(events);
+        }
+
+        /**
+         * @return number of events counted
+         */
+        public long getCount() {
+            return count.get();
+        }
+    }
+
+    /**
+     * Timer or histogram of this registry.
+     */
+    public static final class Distribution implements ITimer, IHistogram {
+
+        /*
+         * Bucket 0 holds 0, bucket b > 0 the values in [2^(b-1), 2^b)
+         */
+        private final AtomicLongArray buckets = new AtomicLongArray(65);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        @Override
+        public void record(long nanos) {
+            update(nanos);
+        }
+
+        @Override
+        public void update(long value) {
+            long v = Math.max(0L, value);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(v));
+            count.incrementAndGet();
+            sum.addAndGet(v);
+            long current = min.get();
+            while (v < current && !min.compareAndSet(current, v)) {
+                current = min.get();
+            }
+            current = max.get();
+            while (v > current && !max.compareAndSet(current, v)) {
+                current = max.get();
+            }
+        }
+
+        /**
+         * @return number of values
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * @return sum of the values
+         */
+        public long getSum() {
+            return sum.get();
+        }
+
+        /**
+         * @return smallest value, 0 if there are none
+         */
+        public long getMin() {
+            return count.get() == 0 ? 0L : min.get();
+        }
+
+        /**
+         * @return largest value, 0 if there are none
+         */
+        public long getMax() {
+            return count.get() == 0 ? 0L : max.get();
+        }
+
+        /**
+         * @return mean value, 0 if there are none
+         */
+        public double getMean() {
+            long n = count.get();
+            return n == 0 ? 0.0 : (double) sum.get() / n;
+        }
+
+        /**
+         * Approximate percentile: the upper end of the bucket holding the
+         * value of this rank, limited by the maximum.
+         *
+         * @param quantile quantile between 0 and 1, e.g. 0.99
+         * @return the percentile, 0 if there are no values
+         */
+        public long getPercentile(double quantile) {
+            long n = count.get();
+            if (n == 0) {
+                return 0L;
+            }
+            long rank = Math.max(1L, (long) Math.ceil(quantile * n));
+            long seen = 0;
+            for (int b = 0; b < buckets.length(); b++) {
+                seen += buckets.get(b);
+                if (seen >= rank) {
+                    long upper = b == 0 ? 0L : (b == 64 ? Long.MAX_VALUE : (1L << b) - 1);
+                    return Math.max(getMin(), Math.min(upper, getMax()));
+                }
+            }
+            return getMax();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.metrics;
+
+/**
+ * Holds the {@link IMetricsRegistry} the search engines report to and the
+ * names of their metrics. The registry is global; install it before the
+ * searches start, e.g.
+ * <pre>
+ * InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+ * Metrics.setRegistry(registry);
+ * ... run Isomorphism / Substructure ...
+ * registry.report(System.out);
+ * Metrics.setRegistry(null);
+ * </pre> Searches already running keep the instruments of the registry they
+ * started with.
+ *
+ * Timers are in nanoseconds. An engine that runs out of iterations, or is
+ * interrupted, counts one timeout per search.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class Metrics {
+
+    /**
+     * States entered by VF2 substructure searches
+     */
+    public static final String VF2_STATES = "vf2.states";
+    /**
+     * States entered by VF3 substructure searches
+     */
+    public static final String VF3_STATES = "vf3.states";
+    /**
+     * Candidate pairs tried by the VF lib mappers
+     */
+    public static final String VFLIB_ITERATIONS = "vflib.iterations";
+    /**
+     * VF lib mappers stopped at their iteration limit
+     */
+    public static final String VFLIB_TIMEOUTS = "vflib.timeouts";
+    /**
+     * Recursions of the CDKMCS resolution graph search
+     */
+    public static final String CDKMCS_ITERATIONS = "cdkmcs.iterations";
+    /**
+     * CDKMCS searches stopped at their iteration limit
+     */
+    public static final String CDKMCS_TIMEOUTS = "cdkmcs.timeouts";
+    /**
+     * Clique enumeration steps of MCSPlus
+     */
+    public static final String MCSPLUS_CLIQUES = "mcsplus.cliques";
+    /**
+     * Iterations of MCSPlus over the cliques
+     */
+    public static final String MCSPLUS_ITERATIONS = "mcsplus.iterations";
+    /**
+     * MCSPlus searches stopped at their iteration limit
+     */
+    public static final String MCSPLUS_TIMEOUTS = "mcsplus.timeouts";
+    /**
+     * Iterations of the McGregor extension
+     */
+    public static final String MCGREGOR_ITERATIONS = "mcgregor.iterations";
+    /**
+     * McGregor extensions stopped at their iteration limit
+     */
+    public static final String MCGREGOR_TIMEOUTS = "mcgregor.timeouts";
+    /**
+     * Branch and bound nodes of McSplit
+     */
+    public static final String MCSPLIT_NODES = "mcsplit.nodes";
+    /**
+     * McSplit searches stopped at their iteration limit
+     */
+    public static final String MCSPLIT_TIMEOUTS = "mcsplit.timeouts";
+    /**
+     * Time of the VF lib step of VF2MCS
+     */
+    public static final String VF2MCS_VF_TIME = "vf2mcs.vf.time";
+    /**
+     * Time of the seeding step of VF2MCS (MCSPlus and CDKMCS seeds)
+     */
+    public static final String VF2MCS_SEEDS_TIME = "vf2mcs.seeds.time";
+    /**
+     * Time of the McGregor extension of the VF2MCS seeds
+     */
+    public static final String VF2MCS_EXTENSION_TIME = "vf2mcs.extension.time";
+    /**
+     * Time of the chemical filters
+     */
+    public static final String FILTERS_TIME = "filters.time";
+    /**
+     * Time of an MCS search by {@link org.openscience.smsd.Isomorphism},
+     * filters excluded
+     */
+    public static final String ISOMORPHISM_TIME = "isomorphism.time";
+    /**
+     * Atoms in the first MCS found by
+     * {@link org.openscience.smsd.Isomorphism}
+     */
+    public static final String ISOMORPHISM_SIZE = "isomorphism.size";
+    private static volatile IMetricsRegistry registry = NoOpMetricsRegistry.getInstance();
+
+    private Metrics() {
+    }
+
+    /**
+     * @return the current registry, the no-op registry if none was set
+     */
+    public static IMetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @param registry registry to report to, null to switch metrics off
+     */
+    public static void setRegistry(IMetricsRegistry registry) {
+        Metrics.registry = registry == null ? NoOpMetricsRegistry.getInstance() : registry;
+    }
+
+    /**
+     * @return true if a registry other than the no-op one is set
+     */
+    public static boolean isEnabled() {
+        return registry != NoOpMetricsRegistry.getInstance();
+    }
+
+    /**
+     * @param name metric name
+     * @return the counter of this name in the current registry
+     */
+    public static ICounter counter(String name) {
+        return registry.counter(name);
+    }
+
+    /**
+     * @param name metric name
+     * @return the timer of this name in the current registry
+     */
+    public static ITimer timer(String name) {
+        return registry.timer(name);
+    }
+
+    /**
+     * @param name metric name
+     * @return the histogram of this name in the current registry
+     */
+    public static IHistogram histogram(String name) {
+        return registry.histogram(name);
+    }
+}
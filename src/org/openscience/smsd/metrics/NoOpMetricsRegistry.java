@@ -0,0 +1,81 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.metrics;
+
+/**
+ * Registry whose instruments discard every update. It is the default, so
+ * that the engines pay no more than an empty call when metrics are off.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class NoOpMetricsRegistry implements IMetricsRegistry {
+
+    private static final NoOpMetricsRegistry INSTANCE = new NoOpMetricsRegistry();
+    private static final Instrument INSTRUMENT = new Instrument();
+
+    private NoOpMetricsRegistry() {
+    }
+
+    /**
+     * @return the shared instance
+     */
+    public static NoOpMetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public ICounter counter(String name) {
+        return INSTRUMENT;
+    }
+
+    @Override
+    public ITimer timer(String name) {
+        return INSTRUMENT;
+    }
+
+    @Override
+    public IHistogram histogram(String name) {
+        return INSTRUMENT;
+    }
+
+    private static final class Instrument implements ICounter, ITimer, IHistogram {
+
+        @Override
+        public void increment() {
+        }
+
+        @Override
+        public void add(long events) {
+        }
+
+        @Override
+        public void record(long nanos) {
+        }
+
+        @Override
+        public void update(long value) {
+        }
+    }
+}
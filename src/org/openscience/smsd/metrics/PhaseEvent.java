@@ -0,0 +1,239 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Timed phase of a search, such as ring perception, building a compatibility
+ * graph or running a chemical filter, modelled on the begin and commit
+ * pattern of profiler events. A phase is only recorded while an
+ * {@link IPhaseListener} is registered; otherwise {@link #begin(String)}
+ * returns null after a single volatile read, and the phase costs nothing
+ * more:
+ * <pre>
+ * PhaseEvent event = PhaseEvent.begin(PhaseEvent.CLIQUE_SEARCH);
+ * ... run the phase ...
+ * if (event != null) {
+ *     event.end(sourceAtoms, targetAtoms, timeout);
+ * }
+ * </pre>
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class PhaseEvent {
+
+    /**
+     * Ring perception and atom properties, by
+     * {@link org.openscience.smsd.helper.MoleculeInitializer}; one molecule
+     */
+    public static final String MOLECULE_PREPARATION = "molecule.preparation";
+    /**
+     * Compatibility graph of MCSPlus
+     */
+    public static final String COMPATIBILITY_GRAPH = "compatibility.graph";
+    /**
+     * Resolution graph of CDKMCS
+     */
+    public static final String RESOLUTION_GRAPH = "resolution.graph";
+    /**
+     * Search of the CDKMCS resolution graph
+     */
+    public static final String RESOLUTION_SEARCH = "resolution.search";
+    /**
+     * Clique search of MCSPlus
+     */
+    public static final String CLIQUE_SEARCH = "clique.search";
+    /**
+     * McGregor extension of one seed
+     */
+    public static final String MCGREGOR_EXTENSION = "mcgregor.extension";
+    /**
+     * VF2 substructure search, or the VF step of an MCS search
+     */
+    public static final String VF2_SEARCH = "vf2.search";
+    /**
+     * Energy filter
+     */
+    public static final String ENERGY_FILTER = "filter.energy";
+    /**
+     * Fragment filter
+     */
+    public static final String FRAGMENT_FILTER = "filter.fragment";
+    /**
+     * Stereo filter
+     */
+    public static final String STEREO_FILTER = "filter.stereo";
+    /**
+     * Substructure check run by {@link org.openscience.smsd.Isomorphism}
+     * before an MCS engine
+     */
+    public static final String SUBSTRUCTURE_ENGINE = "engine.substructure";
+    /**
+     * Whole CDKMCS run of {@link org.openscience.smsd.Isomorphism}
+     */
+    public static final String CDKMCS_ENGINE = "engine.cdkmcs";
+    /**
+     * Whole MCSPlus run of {@link org.openscience.smsd.Isomorphism}
+     */
+    public static final String MCSPLUS_ENGINE = "engine.mcsplus";
+    /**
+     * Whole VF2MCS run of {@link org.openscience.smsd.Isomorphism}, either
+     * chosen or as the fallback after a timed out engine
+     */
+    public static final String VF2MCS_ENGINE = "engine.vf2mcs";
+    /**
+     * Whole portfolio run of {@link org.openscience.smsd.Isomorphism}
+     */
+    public static final String PORTFOLIO_ENGINE = "engine.portfolio";
+    /**
+     * Whole McSplit run of {@link org.openscience.smsd.Isomorphism}
+     */
+    public static final String MCSPLIT_ENGINE = "engine.mcsplit";
+    /**
+     * Mapping of single atoms by {@link org.openscience.smsd.Isomorphism}
+     */
+    public static final String SINGLE_ENGINE = "engine.single";
+    private static final IPhaseListener[] NONE = new IPhaseListener[0];
+    private static volatile IPhaseListener[] listeners = NONE;
+    private final String phase;
+    private final long startTime;
+    private long duration;
+    private int sourceAtomCount;
+    private int targetAtomCount;
+    private boolean timeout;
+
+    private PhaseEvent(String phase) {
+        this.phase = phase;
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Starts a phase.
+     *
+     * @param phase phase name
+     * @return the event to end, or null if no listener is registered
+     */
+    public static PhaseEvent begin(String phase) {
+        return listeners.length == 0 ? null : new PhaseEvent(phase);
+    }
+
+    /**
+     * Ends the phase and passes it to the listeners.
+     *
+     * @param sourceAtomCount atoms of the source (query) molecule
+     * @param targetAtomCount atoms of the target molecule, 0 for phases on
+     * one molecule
+     * @param timeout true if the phase stopped at an iteration limit
+     */
+    public void end(int sourceAtomCount, int targetAtomCount, boolean timeout) {
+        this.duration = System.nanoTime() - startTime;
+        this.sourceAtomCount = sourceAtomCount;
+        this.targetAtomCount = targetAtomCount;
+        this.timeout = timeout;
+        for (IPhaseListener listener : listeners) {
+            listener.phaseEnded(this);
+        }
+    }
+
+    /**
+     * @param listener listener to register
+     */
+    public static synchronized void addListener(IPhaseListener listener) {
+        IPhaseListener[] registered = Arrays.copyOf(listeners, listeners.length + 1);
+        registered[listeners.length] = listener;
+        listeners = registered;
+    }
+
+    /**
+     * @param listener listener to remove
+     */
+    public static synchronized void removeListener(IPhaseListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                IPhaseListener[] registered = new IPhaseListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, registered, 0, i);
+                System.arraycopy(listeners, i + 1, registered, i, registered.length - i);
+                listeners = registered;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if a listener is registered
+     */
+    public static boolean isEnabled() {
+        return listeners.length > 0;
+    }
+
+    /**
+     * @return phase name
+     */
+    public String getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} at the start of the phase
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return duration of the phase in nanoseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return atoms of the source (query) molecule
+     */
+    public int getSourceAtomCount() {
+        return sourceAtomCount;
+    }
+
+    /**
+     * @return atoms of the target molecule, 0 for phases on one molecule
+     */
+    public int getTargetAtomCount() {
+        return targetAtomCount;
+    }
+
+    /**
+     * @return true if the phase stopped at an iteration limit
+     */
+    public boolean isTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public String toString() {
+        return phase + " " + sourceAtomCount + "/" + targetAtomCount + " atoms "
+                + (timeout ? "timeout" : "complete") + " in " + duration / 1000 + " us";
+    }
+}
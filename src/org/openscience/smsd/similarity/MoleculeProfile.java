@@ -0,0 +1,242 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.similarity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.smsd.helper.MoleculeInitializer;
+import org.openscience.smsd.tools.ExtAtomContainerManipulator;
+
+/**
+ * Label statistics of a molecule used to bound the MCS size without running
+ * an engine (see {@link UpperBound}). The atom label is what every atom
+ * matcher requires to be equal: the symbol, the ring membership if rings are
+ * matched and the atom type if atom types are matched. Bonds are labelled by
+ * their two atom labels and, if bonds are matched, by their aromaticity or
+ * order.
+ *
+ * A profile is built once per molecule and may be compared with any number
+ * of other profiles built with the same match flags.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class MoleculeProfile {
+
+    private final IAtomContainer molecule;
+    private final int atomCount;
+    private final int bondCount;
+    private final boolean connected;
+    private final Map<String, int[]> degreesByLabel;
+    private final Map<String, Integer> bondsByAtomLabels;
+    private final Map<String, Integer> bondsByType;
+
+    /**
+     * Builds the profile. Ring perception and atom typing are run on the
+     * molecule if the corresponding flags are set.
+     *
+     * @param molecule molecule
+     * @param matchBonds
+     * @param matchRings
+     * @param matchAtomType
+     * @throws CDKException if ring perception or atom typing fails
+     */
+    public MoleculeProfile(IAtomContainer molecule, boolean matchBonds,
+            boolean matchRings, boolean matchAtomType) throws CDKException {
+        this.molecule = molecule;
+        if (matchAtomType) {
+            ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(molecule);
+        }
+        if (matchRings) {
+            MoleculeInitializer.initializeMolecule(molecule);
+        }
+        this.atomCount = molecule.getAtomCount();
+        this.bondCount = molecule.getBondCount();
+
+        String[] labels = new String[atomCount];
+        int[] degree = new int[atomCount];
+        int[] parent = new int[atomCount];
+        for (int i = 0; i < atomCount; i++) {
+            labels[i] = label(molecule.getAtom(i), matchRings, matchAtomType);
+            parent[i] = i;
+        }
+
+        Map<String, Integer> byAtoms = new HashMap<>();
+        Map<String, Integer> byType = new HashMap<>();
+        boolean typed = matchBonds;
+        int components = atomCount;
+        for (IBond bond : molecule.bonds()) {
+            int a = molecule.getAtomNumber(bond.getAtom(0));
+            int b = molecule.getAtomNumber(bond.getAtom(1));
+            degree[a]++;
+            degree[b]++;
+            int rootA = find(parent, a);
+            int rootB = find(parent, b);
+            if (rootA != rootB) {
+                parent[rootA] = rootB;
+                components--;
+            }
+            String atomsKey = labels[a].compareTo(labels[b]) <= 0
+                    ? labels[a] + "-" + labels[b] : labels[b] + "-" + labels[a];
+            increment(byAtoms, atomsKey);
+            if (typed) {
+                if (bond.getFlag(CDKConstants.ISAROMATIC)) {
+                    increment(byType, atomsKey + ":a");
+                } else if (bond.getOrder() == null || bond.getOrder() == IBond.Order.UNSET) {
+                    typed = false;
+                } else {
+                    increment(byType, atomsKey + ":" + bond.getOrder().name());
+                }
+            }
+        }
+        this.connected = components <= 1;
+        this.bondsByAtomLabels = byAtoms;
+        this.bondsByType = typed ? byType : null;
+
+        Map<String, List<Integer>> degrees = new HashMap<>();
+        for (int i = 0; i < atomCount; i++) {
+            List<Integer> list = degrees.get(labels[i]);
+            if (list == null) {
+                list = new ArrayList<>();
+                degrees.put(labels[i], list);
+            }
+            list.add(degree[i]);
+        }
+        this.degreesByLabel = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : degrees.entrySet()) {
+            List<Integer> list = entry.getValue();
+            Collections.sort(list, Collections.reverseOrder());
+            int[] sorted = new int[list.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = list.get(i);
+            }
+            degreesByLabel.put(entry.getKey(), sorted);
+        }
+    }
+
+    private MoleculeProfile(MoleculeProfile profile, IAtomContainer molecule) {
+        this.molecule = molecule;
+        this.atomCount = profile.atomCount;
+        this.bondCount = profile.bondCount;
+        this.connected = profile.connected;
+        this.degreesByLabel = profile.degreesByLabel;
+        this.bondsByAtomLabels = profile.bondsByAtomLabels;
+        this.bondsByType = profile.bondsByType;
+    }
+
+    /**
+     * Profile of a private copy of the molecule for a thread that must not
+     * share it. The copy keeps the atom types and ring flags of the molecule
+     * and the label statistics are shared, so nothing is perceived again.
+     *
+     * @return profile of a clone of the molecule
+     * @throws CloneNotSupportedException
+     */
+    public MoleculeProfile copy() throws CloneNotSupportedException {
+        return new MoleculeProfile(this, molecule.clone());
+    }
+
+    private static String label(IAtom atom, boolean matchRings, boolean matchAtomType) {
+        StringBuilder label = new StringBuilder(atom.getSymbol() == null ? "*" : atom.getSymbol());
+        if (matchRings) {
+            label.append(atom.getFlag(CDKConstants.ISINRING) ? "@R" : "@A");
+        }
+        if (matchAtomType) {
+            label.append('|').append(atom.getAtomTypeName() == null
+                    ? atom.getSymbol() : atom.getAtomTypeName());
+        }
+        return label.toString();
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void increment(Map<String, Integer> counts, String key) {
+        Integer count = counts.get(key);
+        counts.put(key, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * @return the profiled molecule
+     */
+    public IAtomContainer getMolecule() {
+        return molecule;
+    }
+
+    /**
+     * @return number of atoms
+     */
+    public int getAtomCount() {
+        return atomCount;
+    }
+
+    /**
+     * @return number of bonds
+     */
+    public int getBondCount() {
+        return bondCount;
+    }
+
+    /**
+     * @return true if the molecule has a single component
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return atom degrees per atom label, in descending order
+     */
+    Map<String, int[]> getDegreesByLabel() {
+        return degreesByLabel;
+    }
+
+    /**
+     * @return bond counts per pair of atom labels
+     */
+    Map<String, Integer> getBondsByAtomLabels() {
+        return bondsByAtomLabels;
+    }
+
+    /**
+     * @return bond counts per pair of atom labels and bond type, or null if
+     * bond types are not matched or some bond order is unset
+     */
+    Map<String, Integer> getBondsByType() {
+        return bondsByType;
+    }
+}
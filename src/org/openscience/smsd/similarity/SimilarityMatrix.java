@@ -0,0 +1,397 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.similarity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.helper.MoleculeInitializer;
+import org.openscience.smsd.interfaces.Algorithm;
+import org.openscience.smsd.tools.ExtAtomContainerManipulator;
+
+/**
+ * All-vs-all MCS similarity matrix. Only the upper triangle is computed (the
+ * MCS is symmetric); the pairs are grouped into square tiles which run on a
+ * fork/join pool, the most expensive tiles (by the product of the atom
+ * counts) first. Each molecule is prepared (atom typing, ring perception)
+ * once, and each tile works on its own copies of its molecules so that no
+ * container is shared between threads.
+ *
+ * The similarity is the unrounded MCS Tanimoto coefficient
+ * |MCS| / (|A| + |B| - |MCS|) on atoms.
+ *
+ * <p>
+ * {@link #compute(File)} streams the matrix into a binary file which can be
+ * memory mapped. All values are little endian:</p>
+ * <pre>
+ * int     magic   0x534d534d ("SMSM")
+ * int     version 1
+ * int     n       number of molecules
+ * int     0       reserved
+ * long[n]         byte offset of each row
+ * float[]         row i holds the similarities (i, i+1) ... (i, n-1)
+ * </pre>
+ * The diagonal is not stored; it is 1 for every non empty molecule.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class SimilarityMatrix {
+
+    private final static ILoggingTool logger
+            = LoggingToolFactory.createLoggingTool(SimilarityMatrix.class);
+    private static final int MAGIC = 0x534d534d;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private final List<IAtomContainer> molecules;
+    private final Algorithm algorithm;
+    private final boolean matchBonds;
+    private final boolean matchRings;
+    private final boolean matchAtomType;
+    private int tileSize = 16;
+    private ForkJoinPool pool;
+    private boolean prepared = false;
+
+    /**
+     * @param molecules molecules, in row order
+     * @param algorithm MCS algorithm
+     * @param matchBonds
+     * @param matchRings
+     * @param matchAtomType
+     */
+    public SimilarityMatrix(List<IAtomContainer> molecules, Algorithm algorithm,
+            boolean matchBonds, boolean matchRings, boolean matchAtomType) {
+        this.molecules = new ArrayList<>(molecules);
+        this.algorithm = algorithm;
+        this.matchBonds = matchBonds;
+        this.matchRings = matchRings;
+        this.matchAtomType = matchAtomType;
+    }
+
+    /**
+     * @param tileSize number of rows and columns per tile (default 16)
+     */
+    public void setTileSize(int tileSize) {
+        this.tileSize = Math.max(1, tileSize);
+    }
+
+    /**
+     * Sets the pool the tiles run on. If none is set a pool with one thread
+     * per processor is created for each computation.
+     *
+     * @param pool fork/join pool
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return number of molecules
+     */
+    public int size() {
+        return molecules.size();
+    }
+
+    /**
+     * Computes the full symmetric matrix in memory.
+     *
+     * @return similarity matrix
+     */
+    public float[][] compute() {
+        int n = molecules.size();
+        final float[][] matrix = new float[n][n];
+        for (int i = 0; i < n; i++) {
+            matrix[i][i] = molecules.get(i).getAtomCount() > 0 ? 1.0f : 0.0f;
+        }
+        run(new Sink() {
+            @Override
+            public void put(int row, int firstColumn, float[] values) {
+                for (int k = 0; k < values.length; k++) {
+                    matrix[row][firstColumn + k] = values[k];
+                    matrix[firstColumn + k][row] = values[k];
+                }
+            }
+        });
+        return matrix;
+    }
+
+    /**
+     * Computes the matrix and streams the upper triangle into a file.
+     *
+     * @param file output file
+     * @throws IOException
+     */
+    public void compute(File file) throws IOException {
+        final int n = molecules.size();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            final FileChannel channel = raf.getChannel();
+            raf.setLength(rowOffset(n, n));
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + 8 * n).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(0);
+            for (int i = 0; i < n; i++) {
+                header.putLong(rowOffset(n, i));
+            }
+            header.flip();
+            writeFully(channel, header, 0);
+
+            final IOException[] failure = new IOException[1];
+            run(new Sink() {
+                @Override
+                public void put(int row, int firstColumn, float[] values) {
+                    ByteBuffer buffer = ByteBuffer.allocate(4 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+                    for (float value : values) {
+                        buffer.putFloat(value);
+                    }
+                    buffer.flip();
+                    long position = rowOffset(n, row) + 4L * (firstColumn - row - 1);
+                    try {
+                        writeFully(channel, buffer, position);
+                    } catch (IOException ex) {
+                        synchronized (failure) {
+                            failure[0] = ex;
+                        }
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Reads a matrix file written by {@link #compute(File)} into memory. Meant
+     * for matrices that fit in memory; large files should be mapped directly.
+     *
+     * @param file matrix file
+     * @return full symmetric matrix (diagonal set to 1)
+     * @throws IOException
+     */
+    public static float[][] read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a similarity matrix: " + file);
+            }
+            int n = buffer.getInt();
+            float[][] matrix = new float[n][n];
+            for (int i = 0; i < n; i++) {
+                matrix[i][i] = 1.0f;
+                buffer.position((int) rowOffset(n, i));
+                for (int j = i + 1; j < n; j++) {
+                    matrix[i][j] = buffer.getFloat();
+                    matrix[j][i] = matrix[i][j];
+                }
+            }
+            return matrix;
+        }
+    }
+
+    /**
+     * Byte offset of a row in the matrix file; row n is the end of the file.
+     *
+     * @param n number of molecules
+     * @param row row
+     * @return byte offset
+     */
+    public static long rowOffset(int n, int row) {
+        long before = (long) row * (n - 1) - (long) row * (row - 1) / 2;
+        return HEADER_SIZE + 8L * n + 4L * before;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Unrounded MCS Tanimoto similarity of two molecules.
+     *
+     * @param query query molecule
+     * @param target target molecule
+     * @param algorithm MCS algorithm
+     * @param matchBonds
+     * @param matchRings
+     * @param matchAtomType
+     * @return |MCS| / (|A| + |B| - |MCS|)
+     */
+    public static float similarity(IAtomContainer query, IAtomContainer target, Algorithm algorithm,
+            boolean matchBonds, boolean matchRings, boolean matchAtomType) {
+        int queryCount = query.getAtomCount();
+        int targetCount = target.getAtomCount();
+        if (queryCount == 0 || targetCount == 0) {
+            return 0.0f;
+        }
+        Isomorphism comparison = new Isomorphism(query, target, algorithm, matchBonds, matchRings, matchAtomType);
+        int common = comparison.getFirstAtomMapping().getCount();
+        return (float) common / (queryCount + targetCount - common);
+    }
+
+    private synchronized void prepare() {
+        if (prepared) {
+            return;
+        }
+        for (IAtomContainer molecule : molecules) {
+            try {
+                ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(molecule);
+                if (matchRings) {
+                    MoleculeInitializer.initializeMolecule(molecule);
+                }
+            } catch (CDKException ex) {
+                logger.error("Unable to prepare molecule: " + ex.getMessage());
+            }
+        }
+        prepared = true;
+    }
+
+    private void run(Sink sink) {
+        prepare();
+        int n = molecules.size();
+        long[] atoms = new long[n];
+        for (int i = 0; i < n; i++) {
+            atoms[i] = molecules.get(i).getAtomCount();
+        }
+
+        List<Tile> tiles = new ArrayList<>();
+        for (int rowStart = 0; rowStart < n; rowStart += tileSize) {
+            int rowEnd = Math.min(n, rowStart + tileSize);
+            for (int columnStart = rowStart; columnStart < n; columnStart += tileSize) {
+                int columnEnd = Math.min(n, columnStart + tileSize);
+                long cost = 0;
+                for (int i = rowStart; i < rowEnd; i++) {
+                    for (int j = Math.max(i + 1, columnStart); j < columnEnd; j++) {
+                        cost += atoms[i] * atoms[j];
+                    }
+                }
+                if (columnEnd - 1 > rowStart) {
+                    tiles.add(new Tile(rowStart, rowEnd, columnStart, columnEnd, cost, sink));
+                }
+            }
+        }
+        Collections.sort(tiles, new Comparator<Tile>() {
+            @Override
+            public int compare(Tile o1, Tile o2) {
+                return Long.compare(o2.cost, o1.cost);
+            }
+        });
+
+        ForkJoinPool executor = pool == null ? new ForkJoinPool() : pool;
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(tiles.size());
+            for (Tile tile : tiles) {
+                tasks.add(executor.submit(tile));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        } finally {
+            if (pool == null) {
+                executor.shutdown();
+                try {
+                    executor.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives one row segment of the upper triangle.
+     */
+    private interface Sink {
+
+        void put(int row, int firstColumn, float[] values);
+    }
+
+    private final class Tile implements Runnable {
+
+        private final int rowStart;
+        private final int rowEnd;
+        private final int columnStart;
+        private final int columnEnd;
+        private final long cost;
+        private final Sink sink;
+
+        Tile(int rowStart, int rowEnd, int columnStart, int columnEnd, long cost, Sink sink) {
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.columnStart = columnStart;
+            this.columnEnd = columnEnd;
+            this.cost = cost;
+            this.sink = sink;
+        }
+
+        @Override
+        public void run() {
+            IAtomContainer[] rows = copies(rowStart, rowEnd);
+            IAtomContainer[] columns = columnStart == rowStart ? rows : copies(columnStart, columnEnd);
+            for (int i = rowStart; i < rowEnd; i++) {
+                int first = Math.max(i + 1, columnStart);
+                if (first >= columnEnd) {
+                    continue;
+                }
+                float[] values = new float[columnEnd - first];
+                for (int j = first; j < columnEnd; j++) {
+                    IAtomContainer query = rows[i - rowStart];
+                    IAtomContainer target = columns[j - columnStart];
+                    values[j - first] = query == null || target == null ? Float.NaN
+                            : similarity(query, target, algorithm, matchBonds, matchRings, matchAtomType);
+                }
+                sink.put(i, first, values);
+            }
+        }
+
+        private IAtomContainer[] copies(int start, int end) {
+            IAtomContainer[] copies = new IAtomContainer[end - start];
+            for (int i = start; i < end; i++) {
+                try {
+                    copies[i - start] = molecules.get(i).clone();
+                } catch (CloneNotSupportedException ex) {
+                    logger.error("Unable to copy molecule " + i + ": " + ex.getMessage());
+                }
+            }
+            return copies;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.similarity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.Substructure;
+import org.openscience.smsd.interfaces.Algorithm;
+
+/**
+ * MCS similarity search with a threshold. Each pair goes through a cascade of
+ * cheaper tests before an MCS engine runs:
+ * <ol>
+ * <li>the {@link UpperBound} of the MCS size; pairs whose bound similarity is
+ * below the threshold are skipped;</li>
+ * <li>if the bound allows the smaller molecule to be contained in the larger
+ * one, a substructure search; a match gives the exact MCS;</li>
+ * <li>otherwise the MCS has fewer atoms than the smaller molecule, which
+ * lowers the bound, and the pair is skipped if it falls below the minimum
+ * size needed for the threshold;</li>
+ * <li>the MCS with {@link Isomorphism}.</li>
+ * </ol>
+ * Similarities are unrounded MCS Tanimoto coefficients on atoms.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class ThresholdSearch {
+
+    private final double threshold;
+    private final Algorithm algorithm;
+    private final boolean matchBonds;
+    private final boolean matchRings;
+    private final boolean matchAtomType;
+    private long pruned;
+    private long substructureHits;
+    private long compared;
+
+    /**
+     * @param threshold minimum MCS Tanimoto similarity
+     * @param algorithm MCS algorithm for the pairs that pass the bounds
+     * @param matchBonds
+     * @param matchRings
+     * @param matchAtomType
+     */
+    public ThresholdSearch(double threshold, Algorithm algorithm,
+            boolean matchBonds, boolean matchRings, boolean matchAtomType) {
+        this.threshold = threshold;
+        this.algorithm = algorithm;
+        this.matchBonds = matchBonds;
+        this.matchRings = matchRings;
+        this.matchAtomType = matchAtomType;
+    }
+
+    /**
+     * Builds a profile with the match flags of this search.
+     *
+     * @param molecule molecule
+     * @return profile
+     * @throws CDKException
+     */
+    public MoleculeProfile profile(IAtomContainer molecule) throws CDKException {
+        return new MoleculeProfile(molecule, matchBonds, matchRings, matchAtomType);
+    }
+
+    /**
+     * Compares two molecules.
+     *
+     * @param query query molecule
+     * @param target target molecule
+     * @return the hit, or null if the similarity is below the threshold
+     * @throws CDKException
+     */
+    public Hit compare(IAtomContainer query, IAtomContainer target) throws CDKException {
+        return compare(profile(query), profile(target), -1);
+    }
+
+    /**
+     * Compares a query with each target.
+     *
+     * @param query query molecule
+     * @param targets target molecules
+     * @return hits at or above the threshold, most similar first
+     * @throws CDKException
+     */
+    public List<Hit> search(IAtomContainer query, List<IAtomContainer> targets) throws CDKException {
+        MoleculeProfile queryProfile = profile(query);
+        List<Hit> hits = new ArrayList<>();
+        int index = 0;
+        for (IAtomContainer target : targets) {
+            Hit hit = compare(queryProfile, profile(target), index);
+            if (hit != null) {
+                hits.add(hit);
+            }
+            index++;
+        }
+        Collections.sort(hits, new Comparator<Hit>() {
+            @Override
+            public int compare(Hit o1, Hit o2) {
+                return Double.compare(o2.getSimilarity(), o1.getSimilarity());
+            }
+        });
+        return hits;
+    }
+
+    /**
+     * Compares two profiled molecules.
+     *
+     * @param query query profile
+     * @param target target profile
+     * @param index index reported with the hit
+     * @return the hit, or null if the similarity is below the threshold
+     * @throws CDKException
+     */
+    public Hit compare(MoleculeProfile query, MoleculeProfile target, int index) throws CDKException {
+        int queryAtoms = query.getAtomCount();
+        int targetAtoms = target.getAtomCount();
+        int bound = UpperBound.mcsSize(query, target);
+        int minimum = UpperBound.minimumSize(queryAtoms, targetAtoms, threshold);
+        if (bound < minimum || bound == 0) {
+            countPruned();
+            return null;
+        }
+
+        int smaller = Math.min(queryAtoms, targetAtoms);
+        if (bound == smaller) {
+            IAtomContainer small = queryAtoms <= targetAtoms ? query.getMolecule() : target.getMolecule();
+            IAtomContainer large = queryAtoms <= targetAtoms ? target.getMolecule() : query.getMolecule();
+            Substructure substructure = new Substructure(small, large, matchBonds, matchRings, matchAtomType, false);
+            if (substructure.isSubgraph()) {
+                countSubstructure();
+                return new Hit(index, target.getMolecule(), smaller, bound,
+                        UpperBound.tanimoto(queryAtoms, targetAtoms, smaller));
+            }
+            bound = smaller - 1;
+            if (bound < minimum || bound == 0) {
+                countPruned();
+                return null;
+            }
+        }
+
+        countCompared();
+        Isomorphism comparison = new Isomorphism(query.getMolecule(), target.getMolecule(),
+                algorithm, matchBonds, matchRings, matchAtomType);
+        int common = comparison.getFirstAtomMapping().getCount();
+        double similarity = UpperBound.tanimoto(queryAtoms, targetAtoms, common);
+        return similarity >= threshold ? new Hit(index, target.getMolecule(), common, bound, similarity) : null;
+    }
+
+    private synchronized void countPruned() {
+        pruned++;
+    }
+
+    private synchronized void countSubstructure() {
+        substructureHits++;
+    }
+
+    private synchronized void countCompared() {
+        compared++;
+    }
+
+    /**
+     * @return the similarity threshold
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @return number of pairs skipped by the bounds
+     */
+    public synchronized long getPrunedCount() {
+        return pruned;
+    }
+
+    /**
+     * @return number of pairs answered by the substructure search
+     */
+    public synchronized long getSubstructureCount() {
+        return substructureHits;
+    }
+
+    /**
+     * @return number of pairs that needed an MCS engine
+     */
+    public synchronized long getComparedCount() {
+        return compared;
+    }
+
+    /**
+     * A target at or above the threshold.
+     */
+    public static final class Hit {
+
+        private final int index;
+        private final IAtomContainer target;
+        private final int mcsSize;
+        private final int bound;
+        private final double similarity;
+
+        Hit(int index, IAtomContainer target, int mcsSize, int bound, double similarity) {
+            this.index = index;
+            this.target = target;
+            this.mcsSize = mcsSize;
+            this.bound = bound;
+            this.similarity = similarity;
+        }
+
+        /**
+         * @return index of the target in the searched list
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the target molecule
+         */
+        public IAtomContainer getTarget() {
+            return target;
+        }
+
+        /**
+         * @return number of atoms in the MCS
+         */
+        public int getMcsSize() {
+            return mcsSize;
+        }
+
+        /**
+         * @return upper bound of the MCS size that admitted the pair
+         */
+        public int getBound() {
+            return bound;
+        }
+
+        /**
+         * @return MCS Tanimoto similarity
+         */
+        public double getSimilarity() {
+            return similarity;
+        }
+    }
+}
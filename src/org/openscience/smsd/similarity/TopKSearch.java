@@ -0,0 +1,216 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.similarity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.smsd.interfaces.Algorithm;
+
+/**
+ * Finds the k targets most MCS-similar to a query. The targets are ordered by
+ * their {@link UpperBound} similarity and evaluated best first, a batch of
+ * one candidate per thread at a time. The search stops as soon as the k-th
+ * best exact similarity is at least the bound of the next candidate, since no
+ * remaining target can then enter the result. Every evaluation uses the
+ * current k-th best similarity as its threshold (see {@link ThresholdSearch}),
+ * so weak candidates are dropped by the bounds and the substructure check
+ * before an MCS engine runs.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class TopKSearch {
+
+    private final static ILoggingTool logger
+            = LoggingToolFactory.createLoggingTool(TopKSearch.class);
+    private final int k;
+    private final int nThreads;
+    private final Algorithm algorithm;
+    private final boolean matchBonds;
+    private final boolean matchRings;
+    private final boolean matchAtomType;
+    private int evaluated;
+    private int candidates;
+
+    /**
+     * @param k number of neighbours
+     * @param nThreads number of threads, 0 for one per processor
+     * @param algorithm MCS algorithm
+     * @param matchBonds
+     * @param matchRings
+     * @param matchAtomType
+     */
+    public TopKSearch(int k, int nThreads, Algorithm algorithm,
+            boolean matchBonds, boolean matchRings, boolean matchAtomType) {
+        this.k = k;
+        this.nThreads = nThreads > 0 ? nThreads : Runtime.getRuntime().availableProcessors();
+        this.algorithm = algorithm;
+        this.matchBonds = matchBonds;
+        this.matchRings = matchRings;
+        this.matchAtomType = matchAtomType;
+    }
+
+    /**
+     * Searches the targets.
+     *
+     * @param query query molecule
+     * @param targets target molecules
+     * @return at most k hits, most similar first; the hit index is the
+     * position in the target list
+     * @throws CDKException
+     */
+    public synchronized List<ThresholdSearch.Hit> search(IAtomContainer query, List<IAtomContainer> targets) throws CDKException {
+        MoleculeProfile queryProfile = new MoleculeProfile(query, matchBonds, matchRings, matchAtomType);
+        List<Candidate> ordered = new ArrayList<>(targets.size());
+        int index = 0;
+        for (IAtomContainer target : targets) {
+            try {
+                MoleculeProfile profile = new MoleculeProfile(target, matchBonds, matchRings, matchAtomType);
+                ordered.add(new Candidate(index, profile, UpperBound.tanimoto(queryProfile, profile)));
+            } catch (CDKException ex) {
+                logger.error("Skipping target " + index + ": " + ex.getMessage());
+            }
+            index++;
+        }
+        Collections.sort(ordered, new Comparator<Candidate>() {
+            @Override
+            public int compare(Candidate o1, Candidate o2) {
+                return Double.compare(o2.bound, o1.bound);
+            }
+        });
+        this.candidates = ordered.size();
+        this.evaluated = 0;
+
+        PriorityQueue<ThresholdSearch.Hit> best = new PriorityQueue<>(Math.max(1, k), new Comparator<ThresholdSearch.Hit>() {
+            @Override
+            public int compare(ThresholdSearch.Hit o1, ThresholdSearch.Hit o2) {
+                return Double.compare(o1.getSimilarity(), o2.getSimilarity());
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            int next = 0;
+            while (k > 0 && next < ordered.size()) {
+                double floor = best.size() == k ? best.peek().getSimilarity() : 0.0;
+                List<Future<ThresholdSearch.Hit>> batch = new ArrayList<>(nThreads);
+                while (batch.size() < nThreads && next < ordered.size()
+                        && !(best.size() == k && ordered.get(next).bound <= floor)) {
+                    batch.add(executor.submit(new Evaluation(queryProfile, ordered.get(next), floor)));
+                    next++;
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                evaluated += batch.size();
+                for (Future<ThresholdSearch.Hit> future : batch) {
+                    ThresholdSearch.Hit hit = future.get();
+                    if (hit != null && hit.getSimilarity() > 0.0) {
+                        best.add(hit);
+                        if (best.size() > k) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CDKException("Top-k search interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new CDKException("Top-k search failed", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<ThresholdSearch.Hit> hits = new ArrayList<>(best);
+        Collections.sort(hits, new Comparator<ThresholdSearch.Hit>() {
+            @Override
+            public int compare(ThresholdSearch.Hit o1, ThresholdSearch.Hit o2) {
+                return Double.compare(o2.getSimilarity(), o1.getSimilarity());
+            }
+        });
+        return hits;
+    }
+
+    /**
+     * @return number of targets evaluated in the last search
+     */
+    public synchronized int getEvaluatedCount() {
+        return evaluated;
+    }
+
+    /**
+     * @return number of targets profiled in the last search
+     */
+    public synchronized int getCandidateCount() {
+        return candidates;
+    }
+
+    private static final class Candidate {
+
+        private final int index;
+        private final MoleculeProfile profile;
+        private final double bound;
+
+        Candidate(int index, MoleculeProfile profile, double bound) {
+            this.index = index;
+            this.profile = profile;
+            this.bound = bound;
+        }
+    }
+
+    /**
+     * Exact evaluation of one candidate on a private copy of the query; the
+     * query is profiled once per search.
+     */
+    private final class Evaluation implements Callable<ThresholdSearch.Hit> {
+
+        private final MoleculeProfile query;
+        private final Candidate candidate;
+        private final double floor;
+
+        Evaluation(MoleculeProfile query, Candidate candidate, double floor) {
+            this.query = query;
+            this.candidate = candidate;
+            this.floor = floor;
+        }
+
+        @Override
+        public ThresholdSearch.Hit call() throws Exception {
+            ThresholdSearch search = new ThresholdSearch(floor, algorithm, matchBonds, matchRings, matchAtomType);
+            return search.compare(query.copy(), candidate.profile, candidate.index);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.similarity;
+
+import java.util.Map;
+
+/**
+ * Cheap upper bounds on the MCS of two molecules, in the spirit of RASCAL
+ * (Raymond, Gardiner and Willett, 2002):
+ * <ul>
+ * <li>atoms: the intersection of the atom label multisets;</li>
+ * <li>bonds: the intersection of the bond label multisets, and the degree
+ * sequence bound, which pairs the atoms of each label by descending degree and
+ * sums the smaller degree of each pair (every common bond is counted at both
+ * of its ends).</li>
+ * </ul>
+ * The MCS engines report connected common substructures, so for two connected
+ * molecules the MCS has at most one atom more than it has bonds.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class UpperBound {
+
+    private UpperBound() {
+    }
+
+    /**
+     * @param a first profile
+     * @param b second profile
+     * @return upper bound on the number of common atoms
+     */
+    public static int atoms(MoleculeProfile a, MoleculeProfile b) {
+        int common = 0;
+        for (Map.Entry<String, int[]> entry : a.getDegreesByLabel().entrySet()) {
+            int[] other = b.getDegreesByLabel().get(entry.getKey());
+            if (other != null) {
+                common += Math.min(entry.getValue().length, other.length);
+            }
+        }
+        return common;
+    }
+
+    /**
+     * @param a first profile
+     * @param b second profile
+     * @return upper bound on the number of common bonds
+     */
+    public static int bonds(MoleculeProfile a, MoleculeProfile b) {
+        Map<String, Integer> countsA = a.getBondsByType();
+        Map<String, Integer> countsB = b.getBondsByType();
+        if (countsA == null || countsB == null) {
+            countsA = a.getBondsByAtomLabels();
+            countsB = b.getBondsByAtomLabels();
+        }
+        int labelBound = 0;
+        for (Map.Entry<String, Integer> entry : countsA.entrySet()) {
+            Integer other = countsB.get(entry.getKey());
+            if (other != null) {
+                labelBound += Math.min(entry.getValue(), other);
+            }
+        }
+
+        int degreeSum = 0;
+        for (Map.Entry<String, int[]> entry : a.getDegreesByLabel().entrySet()) {
+            int[] other = b.getDegreesByLabel().get(entry.getKey());
+            if (other != null) {
+                int[] mine = entry.getValue();
+                int pairs = Math.min(mine.length, other.length);
+                for (int i = 0; i < pairs; i++) {
+                    degreeSum += Math.min(mine[i], other[i]);
+                }
+            }
+        }
+        return Math.min(labelBound, degreeSum / 2);
+    }
+
+    /**
+     * @param a first profile
+     * @param b second profile
+     * @return upper bound on the number of atoms in the MCS
+     */
+    public static int mcsSize(MoleculeProfile a, MoleculeProfile b) {
+        int atoms = atoms(a, b);
+        if (atoms > 1 && a.isConnected() && b.isConnected()) {
+            atoms = Math.min(atoms, bonds(a, b) + 1);
+        }
+        return atoms;
+    }
+
+    /**
+     * Tanimoto similarity |MCS| / (|A| + |B| - |MCS|) for a given MCS size.
+     *
+     * @param atomsA atoms in the first molecule
+     * @param atomsB atoms in the second molecule
+     * @param mcsSize atoms in the MCS
+     * @return similarity
+     */
+    public static double tanimoto(int atomsA, int atomsB, int mcsSize) {
+        int union = atomsA + atomsB - mcsSize;
+        return union <= 0 ? 0.0 : (double) mcsSize / union;
+    }
+
+    /**
+     * @param a first profile
+     * @param b second profile
+     * @return upper bound on the MCS Tanimoto similarity
+     */
+    public static double tanimoto(MoleculeProfile a, MoleculeProfile b) {
+        return tanimoto(a.getAtomCount(), b.getAtomCount(), mcsSize(a, b));
+    }
+
+    /**
+     * Smallest MCS size giving at least the threshold similarity.
+     *
+     * @param atomsA atoms in the first molecule
+     * @param atomsB atoms in the second molecule
+     * @param threshold similarity threshold
+     * @return minimum number of MCS atoms
+     */
+    public static int minimumSize(int atomsA, int atomsB, double threshold) {
+        // k / (a + b - k) >= t  <=>  k >= t (a + b) / (1 + t)
+        int size = (int) Math.ceil(threshold * (atomsA + atomsB) / (1.0 + threshold) - 1e-9);
+        return Math.max(0, size);
+    }
+}
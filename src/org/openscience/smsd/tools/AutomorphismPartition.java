@@ -0,0 +1,278 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+/**
+ * Automorphism partition (orbits) of a molecule and a stabiliser chain for
+ * symmetry breaking, computed with the partition refinement of
+ * {@link CanonicalLabeller}. Starting from the equitable partition, the first
+ * atom of the first non-trivial class is individualised and compared with
+ * every other atom of that class: two complete labellings that differ only in
+ * the individualised atom give a candidate permutation, which is kept as a
+ * generator if it is verified to be an automorphism. The chosen atom is then
+ * fixed and the search continues until the partition is discrete.
+ *
+ * The orbits are those of the group generated by the verified automorphisms,
+ * so atoms in the same orbit are always equivalent. The tie breaking of the
+ * labeller is not canonical, so for unusual graphs some symmetry may be
+ * missed; this only makes the orbits finer and never makes pruning unsafe.
+ *
+ * Symmetry breaking (Grochow and Kellis, 2007): with base atoms
+ * <i>b<sub>0</sub>, b<sub>1</sub>, ...</i> and <i>O<sub>k</sub></i> the orbit
+ * of <i>b<sub>k</sub></i> under the automorphisms fixing
+ * <i>b<sub>0</sub> ... b<sub>k-1</sub></i>, a mapping <i>f</i> is kept only if
+ * <i>f(b<sub>k</sub>) &lt; f(x)</i> for every other <i>x</i> in
+ * <i>O<sub>k</sub></i>. Of each set of mappings that differ by an automorphism
+ * at least one, and with complete generators exactly one, is kept.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class AutomorphismPartition {
+
+    private final int atomCount;
+    private final List<int[]> generators;
+    private final int[] base;
+    private final int[][] baseOrbits;
+    private final int[] orbits;
+
+    /**
+     * @param container molecule
+     */
+    public AutomorphismPartition(IAtomContainer container) {
+        this(new CanonicalLabeller(container));
+    }
+
+    /**
+     * @param labeller labelling of the molecule
+     */
+    public AutomorphismPartition(CanonicalLabeller labeller) {
+        this.atomCount = labeller.getCanonicalRanks().length;
+        this.generators = new ArrayList<>();
+        List<Integer> fixed = new ArrayList<>();
+        while (true) {
+            int[] fixedAtoms = toArray(fixed);
+            int[] partition = labeller.refineFixing(fixedAtoms);
+            int tied = labeller.firstTiedClass(partition);
+            if (tied < 0) {
+                break;
+            }
+            List<Integer> cell = new ArrayList<>();
+            for (int i = 0; i < atomCount; i++) {
+                if (partition[i] == tied) {
+                    cell.add(i);
+                }
+            }
+            int representative = cell.get(0);
+            int[] reference = labeller.completeRanks(append(fixedAtoms, representative));
+            List<int[]> found = new ArrayList<>();
+            for (int atom : cell.subList(1, cell.size())) {
+                int[] parent = unionFind(found);
+                if (find(parent, atom) == find(parent, representative)) {
+                    continue;
+                }
+                int[] order = inverse(labeller.completeRanks(append(fixedAtoms, atom)));
+                int[] permutation = new int[atomCount];
+                for (int i = 0; i < atomCount; i++) {
+                    permutation[i] = order[reference[i]];
+                }
+                if (labeller.isAutomorphism(permutation)) {
+                    found.add(permutation);
+                }
+            }
+            generators.addAll(found);
+            fixed.add(representative);
+        }
+        this.base = toArray(fixed);
+
+        this.baseOrbits = new int[base.length][];
+        for (int level = 0; level < base.length; level++) {
+            List<int[]> stabiliser = new ArrayList<>();
+            for (int[] generator : generators) {
+                if (fixes(generator, level)) {
+                    stabiliser.add(generator);
+                }
+            }
+            int[] parent = unionFind(stabiliser);
+            int root = find(parent, base[level]);
+            List<Integer> orbit = new ArrayList<>();
+            for (int i = 0; i < atomCount; i++) {
+                if (find(parent, i) == root) {
+                    orbit.add(i);
+                }
+            }
+            baseOrbits[level] = toArray(orbit);
+        }
+
+        int[] parent = unionFind(generators);
+        this.orbits = new int[atomCount];
+        Arrays.fill(orbits, -1);
+        for (int i = 0; i < atomCount; i++) {
+            int root = find(parent, i);
+            if (orbits[root] < 0) {
+                orbits[root] = i;
+            }
+            orbits[i] = orbits[root];
+        }
+    }
+
+    private boolean fixes(int[] permutation, int level) {
+        for (int k = 0; k < level; k++) {
+            if (permutation[base[k]] != base[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int[] unionFind(List<int[]> permutations) {
+        int[] parent = new int[atomCount];
+        for (int i = 0; i < atomCount; i++) {
+            parent[i] = i;
+        }
+        for (int[] permutation : permutations) {
+            for (int i = 0; i < atomCount; i++) {
+                int a = find(parent, i);
+                int b = find(parent, permutation[i]);
+                if (a != b) {
+                    parent[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+        return parent;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static int[] inverse(int[] ranks) {
+        int[] order = new int[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            order[ranks[i]] = i;
+        }
+        return order;
+    }
+
+    private static int[] append(int[] atoms, int atom) {
+        int[] extended = Arrays.copyOf(atoms, atoms.length + 1);
+        extended[atoms.length] = atom;
+        return extended;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * @return orbit per atom index, given as the lowest atom index in the
+     * orbit
+     */
+    public int[] getOrbits() {
+        return orbits.clone();
+    }
+
+    /**
+     * @return number of orbits
+     */
+    public int getOrbitCount() {
+        int count = 0;
+        for (int i = 0; i < atomCount; i++) {
+            if (orbits[i] == i) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param atom atom index
+     * @return true if the atom is the lowest index atom of its orbit
+     */
+    public boolean isRepresentative(int atom) {
+        return orbits[atom] == atom;
+    }
+
+    /**
+     * @return true if no automorphism other than the identity was found
+     */
+    public boolean isTrivial() {
+        return generators.isEmpty();
+    }
+
+    /**
+     * @return the verified automorphisms, as image per atom index
+     */
+    public List<int[]> getGenerators() {
+        return Collections.unmodifiableList(generators);
+    }
+
+    /**
+     * @return the base atoms of the stabiliser chain
+     */
+    public int[] getBase() {
+        return base.clone();
+    }
+
+    /**
+     * @param level index into the base
+     * @return the orbit of the base atom under the automorphisms fixing the
+     * earlier base atoms
+     */
+    public int[] getBaseOrbit(int level) {
+        return baseOrbits[level].clone();
+    }
+
+    /**
+     * Symmetry breaking constraints: the mapping of atom <code>[0]</code>
+     * must be lower than that of atom <code>[1]</code>.
+     *
+     * @return pairs of atom indices
+     */
+    public List<int[]> getOrderConstraints() {
+        List<int[]> constraints = new ArrayList<>();
+        for (int level = 0; level < base.length; level++) {
+            for (int atom : baseOrbits[level]) {
+                if (atom != base[level]) {
+                    constraints.add(new int[]{base[level], atom});
+                }
+            }
+        }
+        return constraints;
+    }
+}
@@ -0,0 +1,665 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+/**
+ * Canonical labelling of a molecule by iterative partition refinement
+ * (Morgan/Weininger style). The atoms are first split into classes by their
+ * labels (symbol, charge, hydrogens, mass, aromaticity, degree, atom type) and
+ * the classes are refined by the ranks of the neighbours and the bond labels
+ * until the partition is equitable. Ties are then broken by a search over
+ * the individualisations: each atom of the first non-trivial class is
+ * individualised in turn and the partition refined again, down to discrete
+ * partitions, and the one whose encoding has the smallest hash is kept. The
+ * automorphisms found when two leaves of the search encode the same graph
+ * prune the branches they map onto explored ones, so symmetric molecules are
+ * searched along a few paths only. The search stops after
+ * {@link #MAX_LEAVES} leaves; only for graphs whose symmetry needs more than
+ * that may isomorphic containers get different labellings.
+ *
+ * The equitable partition is exposed as symmetry classes; the final ranks give
+ * a canonical atom order and a 128 bit hash of the labelled graph written in
+ * that order. Two containers with the same hash have (up to hash collisions)
+ * the same encoding and therefore the atom at canonical position <i>i</i> of
+ * one corresponds to the atom at canonical position <i>i</i> of the other.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class CanonicalLabeller {
+
+    /**
+     * Largest number of discrete partitions the canonical search compares.
+     */
+    public static final int MAX_LEAVES = 4096;
+
+    private final IAtomContainer container;
+    private final int atomCount;
+    private final int[][] neighbours;
+    private final int[][] bondCodes;
+    private final int[] symmetryClasses;
+    private final int[] ranks;
+    private final int[] order;
+    private final long hashHigh;
+    private final long hashLow;
+
+    /**
+     * Computes the canonical labelling of the container.
+     *
+     * @param container molecule to label
+     */
+    public CanonicalLabeller(IAtomContainer container) {
+        this.container = container;
+        this.atomCount = container.getAtomCount();
+        this.neighbours = new int[atomCount][];
+        this.bondCodes = new int[atomCount][];
+        buildAdjacency();
+
+        this.symmetryClasses = refine(initialRanks());
+        Search search = new Search();
+        search.expand(symmetryClasses, new int[0]);
+        this.ranks = search.bestRanks;
+        this.order = inverse(ranks);
+        this.hashHigh = search.bestHash[0];
+        this.hashLow = search.bestHash[1];
+    }
+
+    /**
+     * Symmetry classes of the atoms, i.e. the coarsest equitable partition
+     * consistent with the atom and bond labels. Atoms in different classes
+     * are never equivalent.
+     *
+     * @return class index per atom index
+     */
+    public int[] getSymmetryClasses() {
+        return symmetryClasses.clone();
+    }
+
+    /**
+     * Canonical rank of each atom.
+     *
+     * @return canonical position per atom index
+     */
+    public int[] getCanonicalRanks() {
+        return ranks.clone();
+    }
+
+    /**
+     * Canonical atom order.
+     *
+     * @return atom index per canonical position
+     */
+    public int[] getCanonicalOrder() {
+        return order.clone();
+    }
+
+    /**
+     * @return upper 64 bits of the canonical hash
+     */
+    public long getHashHigh() {
+        return hashHigh;
+    }
+
+    /**
+     * @return lower 64 bits of the canonical hash
+     */
+    public long getHashLow() {
+        return hashLow;
+    }
+
+    /**
+     * Returns the 128 bit canonical hash as a hexadecimal string.
+     *
+     * @return 32 character hash
+     */
+    public String getHash() {
+        return String.format("%016x%016x", hashHigh, hashLow);
+    }
+
+    private void buildAdjacency() {
+        List<List<Integer>> nbrs = new ArrayList<>(atomCount);
+        List<List<Integer>> codes = new ArrayList<>(atomCount);
+        for (int i = 0; i < atomCount; i++) {
+            nbrs.add(new ArrayList<Integer>());
+            codes.add(new ArrayList<Integer>());
+        }
+        for (IBond bond : container.bonds()) {
+            if (bond.getAtomCount() != 2) {
+                continue;
+            }
+            int a = container.getAtomNumber(bond.getAtom(0));
+            int b = container.getAtomNumber(bond.getAtom(1));
+            if (a < 0 || b < 0) {
+                continue;
+            }
+            int code = bondCode(bond);
+            nbrs.get(a).add(b);
+            codes.get(a).add(code);
+            nbrs.get(b).add(a);
+            codes.get(b).add(code);
+        }
+        for (int i = 0; i < atomCount; i++) {
+            int degree = nbrs.get(i).size();
+            neighbours[i] = new int[degree];
+            bondCodes[i] = new int[degree];
+            for (int j = 0; j < degree; j++) {
+                neighbours[i][j] = nbrs.get(i).get(j);
+                bondCodes[i][j] = codes.get(i).get(j);
+            }
+        }
+    }
+
+    private static int bondCode(IBond bond) {
+        int code = bond.getOrder() == null ? 0 : bond.getOrder().ordinal() + 1;
+        if (bond.getFlag(CDKConstants.ISAROMATIC)) {
+            code += 16;
+        }
+        return code;
+    }
+
+    private static int intValue(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    private static String stringValue(String value) {
+        return value == null ? "" : value;
+    }
+
+    private int[] initialRanks() {
+        Integer[] index = new Integer[atomCount];
+        for (int i = 0; i < atomCount; i++) {
+            index[i] = i;
+        }
+        Comparator<Integer> comparator = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return compareAtoms(o1, o2);
+            }
+        };
+        Arrays.sort(index, comparator);
+        int[] initial = new int[atomCount];
+        int rank = 0;
+        for (int i = 0; i < atomCount; i++) {
+            if (i > 0 && comparator.compare(index[i - 1], index[i]) != 0) {
+                rank++;
+            }
+            initial[index[i]] = rank;
+        }
+        return initial;
+    }
+
+    private int compareAtoms(int i, int j) {
+        IAtom a = container.getAtom(i);
+        IAtom b = container.getAtom(j);
+        int cmp = stringValue(a.getSymbol()).compareTo(stringValue(b.getSymbol()));
+        if (cmp == 0) {
+            cmp = Integer.compare(intValue(a.getFormalCharge()), intValue(b.getFormalCharge()));
+        }
+        if (cmp == 0) {
+            cmp = Integer.compare(intValue(a.getImplicitHydrogenCount()), intValue(b.getImplicitHydrogenCount()));
+        }
+        if (cmp == 0) {
+            cmp = Integer.compare(intValue(a.getMassNumber()), intValue(b.getMassNumber()));
+        }
+        if (cmp == 0) {
+            cmp = Boolean.compare(a.getFlag(CDKConstants.ISAROMATIC), b.getFlag(CDKConstants.ISAROMATIC));
+        }
+        if (cmp == 0) {
+            cmp = Integer.compare(neighbours[i].length, neighbours[j].length);
+        }
+        if (cmp == 0) {
+            cmp = stringValue(a.getAtomTypeName()).compareTo(stringValue(b.getAtomTypeName()));
+        }
+        return cmp;
+    }
+
+    /**
+     * Refines the ranks until the number of classes no longer grows. The
+     * signature of an atom is its current rank followed by the sorted
+     * (neighbour rank, bond label) pairs, so the new partition always refines
+     * the old one.
+     */
+    private int[] refine(int[] current) {
+        int[] labels = current;
+        int classes = countClasses(labels);
+        while (classes < atomCount) {
+            final long[][] signatures = new long[atomCount][];
+            for (int i = 0; i < atomCount; i++) {
+                long[] signature = new long[neighbours[i].length + 1];
+                signature[0] = labels[i];
+                for (int j = 0; j < neighbours[i].length; j++) {
+                    signature[j + 1] = ((long) labels[neighbours[i][j]] << 8) | bondCodes[i][j];
+                }
+                Arrays.sort(signature, 1, signature.length);
+                signatures[i] = signature;
+            }
+            Integer[] index = new Integer[atomCount];
+            for (int i = 0; i < atomCount; i++) {
+                index[i] = i;
+            }
+            Comparator<Integer> comparator = new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return compareSignatures(signatures[o1], signatures[o2]);
+                }
+            };
+            Arrays.sort(index, comparator);
+            int[] refined = new int[atomCount];
+            int rank = 0;
+            for (int i = 0; i < atomCount; i++) {
+                if (i > 0 && comparator.compare(index[i - 1], index[i]) != 0) {
+                    rank++;
+                }
+                refined[index[i]] = rank;
+            }
+            int refinedClasses = rank + 1;
+            labels = refined;
+            if (refinedClasses == classes) {
+                break;
+            }
+            classes = refinedClasses;
+        }
+        return labels;
+    }
+
+    private static int compareSignatures(long[] a, long[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int k = 0; k < length; k++) {
+            int cmp = Long.compare(a[k], b[k]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    private int countClasses(int[] labels) {
+        boolean[] seen = new boolean[atomCount];
+        int classes = 0;
+        for (int label : labels) {
+            if (!seen[label]) {
+                seen[label] = true;
+                classes++;
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * @param labels class index per atom index
+     * @return the first class with more than one atom, or -1
+     */
+    int firstTiedClass(int[] labels) {
+        int[] size = new int[atomCount];
+        for (int label : labels) {
+            size[label]++;
+        }
+        for (int label = 0; label < atomCount; label++) {
+            if (size[label] > 1) {
+                return label;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gives the first atom of the tied class a rank of its own; all other
+     * classes keep their relative order.
+     */
+    private int[] individualise(int[] labels, int tied) {
+        int chosen = -1;
+        for (int i = 0; i < atomCount; i++) {
+            if (labels[i] == tied) {
+                chosen = i;
+                break;
+            }
+        }
+        return individualiseAtom(labels, chosen);
+    }
+
+    /**
+     * Gives the chosen atom a rank of its own, just below the other atoms of
+     * its class.
+     */
+    private int[] individualiseAtom(int[] labels, int chosen) {
+        int tied = labels[chosen];
+        int[] split = new int[atomCount];
+        for (int i = 0; i < atomCount; i++) {
+            split[i] = 2 * labels[i];
+            if (labels[i] == tied && i != chosen) {
+                split[i]++;
+            }
+        }
+        int[] dense = split.clone();
+        Arrays.sort(dense);
+        for (int i = 0; i < atomCount; i++) {
+            split[i] = countDistinctBelow(dense, split[i]);
+        }
+        return split;
+    }
+
+    /**
+     * Equitable partition with the given atoms individualised in turn.
+     *
+     * @param fixed atoms to individualise
+     * @return class index per atom index
+     */
+    int[] refineFixing(int[] fixed) {
+        int[] labels = symmetryClasses;
+        for (int atom : fixed) {
+            labels = refine(individualiseAtom(labels, atom));
+        }
+        return labels;
+    }
+
+    /**
+     * Complete labelling with the given atoms individualised first; the
+     * remaining ties are broken as for the canonical ranks.
+     *
+     * @param fixed atoms to individualise
+     * @return discrete rank per atom index
+     */
+    int[] completeRanks(int[] fixed) {
+        int[] labels = refineFixing(fixed);
+        int tied = firstTiedClass(labels);
+        while (tied >= 0) {
+            labels = refine(individualise(labels, tied));
+            tied = firstTiedClass(labels);
+        }
+        return labels;
+    }
+
+    /**
+     * Checks that a permutation of the atoms preserves the atom labels, the
+     * adjacency and the bond labels.
+     *
+     * @param permutation image per atom index
+     * @return true if the permutation is an automorphism
+     */
+    boolean isAutomorphism(int[] permutation) {
+        for (int i = 0; i < atomCount; i++) {
+            int image = permutation[i];
+            if (symmetryClasses[i] != symmetryClasses[image]
+                    || neighbours[i].length != neighbours[image].length) {
+                return false;
+            }
+            for (int j = 0; j < neighbours[i].length; j++) {
+                int mapped = permutation[neighbours[i][j]];
+                boolean found = false;
+                for (int k = 0; k < neighbours[image].length; k++) {
+                    if (neighbours[image][k] == mapped && bondCodes[image][k] == bondCodes[i][j]) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int countDistinctBelow(int[] sorted, int value) {
+        int distinct = 0;
+        for (int k = 0; k < sorted.length && sorted[k] < value; k++) {
+            if (k == 0 || sorted[k] != sorted[k - 1]) {
+                distinct++;
+            }
+        }
+        return distinct;
+    }
+
+    private static int[] inverse(int[] ranks) {
+        int[] order = new int[ranks.length];
+        for (int i = 0; i < ranks.length; i++) {
+            order[ranks[i]] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Hashes the labelled graph written in the order of the ranks with two
+     * independent 64 bit mixers.
+     */
+    private long[] encode(int[] ranks) {
+        int[] order = inverse(ranks);
+        Hasher hasher = new Hasher();
+        hasher.add(atomCount);
+        for (int position = 0; position < atomCount; position++) {
+            IAtom atom = container.getAtom(order[position]);
+            hasher.add(stringValue(atom.getSymbol()));
+            hasher.add(intValue(atom.getFormalCharge()));
+            hasher.add(intValue(atom.getImplicitHydrogenCount()));
+            hasher.add(intValue(atom.getMassNumber()));
+            hasher.add(atom.getFlag(CDKConstants.ISAROMATIC) ? 1 : 0);
+            hasher.add(stringValue(atom.getAtomTypeName()));
+        }
+        List<long[]> edges = new ArrayList<>();
+        for (int i = 0; i < atomCount; i++) {
+            for (int j = 0; j < neighbours[i].length; j++) {
+                int a = ranks[i];
+                int b = ranks[neighbours[i][j]];
+                if (a < b) {
+                    edges.add(new long[]{a, b, bondCodes[i][j]});
+                }
+            }
+        }
+        Collections.sort(edges, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] o1, long[] o2) {
+                return compareSignatures(o1, o2);
+            }
+        });
+        hasher.add(edges.size());
+        for (long[] edge : edges) {
+            hasher.add(edge[0]);
+            hasher.add(edge[1]);
+            hasher.add(edge[2]);
+        }
+        return new long[]{hasher.high, hasher.low};
+    }
+
+    /**
+     * Depth first search of the individualisations for the discrete
+     * partition with the smallest hash. The first leaf and the best leaf are
+     * kept; a leaf encoding the same graph as either gives an automorphism,
+     * which maps the subtree being searched onto one already searched, so the
+     * search backs up to the node where the two paths part. At each node the
+     * atoms of the target class in one orbit of the automorphisms found so
+     * far that fix the path are searched once.
+     */
+    private final class Search {
+
+        private final List<int[]> generators = new ArrayList<>();
+        private int[] firstRanks;
+        private int[] firstPath;
+        private long[] firstHash;
+        private int[] bestRanks;
+        private int[] bestPath;
+        private long[] bestHash;
+        private int leaves;
+
+        /**
+         * @return the depth to back up to, or -1 to go on
+         */
+        int expand(int[] labels, int[] path) {
+            int tied = firstTiedClass(labels);
+            if (tied < 0) {
+                return leaf(labels, path);
+            }
+            int depth = path.length;
+            List<Integer> searched = new ArrayList<>();
+            for (int atom = 0; atom < atomCount && leaves < MAX_LEAVES; atom++) {
+                if (labels[atom] != tied || inSearchedOrbit(atom, searched, path)) {
+                    continue;
+                }
+                searched.add(atom);
+                int[] next = Arrays.copyOf(path, depth + 1);
+                next[depth] = atom;
+                int backTo = expand(refine(individualiseAtom(labels, atom)), next);
+                if (backTo >= 0 && backTo < depth) {
+                    return backTo;
+                }
+            }
+            return -1;
+        }
+
+        private int leaf(int[] labels, int[] path) {
+            leaves++;
+            long[] hash = encode(labels);
+            if (firstRanks == null) {
+                firstRanks = labels;
+                firstPath = path;
+                firstHash = hash;
+                bestRanks = labels;
+                bestPath = path;
+                bestHash = hash;
+                return -1;
+            }
+            if (Arrays.equals(hash, firstHash) && addAutomorphism(firstRanks, labels)) {
+                return commonDepth(firstPath, path);
+            }
+            int cmp = Long.compare(hash[0], bestHash[0]);
+            if (cmp == 0) {
+                cmp = Long.compare(hash[1], bestHash[1]);
+            }
+            if (cmp == 0 && addAutomorphism(bestRanks, labels)) {
+                return commonDepth(bestPath, path);
+            }
+            if (cmp < 0) {
+                bestRanks = labels;
+                bestPath = path;
+                bestHash = hash;
+            }
+            return -1;
+        }
+
+        /*
+         * The permutation taking the atom at each position of one leaf to the
+         * atom at that position of the other
+         */
+        private boolean addAutomorphism(int[] from, int[] to) {
+            int[] toOrder = inverse(to);
+            int[] permutation = new int[atomCount];
+            for (int i = 0; i < atomCount; i++) {
+                permutation[i] = toOrder[from[i]];
+            }
+            if (!isAutomorphism(permutation)) {
+                return false;
+            }
+            generators.add(permutation);
+            return true;
+        }
+
+        private int commonDepth(int[] a, int[] b) {
+            int depth = 0;
+            while (depth < a.length && depth < b.length && a[depth] == b[depth]) {
+                depth++;
+            }
+            return depth;
+        }
+
+        private boolean inSearchedOrbit(int atom, List<Integer> searched, int[] path) {
+            if (searched.isEmpty() || generators.isEmpty()) {
+                return false;
+            }
+            int[] parent = new int[atomCount];
+            for (int i = 0; i < atomCount; i++) {
+                parent[i] = i;
+            }
+            for (int[] generator : generators) {
+                boolean fixesPath = true;
+                for (int fixed : path) {
+                    if (generator[fixed] != fixed) {
+                        fixesPath = false;
+                        break;
+                    }
+                }
+                if (fixesPath) {
+                    for (int i = 0; i < atomCount; i++) {
+                        union(parent, i, generator[i]);
+                    }
+                }
+            }
+            int orbit = find(parent, atom);
+            for (int other : searched) {
+                if (find(parent, other) == orbit) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[rootA] = rootB;
+        }
+    }
+
+    private static final class Hasher {
+
+        private long high = 0x9E3779B97F4A7C15L;
+        private long low = 0xC2B2AE3D27D4EB4FL;
+
+        void add(long value) {
+            high = mix(high ^ value) * 0x100000001B3L;
+            low = mix(low + value * 0xFF51AFD7ED558CCDL);
+        }
+
+        void add(String value) {
+            add(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                add(value.charAt(i));
+            }
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
@@ -86,8 +86,16 @@ public class IterationManager implements Serializable {
         counter--;
     }
 
+    /**
+     * True once the iteration limit is passed, the running thread has been
+     * interrupted or its {@link SearchMonitor} cancelled, so that a stopped
+     * search ends as on a timeout.
+     *
+     * @return true if the search should stop
+     */
     public synchronized boolean isMaxIteration() {
-        return getCounter() > limit;
+        return getCounter() > limit || Thread.currentThread().isInterrupted()
+                || SearchMonitor.isCurrentCancelled();
     }
 
     /**
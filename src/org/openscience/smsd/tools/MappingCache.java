@@ -0,0 +1,398 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.tools;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.smsd.AtomAtomMapping;
+
+/**
+ * Size bounded LRU cache of mapping results. Results are keyed by the
+ * canonical hashes ({@link CanonicalLabeller}) of both molecules, the engine
+ * and the match flags, and are stored in canonical atom order, so a hit is
+ * remapped onto the atoms of the caller's containers whatever their atom
+ * numbering.
+ *
+ * The cache is disabled (capacity 0) by default. {@link org.openscience.smsd.Isomorphism} and
+ * {@link org.openscience.smsd.Substructure} consult the shared instance once a capacity is set:
+ * <pre>
+ * MappingCache.getInstance().setCapacity(10000);
+ * </pre>
+ *
+ * A {@link MappingStore} can be attached as a persistent second level; it is
+ * consulted on a miss and every new result is appended to it, which lets batch
+ * runs resume without recomputing finished pairs. Attaching a store enables
+ * the cache even when the capacity is 0.
+ *
+ * Query containers ({@link org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer})
+ * are never cached.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class MappingCache {
+
+    private final static ILoggingTool logger
+            = LoggingToolFactory.createLoggingTool(MappingCache.class);
+    private static final MappingCache INSTANCE = new MappingCache();
+    private final LinkedHashMap<Key, Entry> cache;
+    private int capacity;
+    private MappingStore store;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a private, disabled cache. Most callers want the shared
+     * {@link #getInstance()}.
+     */
+    public MappingCache() {
+        this.capacity = 0;
+        this.cache = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 0x5a1c7e3b9d2f41L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > MappingCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @return the cache shared by {@link org.openscience.smsd.Isomorphism} and
+     * {@link org.openscience.smsd.Substructure}
+     */
+    public static MappingCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the maximum number of cached results; 0 disables the cache.
+     * Shrinking the capacity evicts the least recently used results.
+     *
+     * @param capacity maximum number of results
+     */
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        if (cache.size() > this.capacity) {
+            List<Key> keys = new ArrayList<>(cache.keySet());
+            for (int i = 0; i < keys.size() - this.capacity; i++) {
+                cache.remove(keys.get(i));
+            }
+        }
+    }
+
+    /**
+     * @return the maximum number of cached results
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return true if the capacity is larger than 0 or a store is attached
+     */
+    public synchronized boolean isEnabled() {
+        return capacity > 0 || store != null;
+    }
+
+    /**
+     * Attaches a persistent store, or detaches it if null. The store is not
+     * closed by the cache.
+     *
+     * @param store persistent store
+     */
+    public synchronized void setStore(MappingStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @return the attached persistent store or null
+     */
+    public synchronized MappingStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return number of cached results
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return number of lookups answered from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups not answered from the cache
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Removes all results and resets the statistics.
+     */
+    public synchronized void clear() {
+        cache.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Builds the lookup key for a comparison. The molecules are labelled
+     * outside the cache lock.
+     *
+     * @param query query molecule
+     * @param target target molecule
+     * @param engine name of the engine or mode producing the result
+     * @param matchBonds
+     * @param matchRings
+     * @param matchAtomType
+     * @return key
+     */
+    public Key createKey(IAtomContainer query, IAtomContainer target, String engine,
+            boolean matchBonds, boolean matchRings, boolean matchAtomType) {
+        return new Key(new CanonicalLabeller(query), new CanonicalLabeller(target),
+                engine, matchBonds, matchRings, matchAtomType);
+    }
+
+    /**
+     * Looks up a result and maps it onto the query and target containers.
+     *
+     * @param key key built by {@link #createKey}
+     * @param query query molecule the key was built from
+     * @param target target molecule the key was built from
+     * @return cached result or null
+     */
+    public Result get(Key key, IAtomContainer query, IAtomContainer target) {
+        Entry entry;
+        MappingStore backing;
+        synchronized (this) {
+            entry = cache.get(key);
+            backing = store;
+        }
+        if (entry == null && backing != null) {
+            try {
+                entry = backing.read(key.getId());
+            } catch (IOException ex) {
+                logger.error("Unable to read from the mapping store: " + ex.getMessage());
+            }
+        }
+        synchronized (this) {
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            if (capacity > 0 && !cache.containsKey(key)) {
+                cache.put(key, entry);
+            }
+        }
+        List<AtomAtomMapping> mappings = new ArrayList<>(entry.mappings.size());
+        for (int[] ranks : entry.mappings) {
+            AtomAtomMapping mapping = new AtomAtomMapping(query, target);
+            for (int i = 0; i < ranks.length; i += 2) {
+                mapping.put(query.getAtom(key.queryOrder[ranks[i]]),
+                        target.getAtom(key.targetOrder[ranks[i + 1]]));
+            }
+            mappings.add(mapping);
+        }
+        return new Result(mappings, entry.subgraph);
+    }
+
+    /**
+     * Stores a result in canonical atom order.
+     *
+     * Mappings that do not refer to the given query and target containers
+     * are not cached.
+     *
+     * @param key key built by {@link #createKey}
+     * @param query query molecule the key was built from
+     * @param target target molecule the key was built from
+     * @param mappings mappings between the query and the target
+     * @param subgraph true if the query is a subgraph of the target
+     */
+    public void put(Key key, IAtomContainer query, IAtomContainer target,
+            List<AtomAtomMapping> mappings, boolean subgraph) {
+        List<int[]> ranked = new ArrayList<>(mappings.size());
+        for (AtomAtomMapping mapping : mappings) {
+            if (mapping.getQuery() != query || mapping.getTarget() != target) {
+                return;
+            }
+            Map<Integer, Integer> byIndex = mapping.getMappingsByIndex();
+            int[] ranks = new int[2 * byIndex.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> map : byIndex.entrySet()) {
+                ranks[i++] = key.queryRanks[map.getKey()];
+                ranks[i++] = key.targetRanks[map.getValue()];
+            }
+            ranked.add(ranks);
+        }
+        Entry entry = new Entry(Collections.unmodifiableList(ranked), subgraph);
+        MappingStore backing;
+        synchronized (this) {
+            if (capacity > 0) {
+                cache.put(key, entry);
+            }
+            backing = store;
+        }
+        if (backing != null) {
+            try {
+                backing.append(key.getId(), entry);
+            } catch (IOException ex) {
+                logger.error("Unable to write to the mapping store: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Lookup key: canonical hashes of both molecules, engine and match flags.
+     * The canonical orders of the molecules the key was built from are kept
+     * to translate between atom indices and canonical positions; they do not
+     * take part in equality.
+     */
+    public static final class Key {
+
+        private final String queryHash;
+        private final String targetHash;
+        private final String engine;
+        private final boolean matchBonds;
+        private final boolean matchRings;
+        private final boolean matchAtomType;
+        private final int[] queryOrder;
+        private final int[] queryRanks;
+        private final int[] targetOrder;
+        private final int[] targetRanks;
+
+        Key(CanonicalLabeller query, CanonicalLabeller target, String engine,
+                boolean matchBonds, boolean matchRings, boolean matchAtomType) {
+            this.queryHash = query.getHash();
+            this.targetHash = target.getHash();
+            this.engine = engine;
+            this.matchBonds = matchBonds;
+            this.matchRings = matchRings;
+            this.matchAtomType = matchAtomType;
+            this.queryOrder = query.getCanonicalOrder();
+            this.queryRanks = query.getCanonicalRanks();
+            this.targetOrder = target.getCanonicalOrder();
+            this.targetRanks = target.getCanonicalRanks();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return matchBonds == other.matchBonds
+                    && matchRings == other.matchRings
+                    && matchAtomType == other.matchAtomType
+                    && queryHash.equals(other.queryHash)
+                    && targetHash.equals(other.targetHash)
+                    && engine.equals(other.engine);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 31 * hash + queryHash.hashCode();
+            hash = 31 * hash + targetHash.hashCode();
+            hash = 31 * hash + engine.hashCode();
+            hash = 31 * hash + (matchBonds ? 1 : 0);
+            hash = 31 * hash + (matchRings ? 1 : 0);
+            hash = 31 * hash + (matchAtomType ? 1 : 0);
+            return hash;
+        }
+
+        /**
+         * @return string form of the key, as used by {@link MappingStore}
+         */
+        public String getId() {
+            return queryHash + ":" + targetHash + ":" + engine + ":"
+                    + (matchBonds ? 1 : 0) + (matchRings ? 1 : 0) + (matchAtomType ? 1 : 0);
+        }
+
+        @Override
+        public String toString() {
+            return getId();
+        }
+    }
+
+    /**
+     * A cached result mapped onto the caller's containers.
+     */
+    public static final class Result {
+
+        private final List<AtomAtomMapping> mappings;
+        private final boolean subgraph;
+
+        Result(List<AtomAtomMapping> mappings, boolean subgraph) {
+            this.mappings = mappings;
+            this.subgraph = subgraph;
+        }
+
+        /**
+         * @return mappings on the caller's atoms
+         */
+        public List<AtomAtomMapping> getMappings() {
+            return mappings;
+        }
+
+        /**
+         * @return true if the query is a subgraph of the target
+         */
+        public boolean isSubgraph() {
+            return subgraph;
+        }
+    }
+
+    /**
+     * A result in canonical atom order: per mapping the query and target
+     * canonical positions, interleaved.
+     */
+    static final class Entry {
+
+        final List<int[]> mappings;
+        final boolean subgraph;
+
+        Entry(List<int[]> mappings, boolean subgraph) {
+            this.mappings = mappings;
+            this.subgraph = subgraph;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+/**
+ * Append-only, log-structured file of mapping results, used as the
+ * persistent level of {@link MappingCache}. Each record holds the key id
+ * ({@link MappingCache.Key#getId()}) and the result in canonical atom order,
+ * framed by its length and a CRC32 checksum. The file is scanned once when it
+ * is opened to build an in-memory index of key to file offset; a record torn
+ * by a crash is detected by its checksum and cut off, so a rerun resumes after
+ * the last complete record. When a key occurs more than once the last record
+ * wins.
+ *
+ * Records are written to the operating system as they are appended;
+ * {@link #checkpoint()} additionally forces them to the disk.
+ * <pre>
+ * MappingStore store = new MappingStore(new File("mcs.store"));
+ * MappingCache.getInstance().setStore(store);
+ * ... run Isomorphism / Substructure ...
+ * store.close();
+ * </pre>
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class MappingStore implements Closeable {
+
+    private final static ILoggingTool logger
+            = LoggingToolFactory.createLoggingTool(MappingStore.class);
+    private static final int MAGIC = 0x534d5344;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private final File file;
+    private final RandomAccessFile raf;
+    private final Map<String, Long> index;
+    private long end;
+
+    /**
+     * Opens (or creates) a store. Torn records at the end of the file are
+     * discarded.
+     *
+     * @param file store file
+     * @throws IOException if the file cannot be opened or is not a store
+     */
+    public MappingStore(File file) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.index = new HashMap<>();
+        if (raf.length() == 0) {
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+            this.end = HEADER_SIZE;
+        } else {
+            if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC) {
+                raf.close();
+                throw new IOException("Not a mapping store: " + file);
+            }
+            int version = raf.readInt();
+            if (version != VERSION) {
+                raf.close();
+                throw new IOException("Unsupported mapping store version " + version + ": " + file);
+            }
+            this.end = recover();
+        }
+    }
+
+    /**
+     * Scans the records and returns the offset just after the last complete
+     * one, truncating anything behind it.
+     */
+    private long recover() throws IOException {
+        long position = HEADER_SIZE;
+        long length = raf.length();
+        raf.seek(position);
+        while (position + 4 <= length) {
+            int size = raf.readInt();
+            if (size <= 0 || position + 4 + size + 8 > length) {
+                break;
+            }
+            byte[] payload = new byte[size];
+            raf.readFully(payload);
+            long checksum = raf.readLong();
+            if (checksum != checksum(payload)) {
+                break;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            index.put(in.readUTF(), position);
+            position += 4 + size + 8;
+        }
+        if (position < length) {
+            logger.warn("Discarding " + (length - position) + " trailing bytes of " + file);
+            raf.setLength(position);
+        }
+        return position;
+    }
+
+    private static long checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return crc.getValue();
+    }
+
+    /**
+     * @param id key id
+     * @return true if a result is stored under the key
+     */
+    public synchronized boolean contains(String id) {
+        return index.containsKey(id);
+    }
+
+    /**
+     * @param key key
+     * @return true if a result is stored under the key
+     */
+    public boolean contains(MappingCache.Key key) {
+        return contains(key.getId());
+    }
+
+    /**
+     * @return number of distinct keys in the store
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the store file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    synchronized MappingCache.Entry read(String id) throws IOException {
+        Long position = index.get(id);
+        if (position == null) {
+            return null;
+        }
+        raf.seek(position);
+        byte[] payload = new byte[raf.readInt()];
+        raf.readFully(payload);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        try {
+            in.readUTF();
+            boolean subgraph = in.readBoolean();
+            int count = in.readInt();
+            List<int[]> mappings = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int[] ranks = new int[in.readInt()];
+                for (int j = 0; j < ranks.length; j++) {
+                    ranks[j] = in.readInt();
+                }
+                mappings.add(ranks);
+            }
+            return new MappingCache.Entry(Collections.unmodifiableList(mappings), subgraph);
+        } catch (EOFException ex) {
+            throw new IOException("Corrupt record for " + id + " in " + file);
+        }
+    }
+
+    synchronized void append(String id, MappingCache.Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(id);
+        out.writeBoolean(entry.subgraph);
+        out.writeInt(entry.mappings.size());
+        for (int[] ranks : entry.mappings) {
+            out.writeInt(ranks.length);
+            for (int rank : ranks) {
+                out.writeInt(rank);
+            }
+        }
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(payload.length + 12);
+        DataOutputStream framed = new DataOutputStream(record);
+        framed.writeInt(payload.length);
+        framed.write(payload);
+        framed.writeLong(checksum(payload));
+        framed.flush();
+
+        raf.seek(end);
+        raf.write(record.toByteArray());
+        index.put(id, end);
+        end += record.size();
+    }
+
+    /**
+     * Forces all appended records to the disk.
+     *
+     * @throws IOException
+     */
+    public synchronized void checkpoint() throws IOException {
+        raf.getChannel().force(false);
+    }
+
+    /**
+     * Checkpoints and closes the store.
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            checkpoint();
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.tools;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.interfaces.IMCSListener;
+
+/**
+ * Collects the solutions of a running MCS search for an
+ * {@link IMCSListener} and carries its cancellation. A monitor is attached to
+ * the thread that starts the search and is inherited by the worker threads
+ * that thread creates, so the engines report through the static methods
+ * without a reference to it; without an open monitor they do nothing.
+ *
+ * A cancelled search stops at the next {@link IterationManager} check, as on
+ * a timeout.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class SearchMonitor {
+
+    private final static ILoggingTool logger
+            = LoggingToolFactory.createLoggingTool(SearchMonitor.class);
+    /**
+     * Solution of the VF matcher.
+     */
+    public static final String VF = "vf";
+    /**
+     * Seed of the clique or CDKMCS searches.
+     */
+    public static final String SEED = "seed";
+    /**
+     * Larger clique found by the clique enumeration.
+     */
+    public static final String CLIQUE = "clique";
+    /**
+     * Seed extended by McGregor.
+     */
+    public static final String MCGREGOR = "mcgregor";
+    /**
+     * Result of an engine.
+     */
+    public static final String RESULT = "result";
+    private static final InheritableThreadLocal<SearchMonitor> CURRENT = new InheritableThreadLocal<>();
+    private final IAtomContainer query;
+    private final IAtomContainer target;
+    private final IMCSListener listener;
+    private final long start;
+    private volatile boolean cancelled;
+    private volatile boolean closed;
+    private AtomAtomMapping best;
+    private long candidates;
+    private long improvements;
+
+    /**
+     * @param query query of the search
+     * @param target target of the search
+     * @param listener listener receiving the solutions
+     */
+    public SearchMonitor(IAtomContainer query, IAtomContainer target, IMCSListener listener) {
+        this.query = query;
+        this.target = target;
+        this.listener = listener;
+        this.start = System.currentTimeMillis();
+    }
+
+    /**
+     * Attaches the monitor to the current thread and the threads it creates.
+     */
+    public void open() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Detaches the monitor; worker threads still holding it stop reporting.
+     */
+    public void close() {
+        closed = true;
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    /*
+     * Sets the monitor of the current thread, null to remove it; returns the
+     * previous one. For pool threads, which do not inherit the monitor.
+     */
+    static SearchMonitor attach(SearchMonitor monitor) {
+        SearchMonitor previous = CURRENT.get();
+        if (monitor == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(monitor);
+        }
+        return previous;
+    }
+
+    /**
+     * @return the open monitor of the current thread, or null
+     */
+    public static SearchMonitor current() {
+        SearchMonitor monitor = CURRENT.get();
+        return monitor == null || monitor.closed ? null : monitor;
+    }
+
+    /**
+     * @return true if the search of the current thread has been cancelled
+     */
+    public static boolean isCurrentCancelled() {
+        SearchMonitor monitor = current();
+        return monitor != null && monitor.cancelled;
+    }
+
+    /**
+     * Reports a solution to the monitor of the current thread, if any.
+     *
+     * @param phase search step
+     * @param mapping query atom index to target atom index, the containers
+     * of the engine having the atom order of the query and target
+     */
+    public static void report(String phase, Map<Integer, Integer> mapping) {
+        SearchMonitor monitor = current();
+        if (monitor != null) {
+            monitor.offer(phase, mapping);
+        }
+    }
+
+    /**
+     * Reports a solution to the monitor of the current thread, if any.
+     *
+     * @param phase search step
+     * @param mapping mapping between containers with the atom order of the
+     * query and target
+     */
+    public static void report(String phase, AtomAtomMapping mapping) {
+        SearchMonitor monitor = current();
+        if (monitor != null) {
+            monitor.offer(phase, mapping.getMappingsByIndex());
+        }
+    }
+
+    /**
+     * Reports a solution given as index pairs to the monitor of the current
+     * thread, if any.
+     *
+     * @param phase search step
+     * @param pairs query index, target index, query index, ...
+     * @param reversed true if the pairs are target index, query index
+     */
+    public static void report(String phase, List<Integer> pairs, boolean reversed) {
+        SearchMonitor monitor = current();
+        if (monitor != null) {
+            Map<Integer, Integer> mapping = new TreeMap<>();
+            for (int i = 0; i + 1 < pairs.size(); i += 2) {
+                if (reversed) {
+                    mapping.put(pairs.get(i + 1), pairs.get(i));
+                } else {
+                    mapping.put(pairs.get(i), pairs.get(i + 1));
+                }
+            }
+            monitor.offer(phase, mapping);
+        }
+    }
+
+    /**
+     * Reports the largest of a list of solutions given as index pairs.
+     *
+     * @param phase search step
+     * @param solutions solutions as in {@link #report(String, List, boolean)}
+     * @param reversed true if the pairs are target index, query index
+     */
+    public static void reportLargest(String phase, List<List<Integer>> solutions, boolean reversed) {
+        if (current() == null) {
+            return;
+        }
+        List<Integer> largest = null;
+        for (List<Integer> solution : solutions) {
+            if (largest == null || solution.size() > largest.size()) {
+                largest = solution;
+            }
+        }
+        if (largest != null) {
+            report(phase, largest, reversed);
+        }
+    }
+
+    /**
+     * Offers a solution; the listener is called if it is larger than the best
+     * so far.
+     *
+     * @param phase search step
+     * @param mapping query atom index to target atom index
+     */
+    public synchronized void offer(String phase, Map<Integer, Integer> mapping) {
+        if (closed || cancelled) {
+            return;
+        }
+        candidates++;
+        if (mapping.size() <= (best == null ? 0 : best.getCount())) {
+            return;
+        }
+        AtomAtomMapping solution = new AtomAtomMapping(query, target);
+        for (Map.Entry<Integer, Integer> entry : mapping.entrySet()) {
+            int q = entry.getKey();
+            int t = entry.getValue();
+            if (q < 0 || q >= query.getAtomCount() || t < 0 || t >= target.getAtomCount()) {
+                logger.debug("Ignoring a " + phase + " solution outside the query or target");
+                return;
+            }
+            solution.put(query.getAtom(q), target.getAtom(t));
+        }
+        best = solution;
+        improvements++;
+        SearchStatistics statistics = new SearchStatistics(phase,
+                System.currentTimeMillis() - start, candidates, improvements, solution.getCount());
+        try {
+            if (!listener.improved(solution, statistics)) {
+                cancelled = true;
+            }
+        } catch (RuntimeException ex) {
+            logger.error("MCS listener failed, the search continues", ex);
+        }
+    }
+
+    /**
+     * Stops the search at its next iteration check.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true if the search has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return the best solution reported so far, or null
+     */
+    public synchronized AtomAtomMapping getBest() {
+        return best;
+    }
+}
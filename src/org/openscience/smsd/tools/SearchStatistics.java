@@ -0,0 +1,90 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.tools;
+
+/**
+ * Progress of an MCS search at the time a solution was reported to an
+ * {@link org.openscience.smsd.interfaces.IMCSListener}.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class SearchStatistics {
+
+    private final String phase;
+    private final long elapsedMillis;
+    private final long candidates;
+    private final long improvements;
+    private final int bestSize;
+
+    SearchStatistics(String phase, long elapsedMillis, long candidates, long improvements, int bestSize) {
+        this.phase = phase;
+        this.elapsedMillis = elapsedMillis;
+        this.candidates = candidates;
+        this.improvements = improvements;
+        this.bestSize = bestSize;
+    }
+
+    /**
+     * @return search step that found the solution, one of the
+     * <code>SearchMonitor</code> phase names
+     */
+    public String getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return milliseconds since the search started
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return number of solutions seen so far, including the smaller ones
+     */
+    public long getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * @return number of improvements so far, including this one
+     */
+    public long getImprovements() {
+        return improvements;
+    }
+
+    /**
+     * @return number of mapped atoms of the best solution
+     */
+    public int getBestSize() {
+        return bestSize;
+    }
+
+    @Override
+    public String toString() {
+        return phase + " size " + bestSize + " after " + elapsedMillis + " ms ("
+                + improvements + " improvements, " + candidates + " candidates)";
+    }
+}
@@ -0,0 +1,127 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.tools;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+
+/**
+ * Fork/join pool shared by the parallel steps inside a single comparison,
+ * such as the seed reduction of the MCSS or the blocks of the CDKMCS
+ * resolution graph. Comparisons that their callers already run in parallel
+ * (similarity matrix tiles, MCSS workers, top-k batches) then share one set of
+ * worker threads instead of each starting a pool of its own. A step called
+ * from a fork/join worker should run serially, see {@link #isWorker()}.
+ *
+ * The pool threads outlive the searches, so the {@link SearchMonitor} they
+ * inherited when they were created belongs to some earlier search; the tasks
+ * passed through {@link #invokeAll(Collection)} and {@link #submit(Callable)}
+ * carry the monitor of the submitting thread instead, see
+ * {@link #withMonitor(Callable)}.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class SharedPool {
+
+    private SharedPool() {
+    }
+
+    /*
+     * Created on first use
+     */
+    private static final class Holder {
+
+        private static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
+    /**
+     * @return the shared pool, one worker per processor
+     */
+    public static ForkJoinPool getPool() {
+        return Holder.POOL;
+    }
+
+    /**
+     * @return true if the current thread is a fork/join worker, in which case
+     * nested steps run serially rather than adding work to a pool
+     */
+    public static boolean isWorker() {
+        return ForkJoinTask.inForkJoinPool();
+    }
+
+    /**
+     * Runs the tasks in the shared pool and waits for all of them.
+     *
+     * @param <T> result type
+     * @param tasks tasks to run
+     * @return the completed futures, in the order of the tasks
+     */
+    public static <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) {
+        List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            wrapped.add(withMonitor(task));
+        }
+        return getPool().invokeAll(wrapped);
+    }
+
+    /**
+     * Starts a task in the shared pool.
+     *
+     * @param <T> result type
+     * @param task task to run
+     * @return the future of the task
+     */
+    public static <T> Future<T> submit(Callable<T> task) {
+        return getPool().submit(withMonitor(task));
+    }
+
+    /**
+     * Wraps a task for a thread of a shared pool, so that it runs under the
+     * monitor of the current thread, or under none if it has none.
+     *
+     * @param <T> result type
+     * @param task task to run
+     * @return the wrapped task
+     */
+    public static <T> Callable<T> withMonitor(final Callable<T> task) {
+        final SearchMonitor monitor = SearchMonitor.current();
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                SearchMonitor previous = SearchMonitor.attach(monitor);
+                try {
+                    return task.call();
+                } finally {
+                    SearchMonitor.attach(previous);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright (C) 2009-2013 Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version. All we ask is that proper credit is given for our work,
+ * which includes - but is not limited to - adding the above copyright notice to
+ * the beginning of your source code files, and to any copyright notice that you
+ * may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package cmd;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.Substructure;
+import org.openscience.smsd.metrics.InMemoryMetricsRegistry;
+import org.openscience.smsd.metrics.PhaseEvent;
+
+/**
+ * Unit testing for the {@link ProfileWriter} class.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ * @cdk.module test-smsd
+ */
+public class ProfileWriterTest {
+
+    /**
+     * One valid JSON line per pair, with escaped names, the engines in the
+     * order they ran and the fallback flag set only for VF2MCS right after
+     * CDKMCS or MCSPlus.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testProfileLines() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("CC");
+        IAtomContainer target = sp.parseSmiles("CCO");
+        Substructure mapping = new Substructure(query, target, true, false, false, true);
+
+        File file = File.createTempFile("smsd-profile", ".json");
+        file.deleteOnExit();
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        registry.counter("test.steps").increment();
+        ProfileWriter writer = new ProfileWriter(file, registry);
+        writer.start();
+        try {
+            writer.begin();
+            phase(PhaseEvent.CDKMCS_ENGINE, true);
+            phase(PhaseEvent.VF2MCS_ENGINE, false);
+            registry.counter("test.steps").add(2);
+            writer.record("say \"hi\"\\", "tab\there\u0001\nend", query, target, mapping, false, 100);
+
+            writer.begin();
+            phase(PhaseEvent.MCSPLUS_ENGINE, false);
+            phase(PhaseEvent.VF2MCS_ENGINE, false);
+            writer.record("mcsplus", null, query, target, mapping, false, 200);
+
+            writer.begin();
+            phase(PhaseEvent.VF2MCS_ENGINE, false);
+            writer.record("vf2mcs", "", query, target, mapping, false, 300);
+
+            writer.begin();
+            phase(PhaseEvent.SUBSTRUCTURE_ENGINE, false);
+            phase(PhaseEvent.VF2MCS_ENGINE, false);
+            writer.record("substructure", "", query, target, mapping, true, 400);
+
+            writer.begin();
+            phase(PhaseEvent.VF2MCS_ENGINE, false);
+            phase(PhaseEvent.CDKMCS_ENGINE, false);
+            writer.record("reversed", "", query, target, mapping, false, 500);
+        } finally {
+            writer.close();
+        }
+
+        List<Map<String, Object>> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(new JsonReader(line).object());
+            }
+        }
+        Assert.assertEquals(5, lines.size());
+
+        Map<String, Object> first = lines.get(0);
+        Assert.assertEquals("say \"hi\"\\", first.get("query"));
+        Assert.assertEquals("tab\there\u0001\nend", first.get("target"));
+        Assert.assertEquals("mcs", first.get("mode"));
+        Assert.assertEquals(2L, first.get("queryAtoms"));
+        Assert.assertEquals(3L, first.get("targetAtoms"));
+        Assert.assertEquals(Arrays.asList("cdkmcs", "vf2mcs"), first.get("engines"));
+        Assert.assertEquals(Boolean.TRUE, first.get("vf2mcsFallback"));
+        Assert.assertEquals(100L, first.get("nanos"));
+        Assert.assertEquals(Boolean.TRUE, first.get("timeout"));
+        Assert.assertEquals(Arrays.asList(PhaseEvent.CDKMCS_ENGINE), first.get("timeouts"));
+        Assert.assertEquals((long) mapping.getMappingCount(), first.get("mappings"));
+        Map<?, ?> counters = (Map<?, ?>) first.get("counters");
+        Assert.assertEquals(2L, counters.get("test.steps"));
+        Map<?, ?> phases = (Map<?, ?>) first.get("phases");
+        Assert.assertEquals(1L, ((Map<?, ?>) phases.get(PhaseEvent.VF2MCS_ENGINE)).get("count"));
+
+        Map<String, Object> second = lines.get(1);
+        Assert.assertTrue(second.containsKey("target"));
+        Assert.assertNull(second.get("target"));
+        Assert.assertEquals(Arrays.asList("mcsplus", "vf2mcs"), second.get("engines"));
+        Assert.assertEquals(Boolean.TRUE, second.get("vf2mcsFallback"));
+        Assert.assertEquals(Boolean.FALSE, second.get("timeout"));
+        Assert.assertTrue(((Map<?, ?>) second.get("counters")).isEmpty());
+
+        Assert.assertEquals(Arrays.asList("vf2mcs"), lines.get(2).get("engines"));
+        Assert.assertEquals(Boolean.FALSE, lines.get(2).get("vf2mcsFallback"));
+        Assert.assertEquals("substructure", lines.get(3).get("mode"));
+        Assert.assertEquals(Boolean.FALSE, lines.get(3).get("vf2mcsFallback"));
+        Assert.assertEquals(Arrays.asList("vf2mcs", "cdkmcs"), lines.get(4).get("engines"));
+        Assert.assertEquals(Boolean.FALSE, lines.get(4).get("vf2mcsFallback"));
+    }
+
+    private static void phase(String name, boolean timeout) {
+        PhaseEvent event = PhaseEvent.begin(name);
+        Assert.assertNotNull(event);
+        event.end(2, 3, timeout);
+    }
+
+    /*
+     * Strict reader for one JSON line: objects, arrays, strings, integers,
+     * booleans and null
+     */
+    private static final class JsonReader {
+
+        private final String text;
+        private int position;
+
+        JsonReader(String text) {
+            this.text = text;
+        }
+
+        Map<String, Object> object() throws IOException {
+            Object value = value();
+            if (position != text.length() || !(value instanceof Map)) {
+                throw new IOException("Not a single JSON object: " + text);
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> object = (Map<String, Object>) value;
+            return object;
+        }
+
+        private Object value() throws IOException {
+            char c = peek();
+            if (c == '{') {
+                position++;
+                Map<String, Object> object = new LinkedHashMap<>();
+                if (peek() == '}') {
+                    position++;
+                    return object;
+                }
+                do {
+                    if (peek() != '"') {
+                        throw error();
+                    }
+                    String key = string();
+                    expect(':');
+                    if (object.put(key, value()) != null) {
+                        throw error();
+                    }
+                } while (next(','));
+                expect('}');
+                return object;
+            } else if (c == '[') {
+                position++;
+                List<Object> array = new ArrayList<>();
+                if (peek() == ']') {
+                    position++;
+                    return array;
+                }
+                do {
+                    array.add(value());
+                } while (next(','));
+                expect(']');
+                return array;
+            } else if (c == '"') {
+                return string();
+            } else if (c == '-' || Character.isDigit(c)) {
+                int start = position++;
+                while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                    position++;
+                }
+                return Long.parseLong(text.substring(start, position));
+            } else if (text.startsWith("true", position)) {
+                position += 4;
+                return Boolean.TRUE;
+            } else if (text.startsWith("false", position)) {
+                position += 5;
+                return Boolean.FALSE;
+            } else if (text.startsWith("null", position)) {
+                position += 4;
+                return null;
+            }
+            throw error();
+        }
+
+        private String string() throws IOException {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = peek();
+                position++;
+                if (c == '"') {
+                    return sb.toString();
+                } else if (c < 0x20) {
+                    throw error();
+                } else if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char escaped = peek();
+                position++;
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        sb.append(escaped);
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error();
+                        }
+                        sb.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                        break;
+                    default:
+                        throw error();
+                }
+            }
+        }
+
+        private char peek() throws IOException {
+            if (position >= text.length()) {
+                throw error();
+            }
+            return text.charAt(position);
+        }
+
+        private boolean next(char c) throws IOException {
+            if (peek() == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws IOException {
+            if (!next(c)) {
+                throw error();
+            }
+        }
+
+        private IOException error() {
+            return new IOException("Invalid JSON at " + position + ": " + text);
+        }
+    }
+}
@@ -25,6 +25,8 @@
 package org.openscience.smsd;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import junit.framework.Assert;
@@ -43,7 +45,9 @@ import org.openscience.cdk.smiles.SmilesGenerator;
 import org.openscience.cdk.smiles.SmilesParser;
 import org.openscience.smsd.algorithm.mcsplus.MCSPlusHandlerTest;
 import org.openscience.smsd.interfaces.Algorithm;
+import org.openscience.smsd.interfaces.IMCSListener;
 import org.openscience.smsd.tools.ExtAtomContainerManipulator;
+import org.openscience.smsd.tools.SearchStatistics;
 
 /**
  * Unit testing for the {@link Isomorphism} class.
@@ -70,6 +74,58 @@ public class IsomorphismTest {
                         false, false, false));
     }
 
+    /**
+     * The listener sees strictly larger solutions, the last one being the
+     * result.
+     *
+     * @throws InvalidSmilesException
+     */
+    @Test
+    public void testListenerReportsImprovements() throws InvalidSmilesException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("CC(=O)Oc1ccccc1C(O)=O");
+        IAtomContainer target = sp.parseSmiles("OC(=O)c1ccccc1OC(=O)CCl");
+        final List<Integer> sizes = new ArrayList<>();
+        Isomorphism comparison = new Isomorphism(query, target, Algorithm.VFLibMCS, true, false, false,
+                new IMCSListener() {
+                    @Override
+                    public boolean improved(AtomAtomMapping mapping, SearchStatistics statistics) {
+                        Assert.assertEquals(mapping.getCount(), statistics.getBestSize());
+                        sizes.add(mapping.getCount());
+                        return true;
+                    }
+                });
+        Assert.assertFalse(sizes.isEmpty());
+        for (int i = 1; i < sizes.size(); i++) {
+            Assert.assertTrue(sizes.get(i) > sizes.get(i - 1));
+        }
+        Assert.assertEquals(comparison.getFirstAtomMapping().getCount(), (int) sizes.get(sizes.size() - 1));
+    }
+
+    /**
+     * A listener stopping the search keeps at least the solution it was
+     * offered and is not called again.
+     *
+     * @throws InvalidSmilesException
+     */
+    @Test
+    public void testListenerCancelsSearch() throws InvalidSmilesException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("CC(=O)Oc1ccccc1C(O)=O");
+        IAtomContainer target = sp.parseSmiles("OC(=O)c1ccccc1OC(=O)CCl");
+        final List<Integer> sizes = new ArrayList<>();
+        Isomorphism comparison = new Isomorphism(query, target, Algorithm.VFLibMCS, true, false, false,
+                new IMCSListener() {
+                    @Override
+                    public boolean improved(AtomAtomMapping mapping, SearchStatistics statistics) {
+                        sizes.add(mapping.getCount());
+                        return false;
+                    }
+                });
+        Assert.assertEquals(1, sizes.size());
+        Assert.assertTrue(comparison.getFirstAtomMapping().getCount() >= sizes.get(0));
+    }
+
     @BeforeClass
     public static void setUpClass() throws Exception {
     }
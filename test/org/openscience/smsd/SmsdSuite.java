@@ -43,6 +43,8 @@ import org.junit.runners.Suite;
     org.openscience.smsd.filters.FiltersSuite.class,
     org.openscience.smsd.SubstructureTest.class,
     org.openscience.smsd.algorithm.AlgorithmSuite.class,
+    org.openscience.smsd.metrics.MetricsSuite.class,
+    org.openscience.smsd.similarity.SimilaritySuite.class,
     org.openscience.smsd.tools.ToolsSuite.class})
 public class SmsdSuite {
 
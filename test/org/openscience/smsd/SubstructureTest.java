@@ -837,4 +837,24 @@ public class SubstructureTest {
 //        ////System.out.println("SMILES Common:" + overlap.getFirstAtomMapping().getCommonFragmentAsSMILES());
 //
     }
+
+    /**
+     * Test of exists and count, of class Substructure.
+     *
+     * @throws InvalidSmilesException
+     * @throws CDKException
+     */
+    @Test
+    public void testExistsAndCount() throws InvalidSmilesException, CDKException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("CC");
+        IAtomContainer target = sp.parseSmiles("C1CCC12CCCC2");
+
+        Assert.assertTrue(Substructure.exists(query, target, true, false, false));
+        Assert.assertEquals(18, Substructure.count(query, target, true, false, false, false));
+        Assert.assertEquals(9, Substructure.count(query, target, true, false, false, true));
+        Assert.assertFalse(Substructure.exists(sp.parseSmiles("CCN"), target, true, false, false));
+        Assert.assertEquals(0, Substructure.count(sp.parseSmiles("CCN"), target, true, false, false, false));
+        Assert.assertEquals(2, Substructure.count(sp.parseSmiles("C"), sp.parseSmiles("CCO"), true, false, false, true));
+    }
 }
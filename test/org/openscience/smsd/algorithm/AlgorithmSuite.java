@@ -41,7 +41,10 @@ import org.junit.runners.Suite;
     org.openscience.smsd.algorithm.vflib.VFSuite.class,
     org.openscience.smsd.algorithm.mcsplus.McsplusSuite.class,
     //        org.openscience.cdk.smsd.algorithm.mcgregor.McgregorSuite.class,
-    org.openscience.smsd.algorithm.rgraph.CdkSuite.class
+    org.openscience.smsd.algorithm.rgraph.CdkSuite.class,
+    org.openscience.smsd.algorithm.portfolio.PortfolioSuite.class,
+    org.openscience.smsd.algorithm.mcsplit.McSplitSuite.class,
+    org.openscience.smsd.algorithm.selector.SelectorSuite.class
 })
 public class AlgorithmSuite {
 
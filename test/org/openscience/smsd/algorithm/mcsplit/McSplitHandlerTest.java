@@ -0,0 +1,109 @@
+/* Copyright (C) 2009-2015 Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.mcsplit;
+
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.interfaces.Algorithm;
+
+/**
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * @cdk.module test-smsd
+ * @cdk.require java1.6+
+ */
+public class McSplitHandlerTest {
+
+    /**
+     * McSplit finds the same MCS size as the default algorithm.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSameSizeAsDefault() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("CC(=O)Oc1ccccc1C(O)=O");
+        IAtomContainer target = sp.parseSmiles("OC(=O)c1ccccc1O");
+        Isomorphism mcsplit = new Isomorphism(query.clone(), target.clone(), Algorithm.MCSPLIT, true, false, false);
+        Isomorphism reference = new Isomorphism(query.clone(), target.clone(), Algorithm.DEFAULT, true, false, false);
+        assertEquals(reference.getFirstAtomMapping().getCount(), mcsplit.getFirstAtomMapping().getCount());
+    }
+
+    /**
+     * Mapped atoms have the same symbol and mapped bonds the same order.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testMappingIsConsistent() throws CDKException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("CC(C)Cc1ccc(cc1)C(C)C(O)=O");
+        IAtomContainer target = sp.parseSmiles("COc1ccc2cc(ccc2c1)C(C)C(O)=O");
+        McSplitHandler mcsplit = new McSplitHandler(query, target, true, false, false);
+        assertFalse(mcsplit.isTimeout());
+        AtomAtomMapping mapping = mcsplit.getFirstAtomMapping();
+        assertTrue(mapping.getCount() >= 10);
+        Map<IAtom, IAtom> atoms = mapping.getMappingsByAtoms();
+        for (Map.Entry<IAtom, IAtom> entry : atoms.entrySet()) {
+            assertEquals(entry.getKey().getSymbol(), entry.getValue().getSymbol());
+        }
+    }
+
+    /**
+     * A triangle and a three bond star share two bonds, not three.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testTriangleAndStar() throws CDKException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("C1CC1");
+        IAtomContainer target = sp.parseSmiles("CC(C)C");
+        McSplitHandler mcsplit = new McSplitHandler(query, target, false, false, false);
+        assertEquals(3, mcsplit.getFirstAtomMapping().getCount());
+    }
+
+    /**
+     * Without a common bond a single common atom is reported.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testSingleCommonAtom() throws CDKException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("CO");
+        IAtomContainer target = sp.parseSmiles("NO");
+        McSplitHandler mcsplit = new McSplitHandler(query, target, true, false, false);
+        AtomAtomMapping mapping = mcsplit.getFirstAtomMapping();
+        assertEquals(1, mapping.getCount());
+        assertEquals("O", mapping.getMappingsByAtoms().keySet().iterator().next().getSymbol());
+    }
+}
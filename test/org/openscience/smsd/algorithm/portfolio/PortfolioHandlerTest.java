@@ -0,0 +1,114 @@
+/* Copyright (C) 2009-2015 Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.portfolio;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.interfaces.Algorithm;
+import org.openscience.smsd.metrics.IPhaseListener;
+import org.openscience.smsd.metrics.PhaseEvent;
+
+/**
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * @cdk.module test-smsd
+ * @cdk.require java1.6+
+ */
+public class PortfolioHandlerTest {
+
+    /**
+     * A substructure is proven optimal, the mapping refers to the original
+     * molecules.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testSubstructureWins() throws CDKException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("Nc1ccccc1");
+        IAtomContainer target = sp.parseSmiles("C\\C=C/Nc1cccc(c1)N(O)\\C=C\\C\\C=C\\C=C/C");
+        PortfolioHandler portfolio = new PortfolioHandler(query, target, true, false, false);
+        assertFalse(portfolio.isTimeout());
+        assertNotNull(portfolio.getWinner());
+        AtomAtomMapping mapping = portfolio.getFirstAtomMapping();
+        assertEquals(7, mapping.getCount());
+        assertSame(query, mapping.getQuery());
+        assertSame(target, mapping.getTarget());
+        for (int i = 0; i < query.getAtomCount(); i++) {
+            assertTrue(mapping.getMappingsByAtoms().containsKey(query.getAtom(i)));
+        }
+    }
+
+    /**
+     * The portfolio finds the same MCS size as the default algorithm.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSameSizeAsDefault() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("CC(=O)Oc1ccccc1C(O)=O");
+        IAtomContainer target = sp.parseSmiles("OC(=O)c1ccccc1O");
+        Isomorphism portfolio = new Isomorphism(query.clone(), target.clone(), Algorithm.PORTFOLIO, true, false, false);
+        Isomorphism reference = new Isomorphism(query.clone(), target.clone(), Algorithm.DEFAULT, true, false, false);
+        assertEquals(reference.getFirstAtomMapping().getCount(), portfolio.getFirstAtomMapping().getCount());
+    }
+
+    /**
+     * An expired deadline still returns a result, and no interrupted engine
+     * reports a phase once the search has returned.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testZeroDeadline() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("CC(=O)Oc1ccccc1C(O)=O");
+        IAtomContainer target = sp.parseSmiles("OC(=O)c1ccccc1O");
+        final AtomicInteger phases = new AtomicInteger();
+        IPhaseListener listener = new IPhaseListener() {
+            @Override
+            public void phaseEnded(PhaseEvent event) {
+                phases.incrementAndGet();
+            }
+        };
+        PhaseEvent.addListener(listener);
+        try {
+            PortfolioHandler portfolio = new PortfolioHandler(query, target, true, false, false, 0);
+            int reported = phases.get();
+            assertTrue(portfolio.isTimeout());
+            assertNotNull(portfolio.getFirstAtomMapping());
+            Thread.sleep(200);
+            assertEquals(reported, phases.get());
+        } finally {
+            PhaseEvent.removeListener(listener);
+        }
+    }
+}
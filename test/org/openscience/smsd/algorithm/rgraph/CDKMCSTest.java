@@ -437,6 +437,40 @@ public class CDKMCSTest {
         Assert.assertEquals(matches, atomMappings);
     }
 
+    /**
+     * The arcs of a resolution graph large enough to be built on several
+     * threads must be consistent.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBuildRGraphInParallel() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        StringBuilder smiles = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            smiles.append('C');
+        }
+        IAtomContainer chain = sp.parseSmiles(smiles.toString());
+        CDKRGraph rGraph = CDKMCS.buildRGraph(chain, chain, false, false, false);
+        List<CDKRNode> nodes = rGraph.getGraph();
+        Assert.assertEquals(39 * 39, nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            CDKRNode x = nodes.get(i);
+            Assert.assertTrue(x.getForbidden().get(i));
+            Assert.assertFalse(x.getExtension().intersects(x.getForbidden()));
+            for (int j = x.getExtension().nextSetBit(0); j >= 0; j = x.getExtension().nextSetBit(j + 1)) {
+                Assert.assertTrue(nodes.get(j).getExtension().get(i));
+            }
+            for (int j = x.getForbidden().nextSetBit(0); j >= 0; j = x.getForbidden().nextSetBit(j + 1)) {
+                Assert.assertTrue(nodes.get(j).getForbidden().get(i));
+            }
+        }
+        // the two terminal bonds extend only to the next two bonds
+        Assert.assertEquals(0, nodes.get(0).getRMap().getId1());
+        Assert.assertEquals(0, nodes.get(0).getRMap().getId2());
+        Assert.assertEquals(1, nodes.get(0).getExtension().cardinality());
+    }
+
     /**
      * Test of getTimeManager method, of class CDKMCS.
      */
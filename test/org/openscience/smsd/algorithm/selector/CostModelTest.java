@@ -0,0 +1,163 @@
+/* Copyright (C) 2009-2015 Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.selector;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.interfaces.Algorithm;
+
+/**
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * @cdk.module test-smsd
+ * @cdk.require java1.6+
+ */
+public class CostModelTest {
+
+    @After
+    public void tearDown() {
+        CostModel.setDefault(null);
+    }
+
+    private static CostModel model(double cdk, double plus, double vf) {
+        Map<Algorithm, double[]> values = new EnumMap<>(Algorithm.class);
+        values.put(Algorithm.CDKMCS, new double[]{cdk, 0, 0, 0, 0, 0});
+        values.put(Algorithm.MCSPlus, new double[]{plus, 0, 0, 0, 0, 0});
+        values.put(Algorithm.VFLibMCS, new double[]{vf, 0, 0, 0, 0, 0});
+        return new CostModel(values, 30);
+    }
+
+    /**
+     * Product graph size counts atom pairs with equal labels.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testFeatures() throws CDKException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer benzene = sp.parseSmiles("c1ccccc1");
+        IAtomContainer phenol = sp.parseSmiles("Oc1ccccc1");
+        PairFeatures features = new PairFeatures(benzene, phenol, false);
+        assertEquals(36, features.getProductSize());
+        assertEquals(2, features.getRingSystems());
+        assertEquals(6 * 7, features.getSourceBondCount() * features.getTargetBondCount());
+        assertEquals(PairFeatures.SIZE, features.toVector().length);
+        assertTrue(features.getSymmetricAtoms() >= 5);
+    }
+
+    /**
+     * The cheapest engine is selected.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testSelect() throws CDKException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        PairFeatures features = new PairFeatures(sp.parseSmiles("CCO"), sp.parseSmiles("CCN"), false);
+        assertEquals(Algorithm.CDKMCS, model(1, 2, 3).select(features));
+        assertEquals(Algorithm.MCSPlus, model(3, 1, 2).select(features));
+        assertEquals(Algorithm.VFLibMCS, model(3, 2, 1).select(features));
+    }
+
+    /**
+     * A stored model reads back unchanged.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStoreAndLoad() throws Exception {
+        File file = File.createTempFile("cost-model", ".properties");
+        file.deleteOnExit();
+        CostModel model = model(1.5, 2.5, 3.5);
+        model.store(file);
+        CostModel loaded = CostModel.load(file);
+        for (Algorithm engine : CostModel.ENGINES) {
+            assertArrayEquals(model.getCoefficients(engine), loaded.getCoefficients(engine), 0.0);
+        }
+        assertEquals(30, loaded.getCompatibilityGraphAtoms());
+    }
+
+    /**
+     * The bundled table is found on the class path.
+     */
+    @Test
+    public void testBundledModel() {
+        CostModel model = CostModel.getDefault();
+        assertEquals(30, model.getCompatibilityGraphAtoms());
+        for (Algorithm engine : CostModel.ENGINES) {
+            assertEquals(PairFeatures.SIZE, model.getCoefficients(engine).length);
+        }
+    }
+
+    /**
+     * The least squares fit recovers an exact linear cost.
+     */
+    @Test
+    public void testLeastSquares() {
+        double[] expected = {2.0, 0.5, 0.01, 1.0, 0.25, 3.0};
+        List<double[]> rows = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            double[] row = {1.0, i * 7 % 13, i * i, i % 3, i % 5, 1.0 / (i + 1)};
+            double value = 0.0;
+            for (int j = 0; j < row.length; j++) {
+                value += expected[j] * row[j];
+            }
+            rows.add(row);
+            values.add(value);
+        }
+        double[] weights = CostModelCalibrator.leastSquares(rows, values);
+        assertArrayEquals(expected, weights, 1e-3);
+    }
+
+    /**
+     * Whatever the selected engine, the MCS size matches the default.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAutoAlgorithm() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("CC(=O)Oc1ccccc1C(O)=O");
+        IAtomContainer target = sp.parseSmiles("OC(=O)c1ccccc1O");
+        int expected = new Isomorphism(query.clone(), target.clone(), Algorithm.DEFAULT, true, false, false)
+                .getFirstAtomMapping().getCount();
+        for (CostModel model : Arrays.asList(model(1, 2, 3), model(3, 1, 2), model(3, 2, 1))) {
+            CostModel.setDefault(model);
+            Isomorphism auto = new Isomorphism(query.clone(), target.clone(), Algorithm.AUTO, true, false, false);
+            assertEquals(expected, auto.getFirstAtomMapping().getCount());
+        }
+    }
+}
@@ -312,4 +312,23 @@ public class VF2MCSTest {
         Assert.assertEquals(27, target.getAtomCount());
         assertEquals(26, smsd1.getFirstAtomMapping().getCount());
     }
+
+    /**
+     * Clique seeds generated from one node per orbit give the same MCS on
+     * symmetric molecules
+     *
+     * @throws InvalidSmilesException
+     */
+    @Test
+    public void testSymmetryBrokenSeeds() throws InvalidSmilesException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("CC(C)(C)C1CCC(CC1)C(C)(C)C");
+        IAtomContainer target = sp.parseSmiles("CC(C)(C)C1CCC(O)CC1");
+
+        VF2MCS all = new VF2MCS(query, target, true, false, false);
+        VF2MCS pruned = new VF2MCS(query, target, true, false, false, true);
+        assertNotNull(pruned.getFirstAtomMapping());
+        assertEquals(all.getFirstAtomMapping().getCount(), pruned.getFirstAtomMapping().getCount());
+        assertFalse(pruned.getAllAtomMapping().isEmpty());
+    }
 }
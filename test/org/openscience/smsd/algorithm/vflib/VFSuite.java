@@ -40,7 +40,9 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
     org.openscience.smsd.algorithm.vflib.VF2MCSTest.class,
     org.openscience.smsd.algorithm.vflib.VFMatcherTest.class,
-    org.openscience.smsd.algorithm.vflib.VFMapperTest.class})
+    org.openscience.smsd.algorithm.vflib.VFMapperTest.class,
+    org.openscience.smsd.algorithm.vflib.substructure.VF2MatcherTest.class,
+    org.openscience.smsd.algorithm.vflib.substructure.VF3MatcherTest.class})
 public class VFSuite {
 
     @BeforeClass
@@ -0,0 +1,181 @@
+/* Copyright (C) 2009-2014 Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.vflib.substructure;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.tools.IterationManager;
+
+/**
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * @cdk.module test-smsd
+ * @cdk.require java1.6+
+ */
+public class VF2MatcherTest {
+
+    private final SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    /**
+     * Cyclohexane maps onto itself in 12 ways, each reported once.
+     *
+     * @throws InvalidSmilesException
+     */
+    @Test
+    public void testEnumeratesAllMatches() throws InvalidSmilesException {
+        IAtomContainer query = sp.parseSmiles("C1CCCCC1");
+        IAtomContainer target = sp.parseSmiles("C1CCCCC1");
+        VF2Matcher matcher = new VF2Matcher(query, target, false, false, false);
+        Set<String> seen = new HashSet<>();
+        for (AtomAtomMapping mapping : matcher) {
+            assertEquals(6, mapping.getCount());
+            assertTrue(seen.add(mapping.getMappingsByIndex().toString()));
+        }
+        assertEquals(12, seen.size());
+        assertEquals(12, matcher.getMatchCount());
+    }
+
+    /**
+     * The search stops after the requested number of matches and resumes
+     * from there.
+     *
+     * @throws InvalidSmilesException
+     */
+    @Test
+    public void testFirstAndResume() throws InvalidSmilesException {
+        IAtomContainer query = sp.parseSmiles("CC");
+        IAtomContainer target = sp.parseSmiles("CCC");
+        VF2Matcher matcher = new VF2Matcher(query, target, false, false, false);
+        List<AtomAtomMapping> first = matcher.first(1);
+        assertEquals(1, first.size());
+        assertEquals(1, matcher.getMatchCount());
+        int rest = 0;
+        while (matcher.hasNext()) {
+            int[] indices = matcher.nextIndices();
+            assertEquals(2, indices.length);
+            rest++;
+        }
+        assertEquals(3, rest);
+    }
+
+    /**
+     * The matching order does not change the matches that are found.
+     *
+     * @throws InvalidSmilesException
+     */
+    @Test
+    public void testMatchOrder() throws InvalidSmilesException {
+        IAtomContainer query = sp.parseSmiles("NCC1CCCCC1O");
+        IAtomContainer target = sp.parseSmiles("OC1CCCC(CN)C1CN");
+        IAtomContainer[] queries = {query, sp.parseSmiles("OC1CCCCC1CN"), sp.parseSmiles("C1CC(CN)C(O)CC1")};
+        long expected = new VF2Matcher(query, target, false, false, false).count();
+        assertEquals(1, expected);
+        for (MatchOrder order : MatchOrder.values()) {
+            for (IAtomContainer renumbered : queries) {
+                assertEquals(expected, new VF2Matcher(renumbered, target, false, false, false, false, order).count());
+            }
+        }
+    }
+
+    /**
+     * The fork/join search finds the matches of the serial search, in the
+     * same order.
+     *
+     * @throws InvalidSmilesException
+     */
+    @Test
+    public void testParallelEnumeration() throws InvalidSmilesException {
+        IAtomContainer query = sp.parseSmiles("CCC");
+        IAtomContainer target = sp.parseSmiles("C1CCC2(CC1)CCCCC2");
+        List<AtomAtomMapping> serial = new VF2Matcher(query, target, false, false, false).first(Integer.MAX_VALUE);
+        for (int depth = 0; depth <= 3; depth++) {
+            List<AtomAtomMapping> parallel = new ParallelVF2(
+                    new VF2Matcher(query, target, false, false, false), depth).getAllAtomMapping();
+            assertEquals(serial, parallel);
+        }
+        assertTrue(new ParallelVF2(sp.parseSmiles("CCN"), target, false, false, false).getAllAtomMapping().isEmpty());
+    }
+
+    /**
+     * An iteration limit or an interrupt ends the search early and is
+     * reported as a timeout.
+     *
+     * @throws InvalidSmilesException
+     */
+    @Test
+    public void testIterationLimit() throws InvalidSmilesException {
+        IAtomContainer query = sp.parseSmiles("CCCCC");
+        StringBuilder chain = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            chain.append('C');
+        }
+        IAtomContainer target = sp.parseSmiles(chain.toString());
+        VF2Matcher unbounded = new VF2Matcher(query, target, false, false, false);
+        assertEquals(112, unbounded.count());
+        assertFalse(unbounded.isTimeout());
+
+        VF2Matcher bounded = new VF2Matcher(query, target, false, false, false);
+        bounded.setIterationManager(new IterationManager(1));
+        assertTrue(bounded.count() < 112);
+        assertTrue(bounded.isTimeout());
+        assertFalse(bounded.hasNext());
+
+        VF2Matcher interrupted = new VF2Matcher(query, target, false, false, false);
+        interrupted.setIterationManager(new IterationManager(query.getAtomCount() + target.getAtomCount()));
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(interrupted.hasNext());
+            assertTrue(interrupted.isTimeout());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * No match for a query that is not contained in the target.
+     *
+     * @throws InvalidSmilesException
+     */
+    @Test(expected = NoSuchElementException.class)
+    public void testNoMatch() throws InvalidSmilesException {
+        IAtomContainer query = sp.parseSmiles("CCN");
+        IAtomContainer target = sp.parseSmiles("CCCC");
+        VF2Matcher matcher = new VF2Matcher(query, target, false, false, false);
+        Iterator<AtomAtomMapping> iterator = matcher.iterator();
+        assertFalse(iterator.hasNext());
+        assertTrue(matcher.first(5).isEmpty());
+        iterator.next();
+    }
+}
@@ -0,0 +1,124 @@
+/* Copyright (C) 2009-2014 Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.vflib.substructure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.QueryAtomContainerCreator;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.Substructure;
+import org.openscience.smsd.interfaces.SubstructureEngine;
+
+/**
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * @cdk.module test-smsd
+ * @cdk.require java1.6+
+ */
+public class VF3MatcherTest {
+
+    private final SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    /**
+     * VF3 finds the same matches as VF2.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testSameCountsAsVF2() throws CDKException {
+        String[][] pairs = {
+            {"CC", "C1CCC12CCCC2"},
+            {"c1ccccc1", "c1ccc2ccccc2c1"},
+            {"CC(=O)O", "CC(=O)Oc1ccccc1C(O)=O"},
+            {"NC(C)C(O)=O", "CC(C)CC(N)C(=O)NC(C)C(O)=O"}
+        };
+        for (String[] pair : pairs) {
+            IAtomContainer query = sp.parseSmiles(pair[0]);
+            IAtomContainer target = sp.parseSmiles(pair[1]);
+            assertEquals(pair[0], new VF2Matcher(query, target, true, false, false).count(),
+                    new VF3Matcher(query, target, true, false, false).count());
+            assertEquals(pair[0], new VF2Matcher(query, target, true, false, false).countUnique(),
+                    new VF3Matcher(query, target, true, false, false, true).countUnique());
+        }
+    }
+
+    /**
+     * Every match maps all query atoms, and a missing substructure is not
+     * found.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testMatches() throws CDKException {
+        IAtomContainer query = sp.parseSmiles("c1ccccc1O");
+        IAtomContainer target = sp.parseSmiles("Oc1ccc(cc1)-c1ccccc1");
+        VF3Matcher matcher = new VF3Matcher(query, target, true, false, false);
+        for (AtomAtomMapping mapping : matcher) {
+            assertEquals(7, mapping.getCount());
+        }
+        assertEquals(2, matcher.getMatchCount());
+        assertFalse(new VF3Matcher(sp.parseSmiles("CN"), target, true, false, false).hasNext());
+    }
+
+    /**
+     * A query container is matched through its query atoms and bonds.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testQueryContainer() throws CDKException {
+        IAtomContainer query = sp.parseSmiles("CC(=O)O");
+        IAtomContainer target = sp.parseSmiles("CC(=O)Oc1ccccc1C(O)=O");
+        IQueryAtomContainer queryContainer
+                = QueryAtomContainerCreator.createSymbolAndBondOrderQueryContainer(query);
+        assertTrue(new VF3Matcher(queryContainer, target).hasNext());
+    }
+
+    /**
+     * Substructure gives the same answers with either engine.
+     *
+     * @throws CDKException
+     */
+    @Test
+    public void testSubstructureEngine() throws CDKException {
+        IAtomContainer query = sp.parseSmiles("CC");
+        IAtomContainer target = sp.parseSmiles("C1CCC12CCCC2");
+        for (SubstructureEngine engine : SubstructureEngine.values()) {
+            Substructure smsd = new Substructure(query, target, true, false, true, true, engine);
+            assertEquals(engine, smsd.getEngine());
+            assertTrue(smsd.isSubgraph());
+            assertEquals(18, smsd.getAllAtomMapping().size());
+            assertTrue(Substructure.exists(query, target, true, false, false, engine));
+            assertEquals(9, Substructure.count(query, target, true, false, false, true, engine));
+            assertFalse(new Substructure(sp.parseSmiles("CCN"), target, true, false, false, false, engine).isSubgraph());
+        }
+        assertEquals(SubstructureEngine.VF2, new Substructure(query, target, true, false, true, false).getEngine());
+    }
+}
@@ -0,0 +1,127 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.Substructure;
+import org.openscience.smsd.interfaces.Algorithm;
+
+/**
+ * Unit testing for the {@link InMemoryMetricsRegistry} and {@link Metrics}
+ * classes.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ * @cdk.module test-smsd
+ */
+public class InMemoryMetricsRegistryTest {
+
+    @After
+    public void tearDown() {
+        Metrics.setRegistry(null);
+    }
+
+    /**
+     * The same name must give the same instrument.
+     */
+    @Test
+    public void testCounter() {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        registry.counter("a").increment();
+        registry.counter("a").add(4);
+        registry.counter("b").increment();
+        Assert.assertEquals(Long.valueOf(5), registry.getCounters().get("a"));
+        Assert.assertEquals(Long.valueOf(1), registry.getCounters().get("b"));
+        registry.clear();
+        Assert.assertTrue(registry.getCounters().isEmpty());
+    }
+
+    /**
+     * Percentiles are bucket upper bounds, at most twice the exact value and
+     * never above the maximum.
+     */
+    @Test
+    public void testHistogram() {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        for (int i = 1; i <= 100; i++) {
+            registry.histogram("h").update(i);
+        }
+        InMemoryMetricsRegistry.Distribution histogram = registry.getHistograms().get("h");
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(1, histogram.getMin());
+        Assert.assertEquals(100, histogram.getMax());
+        Assert.assertEquals(50.5, histogram.getMean(), 1e-9);
+        long median = histogram.getPercentile(0.5);
+        Assert.assertTrue(median >= 50 && median <= 100);
+        Assert.assertEquals(100, histogram.getPercentile(0.99));
+        Assert.assertEquals(1, histogram.getPercentile(0.0));
+    }
+
+    /**
+     * The default registry discards the updates.
+     */
+    @Test
+    public void testNoOpDefault() {
+        Assert.assertFalse(Metrics.isEnabled());
+        Assert.assertSame(NoOpMetricsRegistry.getInstance(), Metrics.getRegistry());
+        Metrics.setRegistry(new InMemoryMetricsRegistry());
+        Assert.assertTrue(Metrics.isEnabled());
+        Metrics.setRegistry(null);
+        Assert.assertSame(NoOpMetricsRegistry.getInstance(), Metrics.getRegistry());
+    }
+
+    /**
+     * The engines report their iterations and the search time.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEngineMetrics() throws Exception {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        Metrics.setRegistry(registry);
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("OC1=CC=CC=C1");
+        IAtomContainer target = sp.parseSmiles("OC1=CC2=C(C=C1)C=CC=C2");
+
+        Isomorphism comparison = new Isomorphism(query, target, Algorithm.CDKMCS, false, false, false);
+        Assert.assertEquals(7, comparison.getFirstAtomMapping().getCount());
+        Assert.assertTrue(registry.getCounters().get(Metrics.CDKMCS_ITERATIONS) > 0);
+        Assert.assertEquals(1, registry.getTimers().get(Metrics.ISOMORPHISM_TIME).getCount());
+        Assert.assertEquals(7, registry.getHistograms().get(Metrics.ISOMORPHISM_SIZE).getMax());
+
+        Substructure substructure = new Substructure(query, target, false, false, false, false);
+        Assert.assertTrue(substructure.isSubgraph());
+        Assert.assertTrue(registry.getCounters().get(Metrics.VF2_STATES) >= query.getAtomCount());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        registry.report(new PrintStream(bytes, true));
+        Assert.assertTrue(bytes.toString().contains(Metrics.CDKMCS_ITERATIONS));
+    }
+}
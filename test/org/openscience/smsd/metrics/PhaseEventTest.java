@@ -0,0 +1,132 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.interfaces.Algorithm;
+
+/**
+ * Unit testing for the {@link PhaseEvent} class.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ * @cdk.module test-smsd
+ */
+public class PhaseEventTest {
+
+    private final Collector collector = new Collector();
+
+    @After
+    public void tearDown() {
+        PhaseEvent.removeListener(collector);
+    }
+
+    /**
+     * Without listeners no event is created.
+     */
+    @Test
+    public void testDisabled() {
+        Assert.assertFalse(PhaseEvent.isEnabled());
+        Assert.assertNull(PhaseEvent.begin(PhaseEvent.CLIQUE_SEARCH));
+    }
+
+    /**
+     * An MCSPlus search reports its compatibility graph, clique search and
+     * filters with the atom counts of the pair.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testMCSPlusPhases() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("OC1=CC=CC=C1");
+        IAtomContainer target = sp.parseSmiles("OC1=CC2=C(C=C1)C=CC=C2");
+        PhaseEvent.addListener(collector);
+        Assert.assertTrue(PhaseEvent.isEnabled());
+
+        Isomorphism comparison = new Isomorphism(query, target, Algorithm.MCSPlus, false, false, false);
+        comparison.setChemFilters(true, true, true);
+
+        List<String> phases = new ArrayList<>();
+        for (PhaseEvent event : collector.events) {
+            phases.add(event.getPhase());
+            Assert.assertTrue(event.getDuration() >= 0);
+            Assert.assertFalse(event.isTimeout());
+        }
+        Assert.assertTrue(phases.contains(PhaseEvent.COMPATIBILITY_GRAPH));
+        Assert.assertTrue(phases.contains(PhaseEvent.CLIQUE_SEARCH));
+        Assert.assertTrue(phases.contains(PhaseEvent.ENERGY_FILTER));
+        Assert.assertTrue(phases.contains(PhaseEvent.FRAGMENT_FILTER));
+        Assert.assertTrue(phases.contains(PhaseEvent.STEREO_FILTER));
+        PhaseEvent last = collector.events.get(collector.events.size() - 1);
+        Assert.assertEquals(PhaseEvent.STEREO_FILTER, last.getPhase());
+        Assert.assertEquals(7, last.getSourceAtomCount());
+        Assert.assertEquals(11, last.getTargetAtomCount());
+    }
+
+    /**
+     * The default algorithm tries a substructure first and then CDKMCS, which
+     * completes without falling back to VF2MCS.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEnginePhases() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer query = sp.parseSmiles("CC(=O)OC1=CC=CC=C1");
+        IAtomContainer target = sp.parseSmiles("OC(=O)C1=CC=CC=C1O");
+        PhaseEvent.addListener(collector);
+
+        Isomorphism comparison = new Isomorphism(query, target, Algorithm.DEFAULT, false, false, false);
+        Assert.assertTrue(comparison.getMappingCount() > 0);
+
+        List<String> engines = new ArrayList<>();
+        for (PhaseEvent event : collector.events) {
+            if (event.getPhase().startsWith("engine.")) {
+                engines.add(event.getPhase());
+                Assert.assertEquals(query.getAtomCount(), event.getSourceAtomCount());
+                Assert.assertEquals(target.getAtomCount(), event.getTargetAtomCount());
+            }
+        }
+        Assert.assertEquals(2, engines.size());
+        Assert.assertEquals(PhaseEvent.SUBSTRUCTURE_ENGINE, engines.get(0));
+        Assert.assertEquals(PhaseEvent.CDKMCS_ENGINE, engines.get(1));
+    }
+
+    private static final class Collector implements IPhaseListener {
+
+        private final List<PhaseEvent> events = new ArrayList<>();
+
+        @Override
+        public synchronized void phaseEnded(PhaseEvent event) {
+            events.add(event);
+        }
+    }
+}
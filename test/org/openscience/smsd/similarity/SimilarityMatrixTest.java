@@ -0,0 +1,100 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.similarity;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.interfaces.Algorithm;
+
+/**
+ * Unit testing for the {@link SimilarityMatrix} class.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ * @cdk.module test-smsd
+ */
+public class SimilarityMatrixTest {
+
+    private List<IAtomContainer> molecules() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        List<IAtomContainer> molecules = new ArrayList<>();
+        molecules.add(sp.parseSmiles("c1ccccc1"));
+        molecules.add(sp.parseSmiles("c1ccc2ccccc2c1"));
+        molecules.add(sp.parseSmiles("Oc1ccccc1"));
+        molecules.add(sp.parseSmiles("CCO"));
+        molecules.add(sp.parseSmiles("CCCO"));
+        return molecules;
+    }
+
+    /**
+     * The matrix is symmetric with a unit diagonal and matches the pairwise
+     * similarity.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCompute() throws Exception {
+        SimilarityMatrix matrix = new SimilarityMatrix(molecules(), Algorithm.DEFAULT, true, false, false);
+        matrix.setTileSize(2);
+        float[][] values = matrix.compute();
+        Assert.assertEquals(5, values.length);
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(1.0f, values[i][i], 0.0f);
+            for (int j = 0; j < values.length; j++) {
+                Assert.assertEquals(values[i][j], values[j][i], 0.0f);
+            }
+        }
+        // benzene in naphthalene: 6 / (6 + 10 - 6)
+        Assert.assertEquals(0.6f, values[0][1], 0.0001f);
+        // ethanol in propanol: 3 / (3 + 4 - 3)
+        Assert.assertEquals(0.75f, values[3][4], 0.0001f);
+    }
+
+    /**
+     * The file written by the streaming mode holds the same values.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testComputeFile() throws Exception {
+        File file = File.createTempFile("smsd", ".matrix");
+        try {
+            SimilarityMatrix matrix = new SimilarityMatrix(molecules(), Algorithm.DEFAULT, true, false, false);
+            matrix.setTileSize(3);
+            float[][] expected = matrix.compute();
+            matrix.compute(file);
+            Assert.assertEquals(SimilarityMatrix.rowOffset(5, 5), file.length());
+            float[][] actual = SimilarityMatrix.read(file);
+            for (int i = 0; i < expected.length; i++) {
+                Assert.assertArrayEquals(expected[i], actual[i], 0.0f);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
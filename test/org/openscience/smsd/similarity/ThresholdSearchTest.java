@@ -0,0 +1,132 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.similarity;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.interfaces.Algorithm;
+
+/**
+ * Unit testing for the {@link ThresholdSearch} and {@link UpperBound}
+ * classes.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ * @cdk.module test-smsd
+ */
+public class ThresholdSearchTest {
+
+    private final SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    /**
+     * The bound never falls below the MCS found by the engines.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testUpperBound() throws Exception {
+        String[] smiles = {"c1ccccc1", "c1ccc2ccccc2c1", "Oc1ccccc1", "CCO", "CCCO", "CC(=O)O", "NCC(=O)O"};
+        for (String s1 : smiles) {
+            for (String s2 : smiles) {
+                IAtomContainer a = sp.parseSmiles(s1);
+                IAtomContainer b = sp.parseSmiles(s2);
+                int bound = UpperBound.mcsSize(new MoleculeProfile(a, true, false, false),
+                        new MoleculeProfile(b, true, false, false));
+                Isomorphism comparison = new Isomorphism(a, b, Algorithm.DEFAULT, true, false, false);
+                Assert.assertTrue(s1 + " " + s2,
+                        bound >= comparison.getFirstAtomMapping().getCount());
+            }
+        }
+    }
+
+    /**
+     * Label and bond bounds on simple pairs.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBounds() throws Exception {
+        MoleculeProfile ethanol = new MoleculeProfile(sp.parseSmiles("CCO"), true, false, false);
+        MoleculeProfile benzene = new MoleculeProfile(sp.parseSmiles("c1ccccc1"), true, false, false);
+        MoleculeProfile naphthalene = new MoleculeProfile(sp.parseSmiles("c1ccc2ccccc2c1"), true, false, false);
+        Assert.assertEquals(2, UpperBound.atoms(ethanol, benzene));
+        Assert.assertEquals(0, UpperBound.bonds(ethanol, benzene));
+        Assert.assertEquals(1, UpperBound.mcsSize(ethanol, benzene));
+        Assert.assertEquals(6, UpperBound.mcsSize(benzene, naphthalene));
+        Assert.assertEquals(0.6, UpperBound.tanimoto(benzene, naphthalene), 0.0001);
+        Assert.assertEquals(6, UpperBound.minimumSize(6, 10, 0.6));
+    }
+
+    /**
+     * A copied profile has its own molecule, keeps the atom types and gives
+     * the same result as the original.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testProfileCopy() throws Exception {
+        MoleculeProfile phenol = new MoleculeProfile(sp.parseSmiles("Oc1ccccc1"), true, true, true);
+        MoleculeProfile naphthol = new MoleculeProfile(sp.parseSmiles("Oc1ccc2ccccc2c1"), true, true, true);
+        MoleculeProfile copy = phenol.copy();
+        Assert.assertNotSame(phenol.getMolecule(), copy.getMolecule());
+        Assert.assertEquals(phenol.getAtomCount(), copy.getAtomCount());
+        Assert.assertEquals(phenol.getMolecule().getAtom(0).getAtomTypeName(),
+                copy.getMolecule().getAtom(0).getAtomTypeName());
+        Assert.assertEquals(UpperBound.mcsSize(phenol, naphthol), UpperBound.mcsSize(copy, naphthol));
+
+        ThresholdSearch search = new ThresholdSearch(0.5, Algorithm.DEFAULT, true, true, true);
+        ThresholdSearch.Hit hit = search.compare(phenol, naphthol, 0);
+        ThresholdSearch.Hit copyHit = search.compare(copy, naphthol, 0);
+        Assert.assertNotNull(hit);
+        Assert.assertNotNull(copyHit);
+        Assert.assertEquals(hit.getSimilarity(), copyHit.getSimilarity(), 0.0);
+    }
+
+    /**
+     * Pairs below the threshold are pruned without running an engine.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSearch() throws Exception {
+        List<IAtomContainer> targets = new ArrayList<>();
+        targets.add(sp.parseSmiles("c1ccc2ccccc2c1"));
+        targets.add(sp.parseSmiles("CCO"));
+        targets.add(sp.parseSmiles("Oc1ccccc1"));
+        targets.add(sp.parseSmiles("CCCCCCCC"));
+        ThresholdSearch search = new ThresholdSearch(0.5, Algorithm.DEFAULT, true, false, false);
+        List<ThresholdSearch.Hit> hits = search.search(sp.parseSmiles("c1ccccc1"), targets);
+        Assert.assertEquals(2, hits.size());
+        Assert.assertEquals(2, hits.get(0).getIndex());
+        Assert.assertEquals(6.0 / 7.0, hits.get(0).getSimilarity(), 0.0001);
+        Assert.assertEquals(0, hits.get(1).getIndex());
+        Assert.assertEquals(2, search.getPrunedCount());
+        Assert.assertEquals(2, search.getSubstructureCount());
+        Assert.assertEquals(0, search.getComparedCount());
+    }
+}
@@ -0,0 +1,87 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.similarity;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.interfaces.Algorithm;
+
+/**
+ * Unit testing for the {@link TopKSearch} class.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ * @cdk.module test-smsd
+ */
+public class TopKSearchTest {
+
+    private final SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    private List<IAtomContainer> targets() throws Exception {
+        List<IAtomContainer> targets = new ArrayList<>();
+        targets.add(sp.parseSmiles("c1ccc2ccccc2c1"));
+        targets.add(sp.parseSmiles("CCO"));
+        targets.add(sp.parseSmiles("Oc1ccccc1"));
+        targets.add(sp.parseSmiles("CCCCCCCC"));
+        return targets;
+    }
+
+    /**
+     * The search stops once the best hit beats the bound of the next
+     * candidate.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testNearest() throws Exception {
+        TopKSearch search = new TopKSearch(1, 1, Algorithm.DEFAULT, true, false, false);
+        List<ThresholdSearch.Hit> hits = search.search(sp.parseSmiles("c1ccccc1"), targets());
+        Assert.assertEquals(1, hits.size());
+        Assert.assertEquals(2, hits.get(0).getIndex());
+        Assert.assertEquals(6.0 / 7.0, hits.get(0).getSimilarity(), 0.0001);
+        Assert.assertEquals(4, search.getCandidateCount());
+        Assert.assertEquals(1, search.getEvaluatedCount());
+    }
+
+    /**
+     * Parallel evaluation gives the same neighbours as a full threshold scan.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParallel() throws Exception {
+        TopKSearch search = new TopKSearch(2, 4, Algorithm.DEFAULT, true, false, false);
+        List<ThresholdSearch.Hit> hits = search.search(sp.parseSmiles("c1ccccc1"), targets());
+        List<ThresholdSearch.Hit> expected = new ThresholdSearch(0.0, Algorithm.DEFAULT, true, false, false)
+                .search(sp.parseSmiles("c1ccccc1"), targets());
+        Assert.assertEquals(2, hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            Assert.assertEquals(expected.get(i).getIndex(), hits.get(i).getIndex());
+            Assert.assertEquals(expected.get(i).getSimilarity(), hits.get(i).getSimilarity(), 0.0001);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.tools;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.algorithm.mcsplus.BKKCKCF;
+import org.openscience.smsd.algorithm.mcsplus.CompatibilityGraphSymmetry;
+import org.openscience.smsd.algorithm.mcsplus.GenerateCompatibilityGraph;
+import org.openscience.smsd.algorithm.vflib.substructure.VF2Matcher;
+
+/**
+ * Unit testing for the {@link AutomorphismPartition} class.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ * @cdk.module test-smsd
+ */
+public class AutomorphismPartitionTest {
+
+    private final SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    /**
+     * Orbits of symmetric molecules.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testOrbits() throws Exception {
+        AutomorphismPartition ring = new AutomorphismPartition(sp.parseSmiles("C1CCCCC1"));
+        Assert.assertEquals(1, ring.getOrbitCount());
+        Assert.assertEquals(2, ring.getBase().length);
+        Assert.assertEquals(6, ring.getBaseOrbit(0).length);
+        Assert.assertEquals(2, ring.getBaseOrbit(1).length);
+
+        AutomorphismPartition neopentane = new AutomorphismPartition(sp.parseSmiles("CC(C)(C)C"));
+        Assert.assertEquals(2, neopentane.getOrbitCount());
+        Assert.assertTrue(neopentane.isRepresentative(0));
+        Assert.assertFalse(neopentane.isRepresentative(2));
+
+        AutomorphismPartition toluene = new AutomorphismPartition(sp.parseSmiles("CC1CCCCC1"));
+        Assert.assertEquals(5, toluene.getOrbitCount());
+
+        AutomorphismPartition asymmetric = new AutomorphismPartition(sp.parseSmiles("OCC(N)C(=O)S"));
+        Assert.assertTrue(asymmetric.isTrivial());
+        Assert.assertTrue(asymmetric.getOrderConstraints().isEmpty());
+    }
+
+    /**
+     * Symmetry breaking reports one match per automorphism class of the
+     * query.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSymmetryBrokenMatching() throws Exception {
+        IAtomContainer ring = sp.parseSmiles("C1CCCCC1");
+        Assert.assertEquals(12, new VF2Matcher(ring, ring, false, false, false).count());
+        Assert.assertEquals(1, new VF2Matcher(ring, ring, false, false, false, true).count());
+
+        IAtomContainer neopentane = sp.parseSmiles("CC(C)(C)C");
+        Assert.assertEquals(24, new VF2Matcher(neopentane, neopentane, false, false, false).count());
+        Assert.assertEquals(1, new VF2Matcher(neopentane, neopentane, false, false, false, true).count());
+
+        IAtomContainer ethane = sp.parseSmiles("CC");
+        IAtomContainer spiro = sp.parseSmiles("C1CCC12CCCC2");
+        Assert.assertEquals(9, new VF2Matcher(ethane, spiro, true, false, false, true).count());
+    }
+
+    /**
+     * Clique enumeration from one node per orbit of the compatibility graph
+     * finds the maximum cliques with fewer symmetric copies.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSymmetryBrokenCliques() throws Exception {
+        IAtomContainer ring = sp.parseSmiles("C1CCCCC1");
+        GenerateCompatibilityGraph graph = new GenerateCompatibilityGraph(ring, ring, true, false, false);
+        int[] orbits = CompatibilityGraphSymmetry.nodeOrbits(ring, ring,
+                graph.getCompGraphNodes(), graph.getCEgdes(), graph.getDEgdes());
+        for (int id = 1; id < orbits.length; id++) {
+            Assert.assertEquals(1, orbits[id]);
+        }
+
+        BKKCKCF all = new BKKCKCF(graph.getCompGraphNodes(), graph.getCEgdes(), graph.getDEgdes());
+        BKKCKCF pruned = new BKKCKCF(graph.getCompGraphNodes(), graph.getCEgdes(), graph.getDEgdes(), false, orbits);
+        Assert.assertEquals(6, all.getBestCliqueSize());
+        Assert.assertEquals(6, pruned.getBestCliqueSize());
+        Assert.assertFalse(pruned.getMaxCliqueSet().isEmpty());
+        Assert.assertTrue(pruned.getMaxCliqueSet().size() < all.getMaxCliqueSet().size());
+    }
+}
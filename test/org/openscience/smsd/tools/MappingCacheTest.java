@@ -0,0 +1,191 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.Substructure;
+import org.openscience.smsd.interfaces.Algorithm;
+import org.openscience.smsd.interfaces.SubstructureEngine;
+
+/**
+ * Unit testing for the {@link MappingCache} and {@link CanonicalLabeller}
+ * classes.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ * @cdk.module test-smsd
+ */
+public class MappingCacheTest {
+
+    @After
+    public void tearDown() {
+        MappingCache.getInstance().setCapacity(0);
+        MappingCache.getInstance().clear();
+    }
+
+    /**
+     * The canonical hash must not depend on the atom order.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCanonicalHash() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        String hash1 = new CanonicalLabeller(sp.parseSmiles("OC(=O)C1=CC=CC=C1N")).getHash();
+        String hash2 = new CanonicalLabeller(sp.parseSmiles("NC1=CC=CC=C1C(O)=O")).getHash();
+        String hash3 = new CanonicalLabeller(sp.parseSmiles("NC1=CC=CC(=C1)C(O)=O")).getHash();
+        Assert.assertEquals(hash1, hash2);
+        Assert.assertFalse(hash1.equals(hash3));
+    }
+
+    /**
+     * Rings of different sizes are not told apart by refinement alone, so
+     * the hash must not depend on which tied atom is individualised first.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCanonicalHashOfTiedAtoms() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        String[] molecules = {"C1CCCCC1.C1CC1.C1CC1", "C1CCC1.C1CCC1.C1CCCCCCC1", "C12C3C4C1C5C2C3C45"};
+        Random random = new Random(42);
+        for (String smiles : molecules) {
+            IAtomContainer molecule = sp.parseSmiles(smiles);
+            String hash = new CanonicalLabeller(molecule).getHash();
+            for (int i = 0; i < 50; i++) {
+                Assert.assertEquals(smiles, hash, new CanonicalLabeller(shuffle(molecule, random)).getHash());
+            }
+        }
+        Assert.assertFalse(new CanonicalLabeller(sp.parseSmiles(molecules[0])).getHash().equals(
+                new CanonicalLabeller(sp.parseSmiles("C1CCCCC1.C1CCCCC1")).getHash()));
+    }
+
+    private static IAtomContainer shuffle(IAtomContainer molecule, Random random) {
+        List<IAtom> atoms = new ArrayList<>();
+        for (IAtom atom : molecule.atoms()) {
+            atoms.add(atom);
+        }
+        Collections.shuffle(atoms, random);
+        IAtomContainer shuffled = molecule.getBuilder().newInstance(IAtomContainer.class);
+        for (IAtom atom : atoms) {
+            shuffled.addAtom(atom);
+        }
+        List<IBond> bonds = new ArrayList<>();
+        for (IBond bond : molecule.bonds()) {
+            bonds.add(bond);
+        }
+        Collections.shuffle(bonds, random);
+        for (IBond bond : bonds) {
+            shuffled.addBond(bond);
+        }
+        return shuffled;
+    }
+
+    /**
+     * A cache hit must be remapped onto the atoms of the renumbered query.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testIsomorphismCacheHit() throws Exception {
+        MappingCache cache = MappingCache.getInstance();
+        cache.setCapacity(10);
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer target = sp.parseSmiles("C1=CC2=C(C=C1)C=CC=C2");
+
+        Isomorphism first = new Isomorphism(sp.parseSmiles("OC1=CC=CC=C1"), target,
+                Algorithm.DEFAULT, true, false, false);
+        IAtomContainer query = sp.parseSmiles("C1=CC=C(O)C=C1");
+        Isomorphism second = new Isomorphism(query, target, Algorithm.DEFAULT, true, false, false);
+
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(first.getMappingCount(), second.getMappingCount());
+        Assert.assertEquals(first.getFirstAtomMapping().getCount(), second.getFirstAtomMapping().getCount());
+        for (Map.Entry<IAtom, IAtom> map : second.getFirstAtomMapping().getMappingsByAtoms().entrySet()) {
+            Assert.assertTrue(query.contains(map.getKey()));
+            Assert.assertEquals(map.getKey().getSymbol(), map.getValue().getSymbol());
+        }
+    }
+
+    /**
+     * Substructure results are cached separately for the first match and all
+     * matches, and per engine.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSubstructureCache() throws Exception {
+        MappingCache cache = MappingCache.getInstance();
+        cache.setCapacity(10);
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer target = sp.parseSmiles("C1CCC12CCCC2");
+
+        Substructure all = new Substructure(sp.parseSmiles("CC"), target, true, false, true, true);
+        new Substructure(sp.parseSmiles("CC"), target, true, false, true, false);
+        Assert.assertEquals(0, cache.getHits());
+        Substructure cached = new Substructure(sp.parseSmiles("CC"), target, true, false, true, true);
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertTrue(cached.isSubgraph());
+        Assert.assertEquals(all.getAllAtomMapping().size(), cached.getAllAtomMapping().size());
+        for (AtomAtomMapping mapping : cached.getAllAtomMapping()) {
+            Assert.assertEquals(2, mapping.getCount());
+        }
+
+        new Substructure(sp.parseSmiles("CC"), target, true, false, true, true, SubstructureEngine.VF3);
+        Assert.assertEquals(1, cache.getHits());
+        new Substructure(sp.parseSmiles("CC"), target, true, false, true, true, SubstructureEngine.VF3);
+        Assert.assertEquals(2, cache.getHits());
+    }
+
+    /**
+     * Least recently used results are evicted once the capacity is reached.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCapacity() throws Exception {
+        MappingCache cache = MappingCache.getInstance();
+        cache.setCapacity(1);
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer target = sp.parseSmiles("CCCCOC");
+        new Isomorphism(sp.parseSmiles("CCO"), target, Algorithm.DEFAULT, true, false, false);
+        new Isomorphism(sp.parseSmiles("CCC"), target, Algorithm.DEFAULT, true, false, false);
+        Assert.assertEquals(1, cache.size());
+        cache.setCapacity(0);
+        Assert.assertEquals(0, cache.size());
+        Assert.assertFalse(cache.isEnabled());
+    }
+}
@@ -0,0 +1,115 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.tools;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.interfaces.Algorithm;
+
+/**
+ * Unit testing for the {@link MappingStore} class.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ * @cdk.module test-smsd
+ */
+public class MappingStoreTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("smsd", ".store");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        MappingCache.getInstance().setStore(null);
+        MappingCache.getInstance().clear();
+        file.delete();
+    }
+
+    /**
+     * Results written in one run are found after reopening the store.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResume() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        MappingCache cache = MappingCache.getInstance();
+
+        MappingStore store = new MappingStore(file);
+        cache.setStore(store);
+        Isomorphism first = new Isomorphism(sp.parseSmiles("CCOC(=O)C"), sp.parseSmiles("CC(=O)OCCC"),
+                Algorithm.DEFAULT, true, false, false);
+        Assert.assertEquals(1, store.size());
+        store.close();
+        cache.setStore(null);
+        cache.clear();
+
+        store = new MappingStore(file);
+        cache.setStore(store);
+        IAtomContainer query = sp.parseSmiles("CC(=O)OCC");
+        MappingCache.Key key = cache.createKey(query, sp.parseSmiles("CCCOC(C)=O"),
+                Algorithm.DEFAULT.name(), true, false, false);
+        Assert.assertTrue(store.contains(key));
+        Isomorphism second = new Isomorphism(query, sp.parseSmiles("CCCOC(C)=O"),
+                Algorithm.DEFAULT, true, false, false);
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(first.getFirstAtomMapping().getCount(), second.getFirstAtomMapping().getCount());
+        store.close();
+    }
+
+    /**
+     * A torn record at the end of the file is discarded on open.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTornRecord() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        MappingStore store = new MappingStore(file);
+        MappingCache.getInstance().setStore(store);
+        new Isomorphism(sp.parseSmiles("CCN"), sp.parseSmiles("CCCN"), Algorithm.DEFAULT, true, false, false);
+        store.close();
+        long length = file.length();
+
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[]{0, 0, 0, 42, 1, 2, 3});
+        }
+        store = new MappingStore(file);
+        Assert.assertEquals(1, store.size());
+        Assert.assertEquals(length, file.length());
+        store.close();
+    }
+}
@@ -35,7 +35,10 @@ import org.junit.runners.Suite;
  * @author Asad
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({org.openscience.smsd.tools.BondEnergiesTest.class,
+@Suite.SuiteClasses({org.openscience.smsd.tools.AutomorphismPartitionTest.class,
+    org.openscience.smsd.tools.BondEnergiesTest.class,
+    org.openscience.smsd.tools.MappingCacheTest.class,
+    org.openscience.smsd.tools.MappingStoreTest.class,
     org.openscience.smsd.tools.MoleculeSanityCheckTest.class,
     org.openscience.smsd.tools.TimeManagerTest.class})
 public class ToolsSuite {
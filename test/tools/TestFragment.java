@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2009-2013 Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version. All we ask is that proper credit is given for our work,
+ * which includes - but is not limited to - adding the above copyright notice to
+ * the beginning of your source code files, and to any copyright notice that you
+ * may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package tools;
+
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.mcss.Fragment;
+
+/**
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ */
+public class TestFragment {
+
+    private final SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    @Test
+    public void testIdentity() throws Exception {
+        Fragment a = new Fragment(sp.parseSmiles("Oc1ccccc1C"));
+        Fragment b = new Fragment(sp.parseSmiles("Cc1ccccc1O"));
+        Fragment c = new Fragment(sp.parseSmiles("Cc1cccc(O)c1"));
+        Assert.assertEquals(a, b);
+        Assert.assertEquals(a.hashCode(), b.hashCode());
+        Assert.assertEquals(a.getHash(), b.getHash());
+        Assert.assertEquals(0, a.compareTo(b));
+        Assert.assertFalse(a.equals(c));
+        Assert.assertTrue(a.compareTo(c) == -c.compareTo(a));
+    }
+
+    @Test
+    public void testDeduplication() throws Exception {
+        Set<Fragment> unique = new TreeSet<>();
+        for (String smiles : new String[]{"CCO", "OCC", "C(O)C", "CCN", "NCC", "CCCO"}) {
+            unique.add(new Fragment(sp.parseSmiles(smiles)));
+        }
+        Assert.assertEquals(3, unique.size());
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2009-2013 Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version. All we ask is that proper credit is given for our work,
+ * which includes - but is not limited to - adding the above copyright notice to
+ * the beginning of your source code files, and to any copyright notice that you
+ * may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package tools;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.mcss.Fragment;
+import org.openscience.smsd.mcss.IncrementalMCSS;
+import org.openscience.smsd.mcss.JobType;
+
+/**
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ */
+public class TestIncrementalMCSS {
+
+    private final SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    private List<IAtomContainer> jobs(String... smiles) throws Exception {
+        List<IAtomContainer> jobs = new ArrayList<>();
+        for (String s : smiles) {
+            jobs.add(sp.parseSmiles(s));
+        }
+        return jobs;
+    }
+
+    @Test
+    public void case1() throws Exception {
+        IncrementalMCSS mcss = new IncrementalMCSS(JobType.MULTIPLE, true, true, true);
+        Assert.assertTrue(mcss.addAll(jobs("Clc1ccccc1O", "Oc1ccccc1")));
+        for (IAtomContainer ac : mcss.getCalculateMCSS()) {
+            Assert.assertEquals(7, ac.getAtomCount());
+        }
+        Assert.assertTrue(mcss.add(sp.parseSmiles("Cc1ccccc1")));
+        for (IAtomContainer ac : mcss.getCalculateMCSS()) {
+            Assert.assertEquals(6, ac.getAtomCount());
+        }
+        Assert.assertEquals(3, mcss.getMoleculeCount());
+    }
+
+    @Test
+    public void case2() throws Exception {
+        IncrementalMCSS mcss = new IncrementalMCSS(JobType.SINGLE, true, true, true);
+        mcss.addAll(jobs("Clc1ccccc1O", "Oc1ccccc1", "Cc1ccccc1"));
+        File file = File.createTempFile("mcss", ".state");
+        file.deleteOnExit();
+        mcss.save(file);
+
+        IncrementalMCSS loaded = IncrementalMCSS.load(file);
+        Assert.assertEquals(3, loaded.getMoleculeCount());
+        Assert.assertEquals(1, loaded.getCalculateMCSS().size());
+        Assert.assertTrue(loaded.add(sp.parseSmiles("c1ccc2ccccc2c1")));
+        Assert.assertEquals(6, loaded.getCalculateMCSS().iterator().next().getAtomCount());
+        Assert.assertFalse(loaded.add(sp.parseSmiles("CCO")));
+        Assert.assertFalse(loaded.add(sp.parseSmiles("c1ccccc1")));
+        Assert.assertEquals(6, loaded.getMoleculeCount());
+    }
+
+    /**
+     * A saved and loaded state keeps the atom types of its fragments and
+     * gives the same MCSS as a run in memory when atom types are matched.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void case3() throws Exception {
+        IncrementalMCSS memory = new IncrementalMCSS(JobType.MULTIPLE, true, true, true);
+        memory.addAll(jobs("CC(=O)Nc1ccccc1O", "CC(=O)Nc1ccccc1"));
+        IncrementalMCSS saved = new IncrementalMCSS(JobType.MULTIPLE, true, true, true);
+        saved.addAll(jobs("CC(=O)Nc1ccccc1O", "CC(=O)Nc1ccccc1"));
+        File file = File.createTempFile("mcss", ".state");
+        file.deleteOnExit();
+        saved.save(file);
+
+        IncrementalMCSS loaded = IncrementalMCSS.load(file);
+        Assert.assertEquals(atomTypes(memory), atomTypes(loaded));
+
+        Assert.assertEquals(memory.add(sp.parseSmiles("CC(=O)Nc1ccccc1C")),
+                loaded.add(sp.parseSmiles("CC(=O)Nc1ccccc1C")));
+        Assert.assertEquals(smiles(memory), smiles(loaded));
+        Assert.assertEquals(atomTypes(memory), atomTypes(loaded));
+    }
+
+    private static List<String> atomTypes(IncrementalMCSS mcss) {
+        List<String> types = new ArrayList<>();
+        for (IAtomContainer ac : mcss.getCalculateMCSS()) {
+            for (IAtom atom : ac.atoms()) {
+                Assert.assertNotNull(atom.getAtomTypeName());
+                types.add(atom.getAtomTypeName());
+            }
+        }
+        Collections.sort(types);
+        return types;
+    }
+
+    private static Set<String> smiles(IncrementalMCSS mcss) throws Exception {
+        Set<String> smiles = new TreeSet<>();
+        for (IAtomContainer ac : mcss.getCalculateMCSS()) {
+            smiles.add(new Fragment(ac).getFragmentSMILES());
+        }
+        return smiles;
+    }
+}
@@ -27,6 +27,7 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.junit.Assert;
@@ -206,4 +207,25 @@ public class TestMCSSJF {
 
         ////System.out.println("Total time: " + (endCalcTime - startTime) + "ms");
     }
+
+    @Test
+    public void case6() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        String[] smiles = {"Oc1ccccc1", "c1ccc2ccccc2c1", "Cc1ccccc1", "Nc1ccccc1C", "Clc1ccccc1O"};
+        List<IAtomContainer> jobs = new ArrayList<>();
+        for (String s : smiles) {
+            jobs.add(sp.parseSmiles(s));
+        }
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            MCSSJF mcss = new MCSSJF(jobs, pool, 1, true, true, true);
+            Assert.assertFalse(mcss.getSolutions().isEmpty());
+            for (IAtomContainer ac : mcss.getSolutions()) {
+                Assert.assertEquals(6, ac.getAtomCount());
+            }
+            Assert.assertFalse(pool.isShutdown());
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
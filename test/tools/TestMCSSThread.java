@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2009-2013 Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version. All we ask is that proper credit is given for our work,
+ * which includes - but is not limited to - adding the above copyright notice to
+ * the beginning of your source code files, and to any copyright notice that you
+ * may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package tools;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.mcss.JobType;
+import org.openscience.smsd.mcss.MCSSThread;
+
+/**
+ * Seed reduction of {@link MCSSThread} in MULTIPLE mode.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ */
+public class TestMCSSThread {
+
+    /*
+     * The query gives three four atom seeds (NCCC, CCCO, CCCC), all of which
+     * reduce to CCC; seeds that reach CCC before the last molecule share its
+     * memoised comparison
+     */
+    private static final String[] SMILES = {"NCCCCO", "NCCC", "CCCO", "CCCC"};
+    private final SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    /**
+     * The seeds are reduced in parallel and the result does not depend on the
+     * order of the molecules after the query.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParallelReduction() throws Exception {
+        int[][] orders = {{1, 2, 3}, {3, 2, 1}, {2, 3, 1}};
+        Set<String> expected = null;
+        for (int[] order : orders) {
+            Set<String> result = solve(new MCSSThread(jobs(order), JobType.MULTIPLE, 1));
+            Assert.assertFalse(result.isEmpty());
+            if (expected == null) {
+                expected = result;
+            } else {
+                Assert.assertEquals(expected, result);
+            }
+        }
+    }
+
+    /**
+     * On a fork/join worker the seeds are reduced serially, with the same
+     * result.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSerialReductionOnWorker() throws Exception {
+        MCSSThread parallel = new MCSSThread(jobs(new int[]{1, 2, 3}), JobType.MULTIPLE, 1);
+        MCSSThread serial = new MCSSThread(jobs(new int[]{1, 2, 3}), JobType.MULTIPLE, 2);
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            Assert.assertEquals(solve(parallel), smiles(serial, pool.submit(serial).get()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private List<IAtomContainer> jobs(int[] order) throws Exception {
+        List<IAtomContainer> jobs = new ArrayList<>();
+        jobs.add(sp.parseSmiles(SMILES[0]));
+        for (int i : order) {
+            jobs.add(sp.parseSmiles(SMILES[i]));
+        }
+        return jobs;
+    }
+
+    private Set<String> solve(MCSSThread task) throws Exception {
+        return smiles(task, task.call());
+    }
+
+    private Set<String> smiles(MCSSThread task, Collection<IAtomContainer> solutions) throws Exception {
+        Set<String> smiles = new TreeSet<>();
+        for (IAtomContainer ac : solutions) {
+            Assert.assertEquals(3, ac.getAtomCount());
+            smiles.add(task.getMCSSSmiles(ac));
+        }
+        return smiles;
+    }
+}
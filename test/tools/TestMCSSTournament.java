@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2009-2013 Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version. All we ask is that proper credit is given for our work,
+ * which includes - but is not limited to - adding the above copyright notice to
+ * the beginning of your source code files, and to any copyright notice that you
+ * may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.mcss.JobType;
+import org.openscience.smsd.mcss.MCSSTournament;
+
+/**
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ */
+public class TestMCSSTournament {
+
+    private List<IAtomContainer> jobs(String... smiles) throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        List<IAtomContainer> jobs = new ArrayList<>();
+        for (String s : smiles) {
+            jobs.add(sp.parseSmiles(s));
+        }
+        return jobs;
+    }
+
+    @Test
+    public void case1() throws Exception {
+        List<IAtomContainer> jobs = jobs("Oc1ccccc1", "c1ccc2ccccc2c1", "Cc1ccccc1", "Nc1ccccc1C", "c1ccccc1");
+        MCSSTournament mcss = new MCSSTournament(jobs, JobType.MULTIPLE, 0);
+        Assert.assertFalse(mcss.getCalculateMCSS().isEmpty());
+        for (IAtomContainer ac : mcss.getCalculateMCSS()) {
+            Assert.assertEquals(6, ac.getAtomCount());
+        }
+        Assert.assertFalse(mcss.isShortCircuited());
+    }
+
+    @Test
+    public void case2() throws Exception {
+        List<IAtomContainer> jobs = jobs("Oc1ccccc1", "c1ccc2ccccc2c1", "Cc1ccccc1", "Nc1ccccc1C");
+        MCSSTournament mcss = new MCSSTournament(jobs, JobType.SINGLE, 7);
+        Assert.assertTrue(mcss.getCalculateMCSS().isEmpty());
+        Assert.assertTrue(mcss.isShortCircuited());
+    }
+}
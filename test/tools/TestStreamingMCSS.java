@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2009-2013 Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or (at your option)
+ * any later version. All we ask is that proper credit is given for our work,
+ * which includes - but is not limited to - adding the above copyright notice to
+ * the beginning of your source code files, and to any copyright notice that you
+ * may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package tools;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.mcss.JobType;
+import org.openscience.smsd.mcss.StreamingMCSS;
+
+/**
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ */
+public class TestStreamingMCSS {
+
+    private List<IAtomContainer> jobs(String... smiles) throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        List<IAtomContainer> jobs = new ArrayList<>();
+        for (String s : smiles) {
+            jobs.add(sp.parseSmiles(s));
+        }
+        return jobs;
+    }
+
+    @Test
+    public void case1() throws Exception {
+        List<IAtomContainer> jobs = jobs("Clc1ccccc1O", "Oc1ccccc1", "Cc1ccccc1", "Nc1ccccc1C", "c1ccc2ccccc2c1");
+        StreamingMCSS mcss = new StreamingMCSS(JobType.MULTIPLE, 2, 2, true, true, true);
+        Collection<IAtomContainer> solutions = mcss.calculate(jobs.iterator());
+        Assert.assertFalse(solutions.isEmpty());
+        for (IAtomContainer ac : solutions) {
+            Assert.assertEquals(6, ac.getAtomCount());
+        }
+        Assert.assertEquals(5, mcss.getMoleculeCount());
+        Assert.assertFalse(mcss.isTerminatedEarly());
+    }
+
+    @Test
+    public void case2() throws Exception {
+        List<IAtomContainer> jobs = jobs("Oc1ccccc1", "CCO", "Cc1ccccc1", "Nc1ccccc1C",
+                "c1ccc2ccccc2c1", "Clc1ccccc1O", "c1ccccc1", "c1ccncc1");
+        StreamingMCSS mcss = new StreamingMCSS(JobType.SINGLE, 2, 1, true, true, true);
+        Assert.assertTrue(mcss.calculate(jobs.iterator()).isEmpty());
+        Assert.assertTrue(mcss.isTerminatedEarly());
+        Assert.assertTrue(mcss.getMoleculeCount() < jobs.size());
+    }
+}